@@ -0,0 +1,50 @@
+-- ============================================================
+-- 点检统计月度汇总表: JL_PC_STATS_MONTHLY
+-- 按 (部门, ABC分类, 年月) 预聚合 JL_EQUIP_DXJ / JL_EQDXJLOG，
+-- 由 PointCheckAggregateService 定时增量刷新，点检统计直接读取本表。
+-- 表不存在时统计自动退回到明细表查询 (需同时创建下方的控制表)。
+-- ============================================================
+CREATE TABLE JL_PC_STATS_MONTHLY
+(
+    IDEPT          NUMBER(19,0) NOT NULL, -- 部门ID (JL_EQUIP_DXJ.IUSEDEPT / JL_EQDXJLOG.IDEPT)
+    SABC           NUMBER(2,0)  NOT NULL, -- ABC分类 (1/2/3)
+    YM             CHAR(6)      NOT NULL, -- 年月 YYYYMM (计划按 DINIT，检定记录按 DWUSER)
+    PLANNED_CNT    NUMBER(10,0) DEFAULT 0 NOT NULL, -- 应检: ISTATE=1 的计划数 (不过滤 IDEL，与原统计口径一致)
+    DONE_CNT       NUMBER(10,0) DEFAULT 0 NOT NULL, -- 已检: ISTATE=1 且未删除且 IDJSTATE=1 的计划数
+    NORMAL_CNT     NUMBER(10,0) DEFAULT 0 NOT NULL, -- 正常: 未删除且 IRESULT=1 的检定记录数
+    ABNORMAL_CNT   NUMBER(10,0) DEFAULT 0 NOT NULL, -- 异常: 未删除且 IRESULT=2 的检定记录数
+    REFRESH_TIME   DATE DEFAULT SYSDATE,            -- 最近刷新时间
+    CONSTRAINT PK_JL_PC_STATS_MONTHLY PRIMARY KEY (SABC, YM, IDEPT)
+);
+
+COMMENT ON TABLE JL_PC_STATS_MONTHLY IS '点检统计月度汇总 (程序维护，勿手工修改)';
+
+-- ============================================================
+-- 控制表: JL_PC_STATS_CONTROL (只有 ID = 1 一行)
+-- 多个应用实例共享增量刷新水位；每次刷新先 SELECT ... FOR UPDATE 锁定该行，
+-- 保证同一时间只有一个实例在重算汇总表。
+-- ============================================================
+CREATE TABLE JL_PC_STATS_CONTROL
+(
+    ID             NUMBER(1,0)  NOT NULL, -- 固定为 1
+    WATERMARK      DATE,                  -- 增量刷新水位 (上次刷新开始时的数据库时间)
+    LAST_INDOCNO   NUMBER(19,0),          -- 上次刷新时 JL_EQUIP_DXJ 的最大 INDOCNO
+    FROM_YEAR      NUMBER(4,0),           -- 汇总表覆盖的起始年份
+    TO_YEAR        NUMBER(4,0),           -- 汇总表覆盖的截止年份
+    REBUILD_TIME   DATE,                  -- 最近一次全量重算完成时间
+    REFRESH_TIME   DATE,                  -- 最近一次刷新时间
+    CONSTRAINT PK_JL_PC_STATS_CONTROL PRIMARY KEY (ID)
+);
+
+COMMENT ON TABLE JL_PC_STATS_CONTROL IS '点检统计汇总刷新控制 (程序维护，勿手工修改)';
+
+INSERT INTO JL_PC_STATS_CONTROL (ID) VALUES (1);
+
+-- ============================================================
+-- 增量刷新按以下列查找变化的月份，建议建立索引
+-- ============================================================
+CREATE INDEX IDX_JL_EQUIP_DXJ_DCHECK ON JL_EQUIP_DXJ (DCHECK);
+CREATE INDEX IDX_JL_EQUIP_DXJ_DINIT ON JL_EQUIP_DXJ (DINIT);
+CREATE INDEX IDX_JL_EQDXJLOG_DWUSER ON JL_EQDXJLOG (DWUSER);
+
+COMMIT;
@@ -1,21 +1,72 @@
 package com.lucksoft.common.utils;
 
 import java.io.*;
-import java.text.SimpleDateFormat;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * 国家局接口调试日志记录工具
- * 记录路径: D:/logs/yyyy-MM-dd/描述_ID.log
+ * 记录路径: {basePath}/yyyy-MM-dd/描述_ID.log (basePath 默认 D:/logs，可通过 configure 修改)
+ * [已修改] 异步写入: log() 只把日志放入有界队列 (队列满时丢弃并计数)，调用线程不做任何磁盘 I/O；
+ *         后台单线程批量取出日志，按 (日期, 文件名) 保持文件通道打开 (LRU 限制打开数量)，每批每个文件只写一次。
+ * [已修改] 写入时同步记录每条日志的字节偏移和检索字段到 "描述_ID.log.idx"，供 {@link GjjLogIndex} 检索。
  */
 public class GjjDebugLogger {
 
-    private static final String BASE_LOG_PATH = "D:" + File.separator + "logs";
+    private static final String DEFAULT_BASE_LOG_PATH = "D:" + File.separator + "logs";
+    static final String ENTRY_SEPARATOR = "================================================================================\n";
+    private static final Pattern ILLEGAL_FILE_CHARS = Pattern.compile("[\\\\/:*?\"<>|]");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    // 与原先 FileWriter 保持一致，使用平台默认编码
+    static final Charset FILE_CHARSET = Charset.defaultCharset();
+
+    private static final int QUEUE_CAPACITY = 20000;
+    private static final int MAX_BATCH_SIZE = 512;
+
+    private static volatile String basePath = DEFAULT_BASE_LOG_PATH;
+    private static volatile int maxOpenFiles = 32;
+
+    private static final BlockingQueue<LogEntry> QUEUE = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final AsyncAppender APPENDER = new AsyncAppender();
 
     // 用于在线程中传递当前的日志文件名（描述_ID）
     private static final ThreadLocal<String> CURRENT_LOG_NAME = new ThreadLocal<>();
 
+    static {
+        APPENDER.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(GjjDebugLogger::shutdown, "gjj-debug-log-shutdown"));
+    }
+
+    /**
+     * [新增] 设置日志根目录和最多同时打开的文件数 (应用启动时调用)
+     */
+    public static void configure(String logBasePath, int openFileLimit) {
+        if (logBasePath != null && !logBasePath.trim().isEmpty()) {
+            basePath = logBasePath.trim();
+        }
+        if (openFileLimit > 0) {
+            maxOpenFiles = openFileLimit;
+        }
+    }
+
+    public static String getBasePath() {
+        return basePath;
+    }
+
     /**
      * 设置当前线程的日志文件名称上下文
      * @param name 格式：描述_ID (例如: 年度计划_annualPlan)
@@ -29,50 +80,19 @@ public class GjjDebugLogger {
     }
 
     /**
-     * 记录日志
+     * 记录日志 (只入队，不阻塞调用线程)
      * @param interfaceId 接口ID (兜底用)
      * @param title 标题
      * @param content 内容
      */
     public static void log(String interfaceId, String title, String content) {
-        try {
-            // 1. 确定目录 D:/logs/2023-10-27/
-            String dateStr = new SimpleDateFormat("yyyy-MM-dd").format(new Date());
-            String dirPath = BASE_LOG_PATH + File.separator + dateStr;
-            File dir = new File(dirPath);
-            if (!dir.exists()) {
-                dir.mkdirs();
-            }
-
-            // 2. 确定文件名
-            // 优先使用 ThreadLocal 中的 "描述_ID"，如果没有则使用 interfaceId
-            String fileNameBase = CURRENT_LOG_NAME.get();
-            if (fileNameBase == null || fileNameBase.trim().isEmpty()) {
-                fileNameBase = interfaceId;
-            }
-            // 净化文件名，移除非法字符
-            fileNameBase = fileNameBase.replaceAll("[\\\\/:*?\"<>|]", "_").replace(".html", "");
-
-            File logFile = new File(dir, fileNameBase + ".log");
-
-            // 3. 构造日志内容
-            String timeStr = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date());
-            StringBuilder sb = new StringBuilder();
-            sb.append("================================================================================\n");
-            sb.append("[").append(timeStr).append("] ").append("[").append(title).append("] \n");
-            if (content != null && !content.isEmpty()) {
-                sb.append(content).append("\n");
-            }
-            sb.append("\n");
-
-            // 4. 追加写入
-            try (FileWriter fw = new FileWriter(logFile, true);
-                 PrintWriter pw = new PrintWriter(fw)) {
-                pw.print(sb.toString());
-            }
-
-        } catch (IOException e) {
-            e.printStackTrace();
+        // 优先使用 ThreadLocal 中的 "描述_ID"，如果没有则使用 interfaceId
+        String fileNameBase = CURRENT_LOG_NAME.get();
+        if (fileNameBase == null || fileNameBase.trim().isEmpty()) {
+            fileNameBase = interfaceId;
+        }
+        if (!QUEUE.offer(new LogEntry(System.currentTimeMillis(), interfaceId, fileNameBase, title, content))) {
+            DROPPED.incrementAndGet();
         }
     }
 
@@ -82,13 +102,35 @@ public class GjjDebugLogger {
         log(interfaceId, title + " [异常]", sw.toString());
     }
 
+    /**
+     * [新增] 停止后台写入线程 (写完队列中剩余的日志并关闭所有文件)
+     */
+    public static void shutdown() {
+        APPENDER.stop(5000);
+    }
+
+    /**
+     * [新增] 异步写入统计 (队列深度、丢弃条数、已打开文件数)
+     */
+    public static Map<String, Object> getWriterStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("basePath", basePath);
+        stats.put("queueDepth", QUEUE.size());
+        stats.put("queueCapacity", QUEUE_CAPACITY);
+        stats.put("dropped", DROPPED.get());
+        stats.put("written", APPENDER.written.get());
+        stats.put("openFiles", APPENDER.openFileCount);
+        stats.put("maxOpenFiles", maxOpenFiles);
+        return stats;
+    }
+
     // --- 日志管理功能 ---
 
     /**
      * 获取所有有日志的日期目录
      */
     public static List<String> getLogDates() {
-        File baseDir = new File(BASE_LOG_PATH);
+        File baseDir = new File(basePath);
         if (!baseDir.exists()) return Collections.emptyList();
 
         File[] files = baseDir.listFiles(File::isDirectory);
@@ -104,7 +146,7 @@ public class GjjDebugLogger {
      * 获取指定日期的所有日志文件
      */
     public static List<Map<String, Object>> getLogFiles(String dateStr) {
-        File dateDir = new File(BASE_LOG_PATH + File.separator + dateStr);
+        File dateDir = new File(basePath + File.separator + dateStr);
         if (!dateDir.exists()) return Collections.emptyList();
 
         File[] files = dateDir.listFiles((dir, name) -> name.endsWith(".log"));
@@ -128,6 +170,235 @@ public class GjjDebugLogger {
     public static File getLogFile(String dateStr, String fileName) {
         // 安全检查
         if (dateStr.contains("..") || fileName.contains("..")) return null;
-        return new File(BASE_LOG_PATH + File.separator + dateStr + File.separator + fileName);
+        return new File(basePath + File.separator + dateStr + File.separator + fileName);
+    }
+
+    /**
+     * [新增] 按 topic / taskId / equipmentCode / 标题检索指定日期的日志，只读取命中的条目
+     */
+    public static Map<String, Object> searchLogs(String dateStr, String topic, String taskId, String equipmentCode,
+                                                 String title, int limit) throws IOException {
+        if (dateStr.contains("..")) return Collections.emptyMap();
+        return GjjLogIndex.search(basePath, dateStr, topic, taskId, equipmentCode, title, limit);
+    }
+
+    /**
+     * 一条待写入的日志 (在调用线程中只做最少的工作)
+     */
+    private static final class LogEntry {
+        final long timestamp;
+        final String topic;
+        final String name;
+        final String title;
+        final String content;
+
+        LogEntry(long timestamp, String topic, String name, String title, String content) {
+            this.timestamp = timestamp;
+            this.topic = topic;
+            this.name = name;
+            this.title = title;
+            this.content = content;
+        }
+    }
+
+    /**
+     * 单个日志文件 (及其 .idx 索引文件) 的打开句柄和本批待写入内容
+     */
+    private static final class LogFileHandle {
+        final String date;
+        final String fileName;
+        final FileChannel channel;
+        final FileChannel indexChannel;
+        final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        final List<GjjLogIndex.IndexRecord> pendingRecords = new ArrayList<>();
+        // 已写入文件的末尾位置，本批条目的偏移 = position + 之前累积的字节数
+        long position;
+
+        LogFileHandle(String date, File file) throws IOException {
+            this.date = date;
+            this.fileName = file.getName();
+            File dir = file.getParentFile();
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            // 追加模式打开，只在首次写入该文件时创建目录和打开通道
+            this.channel = new FileOutputStream(file, true).getChannel();
+            this.position = channel.size();
+            try {
+                this.indexChannel = new FileOutputStream(new File(dir, fileName + GjjLogIndex.INDEX_SUFFIX), true).getChannel();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        void append(LogEntry entry, String text) {
+            byte[] bytes = text.getBytes(FILE_CHARSET);
+            long offset = position + pending.size();
+            pending.write(bytes, 0, bytes.length);
+            pendingRecords.add(GjjLogIndex.record(fileName, offset, bytes.length, entry.timestamp, entry.topic, entry.title, entry.content));
+        }
+
+        void flush() throws IOException {
+            if (pending.size() == 0) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+            List<GjjLogIndex.IndexRecord> records = new ArrayList<>(pendingRecords);
+            pending.reset();
+            pendingRecords.clear();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                position += buffer.capacity();
+            } catch (IOException e) {
+                // 写入不完整时以文件实际大小为准，本批索引丢弃
+                position = channel.size();
+                throw e;
+            }
+            GjjLogIndex.append(indexChannel, date, records);
+        }
+
+        void close() {
+            try {
+                flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                try {
+                    channel.close();
+                    indexChannel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 后台写入线程: 批量取出日志，按文件聚合后写入；打开的文件按 LRU 淘汰
+     */
+    private static final class AsyncAppender implements Runnable {
+
+        private final Thread thread = new Thread(this, "gjj-debug-log-writer");
+        private final AtomicLong written = new AtomicLong();
+        private volatile boolean running = true;
+        private volatile int openFileCount = 0;
+
+        // 完整文件路径 -> 句柄 (按访问顺序，只由写入线程访问)
+        private final LinkedHashMap<String, LogFileHandle> handles = new LinkedHashMap<String, LogFileHandle>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LogFileHandle> eldest) {
+                if (size() > maxOpenFiles) {
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        void start() {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop(long timeoutMillis) {
+            running = false;
+            if (Thread.currentThread() == thread) {
+                return;
+            }
+            try {
+                thread.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            List<LogEntry> batch = new ArrayList<>(MAX_BATCH_SIZE);
+            while (running || !QUEUE.isEmpty()) {
+                try {
+                    LogEntry first = QUEUE.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        // 空闲时关闭非当天的文件
+                        closeStaleHandles();
+                        continue;
+                    }
+                    batch.add(first);
+                    QUEUE.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    writeBatch(batch);
+                } catch (InterruptedException e) {
+                    running = false;
+                } catch (Throwable t) {
+                    // 写入线程不能因单次失败退出
+                    t.printStackTrace();
+                } finally {
+                    batch.clear();
+                }
+            }
+            for (LogFileHandle handle : handles.values()) {
+                handle.close();
+            }
+            handles.clear();
+            openFileCount = 0;
+        }
+
+        private void writeBatch(List<LogEntry> batch) {
+            Set<LogFileHandle> touched = new LinkedHashSet<>();
+            for (LogEntry entry : batch) {
+                LocalDate day = Instant.ofEpochMilli(entry.timestamp).atZone(ZoneId.systemDefault()).toLocalDate();
+                String dateStr = day.format(DATE_FORMAT);
+                // 净化文件名，移除非法字符
+                String fileNameBase = ILLEGAL_FILE_CHARS.matcher(String.valueOf(entry.name)).replaceAll("_").replace(".html", "");
+                String filePath = basePath + File.separator + dateStr + File.separator + fileNameBase + ".log";
+                try {
+                    LogFileHandle handle = handles.get(filePath);
+                    if (handle == null) {
+                        handle = new LogFileHandle(dateStr, new File(filePath));
+                        handles.put(filePath, handle);
+                    }
+                    handle.append(entry, formatEntry(entry));
+                    touched.add(handle);
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            for (LogFileHandle handle : touched) {
+                try {
+                    handle.flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            written.addAndGet(batch.size());
+            openFileCount = handles.size();
+        }
+
+        private String formatEntry(LogEntry entry) {
+            String timeStr = Instant.ofEpochMilli(entry.timestamp).atZone(ZoneId.systemDefault()).format(TIME_FORMAT);
+            StringBuilder sb = new StringBuilder();
+            sb.append(ENTRY_SEPARATOR);
+            sb.append("[").append(timeStr).append("] ").append("[").append(entry.title).append("] \n");
+            if (entry.content != null && !entry.content.isEmpty()) {
+                sb.append(entry.content).append("\n");
+            }
+            sb.append("\n");
+            return sb.toString();
+        }
+
+        private void closeStaleHandles() {
+            String today = LocalDate.now().format(DATE_FORMAT);
+            Iterator<LogFileHandle> it = handles.values().iterator();
+            while (it.hasNext()) {
+                LogFileHandle handle = it.next();
+                if (!today.equals(handle.date)) {
+                    handle.close();
+                    it.remove();
+                }
+            }
+            openFileCount = handles.size();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,536 @@
+package com.lucksoft.common.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * [新增] 国家局接口调试日志索引
+ * 1. 写入时建立: GjjDebugLogger 的写入线程在追加日志的同时，把每条日志的 (字节偏移, 长度, 时间, topic, 标题, taskId, equipmentCode)
+ *    追加到同目录的 "描述_ID.log.idx" 中，无需重新扫描日志文件。
+ * 2. 查询时按日期懒加载: 读取当天所有 .idx 建立倒排索引 (topic / taskId / equipmentCode / title -> 日志条目)，
+ *    没有 .idx 的旧日志文件会扫描一次分隔符补建内存索引。已加载的日期继续接收写入线程的增量。
+ *    [已修改] 有 .idx 的日志文件也会检查索引是否完整: 索引之前 (启用索引前已存在的内容)、条目之间和最后一条索引之后
+ *    到文件末尾 (.idx 写入失败或进程中断) 未被索引的区间同样按分隔符扫描补建。
+ * 3. 命中的条目按偏移做区间读取，只读取命中的部分，不读整个文件。
+ *    [已修改] 使用 FileChannel 按位置读取，不再做内存映射 (Windows 上映射未被回收前日志文件无法删除或滚动)。
+ */
+public class GjjLogIndex {
+
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final Charset INDEX_CHARSET = StandardCharsets.UTF_8;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    // 从日志内容中提取 JSON 字段 ("taskId":"xxx") 或 URL 参数 (equipmentCode=xxx)
+    private static final Pattern KEY_VALUE = Pattern.compile("\"?(taskId|equipmentCode)\"?\\s*[:=]\\s*\"?([A-Za-z0-9_.\\-]+)", Pattern.CASE_INSENSITIVE);
+    // 旧日志文件补建索引时解析条目头 "[时间] [标题] "
+    private static final Pattern ENTRY_HEADER = Pattern.compile("^\\[([^\\]]+)\\] \\[(.*)\\] ?$");
+    private static final int MAX_KEYS_PER_ENTRY = 1000;
+    private static final int MAX_CACHED_DAYS = 7;
+    private static final int MAX_LIMIT = 1000;
+    // 扫描未索引区间时每次读取的字节数
+    private static final int SCAN_CHUNK_SIZE = 1024 * 1024;
+
+    private static final Map<String, DayIndex> DAYS = new ConcurrentHashMap<>();
+
+    private GjjLogIndex() {
+    }
+
+    /**
+     * 按条件检索指定日期的日志 (多个条件之间为"且"关系)
+     *
+     * @param basePath      日志根目录
+     * @param date          日期 (yyyy-MM-dd)
+     * @param topic         接口ID/Topic，可为空
+     * @param taskId        任务ID，可为空
+     * @param equipmentCode 设备编码，可为空
+     * @param title         日志标题，可为空
+     * @param limit         最多返回条数 (最新的在前)
+     */
+    public static Map<String, Object> search(String basePath, String date, String topic, String taskId,
+                                             String equipmentCode, String title, int limit) throws IOException {
+        File dateDir = new File(basePath + File.separator + date);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("date", date);
+        if (!dateDir.isDirectory()) {
+            result.put("total", 0);
+            result.put("hits", Collections.emptyList());
+            return result;
+        }
+
+        DayIndex day = DAYS.computeIfAbsent(date, DayIndex::new);
+        day.ensureLoaded(dateDir);
+        evictOldDays();
+
+        List<EntryRef> matched = day.query(term("topic", topic), term("taskId", taskId),
+                term("equipmentCode", equipmentCode), term("title", title));
+        matched.sort((a, b) -> a.timestamp != b.timestamp ? Long.compare(b.timestamp, a.timestamp) : Long.compare(b.offset, a.offset));
+        int max = Math.min(limit <= 0 ? 100 : limit, MAX_LIMIT);
+        List<EntryRef> page = matched.size() > max ? matched.subList(0, max) : matched;
+
+        result.put("total", matched.size());
+        result.put("hits", readEntries(dateDir, page));
+        return result;
+    }
+
+    /**
+     * 已加载到内存的日期及条目数
+     */
+    public static Map<String, Integer> getLoadedDays() {
+        Map<String, Integer> days = new TreeMap<>();
+        DAYS.forEach((date, day) -> days.put(date, day.size()));
+        return days;
+    }
+
+    // --- 写入线程调用 ---
+
+    /**
+     * 为一条刚写入缓冲区的日志生成索引记录 (提取 taskId / equipmentCode)
+     */
+    static IndexRecord record(String file, long offset, int length, long timestamp, String topic, String title, String content) {
+        Set<String> taskIds = new LinkedHashSet<>();
+        Set<String> equipmentCodes = new LinkedHashSet<>();
+        extractKeys(content, taskIds, equipmentCodes);
+        return new IndexRecord(new EntryRef(file, offset, length, timestamp, topic, title), taskIds, equipmentCodes);
+    }
+
+    /**
+     * 把索引记录追加到 .idx 文件，并更新已加载日期的内存索引 (日志内容必须已先写入)
+     */
+    static void append(FileChannel indexChannel, String date, List<IndexRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (IndexRecord record : records) {
+            record.appendLine(sb);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(INDEX_CHARSET));
+        try {
+            while (buffer.hasRemaining()) {
+                indexChannel.write(buffer);
+            }
+        } finally {
+            // 即使 .idx 写入失败，内存索引仍然可用
+            DayIndex day = DAYS.get(date);
+            if (day != null) {
+                for (IndexRecord record : records) {
+                    day.add(record);
+                }
+            }
+        }
+    }
+
+    // --- 内部实现 ---
+
+    private static String term(String field, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return field + ":" + value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static void extractKeys(String content, Set<String> taskIds, Set<String> equipmentCodes) {
+        if (content == null || content.isEmpty()) {
+            return;
+        }
+        Matcher m = KEY_VALUE.matcher(content);
+        int count = 0;
+        while (m.find() && count < MAX_KEYS_PER_ENTRY) {
+            if ("taskId".equalsIgnoreCase(m.group(1))) {
+                taskIds.add(m.group(2));
+            } else {
+                equipmentCodes.add(m.group(2));
+            }
+            count++;
+        }
+    }
+
+    private static void evictOldDays() {
+        if (DAYS.size() <= MAX_CACHED_DAYS) {
+            return;
+        }
+        String today = LocalDate.now().format(DATE_FORMAT);
+        DAYS.entrySet().stream()
+                .filter(e -> !today.equals(e.getKey()))
+                .min(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                .ifPresent(e -> DAYS.remove(e.getKey(), e.getValue()));
+    }
+
+    /**
+     * 按文件分组，对每条命中的日志按位置读取
+     */
+    private static List<Map<String, Object>> readEntries(File dateDir, List<EntryRef> refs) throws IOException {
+        Map<String, List<EntryRef>> byFile = new LinkedHashMap<>();
+        for (EntryRef ref : refs) {
+            byFile.computeIfAbsent(ref.file, k -> new ArrayList<>()).add(ref);
+        }
+        Map<EntryRef, String> contents = new HashMap<>();
+        for (Map.Entry<String, List<EntryRef>> e : byFile.entrySet()) {
+            File file = new File(dateDir, e.getKey());
+            if (!file.isFile()) {
+                continue;
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                 FileChannel channel = raf.getChannel()) {
+                long size = channel.size();
+                for (EntryRef ref : e.getValue()) {
+                    if (ref.offset + ref.length > size) {
+                        continue;
+                    }
+                    contents.put(ref, GjjDebugLogger.FILE_CHARSET.decode(readFully(channel, ref.offset, ref.length)).toString());
+                }
+            }
+        }
+
+        List<Map<String, Object>> hits = new ArrayList<>(refs.size());
+        for (EntryRef ref : refs) {
+            String text = contents.get(ref);
+            if (text == null) {
+                continue;
+            }
+            Map<String, Object> hit = new LinkedHashMap<>();
+            hit.put("file", ref.file);
+            hit.put("offset", ref.offset);
+            hit.put("length", ref.length);
+            hit.put("time", ref.timestamp > 0 ? new Date(ref.timestamp) : null);
+            hit.put("topic", ref.topic);
+            hit.put("title", ref.title);
+            hit.put("content", text);
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    /**
+     * 从 position 开始读取 length 个字节 (按位置读取，不改变通道位置)
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("日志文件在偏移 " + (position + buffer.position()) + " 处提前结束");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 一条日志在文件中的位置
+     */
+    static final class EntryRef {
+        final String file;
+        final long offset;
+        final int length;
+        final long timestamp;
+        final String topic;
+        final String title;
+
+        EntryRef(String file, long offset, int length, long timestamp, String topic, String title) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+            this.timestamp = timestamp;
+            this.topic = topic;
+            this.title = title;
+        }
+    }
+
+    /**
+     * 一条索引记录 (.idx 文件中的一行: 偏移 \t 长度 \t 时间戳 \t topic \t 标题 \t taskId,... \t equipmentCode,...)
+     */
+    static final class IndexRecord {
+        final EntryRef ref;
+        final Collection<String> taskIds;
+        final Collection<String> equipmentCodes;
+
+        IndexRecord(EntryRef ref, Collection<String> taskIds, Collection<String> equipmentCodes) {
+            this.ref = ref;
+            this.taskIds = taskIds;
+            this.equipmentCodes = equipmentCodes;
+        }
+
+        void appendLine(StringBuilder sb) {
+            sb.append(ref.offset).append('\t')
+                    .append(ref.length).append('\t')
+                    .append(ref.timestamp).append('\t')
+                    .append(clean(ref.topic)).append('\t')
+                    .append(clean(ref.title)).append('\t')
+                    .append(String.join(",", taskIds)).append('\t')
+                    .append(String.join(",", equipmentCodes)).append('\n');
+        }
+
+        static IndexRecord parse(String file, String line) {
+            String[] parts = line.split("\t", -1);
+            if (parts.length < 7) {
+                return null;
+            }
+            try {
+                EntryRef ref = new EntryRef(file, Long.parseLong(parts[0]), Integer.parseInt(parts[1]),
+                        Long.parseLong(parts[2]), emptyToNull(parts[3]), emptyToNull(parts[4]));
+                return new IndexRecord(ref, splitKeys(parts[5]), splitKeys(parts[6]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static String clean(String value) {
+            return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        }
+
+        private static String emptyToNull(String value) {
+            return value.isEmpty() ? null : value;
+        }
+
+        private static List<String> splitKeys(String value) {
+            return value.isEmpty() ? Collections.emptyList() : Arrays.asList(value.split(","));
+        }
+    }
+
+    /**
+     * 一天的内存倒排索引
+     */
+    private static final class DayIndex {
+        private final String date;
+        private final List<EntryRef> entries = new ArrayList<>();
+        private final Map<String, List<Integer>> postings = new HashMap<>();
+        // 每个文件已索引的偏移 -> 条目序号，写入线程与加载线程可能提交同一条记录，按偏移去重
+        private final Map<String, Map<Long, Integer>> indexedOffsets = new HashMap<>();
+        private final Object loadLock = new Object();
+        private volatile boolean loaded = false;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        DayIndex(String date) {
+            this.date = date;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized void add(IndexRecord record) {
+            EntryRef ref = record.ref;
+            Map<Long, Integer> offsets = indexedOffsets.computeIfAbsent(ref.file, k -> new HashMap<>());
+            Integer existing = offsets.get(ref.offset);
+            int id;
+            if (existing == null) {
+                id = entries.size();
+                entries.add(ref);
+                offsets.put(ref.offset, id);
+            } else if (ref.length > entries.get(existing).length) {
+                // 补建索引时扫描到的是写入线程尚未写完的条目，以写入线程提交的完整记录为准
+                id = existing;
+                entries.set(id, ref);
+            } else {
+                return;
+            }
+            post(term("topic", ref.topic), id);
+            post(term("title", ref.title), id);
+            for (String taskId : record.taskIds) {
+                post(term("taskId", taskId), id);
+            }
+            for (String equipmentCode : record.equipmentCodes) {
+                post(term("equipmentCode", equipmentCode), id);
+            }
+        }
+
+        synchronized List<EntryRef> query(String... terms) {
+            lastAccess = System.currentTimeMillis();
+            List<List<Integer>> lists = new ArrayList<>();
+            for (String t : terms) {
+                if (t == null) {
+                    continue;
+                }
+                List<Integer> ids = postings.get(t);
+                if (ids == null) {
+                    return new ArrayList<>();
+                }
+                lists.add(ids);
+            }
+            if (lists.isEmpty()) {
+                return new ArrayList<>();
+            }
+            // 从最短的倒排表开始求交集
+            lists.sort(Comparator.comparingInt(List::size));
+            Set<Integer> candidates = new LinkedHashSet<>(lists.get(0));
+            for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+                candidates.retainAll(new HashSet<>(lists.get(i)));
+            }
+            List<EntryRef> result = new ArrayList<>(candidates.size());
+            for (Integer id : candidates) {
+                result.add(entries.get(id));
+            }
+            return result;
+        }
+
+        private void post(String term, int id) {
+            if (term == null) {
+                return;
+            }
+            List<Integer> ids = postings.computeIfAbsent(term, k -> new ArrayList<>());
+            // 同一条日志中重复出现的 key 只记一次
+            if (ids.isEmpty() || ids.get(ids.size() - 1) != id) {
+                ids.add(id);
+            }
+        }
+
+        /**
+         * 首次查询该日期时加载: 优先读取 .idx，没有 .idx 的旧日志扫描一次补建
+         */
+        void ensureLoaded(File dateDir) throws IOException {
+            if (loaded) {
+                return;
+            }
+            synchronized (loadLock) {
+                if (loaded) {
+                    return;
+                }
+                File[] logFiles = dateDir.listFiles((dir, name) -> name.endsWith(".log"));
+                if (logFiles != null) {
+                    for (File logFile : logFiles) {
+                        File indexFile = new File(dateDir, logFile.getName() + INDEX_SUFFIX);
+                        if (indexFile.isFile()) {
+                            loadIndexFile(logFile.getName(), indexFile);
+                        }
+                        scanUnindexed(logFile);
+                    }
+                }
+                loaded = true;
+            }
+        }
+
+        private void loadIndexFile(String fileName, File indexFile) throws IOException {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), INDEX_CHARSET))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    IndexRecord record = IndexRecord.parse(fileName, line);
+                    if (record != null) {
+                        add(record);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 已索引的区间 (偏移 -> 长度)，包括加载期间写入线程提交的记录
+         */
+        private synchronized TreeMap<Long, Integer> indexedRanges(String fileName) {
+            TreeMap<Long, Integer> ranges = new TreeMap<>();
+            Map<Long, Integer> offsets = indexedOffsets.get(fileName);
+            if (offsets != null) {
+                for (Integer id : offsets.values()) {
+                    EntryRef ref = entries.get(id);
+                    ranges.put(ref.offset, ref.length);
+                }
+            }
+            return ranges;
+        }
+
+        /**
+         * 按分隔符扫描日志文件中没有索引的区间 (没有 topic 信息): 没有 .idx 时即整个文件
+         */
+        private void scanUnindexed(File logFile) throws IOException {
+            String fileName = logFile.getName();
+            TreeMap<Long, Integer> ranges = indexedRanges(fileName);
+            try (RandomAccessFile raf = new RandomAccessFile(logFile, "r");
+                 FileChannel channel = raf.getChannel()) {
+                long size = channel.size();
+                long covered = 0;
+                for (Map.Entry<Long, Integer> range : ranges.entrySet()) {
+                    if (range.getKey() > covered) {
+                        scanRange(fileName, channel, covered, Math.min(range.getKey(), size));
+                    }
+                    covered = Math.max(covered, range.getKey() + range.getValue());
+                }
+                if (covered < size) {
+                    scanRange(fileName, channel, covered, size);
+                }
+            }
+        }
+
+        /**
+         * 按分隔符切分 [from, to) 区间内的日志条目
+         */
+        private void scanRange(String fileName, FileChannel channel, long from, long to) throws IOException {
+            if (from >= to) {
+                return;
+            }
+            byte[] separator = GjjDebugLogger.ENTRY_SEPARATOR.getBytes(GjjDebugLogger.FILE_CHARSET);
+            List<Long> starts = findSeparators(channel, from, to, separator);
+            for (int i = 0; i < starts.size(); i++) {
+                long start = starts.get(i);
+                long end = i + 1 < starts.size() ? starts.get(i + 1) : to;
+                if (end - start > Integer.MAX_VALUE) {
+                    continue;
+                }
+                addScannedEntry(fileName, readFully(channel, start, (int) (end - start)), start, separator.length);
+            }
+        }
+
+        /**
+         * 分块读取 [from, to)，返回分隔符的起始偏移 (相邻两块重叠 separator.length - 1 个字节，跨块的分隔符不会漏掉)
+         */
+        private static List<Long> findSeparators(FileChannel channel, long from, long to, byte[] separator) throws IOException {
+            List<Long> positions = new ArrayList<>();
+            long position = from;
+            while (to - position >= separator.length) {
+                int length = (int) Math.min(SCAN_CHUNK_SIZE, to - position);
+                ByteBuffer chunk = readFully(channel, position, length);
+                for (int i = indexOf(chunk, separator, 0); i >= 0; i = indexOf(chunk, separator, i + separator.length)) {
+                    positions.add(position + i);
+                }
+                if (position + length >= to) {
+                    break;
+                }
+                position += length - separator.length + 1;
+            }
+            return positions;
+        }
+
+        private void addScannedEntry(String fileName, ByteBuffer entry, long offset, int separatorLength) {
+            int length = entry.remaining();
+            entry.position(separatorLength);
+            String text = GjjDebugLogger.FILE_CHARSET.decode(entry).toString();
+            int lineEnd = text.indexOf('\n');
+            String header = lineEnd >= 0 ? text.substring(0, lineEnd) : text;
+            long timestamp = 0;
+            String title = null;
+            Matcher m = ENTRY_HEADER.matcher(header);
+            if (m.matches()) {
+                title = m.group(2);
+                try {
+                    timestamp = LocalDateTime.parse(m.group(1), TIME_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                } catch (RuntimeException ignored) {
+                    // 时间格式不符时按 0 处理，仍可按其它条件检索
+                }
+            }
+            add(record(fileName, offset, length, timestamp, null, title, text));
+        }
+
+        private static int indexOf(ByteBuffer buffer, byte[] pattern, int from) {
+            int last = buffer.limit() - pattern.length;
+            outer:
+            for (int i = from; i <= last; i++) {
+                for (int j = 0; j < pattern.length; j++) {
+                    if (buffer.get(i + j) != pattern[j]) {
+                        continue outer;
+                    }
+                }
+                return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.lucksoft.qingdao.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * [新增] 异步线程池配置
+ * 原先所有 @Async 方法共用一个默认线程池 (队列无界)，Kafka 反馈洪峰会饿死定时推送任务。
+ * 这里为每条流水线定义独立、队列有界的线程池:
+ * 1. oraclePushExecutor   : Oracle 触发的推送任务，满载时拒绝 (由 Oracle 端重试)。
+ * 2. timsFeedbackExecutor : TIMS Kafka 反馈入库，满载时由调用线程 (Kafka 监听线程) 执行，形成背压。
+ * 3. compensationExecutor : TMIS 数据补漏，满载时由调用线程执行。
+ * 4. devicePollExecutor   : 设备车速全量刷新，同一时间只运行一次，重复触发时拒绝。
+ * 5. compensationPageExecutor : TMIS 补漏的分页预取请求 (与 compensationExecutor 分开，避免补漏任务等待自身线程池)，满载时由调用线程执行。
+ * 6. deviceSpeedFetchExecutor : 全量车速刷新时并发调用 TIMS 车速接口 (并发数由 DeviceSpeedPoller 控制)，满载时由调用线程执行。
+ * 7. exportExecutor       : 异步导出任务 (ExportJobService)，并发和排队数有限，满载时拒绝 (提示稍后再试)。
+ * 8. feedbackBatchExecutor : TIMS 反馈微批循环 (FeedbackMicroBatcher)，每类反馈长期占用一个线程，不排队。
+ * 9. pointCheckAggExecutor : 点检统计汇总表的全量重算/增量刷新 (不占用 @Scheduled 共用的调度线程)，同一时间只运行一次，重复触发时拒绝。
+ * 10. taskExecutor        : 未指定线程池的 @Async 方法的默认线程池。
+ * 各线程池大小可通过 async.executor.{name}.core-size / max-size / queue-capacity 覆盖。
+ */
+@Configuration
+public class AsyncExecutorConfig {
+
+    public static final String ORACLE_PUSH_EXECUTOR = "oraclePushExecutor";
+    public static final String TIMS_FEEDBACK_EXECUTOR = "timsFeedbackExecutor";
+    public static final String COMPENSATION_EXECUTOR = "compensationExecutor";
+    public static final String DEVICE_POLL_EXECUTOR = "devicePollExecutor";
+    public static final String COMPENSATION_PAGE_EXECUTOR = "compensationPageExecutor";
+    public static final String DEVICE_SPEED_FETCH_EXECUTOR = "deviceSpeedFetchExecutor";
+    public static final String EXPORT_EXECUTOR = "exportExecutor";
+    public static final String FEEDBACK_BATCH_EXECUTOR = "feedbackBatchExecutor";
+    public static final String POINT_CHECK_AGG_EXECUTOR = "pointCheckAggExecutor";
+
+    @Autowired
+    private Environment env;
+
+    @Autowired
+    private ExecutorMetrics executorMetrics;
+
+    @Primary
+    @Bean(name = "taskExecutor")
+    public ThreadPoolTaskExecutor taskExecutor() {
+        return buildExecutor("taskExecutor", 2, 4, 100, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Bean(name = ORACLE_PUSH_EXECUTOR)
+    public ThreadPoolTaskExecutor oraclePushExecutor() {
+        return buildExecutor(ORACLE_PUSH_EXECUTOR, 2, 4, 50, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean(name = TIMS_FEEDBACK_EXECUTOR)
+    public ThreadPoolTaskExecutor timsFeedbackExecutor() {
+        return buildExecutor(TIMS_FEEDBACK_EXECUTOR, 4, 8, 1000, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Bean(name = COMPENSATION_EXECUTOR)
+    public ThreadPoolTaskExecutor compensationExecutor() {
+        return buildExecutor(COMPENSATION_EXECUTOR, 2, 4, 100, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Bean(name = COMPENSATION_PAGE_EXECUTOR)
+    public ThreadPoolTaskExecutor compensationPageExecutor() {
+        return buildExecutor(COMPENSATION_PAGE_EXECUTOR, 2, 4, 20, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Bean(name = DEVICE_POLL_EXECUTOR)
+    public ThreadPoolTaskExecutor devicePollExecutor() {
+        return buildExecutor(DEVICE_POLL_EXECUTOR, 1, 1, 0, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean(name = DEVICE_SPEED_FETCH_EXECUTOR)
+    public ThreadPoolTaskExecutor deviceSpeedFetchExecutor() {
+        return buildExecutor(DEVICE_SPEED_FETCH_EXECUTOR, 4, 8, 16, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Bean(name = EXPORT_EXECUTOR)
+    public ThreadPoolTaskExecutor exportExecutor() {
+        return buildExecutor(EXPORT_EXECUTOR, 2, 2, 20, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean(name = FEEDBACK_BATCH_EXECUTOR)
+    public ThreadPoolTaskExecutor feedbackBatchExecutor() {
+        return buildExecutor(FEEDBACK_BATCH_EXECUTOR, 5, 5, 0, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean(name = POINT_CHECK_AGG_EXECUTOR)
+    public ThreadPoolTaskExecutor pointCheckAggExecutor() {
+        return buildExecutor(POINT_CHECK_AGG_EXECUTOR, 1, 1, 0, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private ThreadPoolTaskExecutor buildExecutor(String name, int defaultCore, int defaultMax, int defaultQueue,
+                                                 RejectedExecutionHandler rejectedHandler) {
+        String prefix = "async.executor." + name + ".";
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(env.getProperty(prefix + "core-size", Integer.class, defaultCore));
+        executor.setMaxPoolSize(env.getProperty(prefix + "max-size", Integer.class, defaultMax));
+        executor.setQueueCapacity(env.getProperty(prefix + "queue-capacity", Integer.class, defaultQueue));
+        executor.setKeepAliveSeconds(60);
+        executor.setThreadNamePrefix(name + "-");
+        executor.setRejectedExecutionHandler(executorMetrics.countingHandler(name, rejectedHandler));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        executorMetrics.register(name, executor);
+        return executor;
+    }
+}
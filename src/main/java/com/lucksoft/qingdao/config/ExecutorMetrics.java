@@ -0,0 +1,59 @@
+package com.lucksoft.qingdao.config;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * [新增] 线程池监控
+ * 记录 AsyncExecutorConfig 中各个业务线程池，提供队列深度、活跃线程数和拒绝次数的快照。
+ */
+@Component
+public class ExecutorMetrics {
+
+    private final Map<String, ThreadPoolTaskExecutor> executors = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> rejections = new ConcurrentHashMap<>();
+
+    /**
+     * 包装拒绝策略，在执行原策略前先计数
+     */
+    public RejectedExecutionHandler countingHandler(String name, RejectedExecutionHandler delegate) {
+        LongAdder counter = rejections.computeIfAbsent(name, k -> new LongAdder());
+        return (runnable, executor) -> {
+            counter.increment();
+            delegate.rejectedExecution(runnable, executor);
+        };
+    }
+
+    public void register(String name, ThreadPoolTaskExecutor executor) {
+        executors.put(name, executor);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, ThreadPoolTaskExecutor> entry : executors.entrySet()) {
+            ThreadPoolTaskExecutor executor = entry.getValue();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("corePoolSize", executor.getCorePoolSize());
+            item.put("maxPoolSize", executor.getMaxPoolSize());
+            item.put("poolSize", executor.getPoolSize());
+            item.put("activeThreads", executor.getActiveCount());
+
+            ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+            item.put("queueDepth", pool.getQueue().size());
+            item.put("queueRemaining", pool.getQueue().remainingCapacity());
+            item.put("completedTasks", pool.getCompletedTaskCount());
+
+            LongAdder rejected = rejections.get(entry.getKey());
+            item.put("rejected", rejected == null ? 0 : rejected.sum());
+            stats.put(entry.getKey(), item);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,37 @@
+package com.lucksoft.qingdao.config;
+
+import com.lucksoft.common.utils.GjjDebugLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * [新增] 国家局接口调试日志 (GjjDebugLogger) 配置
+ * 日志根目录和最多同时打开的文件数从配置读取，应用关闭时写完队列中剩余的日志。
+ */
+@Configuration
+public class GjjDebugLogConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(GjjDebugLogConfig.class);
+
+    @Value("${gjj.debug-log.base-path:D:/logs}")
+    private String basePath;
+
+    @Value("${gjj.debug-log.max-open-files:32}")
+    private int maxOpenFiles;
+
+    @PostConstruct
+    public void init() {
+        GjjDebugLogger.configure(basePath, maxOpenFiles);
+        log.info("调试日志目录: {}, 最多同时打开 {} 个文件", GjjDebugLogger.getBasePath(), maxOpenFiles);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        GjjDebugLogger.shutdown();
+    }
+}
@@ -1,5 +1,6 @@
 package com.lucksoft.qingdao.config;
 
+import com.lucksoft.qingdao.tmis.util.ExcelExportUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -15,6 +16,14 @@ public class GlobalExceptionHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
+    /**
+     * [新增] 流式导出已开始输出后失败: 原样抛出，不写错误响应 (响应已提交)，由容器中止连接
+     */
+    @ExceptionHandler(ExcelExportUtil.StreamAbortedException.class)
+    public void rethrowStreamAborted(ExcelExportUtil.StreamAbortedException ex) {
+        throw ex;
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleAllExceptions(Exception ex) {
         logger.error("未捕获的全局异常: ", ex);
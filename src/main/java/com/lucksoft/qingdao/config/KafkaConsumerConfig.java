@@ -1,11 +1,21 @@
 package com.lucksoft.qingdao.config;
 
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.MessageListenerContainer;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Kafka 消费者高级配置
  */
@@ -13,6 +23,17 @@ import org.springframework.kafka.listener.MessageListenerContainer;
 @EnableKafka
 public class KafkaConsumerConfig {
 
+    /**
+     * [新增] TIMS 反馈批量监听容器工厂的 Bean 名称
+     */
+    public static final String TIMS_BATCH_LISTENER_FACTORY = "timsBatchListenerContainerFactory";
+
+    @Value("${tims.kafka.batch.max-poll-records:500}")
+    private int maxPollRecords;
+
+    @Value("${tims.kafka.batch.concurrency:1}")
+    private int concurrency;
+
     /**
      * 这个Bean的目的是获取所有Kafka监听器的注册表。
      * 我们通过设置autoStartup为false，来禁止所有@KafkaListener在应用启动时自动连接。
@@ -31,4 +52,27 @@ public class KafkaConsumerConfig {
         }
         return registry;
     }
+
+    /**
+     * [新增] TIMS 反馈的批量监听容器工厂。
+     * 1. 一次 poll 最多拉取 max.poll-records 条记录，整批交给监听方法 (List&lt;ConsumerRecord&gt;)。
+     * 2. 关闭自动提交，使用 MANUAL 确认模式: 监听方法等本批数据处理完毕后再调用 acknowledge 提交 offset，
+     *    进程在处理中途崩溃时，未确认的记录会在重启后重新消费。
+     * 其余配置 (bootstrap-servers、group-id、auto-startup 等) 仍沿用 spring.kafka.* 。
+     */
+    @Bean(name = TIMS_BATCH_LISTENER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> timsBatchListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        Map<String, Object> props = new HashMap<>(consumerFactory.getConfigurationProperties());
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, new DefaultKafkaConsumerFactory<>(props));
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
 }
@@ -85,6 +85,7 @@ public class SecurityConfig {
                         .antMatchers("/api/si/**").permitAll()              // 放行自检自控 API
                         .antMatchers("/api/maintainbook/**").permitAll()    // 放行保养台账 API
                         .antMatchers("/api/maintainbookdt/**").permitAll()  // 放行保养明细 API
+                        .antMatchers("/api/export/**").permitAll()          // [新增] 放行异步导出任务进度/下载 (jobId 为随机 UUID)
 
                         // 3. 看板相关
                         .antMatchers("/api/kb/**").permitAll()
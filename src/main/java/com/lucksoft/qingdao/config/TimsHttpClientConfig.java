@@ -0,0 +1,133 @@
+package com.lucksoft.qingdao.config;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * [新增] TIMS 接口共用的 HTTP 客户端
+ * 原先 TimsServiceClient / TmisCompensationService 各自 new RestTemplate()，使用 JDK 默认连接: 无连接池、无超时，每次调用重新握手。
+ * 这里提供一个共用的 RestTemplate:
+ * 1. 连接池 (keep-alive 复用)，总连接数 tims.http.max-total，每个路由 tims.http.max-per-route，
+ *    个别主机可通过 tims.http.route-limits=host:port=数量,... 单独设置。
+ * 2. 建连 / 读取 / 从连接池获取连接的超时时间，后台定期清理空闲连接。
+ * 3. tims.http.gzip=true 时请求声明支持 gzip 并自动解压响应。
+ * 4. 按接口统计耗时分布，见 /api/schedule/tims-http。
+ */
+@Configuration
+public class TimsHttpClientConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(TimsHttpClientConfig.class);
+
+    public static final String TIMS_REST_TEMPLATE = "timsRestTemplate";
+
+    @Value("${tims.http.max-total:50}")
+    private int maxTotal;
+
+    @Value("${tims.http.max-per-route:20}")
+    private int maxPerRoute;
+
+    @Value("${tims.http.route-limits:}")
+    private String routeLimits;
+
+    @Value("${tims.http.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+
+    @Value("${tims.http.read-timeout-ms:30000}")
+    private int readTimeoutMs;
+
+    @Value("${tims.http.connection-request-timeout-ms:5000}")
+    private int connectionRequestTimeoutMs;
+
+    // 服务端未返回 Keep-Alive 时连接的最长复用时间
+    @Value("${tims.http.keep-alive-seconds:30}")
+    private long keepAliveSeconds;
+
+    @Value("${tims.http.idle-evict-seconds:30}")
+    private long idleEvictSeconds;
+
+    @Value("${tims.http.gzip:true}")
+    private boolean gzip;
+
+    @Autowired
+    private TimsHttpMetrics timsHttpMetrics;
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient timsHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        applyRouteLimits(connectionManager);
+        timsHttpMetrics.registerConnectionManager(connectionManager);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setSocketTimeout(readTimeoutMs)
+                .setConnectionRequestTimeout(connectionRequestTimeoutMs)
+                .build();
+
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    long maxKeepAlive = TimeUnit.SECONDS.toMillis(keepAliveSeconds);
+                    return serverKeepAlive > 0 ? Math.min(serverKeepAlive, maxKeepAlive) : maxKeepAlive;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(idleEvictSeconds, TimeUnit.SECONDS);
+        if (!gzip) {
+            builder.disableContentCompression();
+        }
+        return builder.build();
+    }
+
+    @Bean(name = TIMS_REST_TEMPLATE)
+    public RestTemplate timsRestTemplate(@Qualifier("timsHttpClient") CloseableHttpClient timsHttpClient) {
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(timsHttpClient));
+        restTemplate.getInterceptors().add(timsHttpMetrics.interceptor());
+        return restTemplate;
+    }
+
+    /**
+     * 解析 host:port=数量,host2=数量 (未写端口时使用协议默认端口)
+     */
+    private void applyRouteLimits(PoolingHttpClientConnectionManager connectionManager) {
+        if (routeLimits == null || routeLimits.trim().isEmpty()) {
+            return;
+        }
+        for (String item : routeLimits.split(",")) {
+            String[] parts = item.trim().split("=");
+            if (parts.length != 2) {
+                continue;
+            }
+            try {
+                HttpHost host = HttpHost.create(parts[0].trim());
+                if (host.getPort() <= 0) {
+                    // 与 HttpClient 路由规划保持一致，使用协议默认端口
+                    host = new HttpHost(host.getHostName(), "https".equalsIgnoreCase(host.getSchemeName()) ? 443 : 80, host.getSchemeName());
+                }
+                int limit = Integer.parseInt(parts[1].trim());
+                connectionManager.setMaxPerRoute(new HttpRoute(host), limit);
+                log.info("TIMS 连接池路由 {} 最大连接数: {}", host, limit);
+            } catch (IllegalArgumentException e) {
+                log.warn("忽略无效的 tims.http.route-limits 配置项: {}", item);
+            }
+        }
+    }
+}
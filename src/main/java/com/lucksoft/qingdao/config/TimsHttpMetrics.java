@@ -0,0 +1,149 @@
+package com.lucksoft.qingdao.config;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * [新增] TIMS 接口调用监控
+ * 按接口 (方法 + 主机 + 路径，不含签名参数) 统计调用次数、失败次数和耗时分布 (固定桶直方图)，
+ * 以及 TIMS 连接池的占用情况。耗时为发出请求到收到响应头的时间。
+ */
+@Component
+public class TimsHttpMetrics {
+
+    // 直方图桶上限 (毫秒)，最后一个桶收纳超过 10 秒的调用
+    private static final long[] BUCKET_BOUNDS_MS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private volatile PoolingHttpClientConnectionManager connectionManager;
+
+    /**
+     * 记录每次调用耗时的拦截器 (由 TimsHttpClientConfig 注册到 TIMS RestTemplate)
+     */
+    public ClientHttpRequestInterceptor interceptor() {
+        return (request, body, execution) -> {
+            EndpointStats stats = endpoints.computeIfAbsent(endpointKey(request.getMethodValue(), request.getURI()), k -> new EndpointStats());
+            long start = System.nanoTime();
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                stats.record((System.nanoTime() - start) / 1_000_000, response.getRawStatusCode() >= 400);
+                return response;
+            } catch (IOException | RuntimeException e) {
+                stats.record((System.nanoTime() - start) / 1_000_000, true);
+                throw e;
+            }
+        };
+    }
+
+    public void registerConnectionManager(PoolingHttpClientConnectionManager manager) {
+        this.connectionManager = manager;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        PoolingHttpClientConnectionManager manager = connectionManager;
+        if (manager != null) {
+            PoolStats total = manager.getTotalStats();
+            Map<String, Object> pool = new LinkedHashMap<>();
+            pool.put("leased", total.getLeased());
+            pool.put("available", total.getAvailable());
+            pool.put("pending", total.getPending());
+            pool.put("max", total.getMax());
+            pool.put("defaultMaxPerRoute", manager.getDefaultMaxPerRoute());
+            result.put("pool", pool);
+        }
+        Map<String, Object> endpointStats = new TreeMap<>();
+        endpoints.forEach((key, stats) -> endpointStats.put(key, stats.snapshot()));
+        result.put("endpoints", endpointStats);
+        return result;
+    }
+
+    private static String endpointKey(String method, URI uri) {
+        return method + " " + uri.getHost() + (uri.getPort() > 0 ? ":" + uri.getPort() : "") + uri.getPath();
+    }
+
+    /**
+     * 单个接口的计数与耗时直方图 (无锁累加)
+     */
+    private static final class EndpointStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final LongAccumulator maxMillis = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+
+        EndpointStats() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long millis, boolean error) {
+            count.increment();
+            if (error) {
+                errors.increment();
+            }
+            totalMillis.add(millis);
+            maxMillis.accumulate(millis);
+            int i = 0;
+            while (i < BUCKET_BOUNDS_MS.length && millis > BUCKET_BOUNDS_MS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+        }
+
+        Map<String, Object> snapshot() {
+            long n = count.sum();
+            long[] counts = new long[buckets.length];
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                histogram.put(i < BUCKET_BOUNDS_MS.length ? "<=" + BUCKET_BOUNDS_MS[i] + "ms" : ">" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1] + "ms", counts[i]);
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("count", n);
+            item.put("errors", errors.sum());
+            item.put("avgMs", n == 0 ? 0 : totalMillis.sum() / n);
+            item.put("maxMs", maxMillis.get());
+            item.put("p50Ms", percentile(counts, 0.50));
+            item.put("p95Ms", percentile(counts, 0.95));
+            item.put("p99Ms", percentile(counts, 0.99));
+            item.put("histogram", histogram);
+            return item;
+        }
+
+        /**
+         * 按桶估算分位数 (返回所在桶的上限，落在最后一个桶时返回最大值)
+         */
+        private long percentile(long[] counts, double quantile) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : maxMillis.get();
+                }
+            }
+            return maxMillis.get();
+        }
+    }
+}
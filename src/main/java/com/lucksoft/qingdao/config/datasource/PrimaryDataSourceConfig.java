@@ -1,8 +1,10 @@
 package com.lucksoft.qingdao.config.datasource;
 
 import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
@@ -56,6 +58,15 @@ public class PrimaryDataSourceConfig {
         return bean.getObject();
     }
 
+    /**
+     * [新增] 主数据源的 BATCH 模式 SqlSessionTemplate.
+     * 在同一事务内执行的 @Update/@Insert 语句会被合并为 JDBC 批次，用于台账的批量导入 (LedgerBulkImporter).
+     */
+    @Bean(name = "primaryBatchSqlSessionTemplate")
+    public SqlSessionTemplate primaryBatchSqlSessionTemplate(@Qualifier("primarySqlSessionFactory") SqlSessionFactory sqlSessionFactory) {
+        return new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+    }
+
     /**
      * 为主数据源配置事务管理器.
      */
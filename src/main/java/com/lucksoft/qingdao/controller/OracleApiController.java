@@ -2,6 +2,8 @@ package com.lucksoft.qingdao.controller;
 
 import com.lucksoft.qingdao.oracle.service.AsyncTaskService;
 import com.lucksoft.qingdao.oracle.service.OracleDataService;
+import com.lucksoft.qingdao.oracle.service.PushDeDupeService;
+import com.lucksoft.qingdao.oracle.service.TaskStatusStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +14,7 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * [已重构]
@@ -33,6 +36,12 @@ public class OracleApiController {
     @Autowired
     private AsyncTaskService asyncTaskService; // [新] 注入异步服务
 
+    @Autowired
+    private PushDeDupeService pushDeDupeService;
+
+    @Autowired
+    private TaskStatusStore taskStatusStore;
+
     /**
      * [核心入口] 接收来自 Oracle 过程的 JSON 推送。
      *
@@ -51,70 +60,21 @@ public class OracleApiController {
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
-        String taskId = asyncTaskService.submitTask(receivedStype); // 1. 立即生成 TaskId
-        log.info("--- [Task {}] Oracle 推送接收成功 (stype: {}) ---", taskId, receivedStype);
-
+        // 1. 生成 TaskId 并按 stype 路由到 Oracle 推送线程池 (路由逻辑统一在 AsyncTaskService.submitTask 中)
+        // [已修改] 同步阶段失败 (推送线程池已满被拒绝、stype 参数解析失败) 时 submitTask 抛出异常，返回 500 由 Oracle 端重试；
+        //         只依据提交结果判断，不读取任务状态 (任务可能已在异步线程中执行失败，不应让 Oracle 重复推送)
+        String taskId;
         try {
-            // --- 路由: 根据 stype 触发不同的异步任务 ---
-
-            // 接口 1: 推送保养任务 (高并发, 视图查询)
-            // 路由: SP_GENDAYTASK, PMBOARD.SP_QD_PLANBOARD_LB, JOB_GEN_BAOYANG_TASKS
-            if ("SP_GENDAYTASK".equals(receivedStype) ||
-                    "PMBOARD.SP_QD_PLANBOARD_LB".equals(receivedStype) ||
-                    "JOB_GEN_BAOYANG_TASKS".equals(receivedStype)) {
-
-                asyncTaskService.processMaintenanceTasks(taskId);
-
-                // 接口 5: 推送轮保计划 (低并发, 表查询)
-                // 路由: EQ_PLANLB_ARCHIVED:{id}
-            } else if (receivedStype.startsWith("EQ_PLANLB_ARCHIVED:")) {
-
-                Long indocno = Long.parseLong(receivedStype.split(":")[1]);
-                asyncTaskService.processEqPlanLbArchive(taskId, indocno);
-
-                // [新] 接口 7: 推送轮保任务 (高并发, 视图查询)
-                // 路由: TIMS_PUSH_ROTATIONAL_TASK
-            } else if ("TIMS_PUSH_ROTATIONAL_TASK".equals(receivedStype)) {
-
-                asyncTaskService.processRotationalTasks(taskId);
-
-                // [新] 接口 12: 推送故障报告编码 (低并发, 视图查询)
-                // 路由: TIMS_PUSH_FAULT_REPORT_CODE:{id}
-            } else if (receivedStype.startsWith("TIMS_PUSH_FAULT_REPORT_CODE:")) {
-
-                Integer timsId = Integer.parseInt(receivedStype.split(":")[1]);
-                asyncTaskService.processFaultReportCode(taskId, timsId);
-
-                // 接口 13: 推送停产检修任务 (低并发, 表查询)
-                // 路由: PM_MONTH_ARCHIVED:{id}
-            } else if (receivedStype.startsWith("PM_MONTH_ARCHIVED:")) {
-
-                Long indocno = Long.parseLong(receivedStype.split(":")[1]);
-                asyncTaskService.processPmMonthArchive(taskId, indocno);
-
-                // (旧) 接口: 专业/精密点检 (高并发, 表查询)
-                // 路由: PD_ZY_JM
-            } else if ("PD_ZY_JM".equals(receivedStype)) {
-
-                asyncTaskService.processPmissionTasks(taskId);
-
-            } else {
-                log.warn("[Task {}] 收到了一个未处理的 stype: {}", taskId, receivedStype);
-                // 即使未处理，也更新状态为SKIPPED
-                asyncTaskService.updateTaskStatus(taskId, AsyncTaskService.TaskStatus.SKIPPED, "Skipped (Unknown stype)", null);
-            }
-
-        } catch (Exception e) {
-            log.error("[Task {}] 触发异步任务时发生严重错误: {}", taskId, e.getMessage(), e);
-            // 同步阶段就失败了（例如解析ID失败），更新状态
-            asyncTaskService.updateTaskStatus(taskId, AsyncTaskService.TaskStatus.FAILED, "Failed to submit task: " + e.getMessage(), null);
-
+            taskId = asyncTaskService.submitTask(receivedStype);
+        } catch (RuntimeException e) {
+            boolean rejected = e instanceof RejectedExecutionException;
+            log.warn("--- Oracle 推送提交失败 (stype: {}): {} ---", receivedStype, e.getMessage());
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("status", "error");
-            errorResponse.put("taskId", taskId);
-            errorResponse.put("message", "提交任务失败: " + e.getMessage());
+            errorResponse.put("message", rejected ? "提交任务失败: 推送线程池已满，请稍后重试" : "提交任务失败: " + e.getMessage());
             return ResponseEntity.status(500).body(errorResponse);
         }
+        log.info("--- [Task {}] Oracle 推送接收成功 (stype: {}) ---", taskId, receivedStype);
 
         // 2. 立即返回 200 OK 和 TaskId
         Map<String, Object> response = new HashMap<>();
@@ -138,6 +98,42 @@ public class OracleApiController {
     }
 
 
+    /**
+     * [新增] 任务状态存储统计 (当前条数、淘汰/过期次数、溢出到 Redis 的次数)
+     * @return 状态存储统计
+     */
+    @GetMapping("/task-status-stats")
+    public ResponseEntity<Map<String, Object>> getTaskStatusStats() {
+        return ResponseEntity.ok(taskStatusStore.getStats());
+    }
+
+    /**
+     * [新增] Kafka 反馈任务的分段锁统计 (各段竞争次数与等待时间)
+     * @return 各类反馈任务的锁统计
+     */
+    @GetMapping("/lock-stats")
+    public ResponseEntity<Map<String, Object>> getLockStats() {
+        return ResponseEntity.ok(asyncTaskService.getLockStats());
+    }
+
+    /**
+     * [新增] TIMS 反馈微批统计 (队列深度、批次数、平均批大小)
+     * @return 各类反馈的微批统计
+     */
+    @GetMapping("/feedback-batch-stats")
+    public ResponseEntity<Map<String, Object>> getFeedbackBatchStats() {
+        return ResponseEntity.ok(asyncTaskService.getFeedbackBatchStats());
+    }
+
+    /**
+     * [新增] 防重布隆过滤器统计 (误判率、命中率、内存占用)
+     * @return 各防重 Set 的统计信息
+     */
+    @GetMapping("/dedupe-stats")
+    public ResponseEntity<Map<String, Object>> getDeDupeStats() {
+        return ResponseEntity.ok(pushDeDupeService.getFilterStats());
+    }
+
     /**
      * 调试接口：清空所有 Oracle 推送任务的 Redis 缓存
      * @return 清理结果
@@ -1,5 +1,7 @@
 package com.lucksoft.qingdao.controller;
 
+import com.lucksoft.qingdao.config.ExecutorMetrics;
+import com.lucksoft.qingdao.config.TimsHttpMetrics;
 import com.lucksoft.qingdao.job.DynamicSchedulingService;
 import com.lucksoft.qingdao.job.dto.ScheduleDto;
 import org.slf4j.Logger;
@@ -25,6 +27,28 @@ public class ScheduleController {
     @Autowired
     private DynamicSchedulingService schedulingService;
 
+    @Autowired
+    private ExecutorMetrics executorMetrics;
+
+    @Autowired
+    private TimsHttpMetrics timsHttpMetrics;
+
+    /**
+     * [新增] 各业务线程池的运行状态 (活跃线程、队列深度、拒绝次数)
+     */
+    @GetMapping("/executors")
+    public ResponseEntity<Map<String, Object>> getExecutorStats() {
+        return ResponseEntity.ok(executorMetrics.snapshot());
+    }
+
+    /**
+     * [新增] TIMS 接口调用统计 (连接池占用、各接口耗时分布)
+     */
+    @GetMapping("/tims-http")
+    public ResponseEntity<Map<String, Object>> getTimsHttpStats() {
+        return ResponseEntity.ok(timsHttpMetrics.snapshot());
+    }
+
     /**
      * 获取当前 time.json 的配置内容
      * @return ScheduleDto
@@ -5,8 +5,11 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import org.apache.ibatis.mapping.StatementType;
 
+import java.util.List;
+
 /**
  * Kafka 接口 2: 反馈保养、点检、润滑任务完成情况
  * 负责调用 'tmis.FB_COMPLETED_MAINT_TASK' 存储过程。
@@ -14,13 +17,27 @@ import org.apache.ibatis.mapping.StatementType;
 @Mapper
 public interface TmisTaskCompletionMapper {
 
-    @Select(value = "{CALL tmis.FB_COMPLETED_MAINT_TASK(" +
+    /**
+     * 存储过程调用 (单条 CALL 与批量 PL/SQL 块共用)
+     */
+    String SAVE_TASK_COMPLETION_PROC = "tmis.FB_COMPLETED_MAINT_TASK(" +
             "p_task_id => #{dto.taskId, jdbcType=VARCHAR, mode=IN}," +
             "p_task_type => #{dto.type, jdbcType=INTEGER, mode=IN}," +
             "p_complete_user => #{dto.completeUser, jdbcType=VARCHAR, mode=IN}," +
             "p_complete_date_time => #{dto.completeDateTime, jdbcType=VARCHAR, mode=IN}," +
             "p_inspection_actual_value => #{dto.inspectionActualValue, jdbcType=VARCHAR, mode=IN}" +
-            ")}")
+            ")";
+
+    String SAVE_TASK_COMPLETION_CALL = "{CALL " + SAVE_TASK_COMPLETION_PROC + "}";
+
+    @Select(value = SAVE_TASK_COMPLETION_CALL)
     @Options(statementType = StatementType.CALLABLE)
     void saveTaskCompletion(@Param("dto") TaskCompletionFeedbackDTO dto);
+
+    /**
+     * [新增] 批量写入: 在一个匿名 PL/SQL 块中依次调用存储过程，整组数据一次执行、一次往返
+     * (dtos 的条数由 FeedbackBatchWriter 控制，避免绑定变量过多)
+     */
+    @Update("<script>BEGIN <foreach collection='dtos' item='dto'>" + SAVE_TASK_COMPLETION_PROC + "; </foreach>END;</script>")
+    void batchSaveTaskCompletion(@Param("dtos") List<TaskCompletionFeedbackDTO> dtos);
 }
\ No newline at end of file
@@ -2,7 +2,9 @@ package com.lucksoft.qingdao.oracle.mapper;
 
 import com.lucksoft.qingdao.oracle.dto.VMaintenanceTaskDTO;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.mapping.ResultSetType;
 import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 import java.util.Map;
@@ -89,6 +91,15 @@ public interface VMaintenanceTasksMapper {
     @Select("SELECT * FROM V_MAINTENANCE_TASKS_RECENT")
     List<VMaintenanceTaskDTO> findRecentTasks();
 
+    /**
+     * [新增] 流式查询 V_MAINTENANCE_TASKS_RECENT 视图
+     * 逐行回调 handler (只向前游标 + 调大 fetchSize)，handler 中不应做耗时的外部 I/O，以免游标长时间打开。
+     */
+    @ResultMap("vMaintenanceTaskResultMap")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000)
+    @Select("SELECT * FROM V_MAINTENANCE_TASKS_RECENT")
+    void streamRecentTasks(ResultHandler<VMaintenanceTaskDTO> handler);
+
     /**
      * [新增] 调用无参数存储过程 tmis.genlb
      */
@@ -103,4 +114,12 @@ public interface VMaintenanceTasksMapper {
     @ResultMap("vMaintenanceTaskResultMap")
     @Select("SELECT * FROM view_lb_task")
     List<VMaintenanceTaskDTO> findLbTasks();
+
+    /**
+     * [新增] 流式查询 view_lb_task 视图 (逐行回调)
+     */
+    @ResultMap("vMaintenanceTaskResultMap")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000)
+    @Select("SELECT * FROM view_lb_task")
+    void streamLbTasks(ResultHandler<VMaintenanceTaskDTO> handler);
 }
\ No newline at end of file
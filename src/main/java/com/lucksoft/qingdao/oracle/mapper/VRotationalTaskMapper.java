@@ -2,6 +2,8 @@ package com.lucksoft.qingdao.oracle.mapper;
 
 import com.lucksoft.qingdao.oracle.dto.VRotationalTaskDTO;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 import java.util.Map;
@@ -52,4 +54,13 @@ public interface VRotationalTaskMapper {
     @Select("SELECT * FROM V_ROTATIONAL_TASK_RECENT")
     List<VRotationalTaskDTO> findRecentTasks();
 
+    /**
+     * [新增] 流式查询 V_ROTATIONAL_TASK_RECENT 视图
+     * 逐行回调 handler (只向前游标 + 调大 fetchSize)，handler 中不应做耗时的外部 I/O，以免游标长时间打开。
+     */
+    @ResultMap("vRotationalTaskResultMap")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000)
+    @Select("SELECT * FROM V_ROTATIONAL_TASK_RECENT")
+    void streamRecentTasks(ResultHandler<VRotationalTaskDTO> handler);
+
 }
\ No newline at end of file
@@ -1,27 +1,52 @@
 package com.lucksoft.qingdao.oracle.service;
 
 
+import com.lucksoft.qingdao.config.AsyncExecutorConfig;
 import com.lucksoft.qingdao.tmis.service.TmisTaskScoreService;
 import com.lucksoft.qingdao.tspm.dto.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * [已修改] 统一异步任务服务
  * 1. 负责接收 Controller 和 Consumer 的请求，并立即返回 Task ID。
  * 2. 在后台线程池 (@Async) 中执行实际的数据处理 (查询, 防重, 推送, 调用SP)。
- * 3. 维护一个内存中的 Map 来跟踪任务状态。
+ * 3. [已修改] 通过有界的 TaskStatusStore (分段 LRU + TTL，可溢出到 Redis) 跟踪任务状态。
  * 4. 使用 ReentrantLock 来防止高并发的重复处理。
+ * 5. [新增] Kafka 反馈类任务改用按业务键 (taskId/planId) 分段的锁 (KeyedStripedLock):
+ *    同一业务键串行处理，不同业务键在线程池中并行执行，不再因全局 tryLock 失败而被 SKIPPED。
+ * 6. [新增] Oracle 推送与 Kafka 反馈分别运行在独立的有界线程池中 (见 AsyncExecutorConfig)，
+ *    Oracle 推送线程池满载时任务被拒绝并标记为 FAILED，由 Oracle 端重试。
+ * 7. [新增] 任务完成/得分、轮保完成/得分、停产检修完成 5 类反馈经 FeedbackMicroBatcher 按类型微批，
+ *    每批在一个事务内以匿名 PL/SQL 块依次调用存储过程；批量失败时逐条重试以隔离问题数据。
+ *    批处理循环运行在 feedbackBatchExecutor 线程池中；写库前按业务键获取与逐条处理相同的分段锁。
  */
 @Service
 public class AsyncTaskService {
@@ -37,22 +62,36 @@ public class AsyncTaskService {
         FAILED                  // 任务执行失败
     }
 
-    private final Map<String, Object> taskStatusMap = new ConcurrentHashMap<>();
+    @Autowired
+    private TaskStatusStore taskStatusStore;
+
+    // [新增] 正在等待终态的任务 (taskId -> Future)，由 completionOf 登记、updateTaskStatus 完成
+    private final Map<String, CompletableFuture<TaskStatus>> pendingCompletions = new ConcurrentHashMap<>();
 
     // --- 并发锁 ---
     private final Lock maintenanceTaskLock = new ReentrantLock();
     private final Lock rotationalTaskLock = new ReentrantLock();
     private final Lock pmissionTaskLock = new ReentrantLock();
-    private final Lock faultReportLock = new ReentrantLock();
-    // [新增] 为 Kafka 消费者添加新锁
-    private final Lock taskCompletionLock = new ReentrantLock();
-    private final Lock taskScoreLock = new ReentrantLock();
-    private final Lock recommendTaskLock = new ReentrantLock();
-    private final Lock rotationalCompletionLock = new ReentrantLock();
-    private final Lock rotationalScoreLock = new ReentrantLock();
-    private final Lock haltCompletionLock = new ReentrantLock();
+    // [已修改] Kafka 消费者按业务键分段加锁
+    private static final int KEY_LOCK_STRIPES = 64;
+    // 同一业务键等待锁的最长时间，超时则标记为 SKIPPED
+    private static final long KEY_LOCK_TIMEOUT_SECONDS = 60;
+    private final KeyedStripedLock faultReportLock = new KeyedStripedLock("faultReport", KEY_LOCK_STRIPES);
+    private final KeyedStripedLock taskCompletionLock = new KeyedStripedLock("taskCompletion", KEY_LOCK_STRIPES);
+    private final KeyedStripedLock taskScoreLock = new KeyedStripedLock("taskScore", KEY_LOCK_STRIPES);
+    private final KeyedStripedLock recommendTaskLock = new KeyedStripedLock("recommendTask", KEY_LOCK_STRIPES);
+    private final KeyedStripedLock rotationalCompletionLock = new KeyedStripedLock("rotationalCompletion", KEY_LOCK_STRIPES);
+    private final KeyedStripedLock rotationalScoreLock = new KeyedStripedLock("rotationalScore", KEY_LOCK_STRIPES);
+    private final KeyedStripedLock haltCompletionLock = new KeyedStripedLock("haltCompletion", KEY_LOCK_STRIPES);
     // [新增] 故障分析报告的并发锁
-    private final Lock faultAnalysisLock = new ReentrantLock();
+    private final KeyedStripedLock faultAnalysisLock = new KeyedStripedLock("faultAnalysis", KEY_LOCK_STRIPES);
+
+    /**
+     * [新增] 通过代理调用自身的 @Async 方法 (类内直接调用不会经过 Spring 代理，会在调用线程中同步执行)
+     */
+    @Lazy
+    @Autowired
+    private AsyncTaskService self;
     // --- Oracle 推送服务 (Java -> Kafka) ---
     @Autowired
     private OracleDataService oracleDataService;
@@ -75,6 +114,55 @@ public class AsyncTaskService {
     @Autowired
     private TmisFaultAnalysisReportService tmisFaultAnalysisReportService;
 
+    // --- [新增] TIMS 反馈微批 ---
+    @Value("${tims.feedback.batch.enabled:true}")
+    private boolean feedbackBatchEnabled;
+
+    @Value("${tims.feedback.batch.max-size:200}")
+    private int feedbackBatchMaxSize;
+
+    @Value("${tims.feedback.batch.window-ms:50}")
+    private long feedbackBatchWindowMs;
+
+    @Value("${tims.feedback.batch.queue-capacity:5000}")
+    private int feedbackBatchQueueCapacity;
+
+    @Autowired
+    @Qualifier(AsyncExecutorConfig.FEEDBACK_BATCH_EXECUTOR)
+    private ThreadPoolTaskExecutor feedbackBatchExecutor;
+
+    private FeedbackMicroBatcher<TaskCompletionFeedbackDTO> taskCompletionBatcher;
+    private FeedbackMicroBatcher<TaskScoreFeedbackDTO> taskScoreBatcher;
+    private FeedbackMicroBatcher<RotationalTaskCompletionFeedbackDTO> rotationalCompletionBatcher;
+    private FeedbackMicroBatcher<RotationalTaskScoreFeedbackDTO> rotationalScoreBatcher;
+    private FeedbackMicroBatcher<ProductionHaltCompletionFeedbackDTO> haltCompletionBatcher;
+
+    @PostConstruct
+    public void initFeedbackBatchers() {
+        if (!feedbackBatchEnabled) {
+            log.info("TIMS 反馈微批已关闭，每条反馈单独处理");
+            return;
+        }
+        taskCompletionBatcher = newFeedbackBatcher("taskCompletion", taskCompletionLock, TaskCompletionFeedbackDTO::getTaskId,
+                tmisTaskCompletionService::processTaskCompletionBatch, tmisTaskCompletionService::processTaskCompletion);
+        taskScoreBatcher = newFeedbackBatcher("taskScore", taskScoreLock, TaskScoreFeedbackDTO::getTaskId,
+                tmisTaskScoreService::processTaskScoreBatch, tmisTaskScoreService::processTaskScore);
+        rotationalCompletionBatcher = newFeedbackBatcher("rotationalCompletion", rotationalCompletionLock, RotationalTaskCompletionFeedbackDTO::getTaskId,
+                tmisRotationalCompletionService::processRotationalCompletionBatch, tmisRotationalCompletionService::processRotationalCompletion);
+        rotationalScoreBatcher = newFeedbackBatcher("rotationalScore", rotationalScoreLock, RotationalTaskScoreFeedbackDTO::getTaskId,
+                tmisRotationalScoreService::processRotationalScoreBatch, tmisRotationalScoreService::processRotationalScore);
+        haltCompletionBatcher = newFeedbackBatcher("haltCompletion", haltCompletionLock, ProductionHaltCompletionFeedbackDTO::getTaskId,
+                tmisHaltCompletionService::processHaltCompletionBatch, tmisHaltCompletionService::processHaltCompletion);
+        log.info("TIMS 反馈微批已启用: 每批最多 {} 条, 等待窗口 {} ms", feedbackBatchMaxSize, feedbackBatchWindowMs);
+    }
+
+    @PreDestroy
+    public void stopFeedbackBatchers() {
+        for (FeedbackMicroBatcher<?> batcher : feedbackBatchers()) {
+            batcher.stop(10000);
+        }
+    }
+
     // ===================================================================
     // [对外] 1. 提交任务 (Submitter Methods)
     // ===================================================================
@@ -86,11 +174,13 @@ public class AsyncTaskService {
     public String submitFaultAnalysisReport(FaultAnalysisReportDTO dto) {
         String taskId = UUID.randomUUID().toString();
         updateTaskStatus(taskId, TaskStatus.PENDING, "Task submitted for FaultAnalysisReport: " + dto.getId(), null);
-        processFaultAnalysisReport(taskId, dto);
+        self.processFaultAnalysisReport(taskId, dto);
         return taskId;
     }
     /**
      * [对外] 1a. 提交一个由 Oracle 触发的任务
+     * [已修改] 同步阶段失败 (推送线程池已满抛出 TaskRejectedException、stype 参数解析失败) 时标记 FAILED 后原样抛出，
+     * 调用方据此判断是否提交成功，不要通过读取任务状态判断 (异步任务可能已经开始执行并改写状态)。
      */
     public String submitTask(String stype) {
         String taskId = UUID.randomUUID().toString();
@@ -99,24 +189,30 @@ public class AsyncTaskService {
         // --- 路由: 根据 stype 触发不同的异步任务 ---
         try {
             if ("SP_GENDAYTASK".equals(stype) || "PMBOARD.SP_QD_PLANBOARD_LB".equals(stype) || "JOB_GEN_BAOYANG_TASKS".equals(stype)) {
-                processMaintenanceTasks(taskId); // 接口 1
+                self.processMaintenanceTasks(taskId); // 接口 1
             } else if (stype.startsWith("EQ_PLANLB_ARCHIVED:")) {
-                processEqPlanLbArchive(taskId, Long.parseLong(stype.split(":")[1])); // 接口 5
+                self.processEqPlanLbArchive(taskId, Long.parseLong(stype.split(":")[1])); // 接口 5
             } else if ("TIMS_PUSH_ROTATIONAL_TASK".equals(stype)) {
-                processRotationalTasks(taskId); // 接口 7
+                self.processRotationalTasks(taskId); // 接口 7
             } else if (stype.startsWith("TIMS_PUSH_FAULT_REPORT_CODE:")) {
-                processFaultReportCode(taskId, Integer.parseInt(stype.split(":")[1])); // 接口 12
+                self.processFaultReportCode(taskId, Integer.parseInt(stype.split(":")[1])); // 接口 12
             } else if (stype.startsWith("PM_MONTH_ARCHIVED:")) {
-                processPmMonthArchive(taskId, Long.parseLong(stype.split(":")[1])); // 接口 13
+                self.processPmMonthArchive(taskId, Long.parseLong(stype.split(":")[1])); // 接口 13
             } else if ("PD_ZY_JM".equals(stype)) {
-                processPmissionTasks(taskId); // 旧接口
+                self.processPmissionTasks(taskId); // 旧接口
             } else {
                 log.warn("[Task {}] 收到了一个未处理的 stype: {}", taskId, stype);
                 updateTaskStatus(taskId, TaskStatus.SKIPPED, "Skipped (Unknown stype)", null);
             }
-        } catch (Exception e) {
+        } catch (TaskRejectedException e) {
+            // Oracle 推送线程池已满 (AbortPolicy)，标记失败，由 Oracle 端稍后重试
+            log.warn("[Task {}] Oracle 推送线程池已满，拒绝任务 (stype: {})", taskId, stype);
+            updateTaskStatus(taskId, TaskStatus.FAILED, "Rejected: push executor is saturated, retry later", null);
+            throw e;
+        } catch (RuntimeException e) {
             log.error("[Task {}] 触发异步任务时发生同步错误: {}", taskId, e.getMessage(), e);
             updateTaskStatus(taskId, TaskStatus.FAILED, "Failed to submit task: " + e.getMessage(), null);
+            throw e;
         }
         return taskId;
     }
@@ -127,7 +223,11 @@ public class AsyncTaskService {
     public String submitTaskCompletion(TaskCompletionFeedbackDTO dto) {
         String taskId = UUID.randomUUID().toString();
         updateTaskStatus(taskId, TaskStatus.PENDING, "Task submitted for TaskCompletion: " + dto.getTaskId(), null);
-        processTaskCompletion(taskId, dto);
+        if (taskCompletionBatcher != null) {
+            taskCompletionBatcher.submit(taskId, dto);
+        } else {
+            self.processTaskCompletion(taskId, dto);
+        }
         return taskId;
     }
 
@@ -137,7 +237,11 @@ public class AsyncTaskService {
     public String submitTaskScore(TaskScoreFeedbackDTO dto) {
         String taskId = UUID.randomUUID().toString();
         updateTaskStatus(taskId, TaskStatus.PENDING, "Task submitted for TaskScore: " + dto.getTaskId(), null);
-        processTaskScore(taskId, dto);
+        if (taskScoreBatcher != null) {
+            taskScoreBatcher.submit(taskId, dto);
+        } else {
+            self.processTaskScore(taskId, dto);
+        }
         return taskId;
     }
 
@@ -147,7 +251,7 @@ public class AsyncTaskService {
     public String submitFaultReportTask(FaultReportDTO report) {
         String taskId = UUID.randomUUID().toString();
         updateTaskStatus(taskId, TaskStatus.PENDING, "Task submitted for Fault Report ID: " + report.getId(), null);
-        processIncomingFaultReport(taskId, report);
+        self.processIncomingFaultReport(taskId, report);
         return taskId;
     }
 
@@ -157,7 +261,7 @@ public class AsyncTaskService {
     public String submitRecommendTask(RecommendedRotationalTaskDTO dto) {
         String taskId = UUID.randomUUID().toString();
         updateTaskStatus(taskId, TaskStatus.PENDING, "Task submitted for RecommendTask: " + dto.getPlanId(), null);
-        processRecommendTask(taskId, dto);
+        self.processRecommendTask(taskId, dto);
         return taskId;
     }
 
@@ -167,7 +271,11 @@ public class AsyncTaskService {
     public String submitRotationalCompletion(RotationalTaskCompletionFeedbackDTO dto) {
         String taskId = UUID.randomUUID().toString();
         updateTaskStatus(taskId, TaskStatus.PENDING, "Task submitted for RotationalCompletion: " + dto.getTaskId(), null);
-        processRotationalCompletion(taskId, dto);
+        if (rotationalCompletionBatcher != null) {
+            rotationalCompletionBatcher.submit(taskId, dto);
+        } else {
+            self.processRotationalCompletion(taskId, dto);
+        }
         return taskId;
     }
 
@@ -177,7 +285,11 @@ public class AsyncTaskService {
     public String submitRotationalScore(RotationalTaskScoreFeedbackDTO dto) {
         String taskId = UUID.randomUUID().toString();
         updateTaskStatus(taskId, TaskStatus.PENDING, "Task submitted for RotationalScore: " + dto.getTaskId(), null);
-        processRotationalScore(taskId, dto);
+        if (rotationalScoreBatcher != null) {
+            rotationalScoreBatcher.submit(taskId, dto);
+        } else {
+            self.processRotationalScore(taskId, dto);
+        }
         return taskId;
     }
 
@@ -187,7 +299,11 @@ public class AsyncTaskService {
     public String submitHaltCompletion(ProductionHaltCompletionFeedbackDTO dto) {
         String taskId = UUID.randomUUID().toString();
         updateTaskStatus(taskId, TaskStatus.PENDING, "Task submitted for HaltCompletion: " + dto.getTaskId(), null);
-        processHaltCompletion(taskId, dto);
+        if (haltCompletionBatcher != null) {
+            haltCompletionBatcher.submit(taskId, dto);
+        } else {
+            self.processHaltCompletion(taskId, dto);
+        }
         return taskId;
     }
 
@@ -197,14 +313,14 @@ public class AsyncTaskService {
     // ===================================================================
 
     public Map<String, Object> getTaskStatus(String taskId) {
-        Object status = taskStatusMap.get(taskId);
+        Map<String, Object> status = taskStatusStore.get(taskId);
         if (status == null) {
             Map<String, Object> notFound = new HashMap<>();
             notFound.put("taskId", taskId);
             notFound.put("status", "NOT_FOUND");
             return notFound;
         }
-        return (Map<String, Object>) status;
+        return status;
     }
 
 
@@ -212,11 +328,11 @@ public class AsyncTaskService {
     /**
      * [新] 异步处理 Kafka 接口 11 (故障分析报告)
      */
-    @Async
+    @Async(AsyncExecutorConfig.TIMS_FEEDBACK_EXECUTOR)
     public void processFaultAnalysisReport(String taskId, FaultAnalysisReportDTO dto) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Acquiring lock for FaultAnalysisReport: " + dto.getId(), null);
-        if (!faultAnalysisLock.tryLock()) {
-            updateTaskStatus(taskId, TaskStatus.SKIPPED, "Skipped (Another FaultAnalysisReport task is processing)", null);
+        String lockKey = String.valueOf(dto.getId());
+        if (!acquireKeyLock(taskId, faultAnalysisLock, lockKey)) {
             return;
         }
         try {
@@ -226,21 +342,187 @@ public class AsyncTaskService {
             log.error("[Task {}] 异步处理故障分析报告失败: {}", taskId, e.getMessage(), e);
             updateTaskStatus(taskId, TaskStatus.FAILED, e.getMessage(), null);
         } finally {
-            faultAnalysisLock.unlock();
+            faultAnalysisLock.release(lockKey);
         }
     }
 
+    /**
+     * [新增] 获取业务键对应的分段锁。同一业务键已在处理时等待，而不是直接跳过。
+     *
+     * @return true 表示已获取锁；false 表示等待超时或被中断 (状态已更新)
+     */
+    private boolean acquireKeyLock(String taskId, KeyedStripedLock lock, String lockKey) {
+        try {
+            if (lock.acquire(lockKey, KEY_LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                return true;
+            }
+            updateTaskStatus(taskId, TaskStatus.SKIPPED, "Skipped (Timed out waiting for lock on key: " + lockKey + ")", null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            updateTaskStatus(taskId, TaskStatus.FAILED, "Interrupted while waiting for lock on key: " + lockKey, null);
+        }
+        return false;
+    }
+
+    /**
+     * [新增] 各类反馈微批处理器的统计 (队列深度、批次数、平均批大小)
+     */
+    public Map<String, Object> getFeedbackBatchStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", feedbackBatchEnabled);
+        for (FeedbackMicroBatcher<?> batcher : feedbackBatchers()) {
+            Map<String, Object> batcherStats = batcher.getStats();
+            stats.put((String) batcherStats.get("name"), batcherStats);
+        }
+        return stats;
+    }
+
+    private <T> FeedbackMicroBatcher<T> newFeedbackBatcher(String name, KeyedStripedLock lock, Function<T, String> lockKey,
+                                                           Consumer<List<T>> batchWriter, Consumer<T> singleWriter) {
+        FeedbackMicroBatcher<T> batcher = new FeedbackMicroBatcher<>(name, feedbackBatchMaxSize, feedbackBatchWindowMs,
+                feedbackBatchQueueCapacity, feedbackBatchExecutor,
+                entries -> flushFeedbackBatch(name, entries, lock, lockKey, batchWriter, singleWriter));
+        batcher.start();
+        return batcher;
+    }
+
+    private List<FeedbackMicroBatcher<?>> feedbackBatchers() {
+        List<FeedbackMicroBatcher<?>> batchers = new ArrayList<>();
+        for (FeedbackMicroBatcher<?> batcher : Arrays.asList(taskCompletionBatcher, taskScoreBatcher,
+                rotationalCompletionBatcher, rotationalScoreBatcher, haltCompletionBatcher)) {
+            if (batcher != null) {
+                batchers.add(batcher);
+            }
+        }
+        return batchers;
+    }
+
+    /**
+     * 微批落库: 先按业务键获取分段锁 (与逐条处理共用)，再整批写入 (一个事务，见 FeedbackBatchWriter)；
+     * 失败则整批回滚，再逐条写入以隔离出错的数据。无论如何退出，每条数据都会进入终态。
+     */
+    private <T> void flushFeedbackBatch(String name, List<FeedbackMicroBatcher.Entry<T>> entries, KeyedStripedLock lock,
+                                        Function<T, String> lockKey, Consumer<List<T>> batchWriter, Consumer<T> singleWriter) {
+        Set<String> finished = new HashSet<>();
+        List<String> heldKeys = new ArrayList<>();
+        try {
+            List<String> keys = new ArrayList<>(entries.size());
+            for (FeedbackMicroBatcher.Entry<T> entry : entries) {
+                keys.add(lockKey.apply(entry.getItem()));
+            }
+            heldKeys = lock.acquireAll(keys, KEY_LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            Set<String> held = new HashSet<>(heldKeys);
+            List<FeedbackMicroBatcher.Entry<T>> locked = new ArrayList<>(entries.size());
+            for (FeedbackMicroBatcher.Entry<T> entry : entries) {
+                String key = lockKey.apply(entry.getItem());
+                if (held.contains(key)) {
+                    locked.add(entry);
+                } else {
+                    finishFeedback(finished, entry, TaskStatus.SKIPPED, "Skipped (Timed out waiting for lock on key: " + key + ")");
+                }
+            }
+            writeFeedbackBatch(name, locked, finished, batchWriter, singleWriter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("[Batch {}] 等待分段锁时被中断", name);
+        } finally {
+            for (String key : heldKeys) {
+                lock.release(key);
+            }
+            for (FeedbackMicroBatcher.Entry<T> entry : entries) {
+                if (!finished.contains(entry.getTaskId())) {
+                    updateTaskStatus(entry.getTaskId(), TaskStatus.FAILED, "Batch processing aborted.", null);
+                }
+            }
+        }
+    }
+
+    private <T> void writeFeedbackBatch(String name, List<FeedbackMicroBatcher.Entry<T>> entries, Set<String> finished,
+                                        Consumer<List<T>> batchWriter, Consumer<T> singleWriter) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<T> items = new ArrayList<>(entries.size());
+        for (FeedbackMicroBatcher.Entry<T> entry : entries) {
+            items.add(entry.getItem());
+        }
+        long start = System.currentTimeMillis();
+        try {
+            batchWriter.accept(items);
+            for (FeedbackMicroBatcher.Entry<T> entry : entries) {
+                finishFeedback(finished, entry, TaskStatus.SUCCESS, "Processing complete (batch of " + items.size() + ").");
+            }
+            log.info("[Batch {}] {} 条反馈批量写入完成, 耗时 {} ms", name, items.size(), System.currentTimeMillis() - start);
+            return;
+        } catch (Exception e) {
+            log.warn("[Batch {}] {} 条反馈批量写入失败，改为逐条写入: {}", name, items.size(), e.getMessage());
+        }
+
+        for (FeedbackMicroBatcher.Entry<T> entry : entries) {
+            try {
+                singleWriter.accept(entry.getItem());
+                finishFeedback(finished, entry, TaskStatus.SUCCESS, "Processing complete.");
+            } catch (Exception e) {
+                log.error("[Task {}] 反馈 [{}] 逐条写入失败: {}", entry.getTaskId(), name, e.getMessage(), e);
+                finishFeedback(finished, entry, TaskStatus.FAILED, e.getMessage());
+            }
+        }
+    }
+
+    private void finishFeedback(Set<String> finished, FeedbackMicroBatcher.Entry<?> entry, TaskStatus status, String message) {
+        updateTaskStatus(entry.getTaskId(), status, message, null);
+        finished.add(entry.getTaskId());
+    }
+
+    /**
+     * [新增] 各类 Kafka 反馈任务的分段锁统计 (竞争次数、等待时间)
+     */
+    public Map<String, Object> getLockStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (KeyedStripedLock lock : new KeyedStripedLock[]{faultReportLock, taskCompletionLock, taskScoreLock,
+                recommendTaskLock, rotationalCompletionLock, rotationalScoreLock, haltCompletionLock, faultAnalysisLock}) {
+            Map<String, Object> lockStats = lock.getStats();
+            stats.put((String) lockStats.get("name"), lockStats);
+        }
+        return stats;
+    }
+
     public void updateTaskStatus(String taskId, TaskStatus status, String message, Map<String, Object> resultData) {
-        Map<String, Object> statusDetails = new HashMap<>();
-        statusDetails.put("taskId", taskId);
-        statusDetails.put("status", status.name());
-        statusDetails.put("message", message);
-        statusDetails.put("timestamp", System.currentTimeMillis());
-        if (resultData != null) {
-            statusDetails.put("result", resultData);
-        }
-        taskStatusMap.put(taskId, statusDetails);
+        TaskStatusRecord record = new TaskStatusRecord(taskId, status, message, resultData);
+        taskStatusStore.put(record);
         log.info("[Task {}] 状态更新: {} - {}", taskId, status.name(), message);
+        if (record.isTerminal()) {
+            CompletableFuture<TaskStatus> completion = pendingCompletions.remove(taskId);
+            if (completion != null) {
+                completion.complete(status);
+            }
+        }
+    }
+
+    /**
+     * [新增] 获取任务进入终态 (SUCCESS/FAILED/SKIPPED) 时完成的 Future。
+     * Kafka 批量监听器在提交 offset 前用它等待本批数据全部处理完毕。
+     */
+    public CompletableFuture<TaskStatus> completionOf(String taskId) {
+        CompletableFuture<TaskStatus> completion = pendingCompletions.computeIfAbsent(taskId, k -> new CompletableFuture<>());
+        // 先登记再查状态: 与 updateTaskStatus 的 "先写状态再取登记" 配合，不会漏掉已完成的任务
+        Map<String, Object> current = taskStatusStore.get(taskId);
+        if (current != null) {
+            TaskStatus status = TaskStatus.valueOf((String) current.get("status"));
+            if (status == TaskStatus.SUCCESS || status == TaskStatus.FAILED || status == TaskStatus.SKIPPED) {
+                pendingCompletions.remove(taskId, completion);
+                completion.complete(status);
+            }
+        }
+        return completion;
+    }
+
+    /**
+     * [新增] 放弃等待: 调用方超时后移除 completionOf 登记的 Future，未进入终态的任务不再一直占用登记表。
+     */
+    public void abandonCompletion(String taskId, CompletableFuture<TaskStatus> completion) {
+        pendingCompletions.remove(taskId, completion);
     }
 
     // ===================================================================
@@ -249,7 +531,7 @@ public class AsyncTaskService {
 
     // --- A. Oracle 触发 (Java -> Kafka) ---
 
-    @Async
+    @Async(AsyncExecutorConfig.ORACLE_PUSH_EXECUTOR)
     public void processMaintenanceTasks(String taskId) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Acquiring lock...", null);
         if (!maintenanceTaskLock.tryLock()) {
@@ -268,7 +550,7 @@ public class AsyncTaskService {
         }
     }
 
-    @Async
+    @Async(AsyncExecutorConfig.ORACLE_PUSH_EXECUTOR)
     public void processEqPlanLbArchive(String taskId, Long indocno) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Executing query for EQ_PLANLB_ARCHIVED (indocno=" + indocno + ")...", null);
         try {
@@ -280,7 +562,7 @@ public class AsyncTaskService {
         }
     }
 
-    @Async
+    @Async(AsyncExecutorConfig.ORACLE_PUSH_EXECUTOR)
     public void processRotationalTasks(String taskId) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Acquiring lock...", null);
         if (!rotationalTaskLock.tryLock()) {
@@ -299,7 +581,7 @@ public class AsyncTaskService {
         }
     }
 
-    @Async
+    @Async(AsyncExecutorConfig.ORACLE_PUSH_EXECUTOR)
     public void processFaultReportCode(String taskId, Integer timsId) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Executing query for TIMS_PUSH_FAULT_REPORT_CODE (timsId=" + timsId + ")...", null);
         try {
@@ -311,7 +593,7 @@ public class AsyncTaskService {
         }
     }
 
-    @Async
+    @Async(AsyncExecutorConfig.ORACLE_PUSH_EXECUTOR)
     public void processPmMonthArchive(String taskId, Long indocno) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Executing query for PM_MONTH_ARCHIVED (indocno=" + indocno + ")...", null);
         try {
@@ -323,7 +605,7 @@ public class AsyncTaskService {
         }
     }
 
-    @Async
+    @Async(AsyncExecutorConfig.ORACLE_PUSH_EXECUTOR)
     public void processPmissionTasks(String taskId) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Acquiring lock...", null);
         if (!pmissionTaskLock.tryLock()) {
@@ -344,11 +626,11 @@ public class AsyncTaskService {
 
     // --- B. Kafka 触发 (Kafka -> Java -> SP) ---
 
-    @Async
+    @Async(AsyncExecutorConfig.TIMS_FEEDBACK_EXECUTOR)
     public void processTaskCompletion(String taskId, TaskCompletionFeedbackDTO dto) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Acquiring lock for TaskCompletion: " + dto.getTaskId(), null);
-        if (!taskCompletionLock.tryLock()) {
-            updateTaskStatus(taskId, TaskStatus.SKIPPED, "Skipped (Another TaskCompletion task is processing)", null);
+        String lockKey = dto.getTaskId();
+        if (!acquireKeyLock(taskId, taskCompletionLock, lockKey)) {
             return;
         }
         try {
@@ -358,15 +640,15 @@ public class AsyncTaskService {
             log.error("[Task {}] 异步处理任务完成失败: {}", taskId, e.getMessage(), e);
             updateTaskStatus(taskId, TaskStatus.FAILED, e.getMessage(), null);
         } finally {
-            taskCompletionLock.unlock();
+            taskCompletionLock.release(lockKey);
         }
     }
 
-    @Async
+    @Async(AsyncExecutorConfig.TIMS_FEEDBACK_EXECUTOR)
     public void processTaskScore(String taskId, TaskScoreFeedbackDTO dto) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Acquiring lock for TaskScore: " + dto.getTaskId(), null);
-        if (!taskScoreLock.tryLock()) {
-            updateTaskStatus(taskId, TaskStatus.SKIPPED, "Skipped (Another TaskScore task is processing)", null);
+        String lockKey = dto.getTaskId();
+        if (!acquireKeyLock(taskId, taskScoreLock, lockKey)) {
             return;
         }
         try {
@@ -376,15 +658,15 @@ public class AsyncTaskService {
             log.error("[Task {}] 异步处理任务得分失败: {}", taskId, e.getMessage(), e);
             updateTaskStatus(taskId, TaskStatus.FAILED, e.getMessage(), null);
         } finally {
-            taskScoreLock.unlock();
+            taskScoreLock.release(lockKey);
         }
     }
 
-    @Async
+    @Async(AsyncExecutorConfig.TIMS_FEEDBACK_EXECUTOR)
     public void processIncomingFaultReport(String taskId, FaultReportDTO report) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Acquiring fault report lock...", null);
-        if (!faultReportLock.tryLock()) {
-            updateTaskStatus(taskId, TaskStatus.SKIPPED, "Skipped (Another fault report task is already processing)", null);
+        String lockKey = String.valueOf(report.getId());
+        if (!acquireKeyLock(taskId, faultReportLock, lockKey)) {
             return;
         }
         try {
@@ -397,15 +679,15 @@ public class AsyncTaskService {
             log.error("[Task {}] 异步处理故障报告失败: {}", taskId, e.getMessage(), e);
             updateTaskStatus(taskId, TaskStatus.FAILED, e.getMessage(), null);
         } finally {
-            faultReportLock.unlock();
+            faultReportLock.release(lockKey);
         }
     }
 
-    @Async
+    @Async(AsyncExecutorConfig.TIMS_FEEDBACK_EXECUTOR)
     public void processRecommendTask(String taskId, RecommendedRotationalTaskDTO dto) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Acquiring lock for RecommendTask: " + dto.getPlanId(), null);
-        if (!recommendTaskLock.tryLock()) {
-            updateTaskStatus(taskId, TaskStatus.SKIPPED, "Skipped (Another RecommendTask task is processing)", null);
+        String lockKey = dto.getPlanId();
+        if (!acquireKeyLock(taskId, recommendTaskLock, lockKey)) {
             return;
         }
         try {
@@ -415,15 +697,15 @@ public class AsyncTaskService {
             log.error("[Task {}] 异步处理推荐任务失败: {}", taskId, e.getMessage(), e);
             updateTaskStatus(taskId, TaskStatus.FAILED, e.getMessage(), null);
         } finally {
-            recommendTaskLock.unlock();
+            recommendTaskLock.release(lockKey);
         }
     }
 
-    @Async
+    @Async(AsyncExecutorConfig.TIMS_FEEDBACK_EXECUTOR)
     public void processRotationalCompletion(String taskId, RotationalTaskCompletionFeedbackDTO dto) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Acquiring lock for RotationalCompletion: " + dto.getTaskId(), null);
-        if (!rotationalCompletionLock.tryLock()) {
-            updateTaskStatus(taskId, TaskStatus.SKIPPED, "Skipped (Another RotationalCompletion task is processing)", null);
+        String lockKey = dto.getTaskId();
+        if (!acquireKeyLock(taskId, rotationalCompletionLock, lockKey)) {
             return;
         }
         try {
@@ -433,15 +715,15 @@ public class AsyncTaskService {
             log.error("[Task {}] 异步处理轮保完成失败: {}", taskId, e.getMessage(), e);
             updateTaskStatus(taskId, TaskStatus.FAILED, e.getMessage(), null);
         } finally {
-            rotationalCompletionLock.unlock();
+            rotationalCompletionLock.release(lockKey);
         }
     }
 
-    @Async
+    @Async(AsyncExecutorConfig.TIMS_FEEDBACK_EXECUTOR)
     public void processRotationalScore(String taskId, RotationalTaskScoreFeedbackDTO dto) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Acquiring lock for RotationalScore: " + dto.getTaskId(), null);
-        if (!rotationalScoreLock.tryLock()) {
-            updateTaskStatus(taskId, TaskStatus.SKIPPED, "Skipped (Another RotationalScore task is processing)", null);
+        String lockKey = dto.getTaskId();
+        if (!acquireKeyLock(taskId, rotationalScoreLock, lockKey)) {
             return;
         }
         try {
@@ -451,15 +733,15 @@ public class AsyncTaskService {
             log.error("[Task {}] 异步处理轮保得分失败: {}", taskId, e.getMessage(), e);
             updateTaskStatus(taskId, TaskStatus.FAILED, e.getMessage(), null);
         } finally {
-            rotationalScoreLock.unlock();
+            rotationalScoreLock.release(lockKey);
         }
     }
 
-    @Async
+    @Async(AsyncExecutorConfig.TIMS_FEEDBACK_EXECUTOR)
     public void processHaltCompletion(String taskId, ProductionHaltCompletionFeedbackDTO dto) {
         updateTaskStatus(taskId, TaskStatus.RUNNING, "Acquiring lock for HaltCompletion: " + dto.getTaskId(), null);
-        if (!haltCompletionLock.tryLock()) {
-            updateTaskStatus(taskId, TaskStatus.SKIPPED, "Skipped (Another HaltCompletion task is processing)", null);
+        String lockKey = dto.getTaskId();
+        if (!acquireKeyLock(taskId, haltCompletionLock, lockKey)) {
             return;
         }
         try {
@@ -469,7 +751,7 @@ public class AsyncTaskService {
             log.error("[Task {}] 异步处理停产检修完成失败: {}", taskId, e.getMessage(), e);
             updateTaskStatus(taskId, TaskStatus.FAILED, e.getMessage(), null);
         } finally {
-            haltCompletionLock.unlock();
+            haltCompletionLock.release(lockKey);
         }
     }
 }
\ No newline at end of file
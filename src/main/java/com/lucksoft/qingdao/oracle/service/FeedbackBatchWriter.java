@@ -0,0 +1,46 @@
+package com.lucksoft.qingdao.oracle.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * [新增] TIMS 反馈批量写入器
+ * Oracle JDBC 驱动不会真正批量执行 CallableStatement (addBatch 仍是逐条往返)，
+ * 因此批量写入改为由 Mapper 生成一个匿名 PL/SQL 块 (BEGIN proc(..); proc(..); ... END;)，
+ * 一组数据一次执行、一次网络往返。这里负责按 blockSize 切分，避免单个块的绑定变量过多。
+ * 注意: 必须在 @Transactional 方法内调用，保证各块同属一个事务、失败时整体回滚。
+ */
+@Component
+public class FeedbackBatchWriter {
+
+    // 每个 PL/SQL 块包含的调用数 (每条 3~5 个绑定变量)
+    @Value("${tims.feedback.batch.block-size:100}")
+    private int blockSize;
+
+    /**
+     * 将 items 按 blockSize 切分，每段调用一次 Mapper 的 PL/SQL 块语句
+     *
+     * @param items      待写入的数据
+     * @param blockWrite 对一段数据执行一次 PL/SQL 块 (Mapper 的 batchSave* 方法)
+     * @return 实际执行的 PL/SQL 块数 (即网络往返次数)
+     */
+    public <T> int writeBatch(List<T> items, Consumer<List<T>> blockWrite) {
+        if (items == null || items.isEmpty()) {
+            return 0;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("FeedbackBatchWriter 必须在事务中调用");
+        }
+        int size = Math.max(1, blockSize);
+        int blocks = 0;
+        for (int from = 0; from < items.size(); from += size) {
+            blockWrite.accept(items.subList(from, Math.min(items.size(), from + size)));
+            blocks++;
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,185 @@
+package com.lucksoft.qingdao.oracle.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * [新增] 反馈数据微批处理器 (按反馈类型一个实例)
+ * 1. submit 把单条数据放入有界队列，队列满时阻塞调用方 (Kafka 监听线程)，形成背压。
+ * 2. 一个后台循环 (运行在调用方提供的线程池中，占用其中一个线程) 取出数据，凑满 maxBatchSize 条或等待 windowMillis 后，整批交给 flusher 处理。
+ * 3. 同一类型的数据由同一个线程按到达顺序处理。
+ * 4. flusher 负责把每条数据推进到终态 (AsyncTaskService 更新任务状态，等待方通过 completionOf 获得结果)；
+ *    flusher 抛出的异常只记录日志，不会中断批处理循环。
+ */
+public class FeedbackMicroBatcher<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedbackMicroBatcher.class);
+
+    // 队列空闲时的轮询间隔，用于及时响应 stop
+    private static final long IDLE_POLL_MILLIS = 500;
+
+    private final String name;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final BlockingQueue<Entry<T>> queue;
+    private final Consumer<List<Entry<T>>> flusher;
+    private final Executor executor;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean running = true;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedItems = new LongAdder();
+    private final AtomicInteger largestBatch = new AtomicInteger();
+
+    public FeedbackMicroBatcher(String name, int maxBatchSize, long windowMillis, int queueCapacity,
+                                Executor executor, Consumer<List<Entry<T>>> flusher) {
+        this.name = name;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.windowMillis = Math.max(0, windowMillis);
+        this.queue = new ArrayBlockingQueue<>(Math.max(this.maxBatchSize, queueCapacity));
+        this.executor = executor;
+        this.flusher = flusher;
+    }
+
+    /**
+     * 在线程池中启动批处理循环 (线程池没有空闲线程时抛出 RejectedExecutionException)
+     */
+    public void start() {
+        executor.execute(this::runLoop);
+    }
+
+    /**
+     * 停止接收新数据，处理完队列中剩余的数据后退出
+     */
+    public void stop(long timeoutMillis) {
+        running = false;
+        boolean exited = false;
+        try {
+            exited = terminated.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!exited) {
+            log.warn("[Batch {}] 停止超时，队列中仍有 {} 条数据未处理", name, queue.size());
+        }
+    }
+
+    /**
+     * 提交一条数据 (队列满时阻塞)
+     */
+    public void submit(String taskId, T item) {
+        if (!running) {
+            throw new IllegalStateException("批处理器 [" + name + "] 已停止");
+        }
+        Entry<T> entry = new Entry<>(taskId, item);
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("提交到批处理器 [" + name + "] 时被中断", e);
+        }
+        submitted.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        long flushCount = flushes.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("windowMillis", windowMillis);
+        stats.put("queueDepth", queue.size());
+        stats.put("queueRemaining", queue.remainingCapacity());
+        stats.put("submitted", submitted.sum());
+        stats.put("flushes", flushCount);
+        stats.put("flushedItems", flushedItems.sum());
+        stats.put("avgBatchSize", flushCount == 0 ? 0.0 : (double) flushedItems.sum() / flushCount);
+        stats.put("largestBatch", largestBatch.get());
+        return stats;
+    }
+
+    private void runLoop() {
+        try {
+            drainLoop();
+        } finally {
+            terminated.countDown();
+            log.info("[Batch {}] 批处理循环已退出", name);
+        }
+    }
+
+    private void drainLoop() {
+        List<Entry<T>> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry<T> first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Entry<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 被中断时不再等待凑批，处理完已取出的数据后退出
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Entry<T>> batch) {
+        List<Entry<T>> entries = new ArrayList<>(batch);
+        flushes.increment();
+        flushedItems.add(entries.size());
+        largestBatch.accumulateAndGet(entries.size(), Math::max);
+        try {
+            flusher.accept(entries);
+        } catch (Throwable t) {
+            log.error("[Batch {}] 批量处理 {} 条数据时发生未捕获异常: {}", name, entries.size(), t.getMessage(), t);
+        }
+    }
+
+    /**
+     * 队列中的单条数据
+     */
+    public static final class Entry<T> {
+        private final String taskId;
+        private final T item;
+
+        Entry(String taskId, T item) {
+            this.taskId = taskId;
+            this.item = item;
+        }
+
+        public String getTaskId() { return taskId; }
+        public T getItem() { return item; }
+    }
+}
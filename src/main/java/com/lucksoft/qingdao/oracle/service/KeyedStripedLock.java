@@ -0,0 +1,143 @@
+package com.lucksoft.qingdao.oracle.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * [新增] 按业务键分段的锁 (Striped Lock)
+ * 1. 同一个业务键 (taskId / planId) 总是映射到同一段锁上，保证串行处理。
+ * 2. 不同业务键大概率落在不同段上，可以在线程池中并行执行。
+ * 3. 每段记录获取次数、竞争次数和等待时间，用于观察锁争用情况。
+ * 4. 批量处理时用 acquireAll 按段序号升序加锁，多个批量调用方之间不会交叉等待。
+ */
+public class KeyedStripedLock {
+
+    private final String name;
+    private final ReentrantLock[] stripes;
+    private final LongAdder[] acquisitions;
+    private final LongAdder[] contentions;
+    private final LongAdder[] waitNanos;
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public KeyedStripedLock(String name, int stripeCount) {
+        this.name = name;
+        this.stripes = new ReentrantLock[stripeCount];
+        this.acquisitions = new LongAdder[stripeCount];
+        this.contentions = new LongAdder[stripeCount];
+        this.waitNanos = new LongAdder[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+            acquisitions[i] = new LongAdder();
+            contentions[i] = new LongAdder();
+            waitNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 获取业务键对应的锁，最多等待 timeout
+     *
+     * @return true 表示已获取锁 (调用方必须在 finally 中 release)
+     */
+    public boolean acquire(String key, long timeout, TimeUnit unit) throws InterruptedException {
+        int index = indexOf(key);
+        ReentrantLock lock = stripes[index];
+        if (lock.tryLock()) {
+            acquisitions[index].increment();
+            return true;
+        }
+
+        // 同一段上已有任务在处理 (同一个键或哈希冲突)，记录竞争并等待
+        contentions[index].increment();
+        long start = System.nanoTime();
+        boolean acquired = lock.tryLock(timeout, unit);
+        long waited = System.nanoTime() - start;
+        waitNanos[index].add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (acquired) {
+            acquisitions[index].increment();
+        }
+        return acquired;
+    }
+
+    /**
+     * 按段序号升序依次获取一组业务键的锁，所有键共用同一个等待期限
+     * 段锁可重入，同一批内重复的键或落在同一段的键会立即获取成功。
+     *
+     * @return 已获取锁的键 (可能少于 keys，调用方必须在 finally 中逐个 release)
+     */
+    public List<String> acquireAll(Collection<String> keys, long timeout, TimeUnit unit) throws InterruptedException {
+        List<String> sorted = new ArrayList<>(keys);
+        sorted.sort(Comparator.comparingInt(this::indexOf));
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<String> acquired = new ArrayList<>(sorted.size());
+        try {
+            for (String key : sorted) {
+                if (acquire(key, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    acquired.add(key);
+                }
+            }
+        } catch (InterruptedException e) {
+            for (String key : acquired) {
+                release(key);
+            }
+            throw e;
+        }
+        return acquired;
+    }
+
+    public void release(String key) {
+        stripes[indexOf(key)].unlock();
+    }
+
+    /**
+     * 锁统计: 汇总值 + 有过获取记录的各段明细
+     */
+    public Map<String, Object> getStats() {
+        long totalAcquisitions = 0;
+        long totalContentions = 0;
+        long totalWaitNanos = 0;
+        List<Map<String, Object>> stripeStats = new ArrayList<>();
+        for (int i = 0; i < stripes.length; i++) {
+            long acq = acquisitions[i].sum();
+            long cont = contentions[i].sum();
+            long wait = waitNanos[i].sum();
+            totalAcquisitions += acq;
+            totalContentions += cont;
+            totalWaitNanos += wait;
+            if (acq > 0 || cont > 0) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("stripe", i);
+                item.put("acquisitions", acq);
+                item.put("contentions", cont);
+                item.put("waitMs", TimeUnit.NANOSECONDS.toMillis(wait));
+                item.put("queueLength", stripes[i].getQueueLength());
+                item.put("locked", stripes[i].isLocked());
+                stripeStats.add(item);
+            }
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("stripes", stripes.length);
+        stats.put("acquisitions", totalAcquisitions);
+        stats.put("contentions", totalContentions);
+        stats.put("totalWaitMs", TimeUnit.NANOSECONDS.toMillis(totalWaitNanos));
+        stats.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        stats.put("stripeDetails", stripeStats);
+        return stats;
+    }
+
+    private int indexOf(String key) {
+        int h = (key == null) ? 0 : key.hashCode();
+        h ^= (h >>> 16); // 扰动，避免低位相同的键集中在同一段
+        return (h & 0x7fffffff) % stripes.length;
+    }
+}
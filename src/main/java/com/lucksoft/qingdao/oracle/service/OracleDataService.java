@@ -8,6 +8,8 @@ import com.lucksoft.qingdao.tspm.dto.ProductionHaltTaskDTO;
 import com.lucksoft.qingdao.tspm.dto.RotationalPlanDTO;
 import com.lucksoft.qingdao.tspm.dto.ScreenedRotationalTaskDTO;
 import com.lucksoft.qingdao.tspm.producer.TspmProducerService;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +24,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -31,17 +35,26 @@ import java.util.stream.Collectors;
  * 2. [关键] 包含“先推送Kafka，成功后再写入Redis”的防重逻辑。
  * 3. 包含 Kafka 消息分批推送逻辑。
  * 4. 本类所有方法都是同步的，由 AsyncTaskService 在后台线程中调用。
+ * 5. [新增] 流式模式 (oracle.push.streaming-enabled，默认关闭): 保养/LB/轮保任务通过只向前游标 + 大 fetchSize 读取视图，
+ *    读取期间只按 STREAM_CHUNK_SIZE 分块缓存；游标关闭后再逐块执行 "防重 -> 转换 -> 推送 Kafka -> 写 Redis"，
+ *    避免 Kafka/Redis 变慢时游标长时间打开 (ORA-01555)。
  */
 @Service
 public class OracleDataService {
 
     private static final Logger log = LoggerFactory.getLogger(OracleDataService.class);
-    private static final String PUSHED_TASK_KEY_PREFIX = "oracle:pushed_tasks:";
+    static final String PUSHED_TASK_KEY_PREFIX = "oracle:pushed_tasks:";
     private static final Duration KEY_EXPIRATION = Duration.ofDays(1);
 
     // Kafka 消息批量推送的大小
     private static final int KAFKA_BATCH_SIZE = 500;
 
+    // 流式模式下每块处理的视图行数 (每块内再按 KAFKA_BATCH_SIZE 分批推送)
+    private static final int STREAM_CHUNK_SIZE = KAFKA_BATCH_SIZE * 4;
+
+    @Value("${oracle.push.streaming-enabled:false}")
+    private boolean streamingEnabled;
+
     // --- Mappers ---
     @Autowired
     private VMaintenanceTasksMapper vMaintenanceTasksMapper; // 接口 1
@@ -63,6 +76,8 @@ public class OracleDataService {
     private RedisTemplate<String, Object> redisTemplate;
     @Autowired
     private TspmProducerService producerService;
+    @Autowired
+    private PushDeDupeService deDupeService;
 
     // --- Kafka Topics ---
     @Value("${kafka.topics.sync-maintenance-task}")
@@ -87,6 +102,14 @@ public class OracleDataService {
      * @throws Exception 如果 Kafka 推送失败
      */
     public Map<String, Object> findAndPushNewMaintenanceTasks(String taskId) throws Exception {
+        if (streamingEnabled) {
+            return runStreamingPush(taskId, "MaintenanceTasks", maintenanceTaskTopic,
+                    PUSHED_TASK_KEY_PREFIX + "maintenance_tasks_v2",
+                    vMaintenanceTasksMapper::streamRecentTasks,
+                    VMaintenanceTaskDTO::getDeDupeKey,
+                    transformerService::transformVTaskToMaintenanceTask);
+        }
+
         // 1. 从统一视图查询所有近期任务
         List<VMaintenanceTaskDTO> recentTasks = vMaintenanceTasksMapper.findRecentTasks();
         if (recentTasks.isEmpty()) {
@@ -99,15 +122,21 @@ public class OracleDataService {
         Set<String> pushedDeDupeKeys = new HashSet<>();
 
         // 2. 过滤掉已经推送过的
+        List<String> candidateKeys = new ArrayList<>(recentTasks.size());
         for (VMaintenanceTaskDTO vTask : recentTasks) {
             String deDupeKey = vTask.getDeDupeKey();
             if (deDupeKey == null || deDupeKey.isEmpty()) {
                 log.warn("[Task {}] 跳过任务，因为 deDupeKey 为空: taskId={}", taskId, vTask.getTaskId());
                 continue;
             }
+            candidateKeys.add(deDupeKey);
+        }
 
-            // [关键] 检查 Redis
-            if (!redisTemplate.opsForSet().isMember(redisKey, deDupeKey)) {
+        // [关键] 批量检查 Redis (pipeline)，一次拿到所有未推送过的 key
+        Set<String> unseenKeys = deDupeService.findUnseenKeys(redisKey, candidateKeys);
+        for (VMaintenanceTaskDTO vTask : recentTasks) {
+            String deDupeKey = vTask.getDeDupeKey();
+            if (deDupeKey != null && unseenKeys.contains(deDupeKey)) {
                 newTasksToPush.add(transformerService.transformVTaskToMaintenanceTask(vTask));
                 pushedDeDupeKeys.add(deDupeKey); // 暂存准备推送的key
             }
@@ -122,8 +151,7 @@ public class OracleDataService {
 
             // 5. [成功后] 批量写入 Redis
             log.info("[Task {}] Kafka 同步推送成功, 正在将 {} 个 deDupeKeys 写入 Redis...", taskId, pushedDeDupeKeys.size());
-            redisTemplate.opsForSet().add(redisKey, pushedDeDupeKeys.toArray());
-            redisTemplate.expire(redisKey, KEY_EXPIRATION);
+            deDupeService.markPushed(redisKey, pushedDeDupeKeys, KEY_EXPIRATION);
             log.info("[Task {}] Redis 写入完毕。", taskId);
 
         } else {
@@ -200,6 +228,13 @@ public class OracleDataService {
 
         // 2. 查询视图 view_lb_task
         log.info("[{}] 正在查询视图 view_lb_task...", taskId);
+        if (streamingEnabled) {
+            return runStreamingPush(taskId, "LbTasks", maintenanceTaskTopic,
+                    PUSHED_TASK_KEY_PREFIX + "maintenance_tasks_lb_v1",
+                    vMaintenanceTasksMapper::streamLbTasks,
+                    this::resolveLbDeDupeKey,
+                    transformerService::transformVTaskToMaintenanceTask);
+        }
         List<VMaintenanceTaskDTO> lbTasks = vMaintenanceTasksMapper.findLbTasks();
         if (lbTasks.isEmpty()) {
             log.warn("[{}] 视图 view_lb_task 未返回任何数据。", taskId);
@@ -214,14 +249,18 @@ public class OracleDataService {
         List<MaintenanceTaskDTO> newTasksToPush = new ArrayList<>();
         Set<String> pushedDeDupeKeys = new HashSet<>();
 
+        List<String> candidateKeys = new ArrayList<>(lbTasks.size());
         for (VMaintenanceTaskDTO vTask : lbTasks) {
-            String deDupeKey = vTask.getDeDupeKey();
-            // 如果视图没有 deDupeKey，则尝试使用 taskId 作为唯一标识
-            if (deDupeKey == null || deDupeKey.isEmpty()) {
-                deDupeKey = vTask.getTaskId();
+            String deDupeKey = resolveLbDeDupeKey(vTask);
+            if (deDupeKey != null) {
+                candidateKeys.add(deDupeKey);
             }
+        }
 
-            if (deDupeKey != null && !redisTemplate.opsForSet().isMember(redisKey, deDupeKey)) {
+        Set<String> unseenKeys = deDupeService.findUnseenKeys(redisKey, candidateKeys);
+        for (VMaintenanceTaskDTO vTask : lbTasks) {
+            String deDupeKey = resolveLbDeDupeKey(vTask);
+            if (deDupeKey != null && unseenKeys.contains(deDupeKey)) {
                 newTasksToPush.add(transformerService.transformVTaskToMaintenanceTask(vTask));
                 pushedDeDupeKeys.add(deDupeKey);
             }
@@ -234,8 +273,7 @@ public class OracleDataService {
             pushTasksInBatches(taskId, maintenanceTaskTopic, newTasksToPush, KAFKA_BATCH_SIZE);
 
             // 写入 Redis
-            redisTemplate.opsForSet().add(redisKey, pushedDeDupeKeys.toArray());
-            redisTemplate.expire(redisKey, KEY_EXPIRATION);
+            deDupeService.markPushed(redisKey, pushedDeDupeKeys, KEY_EXPIRATION);
 
             log.info("[{}] 流程执行完毕。", taskId);
         } else {
@@ -256,6 +294,14 @@ public class OracleDataService {
      * @throws Exception 如果 Kafka 推送失败
      */
     public Map<String, Object> findAndPushNewRotationalTasks(String taskId) throws Exception {
+        if (streamingEnabled) {
+            return runStreamingPush(taskId, "RotationalTasks", syncRotationalTaskTopic,
+                    PUSHED_TASK_KEY_PREFIX + "rotational_tasks_v1",
+                    vRotationalTaskMapper::streamRecentTasks,
+                    VRotationalTaskDTO::getDeDupeKey,
+                    transformerService::transformVTaskToRotationalTask);
+        }
+
         // 1. 从视图查询
         List<VRotationalTaskDTO> recentTasks = vRotationalTaskMapper.findRecentTasks();
         if (recentTasks.isEmpty()) {
@@ -268,13 +314,20 @@ public class OracleDataService {
         Set<String> pushedDeDupeKeys = new HashSet<>();
 
         // 2. 过滤
+        List<String> candidateKeys = new ArrayList<>(recentTasks.size());
         for (VRotationalTaskDTO vTask : recentTasks) {
             String deDupeKey = vTask.getDeDupeKey();
             if (deDupeKey == null || deDupeKey.isEmpty()) {
                 log.warn("[Task {}] 跳过轮保任务，因为 deDupeKey 为空: taskId={}", taskId, vTask.getTaskId());
                 continue;
             }
-            if (!redisTemplate.opsForSet().isMember(redisKey, deDupeKey)) {
+            candidateKeys.add(deDupeKey);
+        }
+
+        Set<String> unseenKeys = deDupeService.findUnseenKeys(redisKey, candidateKeys);
+        for (VRotationalTaskDTO vTask : recentTasks) {
+            String deDupeKey = vTask.getDeDupeKey();
+            if (deDupeKey != null && unseenKeys.contains(deDupeKey)) {
                 newTasksToPush.add(transformerService.transformVTaskToRotationalTask(vTask));
                 pushedDeDupeKeys.add(deDupeKey);
             }
@@ -289,8 +342,7 @@ public class OracleDataService {
 
             // 5. [成功后] 批量写入 Redis
             log.info("[Task {}] Kafka 同步推送成功, 正在将 {} 个 deDupeKeys 写入 Redis...", taskId, pushedDeDupeKeys.size());
-            redisTemplate.opsForSet().add(redisKey, pushedDeDupeKeys.toArray());
-            redisTemplate.expire(redisKey, KEY_EXPIRATION);
+            deDupeService.markPushed(redisKey, pushedDeDupeKeys, KEY_EXPIRATION);
             log.info("[Task {}] Redis 写入完毕。", taskId);
 
         } else {
@@ -397,11 +449,16 @@ public class OracleDataService {
         }
         String redisKey = PUSHED_TASK_KEY_PREFIX + "pmission_zy_jm";
 
+        List<String> candidateKeys = recentTasks.stream()
+                .map(task -> task.getIdocid().toString())
+                .collect(Collectors.toList());
+        Set<String> unseenKeys = deDupeService.findUnseenKeys(redisKey, candidateKeys);
+
         Set<String> pushedTaskIds = new HashSet<>();
         List<PmissionDTO> newTasksToPush = recentTasks.stream()
                 .filter(task -> {
                     String taskIdStr = task.getIdocid().toString();
-                    if (!redisTemplate.opsForSet().isMember(redisKey, taskIdStr)) {
+                    if (unseenKeys.contains(taskIdStr)) {
                         pushedTaskIds.add(taskIdStr);
                         return true;
                     }
@@ -417,8 +474,7 @@ public class OracleDataService {
             log.info("[Task {}] 成功推送 {} 条专业/精密点检任务到 Kafka Topic: {}", taskId, newTasksToPush.size(), pushPmissionZyJmTopic);
 
             // [成功后] 写入 Redis
-            redisTemplate.opsForSet().add(redisKey, pushedTaskIds.toArray());
-            redisTemplate.expire(redisKey, KEY_EXPIRATION);
+            deDupeService.markPushed(redisKey, pushedTaskIds, KEY_EXPIRATION);
 
         } else {
             log.info("[Task {}][PD_ZY_JM] 查询到 {} 条近期任务, 但全部已推送过。", taskId, recentTasks.size());
@@ -431,7 +487,8 @@ public class OracleDataService {
     }
 
     /**
-     * [新] 辅助方法：分批同步推送到 Kafka
+     * [已修改] 辅助方法：分批推送到 Kafka
+     * 所有批次以流水线方式发出，并等待全部确认后才返回 (仍然满足 "Kafka 全部确认后再写 Redis")。
      * @param taskId 任务ID
      * @param topic Topic
      * @param tasksToPush 任务列表
@@ -440,15 +497,129 @@ public class OracleDataService {
      */
     private <T> void pushTasksInBatches(String taskId, String topic, List<T> tasksToPush, int batchSize) throws Exception {
         int totalTasks = tasksToPush.size();
+        List<List<T>> batches = new ArrayList<>();
         for (int i = 0; i < totalTasks; i += batchSize) {
             int end = Math.min(i + batchSize, totalTasks);
-            List<T> batchList = tasksToPush.subList(i, end);
+            batches.add(tasksToPush.subList(i, end));
+        }
 
-            log.info("[Task {}] 正在同步推送批次 {}/{} ({} 条任务)...", taskId, (i / batchSize) + 1, (totalTasks + batchSize - 1) / batchSize, batchList.size());
+        log.info("[Task {}] 正在流水线推送 {} 个批次 (共 {} 条任务)...", taskId, batches.size(), totalTasks);
 
-            // [关键] 调用同步发送
-            producerService.sendSync(topic, batchList);
+        // [关键] 流水线发送并等待全部确认
+        producerService.sendAllAndAwait(topic, batches);
+    }
+
+    /**
+     * [新增] 流式推送: 先用只向前游标把视图读完 (按块缓存)，游标关闭后再逐块执行 防重 -> 转换 -> 推送 -> 写 Redis
+     * 每块的 Redis 写入仍然发生在该块所有 Kafka 批次确认之后；某块推送失败时，之前已确认的块保持已推送状态。
+     *
+     * @param taskId       任务ID
+     * @param label        日志标签
+     * @param topic        Kafka Topic
+     * @param redisKey     防重 Set 的 Redis Key
+     * @param query        流式查询 (向 handler 逐行回调)
+     * @param keyExtractor 防重键提取 (返回 null/空串的行会被跳过)
+     * @param transformer  视图 DTO -> 推送 DTO 的转换
+     * @return 包含推送计数和数据的Map (与列表模式一致，另附 scannedCount)
+     * @throws Exception 如果 Kafka 推送失败
+     */
+    private <V, T> Map<String, Object> runStreamingPush(String taskId, String label, String topic, String redisKey,
+                                                        Consumer<ResultHandler<V>> query,
+                                                        Function<V, String> keyExtractor,
+                                                        Function<V, T> transformer) throws Exception {
+        long start = System.currentTimeMillis();
+
+        // 1. 读取视图: handler 中只做内存操作，不访问 Redis / Kafka
+        ChunkingResultHandler<V> handler = new ChunkingResultHandler<>();
+        query.accept(handler);
+        List<List<V>> chunks = handler.finish();
+        long fetchMillis = System.currentTimeMillis() - start;
+
+        // 2. 游标已关闭，逐块防重并推送，处理完的块立即释放
+        List<T> pushedData = new ArrayList<>();
+        int skippedCount = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            List<V> chunk = chunks.set(i, null);
+
+            List<String> candidateKeys = new ArrayList<>(chunk.size());
+            for (V row : chunk) {
+                String deDupeKey = keyExtractor.apply(row);
+                if (deDupeKey == null || deDupeKey.isEmpty()) {
+                    skippedCount++;
+                } else {
+                    candidateKeys.add(deDupeKey);
+                }
+            }
+
+            Set<String> unseenKeys = deDupeService.findUnseenKeys(redisKey, candidateKeys);
+            List<T> newTasksToPush = new ArrayList<>();
+            Set<String> pushedDeDupeKeys = new HashSet<>();
+            for (V row : chunk) {
+                String deDupeKey = keyExtractor.apply(row);
+                if (deDupeKey != null && unseenKeys.contains(deDupeKey)) {
+                    newTasksToPush.add(transformer.apply(row));
+                    pushedDeDupeKeys.add(deDupeKey);
+                }
+            }
+            if (newTasksToPush.isEmpty()) {
+                continue;
+            }
+
+            pushTasksInBatches(taskId, topic, newTasksToPush, KAFKA_BATCH_SIZE);
+            // [成功后] 写入本块的 Redis 防重键
+            deDupeService.markPushed(redisKey, pushedDeDupeKeys, KEY_EXPIRATION);
+            pushedData.addAll(newTasksToPush);
+        }
+
+        if (skippedCount > 0) {
+            log.warn("[Task {}][{}] 跳过 {} 条 deDupeKey 为空的任务。", taskId, label, skippedCount);
+        }
+        log.info("[Task {}][{}] 流式扫描 {} 条任务 (读取 {} ms), 新增推送 {} 条, 总耗时 {} ms。",
+                taskId, label, handler.scannedCount, fetchMillis, pushedData.size(), System.currentTimeMillis() - start);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("pushedCount", pushedData.size());
+        result.put("pushedData", pushedData);
+        result.put("scannedCount", handler.scannedCount);
+        return result;
+    }
+
+    /**
+     * [新增] 流式读取的行处理器: 按 STREAM_CHUNK_SIZE 把行分块缓存，不做任何外部 I/O
+     */
+    private static class ChunkingResultHandler<V> implements ResultHandler<V> {
+        private final List<List<V>> chunks = new ArrayList<>();
+        private List<V> current = new ArrayList<>(STREAM_CHUNK_SIZE);
+        private int scannedCount = 0;
+
+        @Override
+        public void handleResult(ResultContext<? extends V> resultContext) {
+            current.add(resultContext.getResultObject());
+            scannedCount++;
+            if (current.size() >= STREAM_CHUNK_SIZE) {
+                chunks.add(current);
+                current = new ArrayList<>(STREAM_CHUNK_SIZE);
+            }
+        }
+
+        List<List<V>> finish() {
+            if (!current.isEmpty()) {
+                chunks.add(current);
+                current = new ArrayList<>();
+            }
+            return chunks;
+        }
+    }
+
+    /**
+     * LB 任务的防重键: 优先使用视图的 deDupeKey，缺失时退化为 taskId
+     */
+    private String resolveLbDeDupeKey(VMaintenanceTaskDTO vTask) {
+        String deDupeKey = vTask.getDeDupeKey();
+        if (deDupeKey == null || deDupeKey.isEmpty()) {
+            deDupeKey = vTask.getTaskId();
         }
+        return deDupeKey;
     }
 
     /**
@@ -465,6 +636,7 @@ public class OracleDataService {
         }
 
         Long deleteCount = redisTemplate.delete(keys);
+        deDupeService.resetFilters();
         log.warn("--- [调试] 成功删除 {} 个键: {} ---", deleteCount, keys);
         return keys;
     }
@@ -0,0 +1,295 @@
+package com.lucksoft.qingdao.oracle.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * [新增] 推送防重引擎 (批量 Redis 检查)
+ * 1. 原先 OracleDataService 对视图中的每一行都调用一次 isMember，N 行即 N 次 Redis 往返。
+ * 2. 本服务将候选 deDupeKey 按块 (CHUNK_SIZE) 放入同一个 pipeline 中批量 SISMEMBER，
+ *    每块只需一次网络往返，返回尚未推送过的 key。
+ * 3. 推送成功后，通过 markPushed 在一个 pipeline 内完成 SADD + EXPIRE 回写。
+ * 4. [新增] 每个防重 Set (key family) 前面挂一个本地布隆过滤器:
+ *    启动时从 Redis 预热 (SCAN 防重 Set，按 SCARD 确定过滤器大小)，每次推送成功后同步写入；
+ *    "一定是新的" key 直接跳过 Redis，只有 "可能推送过" 的 key 才回 Redis 确认。
+ *    过滤器饱和时从 Redis 重建；重建后仍饱和 (Set 超出 1MB 过滤器的容量) 则该 Set 不再使用过滤器，全部回 Redis 确认。
+ *    注意: 布隆过滤器只感知本实例写入的 key，仅适用于单实例部署，默认关闭 (oracle.dedupe.bloom.enabled=true 开启)。
+ */
+@Service
+public class PushDeDupeService {
+
+    private static final Logger log = LoggerFactory.getLogger(PushDeDupeService.class);
+
+    // 每个 pipeline 中携带的最大命令数，避免单次请求/响应过大
+    private static final int CHUNK_SIZE = 1000;
+
+    // 单个布隆过滤器的位数上限 (8M bit = 1MB)
+    private static final long MAX_FILTER_BITS = 8L * 1024 * 1024;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${oracle.dedupe.bloom.enabled:false}")
+    private boolean bloomEnabled;
+
+    // 过滤器最少按此插入数设计；预热时 Set 更大则按其基数的 2 倍设计 (为后续写入留余量)
+    @Value("${oracle.dedupe.bloom.expected-insertions:200000}")
+    private int bloomExpectedInsertions;
+
+    @Value("${oracle.dedupe.bloom.fpp:0.01}")
+    private double bloomFpp;
+
+    // redisKey -> 本地过滤器及统计
+    private final Map<String, KeyFamily> families = new ConcurrentHashMap<>();
+
+    /**
+     * 应用启动完成后，预热所有已存在的防重 Set
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpFilters() {
+        if (!bloomEnabled) {
+            return;
+        }
+        // 用 SCAN 代替 KEYS，避免阻塞 Redis
+        ScanOptions options = ScanOptions.scanOptions().match(OracleDataService.PUSHED_TASK_KEY_PREFIX + "*").count(CHUNK_SIZE).build();
+        int count = 0;
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                getFamily(cursor.next());
+                count++;
+            }
+            log.info("[DeDupe] 布隆过滤器预热完成, 共 {} 个防重 Set", count);
+        } catch (Exception e) {
+            // 预热失败不影响启动，首次使用时会再次懒加载
+            log.warn("[DeDupe] 启动时预热布隆过滤器失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 批量检查候选 key，返回 Redis Set 中尚不存在的 key (保持输入顺序)
+     *
+     * @param redisKey      防重 Set 的 Redis Key
+     * @param candidateKeys 候选 deDupeKey 集合 (null/空串会被忽略)
+     * @return 未推送过的 key 集合
+     */
+    public Set<String> findUnseenKeys(String redisKey, Collection<String> candidateKeys) {
+        Set<String> unseen = new LinkedHashSet<>();
+        if (candidateKeys == null || candidateKeys.isEmpty()) {
+            return unseen;
+        }
+
+        List<String> distinctKeys = new ArrayList<>(new LinkedHashSet<>(candidateKeys));
+        distinctKeys.removeIf(k -> k == null || k.isEmpty());
+
+        long start = System.currentTimeMillis();
+        KeyFamily family = bloomEnabled ? getFamily(redisKey) : null;
+        if (family != null && family.bypassed) {
+            family.checks.add(distinctKeys.size());
+            family.maybeSeen.add(distinctKeys.size());
+            family = null;
+        }
+        List<String> toConfirm = distinctKeys;
+        if (family != null) {
+            // 布隆过滤器判定为 "一定未推送" 的 key 直接放行，其余回 Redis 确认
+            toConfirm = new ArrayList<>();
+            PushedKeyBloomFilter filter = family.filter;
+            for (String key : distinctKeys) {
+                if (filter.mightContain(key)) {
+                    toConfirm.add(key);
+                } else {
+                    unseen.add(key);
+                }
+            }
+            family.checks.add(distinctKeys.size());
+            family.definitelyNew.add(distinctKeys.size() - toConfirm.size());
+            family.maybeSeen.add(toConfirm.size());
+        }
+
+        int confirmedNew = 0;
+        for (int i = 0; i < toConfirm.size(); i += CHUNK_SIZE) {
+            List<String> chunk = toConfirm.subList(i, Math.min(i + CHUNK_SIZE, toConfirm.size()));
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    for (String key : chunk) {
+                        operations.opsForSet().isMember(redisKey, key);
+                    }
+                    return null; // executePipelined 要求回调返回 null
+                }
+            });
+
+            for (int j = 0; j < chunk.size(); j++) {
+                Object member = j < results.size() ? results.get(j) : null;
+                if (!Boolean.TRUE.equals(member)) {
+                    unseen.add(chunk.get(j));
+                    confirmedNew++;
+                }
+            }
+        }
+        if (family != null) {
+            // "可能推送过" 但 Redis 中不存在 = 布隆过滤器误判
+            family.falsePositives.add(confirmedNew);
+        }
+
+        log.debug("[DeDupe] {} 检查 {} 个 key (回 Redis 确认 {} 个), 其中 {} 个未推送, 耗时 {} ms",
+                redisKey, distinctKeys.size(), toConfirm.size(), unseen.size(), System.currentTimeMillis() - start);
+        return unseen;
+    }
+
+    /**
+     * 推送成功后，批量写回已推送的 key 并刷新过期时间 (单个 pipeline)
+     *
+     * @param redisKey   防重 Set 的 Redis Key
+     * @param pushedKeys 已成功推送的 deDupeKey
+     * @param expiration 过期时间
+     */
+    public void markPushed(String redisKey, Collection<String> pushedKeys, Duration expiration) {
+        if (pushedKeys == null || pushedKeys.isEmpty()) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>(pushedKeys);
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (int i = 0; i < keys.size(); i += CHUNK_SIZE) {
+                    List<String> chunk = keys.subList(i, Math.min(i + CHUNK_SIZE, keys.size()));
+                    operations.opsForSet().add(redisKey, chunk.toArray());
+                }
+                operations.expire(redisKey, expiration);
+                return null;
+            }
+        });
+
+        // Redis 写入成功后再同步到本地过滤器
+        KeyFamily family = bloomEnabled ? families.get(redisKey) : null;
+        if (family != null && !family.bypassed) {
+            synchronized (family) {
+                for (String key : keys) {
+                    family.filter.put(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 清空所有本地过滤器 (与清空 Redis 防重缓存配合使用)
+     */
+    public void resetFilters() {
+        families.clear();
+        log.warn("[DeDupe] 已清空所有本地布隆过滤器");
+    }
+
+    /**
+     * 各防重 Set 的布隆过滤器统计 (位数、插入数、理论/实际误判率、命中率)
+     */
+    public Map<String, Object> getFilterStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", bloomEnabled);
+        for (Map.Entry<String, KeyFamily> entry : families.entrySet()) {
+            KeyFamily family = entry.getValue();
+            PushedKeyBloomFilter filter = family.filter;
+            long checks = family.checks.sum();
+            long maybeSeen = family.maybeSeen.sum();
+            long falsePositives = family.falsePositives.sum();
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("bypassed", family.bypassed);
+            item.put("bitSize", filter.getBitSize());
+            item.put("memoryBytes", filter.getBitSize() / 8);
+            item.put("hashCount", filter.getHashCount());
+            item.put("capacity", filter.getCapacity());
+            item.put("insertions", filter.getInsertions());
+            item.put("estimatedFpp", filter.estimatedFpp());
+            item.put("checks", checks);
+            item.put("definitelyNew", family.definitelyNew.sum());
+            item.put("maybeSeen", maybeSeen);
+            item.put("falsePositives", falsePositives);
+            item.put("observedFpRate", maybeSeen == 0 ? 0.0 : (double) falsePositives / maybeSeen);
+            item.put("hitRatio", checks == 0 ? 0.0 : (double) family.definitelyNew.sum() / checks);
+            stats.put(entry.getKey(), item);
+        }
+        return stats;
+    }
+
+    /**
+     * 获取 (必要时创建并预热) 指定防重 Set 的本地过滤器。
+     * 插入数超过容量时，从 Redis 重新构建以控制误判率 (过期的 key 不会被带入新过滤器)；
+     * 重建后仍饱和说明 Set 已超出过滤器上限，之后该 Set 不再使用过滤器，也不再重建。
+     */
+    private KeyFamily getFamily(String redisKey) {
+        KeyFamily family = families.computeIfAbsent(redisKey, k -> new KeyFamily());
+        if (family.bypassed || (family.warmed && !family.filter.isSaturated())) {
+            return family;
+        }
+        synchronized (family) {
+            if (!family.bypassed && (!family.warmed || family.filter.isSaturated())) {
+                family.filter = loadFromRedis(redisKey);
+                family.warmed = true;
+                if (family.filter.isSaturated()) {
+                    family.bypassed = true;
+                    log.warn("[DeDupe] 防重 Set {} 的 key 数 ({}) 超出布隆过滤器容量 ({})，该 Set 改为全部回 Redis 确认",
+                            redisKey, family.filter.getInsertions(), family.filter.getCapacity());
+                }
+            }
+        }
+        return family;
+    }
+
+    private PushedKeyBloomFilter loadFromRedis(String redisKey) {
+        long start = System.currentTimeMillis();
+        Long cardinality = redisTemplate.opsForSet().size(redisKey);
+        long expected = Math.max(bloomExpectedInsertions, cardinality == null ? 0 : cardinality * 2);
+        PushedKeyBloomFilter filter = new PushedKeyBloomFilter((int) Math.min(Integer.MAX_VALUE, expected), bloomFpp, MAX_FILTER_BITS);
+        ScanOptions options = ScanOptions.scanOptions().count(CHUNK_SIZE).build();
+        try (Cursor<Object> cursor = redisTemplate.opsForSet().scan(redisKey, options)) {
+            while (cursor.hasNext()) {
+                Object member = cursor.next();
+                if (member != null) {
+                    filter.put(member.toString());
+                }
+            }
+        }
+        log.info("[DeDupe] 从 Redis 预热布隆过滤器 {}: {} 个 key, {} bit, 耗时 {} ms",
+                redisKey, filter.getInsertions(), filter.getBitSize(), System.currentTimeMillis() - start);
+        return filter;
+    }
+
+    /**
+     * 单个防重 Set 对应的本地过滤器与命中统计
+     */
+    private class KeyFamily {
+        volatile PushedKeyBloomFilter filter = new PushedKeyBloomFilter(bloomExpectedInsertions, bloomFpp, MAX_FILTER_BITS);
+        volatile boolean warmed = false;
+        // 重建后仍饱和: 不再使用过滤器
+        volatile boolean bypassed = false;
+        final LongAdder checks = new LongAdder();
+        final LongAdder definitelyNew = new LongAdder();
+        final LongAdder maybeSeen = new LongAdder();
+        final LongAdder falsePositives = new LongAdder();
+    }
+}
@@ -0,0 +1,129 @@
+package com.lucksoft.qingdao.oracle.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * [新增] 推送防重键的本地布隆过滤器 (无锁, 内存有上限)
+ * 1. mightContain 返回 false 表示 "一定未推送过"，可以直接跳过 Redis 检查。
+ * 2. 返回 true 仅表示 "可能推送过"，需要再回 Redis 确认。
+ * 3. 位数组大小按 (预期插入数, 目标误判率) 计算，并受 maxBits 限制，保证单个过滤器内存有界。
+ * 4. 容量 = 实际位数下仍能满足目标误判率的最大插入数 (受 maxBits 限制时小于预期插入数)，超过即视为饱和。
+ */
+class PushedKeyBloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashCount;
+    private final long capacity;
+    private final LongAdder insertions = new LongAdder();
+
+    PushedKeyBloomFilter(int expectedInsertions, double fpp, long maxBits) {
+        int n = Math.max(expectedInsertions, 1);
+        double p = (fpp > 0 && fpp < 1) ? fpp : 0.01;
+
+        // m = -n * ln(p) / (ln2)^2, k = m / n * ln2
+        long optimalBits = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        long bits = Math.max(64, Math.min(optimalBits, maxBits));
+        int wordCount = (int) ((bits + 63) / 64);
+
+        this.words = new AtomicLongArray(wordCount);
+        this.bitSize = (long) wordCount * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+        // n = -m * (ln2)^2 / ln(p)
+        long bitsCapacity = (long) (bitSize * Math.log(2) * Math.log(2) / -Math.log(p));
+        this.capacity = Math.max(1, Math.min(n, bitsCapacity));
+    }
+
+    void put(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            int combined = h1 + i * h2;
+            if (combined < 0) {
+                combined = ~combined;
+            }
+            setBit(combined % bitSize);
+        }
+        insertions.increment();
+    }
+
+    boolean mightContain(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            int combined = h1 + i * h2;
+            if (combined < 0) {
+                combined = ~combined;
+            }
+            long index = combined % bitSize;
+            if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 插入数是否已超过容量 (超过后误判率会快速上升，应当重建)
+     */
+    boolean isSaturated() {
+        return insertions.sum() > capacity;
+    }
+
+    long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 根据当前插入数估算的理论误判率: (1 - e^(-k*n/m))^k
+     */
+    double estimatedFpp() {
+        double n = insertions.sum();
+        return Math.pow(1 - Math.exp(-hashCount * n / bitSize), hashCount);
+    }
+
+    long getBitSize() {
+        return bitSize;
+    }
+
+    int getHashCount() {
+        return hashCount;
+    }
+
+    long getInsertions() {
+        return insertions.sum();
+    }
+
+    private void setBit(long index) {
+        int wordIndex = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = words.get(wordIndex);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!words.compareAndSet(wordIndex, current, current | mask));
+    }
+
+    /**
+     * FNV-1a 64 位哈希 + murmur3 fmix64 扰动，拆成高/低 32 位做双重哈希
+     */
+    private static long hash64(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
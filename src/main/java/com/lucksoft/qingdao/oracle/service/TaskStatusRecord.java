@@ -0,0 +1,74 @@
+package com.lucksoft.qingdao.oracle.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * [新增] 异步任务状态记录 (不可变)
+ * 替代原先每次状态更新都新建的 HashMap，只保留结果摘要，不再持有完整的 pushedData 列表。
+ */
+public final class TaskStatusRecord {
+
+    private final String taskId;
+    private final AsyncTaskService.TaskStatus status;
+    private final String message;
+    private final long timestamp;
+    private final Map<String, Object> result;
+
+    public TaskStatusRecord(String taskId, AsyncTaskService.TaskStatus status, String message, Map<String, Object> resultData) {
+        this.taskId = taskId;
+        this.status = status;
+        this.message = message;
+        this.timestamp = System.currentTimeMillis();
+        this.result = summarize(resultData);
+    }
+
+    public String getTaskId() { return taskId; }
+    public AsyncTaskService.TaskStatus getStatus() { return status; }
+    public String getMessage() { return message; }
+    public long getTimestamp() { return timestamp; }
+
+    /**
+     * 是否为终态 (不会再被更新)
+     */
+    public boolean isTerminal() {
+        return status == AsyncTaskService.TaskStatus.SUCCESS
+                || status == AsyncTaskService.TaskStatus.FAILED
+                || status == AsyncTaskService.TaskStatus.SKIPPED;
+    }
+
+    /**
+     * 转换为接口返回的 Map 结构 (与原先 taskStatusMap 中的字段保持一致)
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> statusDetails = new HashMap<>();
+        statusDetails.put("taskId", taskId);
+        statusDetails.put("status", status.name());
+        statusDetails.put("message", message);
+        statusDetails.put("timestamp", timestamp);
+        if (result != null) {
+            statusDetails.put("result", result);
+        }
+        return statusDetails;
+    }
+
+    /**
+     * 结果摘要: 集合类型的值 (如 pushedData) 只保留其大小
+     */
+    private static Map<String, Object> summarize(Map<String, Object> resultData) {
+        if (resultData == null) {
+            return null;
+        }
+        Map<String, Object> summary = new HashMap<>();
+        for (Map.Entry<String, Object> entry : resultData.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Collection) {
+                summary.put(entry.getKey() + "Size", ((Collection<?>) value).size());
+            } else {
+                summary.put(entry.getKey(), value);
+            }
+        }
+        return summary;
+    }
+}
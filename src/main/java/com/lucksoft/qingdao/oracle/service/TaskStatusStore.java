@@ -0,0 +1,221 @@
+package com.lucksoft.qingdao.oracle.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * [新增] 有界的异步任务状态存储 (分段 LRU + TTL)
+ * 1. 按 taskId 哈希分为 SEGMENTS 段，每段是一个按访问顺序排列的 LinkedHashMap，各段独立加锁。
+ * 2. 总条数不超过 maxSize，超出时淘汰最久未访问的记录；超过 TTL 的记录在访问或定时清理时移除。
+ * 3. 被移除的终态记录 (SUCCESS/FAILED/SKIPPED) 可选写入 Redis，
+ *    使 /api/oracle/task-status/{taskId} 在内存淘汰后仍能查询到结果。
+ */
+@Service
+public class TaskStatusStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskStatusStore.class);
+    private static final String REDIS_KEY_PREFIX = "async:task_status:";
+    private static final int SEGMENTS = 16;
+
+    @Value("${async.task-status.max-size:20000}")
+    private int maxSize;
+
+    @Value("${async.task-status.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${async.task-status.redis-spill-enabled:true}")
+    private boolean redisSpillEnabled;
+
+    @Value("${async.task-status.redis-ttl-hours:24}")
+    private long redisTtlHours;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private Segment[] segments;
+    private long ttlMillis;
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        int perSegment = Math.max(1, maxSize / SEGMENTS);
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+    }
+
+    public void put(TaskStatusRecord record) {
+        TaskStatusRecord evicted = segmentFor(record.getTaskId()).put(record);
+        if (evicted != null) {
+            evictions.increment();
+            spill(evicted);
+        }
+    }
+
+    /**
+     * 先查内存，未命中 (或已过期) 时再查 Redis 中的终态记录
+     *
+     * @return 状态 Map；不存在时返回 null
+     */
+    public Map<String, Object> get(String taskId) {
+        Segment segment = segmentFor(taskId);
+        TaskStatusRecord record = segment.get(taskId);
+        if (record != null) {
+            if (!isExpired(record, System.currentTimeMillis())) {
+                return record.toMap();
+            }
+            if (segment.remove(taskId, record)) {
+                expirations.increment();
+                spill(record);
+            }
+        }
+
+        if (!redisSpillEnabled) {
+            return null;
+        }
+        try {
+            Object spilledStatus = redisTemplate.opsForValue().get(REDIS_KEY_PREFIX + taskId);
+            if (spilledStatus instanceof Map) {
+                redisHits.increment();
+                @SuppressWarnings("unchecked")
+                Map<String, Object> statusMap = (Map<String, Object>) spilledStatus;
+                return statusMap;
+            }
+        } catch (Exception e) {
+            log.warn("[TaskStatus] 从 Redis 读取任务 {} 状态失败: {}", taskId, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 定时清理过期记录 (每分钟)
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        int purged = 0;
+        for (Segment segment : segments) {
+            for (TaskStatusRecord record : segment.removeExpired(now)) {
+                expirations.increment();
+                spill(record);
+                purged++;
+            }
+        }
+        if (purged > 0) {
+            log.debug("[TaskStatus] 清理 {} 条过期任务状态", purged);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size);
+        stats.put("maxSize", maxSize);
+        stats.put("ttlMinutes", ttlMinutes);
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("spilledToRedis", spilled.sum());
+        stats.put("redisHits", redisHits.sum());
+        return stats;
+    }
+
+    private boolean isExpired(TaskStatusRecord record, long now) {
+        return now - record.getTimestamp() > ttlMillis;
+    }
+
+    /**
+     * 将移出内存的终态记录写入 Redis (非终态的记录直接丢弃)
+     */
+    private void spill(TaskStatusRecord record) {
+        if (!redisSpillEnabled || !record.isTerminal()) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(REDIS_KEY_PREFIX + record.getTaskId(), record.toMap(), Duration.ofHours(redisTtlHours));
+            spilled.increment();
+        } catch (Exception e) {
+            log.warn("[TaskStatus] 任务 {} 状态写入 Redis 失败: {}", record.getTaskId(), e.getMessage());
+        }
+    }
+
+    private Segment segmentFor(String taskId) {
+        int h = taskId.hashCode();
+        h ^= (h >>> 16);
+        return segments[(h & 0x7fffffff) % SEGMENTS];
+    }
+
+    /**
+     * 单个 LRU 分段 (访问顺序的 LinkedHashMap，由自身监视器保护)
+     */
+    private final class Segment {
+        private final int capacity;
+        private final LinkedHashMap<String, TaskStatusRecord> map = new LinkedHashMap<>(16, 0.75f, true);
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return 因容量超限被淘汰的记录 (没有则返回 null)
+         */
+        synchronized TaskStatusRecord put(TaskStatusRecord record) {
+            map.put(record.getTaskId(), record);
+            if (map.size() <= capacity) {
+                return null;
+            }
+            Iterator<TaskStatusRecord> it = map.values().iterator();
+            TaskStatusRecord eldest = it.next();
+            it.remove();
+            return eldest;
+        }
+
+        synchronized TaskStatusRecord get(String taskId) {
+            return map.get(taskId);
+        }
+
+        synchronized boolean remove(String taskId, TaskStatusRecord record) {
+            return map.remove(taskId, record);
+        }
+
+        synchronized List<TaskStatusRecord> removeExpired(long now) {
+            List<TaskStatusRecord> removed = new ArrayList<>();
+            Iterator<TaskStatusRecord> it = map.values().iterator();
+            while (it.hasNext()) {
+                TaskStatusRecord record = it.next();
+                if (isExpired(record, now)) {
+                    removed.add(record);
+                    it.remove();
+                }
+            }
+            return removed;
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
@@ -8,6 +8,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 /**
  * Kafka 接口 14: 停产检修完成情况 - 工作单元服务
  */
@@ -19,6 +21,9 @@ public class TmisHaltCompletionService {
     @Autowired
     private TmisHaltCompletionMapper mapper;
 
+    @Autowired
+    private FeedbackBatchWriter batchWriter;
+
     @Transactional
     public void processHaltCompletion(ProductionHaltCompletionFeedbackDTO dto) {
         try {
@@ -29,4 +34,18 @@ public class TmisHaltCompletionService {
             throw new RuntimeException("存储过程执行失败", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * [新增] 批量处理: 一个事务内以 PL/SQL 块调用存储过程
+     */
+    @Transactional
+    public void processHaltCompletionBatch(List<ProductionHaltCompletionFeedbackDTO> dtos) {
+        try {
+            log.info("批量调用存储过程 [tmis.FEEDBACK_COMPLETED_PRODUCTION_HALT_MAINTENANCE_TASK], 共 {} 条", dtos.size());
+            batchWriter.writeBatch(dtos, mapper::batchSaveHaltCompletion);
+        } catch (Exception e) {
+            log.error("存储过程 [tmis.FEEDBACK_COMPLETED_PRODUCTION_HALT_MAINTENANCE_TASK] 批量执行失败: {}", e.getMessage(), e);
+            throw new RuntimeException("存储过程批量执行失败", e);
+        }
+    }
+}
@@ -8,6 +8,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 /**
  * Kafka 接口 8: 轮保完成情况 - 工作单元服务
  */
@@ -19,6 +21,9 @@ public class TmisRotationalCompletionService {
     @Autowired
     private TmisRotationalCompletionMapper mapper;
 
+    @Autowired
+    private FeedbackBatchWriter batchWriter;
+
     @Transactional
     public void processRotationalCompletion(RotationalTaskCompletionFeedbackDTO dto) {
         try {
@@ -29,4 +34,18 @@ public class TmisRotationalCompletionService {
             throw new RuntimeException("存储过程执行失败", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * [新增] 批量处理: 一个事务内以 PL/SQL 块调用存储过程
+     */
+    @Transactional
+    public void processRotationalCompletionBatch(List<RotationalTaskCompletionFeedbackDTO> dtos) {
+        try {
+            log.info("批量调用存储过程 [tmis.FEEDBACK_COMPLETED_ROTATIONAL_TASK], 共 {} 条", dtos.size());
+            batchWriter.writeBatch(dtos, mapper::batchSaveRotationalCompletion);
+        } catch (Exception e) {
+            log.error("存储过程 [tmis.FEEDBACK_COMPLETED_ROTATIONAL_TASK] 批量执行失败: {}", e.getMessage(), e);
+            throw new RuntimeException("存储过程批量执行失败", e);
+        }
+    }
+}
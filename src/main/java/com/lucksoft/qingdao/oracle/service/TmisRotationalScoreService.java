@@ -8,6 +8,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 /**
  * Kafka 接口 9: 轮保得分 - 工作单元服务
  */
@@ -19,6 +21,9 @@ public class TmisRotationalScoreService {
     @Autowired
     private TmisRotationalScoreMapper mapper;
 
+    @Autowired
+    private FeedbackBatchWriter batchWriter;
+
     @Transactional
     public void processRotationalScore(RotationalTaskScoreFeedbackDTO dto) {
         try {
@@ -29,4 +34,18 @@ public class TmisRotationalScoreService {
             throw new RuntimeException("存储过程执行失败", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * [新增] 批量处理: 一个事务内以 PL/SQL 块调用存储过程
+     */
+    @Transactional
+    public void processRotationalScoreBatch(List<RotationalTaskScoreFeedbackDTO> dtos) {
+        try {
+            log.info("批量调用存储过程 [tmis.FEEDBACK_ROTATIONAL_TASK_SCORE], 共 {} 条", dtos.size());
+            batchWriter.writeBatch(dtos, mapper::batchSaveRotationalScore);
+        } catch (Exception e) {
+            log.error("存储过程 [tmis.FEEDBACK_ROTATIONAL_TASK_SCORE] 批量执行失败: {}", e.getMessage(), e);
+            throw new RuntimeException("存储过程批量执行失败", e);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.*;
 import java.io.File;
 import java.io.IOException;
 import java.net.URLEncoder;
+import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +40,34 @@ public class TmisLogController {
         return ResponseEntity.ok(GjjDebugLogger.getLogFiles(date));
     }
 
+    /**
+     * [新增] 按 topic / taskId / equipmentCode / 标题检索指定日期的日志 (条件之间为"且"关系，至少提供一个)
+     * 只读取命中条目所在的字节区间，不需要下载整个日志文件。
+     * @param date 日期字符串 (yyyy-MM-dd)，默认当天
+     * @param limit 最多返回条数 (最新的在前)，默认 100，上限 1000
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchLogs(@RequestParam(required = false) String date,
+                                        @RequestParam(required = false) String topic,
+                                        @RequestParam(required = false) String taskId,
+                                        @RequestParam(required = false) String equipmentCode,
+                                        @RequestParam(required = false) String title,
+                                        @RequestParam(defaultValue = "100") int limit) throws IOException {
+        if (isBlank(topic) && isBlank(taskId) && isBlank(equipmentCode) && isBlank(title)) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "请至少提供 topic、taskId、equipmentCode、title 中的一个条件"));
+        }
+        String day = isBlank(date) ? LocalDate.now().toString() : date.trim();
+        return ResponseEntity.ok(GjjDebugLogger.searchLogs(day, topic, taskId, equipmentCode, title, limit));
+    }
+
+    /**
+     * [新增] 异步日志写入状态 (队列深度、丢弃条数、已打开文件数)
+     */
+    @GetMapping("/writer-stats")
+    public ResponseEntity<Map<String, Object>> getWriterStats() {
+        return ResponseEntity.ok(GjjDebugLogger.getWriterStats());
+    }
+
     /**
      * 下载日志文件
      */
@@ -61,4 +90,8 @@ public class TmisLogController {
                 .contentLength(file.length())
                 .body(resource);
     }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
 }
\ No newline at end of file
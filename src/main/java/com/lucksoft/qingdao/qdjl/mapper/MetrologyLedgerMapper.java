@@ -7,6 +7,7 @@ import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Result;
 import org.apache.ibatis.annotations.Results;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
 
 import java.util.List;
 
@@ -16,34 +17,8 @@ import java.util.List;
 @Mapper
 public interface MetrologyLedgerMapper {
 
-    @Results(id = "metrologyLedgerResultMap", value = {
-            @Result(property = "indocno", column = "INDOCNO"),
-            @Result(property = "sjno", column = "SJNO"),
-            @Result(property = "sjname", column = "SJNAME"),
-            @Result(property = "istate", column = "ISTATE"),
-            @Result(property = "iqj", column = "IQJ"),
-            @Result(property = "izj", column = "IZJ"),
-            @Result(property = "sabc", column = "SABC"),
-            @Result(property = "sggxh", column = "SGGXH"),
-            @Result(property = "slevel", column = "SLEVEL"),
-            @Result(property = "slc", column = "SLC"),
-            @Result(property = "sproduct", column = "SPRODUCT"),
-            @Result(property = "dfactory", column = "DFACTORY"),
-            @Result(property = "sfactoryno", column = "SFACTORYNO"),
-            @Result(property = "splace", column = "SPLACE"),
-            @Result(property = "seq", column = "SEQ"),
-            @Result(property = "susedept", column = "SUSEDEPT"),
-            @Result(property = "suser", column = "SUSER"),
-            @Result(property = "sverifier", column = "SCHECKUSER"),
-            @Result(property = "sdefine1", column = "SDEFINE1"),
-            @Result(property = "scertificate", column = "SCERTIFICATE"),
-            @Result(property = "sbuytype", column = "SBUYTYPE"),
-            @Result(property = "dcheck", column = "DCHECK"),
-            @Result(property = "dupcheck", column = "DUPCHECK"),
-            @Result(property = "sconfirmbasis", column = "SCONFIRMBASIS"),
-            @Result(property = "snotes", column = "SNOTES")
-    })
-    @Select("<script>" +
+    // [新增] 提取为常量，供游标查询复用
+    String FIND_LEDGER_BY_CRITERIA_SQL = "<script>" +
             "SELECT * FROM V_JL_EQUIP " +
             "<where>" +
             "   NVL(IDEL, 0) = 0  and ISTATE != '备用'"+
@@ -73,9 +48,46 @@ public interface MetrologyLedgerMapper {
             "   </if>" +
             "</where>" +
             "ORDER BY SJNO" +
-            "</script>")
+            "</script>";
+
+    @Results(id = "metrologyLedgerResultMap", value = {
+            @Result(property = "indocno", column = "INDOCNO"),
+            @Result(property = "sjno", column = "SJNO"),
+            @Result(property = "sjname", column = "SJNAME"),
+            @Result(property = "istate", column = "ISTATE"),
+            @Result(property = "iqj", column = "IQJ"),
+            @Result(property = "izj", column = "IZJ"),
+            @Result(property = "sabc", column = "SABC"),
+            @Result(property = "sggxh", column = "SGGXH"),
+            @Result(property = "slevel", column = "SLEVEL"),
+            @Result(property = "slc", column = "SLC"),
+            @Result(property = "sproduct", column = "SPRODUCT"),
+            @Result(property = "dfactory", column = "DFACTORY"),
+            @Result(property = "sfactoryno", column = "SFACTORYNO"),
+            @Result(property = "splace", column = "SPLACE"),
+            @Result(property = "seq", column = "SEQ"),
+            @Result(property = "susedept", column = "SUSEDEPT"),
+            @Result(property = "suser", column = "SUSER"),
+            @Result(property = "sverifier", column = "SCHECKUSER"),
+            @Result(property = "sdefine1", column = "SDEFINE1"),
+            @Result(property = "scertificate", column = "SCERTIFICATE"),
+            @Result(property = "sbuytype", column = "SBUYTYPE"),
+            @Result(property = "dcheck", column = "DCHECK"),
+            @Result(property = "dupcheck", column = "DUPCHECK"),
+            @Result(property = "sconfirmbasis", column = "SCONFIRMBASIS"),
+            @Result(property = "snotes", column = "SNOTES")
+    })
+    @Select(FIND_LEDGER_BY_CRITERIA_SQL)
     List<MetrologyLedgerDTO> findLedgerByCriteria(LedgerQuery query);
 
+    /**
+     * [新增] 与 findLedgerByCriteria 相同的查询，以游标逐行返回 (流式导出用，需在事务内遍历)
+     */
+    @Select(FIND_LEDGER_BY_CRITERIA_SQL)
+    @ResultMap("metrologyLedgerResultMap")
+    @Options(fetchSize = 1000)
+    Cursor<MetrologyLedgerDTO> cursorLedgerByCriteria(LedgerQuery query);
+
     /**
      * 查询指定列的去重值，用于前端下拉补全。
      * 注意：columnName 由 Service 层校验，防止 SQL 注入。
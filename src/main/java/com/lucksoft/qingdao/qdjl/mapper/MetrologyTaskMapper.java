@@ -4,6 +4,7 @@ import com.lucksoft.qingdao.tmis.metrology.dto.MetrologyTaskDTO;
 import com.lucksoft.qingdao.tmis.metrology.dto.TaskQuery;
 import com.lucksoft.qingdao.tmis.metrology.dto.UpdateTaskRequestDTO;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.StatementType;
 
 import java.util.List;
@@ -13,36 +14,8 @@ import java.util.Map;
 public interface MetrologyTaskMapper {
 
 
-    @Results(id = "metrologyTaskResultMap", value = {
-            @Result(property = "indocno", column = "INDOCNO"),
-            @Result(property = "dupcheck", column = "DUPCHECK"),
-            @Result(property = "idjstate", column = "IDJSTATE"),
-            @Result(property = "sjno", column = "SJNO"),
-            @Result(property = "sjname", column = "SJNAME"),
-            @Result(property = "sggxh", column = "SGGXH"),
-            @Result(property = "sfactoryno", column = "SFACTORYNO"),
-            @Result(property = "splace", column = "SPLACE"),
-            @Result(property = "slevel", column = "SLEVEL"),
-            @Result(property = "istate", column = "ISTATE"),
-            @Result(property = "sabc", column = "SABC"),
-            @Result(property = "scheckresult", column = "SCHECKRESULT"),
-            @Result(property = "scheckremark", column = "SCHECKREMARK"),
-            @Result(property = "susedept", column = "SUSEDEPT"),
-            @Result(property = "slc", column = "SLC"),
-            @Result(property = "erpId", column = "SERPNO"),
-            @Result(property = "dinit", column = "DINIT"),
-            @Result(property = "sproduct", column = "SPRODUCT"),
-            @Result(property = "suser", column = "SUSER"),
-            @Result(property = "seq", column = "SEQ"),
-            @Result(property = "scheckuser", column = "SCHECKUSER"),
-            // [新增] 异常信息映射
-            @Result(property = "exceptionDesc", column = "EXCEPTION_DESC"),
-            @Result(property = "reportTime", column = "REPORT_TIME"),
-            @Result(property = "reporterName", column = "REPORTER_NAME"),
-            // [新增] 关联异常ID字段映射
-            @Result(property = "exceptionId", column = "EXCEPTION_ID")
-    })
-    @Select("<script>" +
+    // [新增] 提取为常量，供游标查询复用
+    String FIND_TASKS_BY_CRITERIA_SQL = "<script>" +
             "SELECT " +
             "   A.INDOCNO, A.DUPCHECK, A.IDJSTATE, A.SJNO, A.SJNAME, A.SGGXH, " +
             "   A.SFACTORYNO, A.SPLACE, A.SLEVEL, A.ISTATE, A.SABC, " +
@@ -87,9 +60,48 @@ public interface MetrologyTaskMapper {
 
             "</where>" +
             "ORDER BY A.DINIT DESC, A.IDJSTATE, A.SJNO" +
-            "</script>")
+            "</script>";
+
+    @Results(id = "metrologyTaskResultMap", value = {
+            @Result(property = "indocno", column = "INDOCNO"),
+            @Result(property = "dupcheck", column = "DUPCHECK"),
+            @Result(property = "idjstate", column = "IDJSTATE"),
+            @Result(property = "sjno", column = "SJNO"),
+            @Result(property = "sjname", column = "SJNAME"),
+            @Result(property = "sggxh", column = "SGGXH"),
+            @Result(property = "sfactoryno", column = "SFACTORYNO"),
+            @Result(property = "splace", column = "SPLACE"),
+            @Result(property = "slevel", column = "SLEVEL"),
+            @Result(property = "istate", column = "ISTATE"),
+            @Result(property = "sabc", column = "SABC"),
+            @Result(property = "scheckresult", column = "SCHECKRESULT"),
+            @Result(property = "scheckremark", column = "SCHECKREMARK"),
+            @Result(property = "susedept", column = "SUSEDEPT"),
+            @Result(property = "slc", column = "SLC"),
+            @Result(property = "erpId", column = "SERPNO"),
+            @Result(property = "dinit", column = "DINIT"),
+            @Result(property = "sproduct", column = "SPRODUCT"),
+            @Result(property = "suser", column = "SUSER"),
+            @Result(property = "seq", column = "SEQ"),
+            @Result(property = "scheckuser", column = "SCHECKUSER"),
+            // [新增] 异常信息映射
+            @Result(property = "exceptionDesc", column = "EXCEPTION_DESC"),
+            @Result(property = "reportTime", column = "REPORT_TIME"),
+            @Result(property = "reporterName", column = "REPORTER_NAME"),
+            // [新增] 关联异常ID字段映射
+            @Result(property = "exceptionId", column = "EXCEPTION_ID")
+    })
+    @Select(FIND_TASKS_BY_CRITERIA_SQL)
     List<MetrologyTaskDTO> findTasksByCriteria(TaskQuery query);
 
+    /**
+     * [新增] 与 findTasksByCriteria 相同的查询，以游标逐行返回 (流式导出用，需在事务内遍历)
+     */
+    @Select(FIND_TASKS_BY_CRITERIA_SQL)
+    @ResultMap("metrologyTaskResultMap")
+    @Options(fetchSize = 1000)
+    Cursor<MetrologyTaskDTO> cursorTasksByCriteria(TaskQuery query);
+
     @Update("<script>" +
             "UPDATE JL_EQUIP_DXJ " +
             "<set>" +
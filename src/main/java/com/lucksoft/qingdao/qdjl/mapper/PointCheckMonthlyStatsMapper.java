@@ -0,0 +1,142 @@
+package com.lucksoft.qingdao.qdjl.mapper;
+
+import com.lucksoft.qingdao.tmis.metrology.dto.PointCheckAggControlDTO;
+import org.apache.ibatis.annotations.DeleteProvider;
+import org.apache.ibatis.annotations.InsertProvider;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.builder.annotation.ProviderMethodResolver;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * [新增] 点检统计月度汇总表 (JL_PC_STATS_MONTHLY) 的维护
+ * 汇总表按 (部门, ABC分类, 年月) 保存应检/已检/正常/异常数，由 PointCheckAggregateService 按月重算。
+ * 控制行 JL_PC_STATS_CONTROL (ID = 1) 保存各实例共享的水位，并作为刷新时的行锁。
+ */
+@Mapper
+public interface PointCheckMonthlyStatsMapper {
+
+    String CONTROL_COLUMNS = "WATERMARK AS watermark, LAST_INDOCNO AS lastIndocno, FROM_YEAR AS fromYear, TO_YEAR AS toYear, " +
+            "REBUILD_TIME AS rebuildTime, SYSDATE AS dbTime FROM JL_PC_STATS_CONTROL WHERE ID = 1";
+
+    /**
+     * 锁定控制行 (FOR UPDATE，事务结束释放): 多个实例的全量重算/增量刷新依次执行。
+     * 返回的 dbTime 是数据库当前时间，作为本次刷新的水位 (避免应用服务器与数据库时钟不一致)。
+     */
+    @Select("SELECT " + CONTROL_COLUMNS + " FOR UPDATE")
+    PointCheckAggControlDTO lockControl();
+
+    /**
+     * 全量重算后更新控制行: 水位、覆盖年份和重算时间
+     */
+    @Update("UPDATE JL_PC_STATS_CONTROL SET WATERMARK = #{watermark}, LAST_INDOCNO = #{lastIndocno}, " +
+            "FROM_YEAR = #{fromYear}, TO_YEAR = #{toYear}, REBUILD_TIME = SYSDATE, REFRESH_TIME = SYSDATE WHERE ID = 1")
+    int markRebuilt(@Param("watermark") Date watermark, @Param("lastIndocno") long lastIndocno,
+                    @Param("fromYear") int fromYear, @Param("toYear") int toYear);
+
+    /**
+     * 增量刷新后推进水位
+     */
+    @Update("UPDATE JL_PC_STATS_CONTROL SET WATERMARK = #{watermark}, LAST_INDOCNO = #{lastIndocno}, REFRESH_TIME = SYSDATE WHERE ID = 1")
+    int updateWatermark(@Param("watermark") Date watermark, @Param("lastIndocno") long lastIndocno);
+
+    @Select("SELECT NVL(MAX(INDOCNO), 0) FROM JL_EQUIP_DXJ")
+    long findMaxPlanIndocno();
+
+    /**
+     * 自 since 以来点检过 (DCHECK) 或新增 (INDOCNO 大于 afterIndocno) 的计划所在月份 (YYYYMM)
+     * [已修改] 两个条件分成两段 UNION (同时去重)，分别按 DCHECK 索引和 INDOCNO 做范围扫描，不再因 OR 退化为全表扫描
+     */
+    @Select("SELECT TO_CHAR(DINIT, 'YYYYMM') FROM JL_EQUIP_DXJ WHERE DCHECK >= #{since} AND DINIT IS NOT NULL " +
+            "UNION " +
+            "SELECT TO_CHAR(DINIT, 'YYYYMM') FROM JL_EQUIP_DXJ WHERE INDOCNO > #{afterIndocno} AND DINIT IS NOT NULL")
+    List<String> findChangedPlanMonths(@Param("since") Date since, @Param("afterIndocno") long afterIndocno);
+
+    /**
+     * 自 since 以来写入的检定记录所在月份 (YYYYMM)
+     */
+    @Select("SELECT DISTINCT TO_CHAR(DWUSER, 'YYYYMM') FROM JL_EQDXJLOG WHERE DWUSER >= #{since}")
+    List<String> findChangedLogMonths(@Param("since") Date since);
+
+    /**
+     * 指定计划所在月份 (YYYYMM)，ids 不超过 1000 个
+     */
+    @Select("<script>" +
+            "SELECT DISTINCT TO_CHAR(DINIT, 'YYYYMM') FROM JL_EQUIP_DXJ WHERE DINIT IS NOT NULL AND INDOCNO IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<String> findPlanMonthsByIds(@Param("ids") List<Long> ids);
+
+    @DeleteProvider(type = MonthlyStatsSqlProvider.class, method = "deleteMonths")
+    int deleteMonths(@Param("months") List<YearMonth> months);
+
+    /**
+     * 从明细表重算指定月份并写入汇总表 (调用前先 deleteMonths)
+     */
+    @InsertProvider(type = MonthlyStatsSqlProvider.class, method = "insertMonths")
+    int insertMonths(@Param("months") List<YearMonth> months);
+
+    class MonthlyStatsSqlProvider implements ProviderMethodResolver {
+
+        public String deleteMonths(Map<String, Object> params) {
+            return "DELETE FROM JL_PC_STATS_MONTHLY WHERE YM IN (" +
+                    months(params).stream().map(m -> "'" + ym(m) + "'").collect(Collectors.joining(", ")) + ")";
+        }
+
+        public String insertMonths(Map<String, Object> params) {
+            List<YearMonth> months = months(params);
+            return "INSERT INTO JL_PC_STATS_MONTHLY (IDEPT, SABC, YM, PLANNED_CNT, DONE_CNT, NORMAL_CNT, ABNORMAL_CNT, REFRESH_TIME) " +
+                    "SELECT T.IDEPT, T.SABC, T.YM, SUM(T.PLANNED_CNT), SUM(T.DONE_CNT), SUM(T.NORMAL_CNT), SUM(T.ABNORMAL_CNT), SYSDATE FROM (" +
+                    " SELECT C.IUSEDEPT AS IDEPT, C.SABC, TO_CHAR(C.DINIT, 'YYYYMM') AS YM, 1 AS PLANNED_CNT," +
+                    " CASE WHEN NVL(C.IDEL,0)=0 AND C.IDJSTATE=1 THEN 1 ELSE 0 END AS DONE_CNT, 0 AS NORMAL_CNT, 0 AS ABNORMAL_CNT" +
+                    " FROM JL_EQUIP_DXJ C" +
+                    " WHERE C.ISTATE = 1 AND C.SABC IN (1, 2, 3) AND C.IUSEDEPT IS NOT NULL AND (" + monthRanges("C.DINIT", months) + ")" +
+                    " UNION ALL" +
+                    " SELECT C.IDEPT, C.SABC, TO_CHAR(C.DWUSER, 'YYYYMM'), 0, 0," +
+                    " CASE WHEN C.IRESULT=1 THEN 1 ELSE 0 END, CASE WHEN C.IRESULT=2 THEN 1 ELSE 0 END" +
+                    " FROM JL_EQDXJLOG C" +
+                    " WHERE NVL(C.IDEL,0) = 0 AND C.SABC IN (1, 2, 3) AND C.IRESULT IN (1, 2) AND C.IDEPT IS NOT NULL AND (" + monthRanges("C.DWUSER", months) + ")" +
+                    ") T GROUP BY T.IDEPT, T.SABC, T.YM";
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<YearMonth> months(Map<String, Object> params) {
+            List<YearMonth> months = (List<YearMonth>) params.get("months");
+            if (months == null || months.isEmpty()) {
+                throw new IllegalArgumentException("刷新月份不能为空");
+            }
+            return months.stream().distinct().sorted().collect(Collectors.toList());
+        }
+
+        /**
+         * 把排好序的月份合并为连续区间，每段生成一个半开的日期范围条件 (列上不加函数)
+         */
+        private static String monthRanges(String column, List<YearMonth> sortedMonths) {
+            List<String> ranges = new ArrayList<>();
+            YearMonth start = sortedMonths.get(0);
+            YearMonth prev = start;
+            for (int i = 1; i <= sortedMonths.size(); i++) {
+                YearMonth m = i < sortedMonths.size() ? sortedMonths.get(i) : null;
+                if (m != null && m.equals(prev.plusMonths(1))) {
+                    prev = m;
+                    continue;
+                }
+                ranges.add("(" + column + " >= DATE '" + start.atDay(1) + "' AND " + column + " < DATE '" + prev.plusMonths(1).atDay(1) + "')");
+                start = prev = m;
+            }
+            return String.join(" OR ", ranges);
+        }
+
+        private static String ym(YearMonth m) {
+            return String.format("%04d%02d", m.getYear(), m.getMonthValue());
+        }
+    }
+}
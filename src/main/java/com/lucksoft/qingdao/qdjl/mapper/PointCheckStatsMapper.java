@@ -3,15 +3,19 @@ package com.lucksoft.qingdao.qdjl.mapper;
 import com.lucksoft.qingdao.tmis.metrology.dto.PointCheckListItemDTO;
 import com.lucksoft.qingdao.tmis.metrology.dto.PointCheckQuery;
 import com.lucksoft.qingdao.tmis.metrology.dto.PointCheckRawStatsDTO;
+import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.ResultMap;
 import org.apache.ibatis.annotations.Results;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.SelectProvider;
+import org.apache.ibatis.annotations.Update;
 import org.apache.ibatis.builder.annotation.ProviderMethodResolver;
 import org.apache.ibatis.jdbc.SQL;
 
-
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -27,7 +31,7 @@ public interface PointCheckStatsMapper {
      * 我们不再需要 @Page(count=false) 注解。
      */
     @SelectProvider(type = PointCheckStatsSqlProvider.class, method = "getRawStatistics")
-    @Results({
+    @Results(id = "pointCheckRawStatsMap", value = {
             @Result(property = "iusedept", column = "IUSEDEPT"),
             @Result(property = "susedept", column = "SUSEDEPT"),
             // --- 周期 1 ---
@@ -72,6 +76,35 @@ public interface PointCheckStatsMapper {
     @SelectProvider(type = PointCheckStatsSqlProvider.class, method = "getRawStatisticsCount")
     long getRawStatistics_COUNT(PointCheckQuery query);
 
+    /**
+     * [新增] 集合式统计: 结果与 getRawStatistics 相同，但每张明细表只按部门分组扫描一次 (见 buildGroupedStatsSql)
+     * 不分页，调用前需 PageHelper.clearPage()
+     */
+    @SelectProvider(type = PointCheckStatsSqlProvider.class, method = "getRawStatisticsGrouped")
+    @ResultMap("pointCheckRawStatsMap")
+    List<PointCheckRawStatsDTO> getRawStatisticsGrouped(PointCheckQuery query);
+
+    /**
+     * [新增] 从月度汇总表 JL_PC_STATS_MONTHLY 读取统计，结果与 getRawStatistics 相同 (汇总表需覆盖所查年份)
+     * 不分页，调用前需 PageHelper.clearPage()
+     */
+    @SelectProvider(type = PointCheckStatsSqlProvider.class, method = "getRawStatisticsFromAggregate")
+    @ResultMap("pointCheckRawStatsMap")
+    List<PointCheckRawStatsDTO> getRawStatisticsFromAggregate(PointCheckQuery query);
+
+    /**
+     * [新增] 生成执行计划 (写入 PLAN_TABLE)，仅用于统计 SQL 的基准对比
+     * statementId 和 sql 直接拼接，调用方必须保证其中没有外部输入
+     */
+    @Update("EXPLAIN PLAN SET STATEMENT_ID = '${statementId}' FOR ${sql}")
+    void explainPlan(@Param("statementId") String statementId, @Param("sql") String sql);
+
+    @Select("SELECT PLAN_TABLE_OUTPUT FROM TABLE(DBMS_XPLAN.DISPLAY('PLAN_TABLE', #{statementId}, 'TYPICAL'))")
+    List<String> displayPlan(@Param("statementId") String statementId);
+
+    @Delete("DELETE FROM PLAN_TABLE WHERE STATEMENT_ID = #{statementId}")
+    void deletePlan(@Param("statementId") String statementId);
+
 
     /**
      * 根据动态条件查询点检列表
@@ -110,6 +143,9 @@ public interface PointCheckStatsMapper {
      */
     class PointCheckStatsSqlProvider implements ProviderMethodResolver {
 
+        // 按用户可见部门过滤 (别名 V 为 JL_EQUIP)
+        static final String DEPT_SCOPE_FILTER = "EXISTS (SELECT 1 FROM USERS B WHERE B.ID=#{userId} AND INSTR(decode('', 'true', ','||B.IDEPTSEE||',', '', ','||B.DEP_SCOPE_ID||','), ','||V.IUSEDEPT||',') > 0)";
+
         // --- 统计SQL构建 ---
         public String getRawStatistics(PointCheckQuery query) {
             String category = query.getCategory() != null ? query.getCategory().toUpperCase() : "A";
@@ -125,6 +161,8 @@ public interface PointCheckStatsMapper {
         }
 
         private String buildStatsSql(int sabc, int periods, int monthStep, String year, Long userId) {
+            // [已修改] 年份直接拼接进子查询，先做格式校验
+            parseYearStart(year);
             SQL sql = new SQL();
             StringBuilder selects = new StringBuilder("DISTINCT V.IUSEDEPT, V.SUSEDEPT ");
 
@@ -150,12 +188,161 @@ public interface PointCheckStatsMapper {
             // [修复 3] 确保统计SQL也包含用户ID过滤
             if (userId != null) {
                 // 注意: 此处的用户权限过滤逻辑需要根据您的实际USERS表和权限设计进行调整
-                sql.WHERE("EXISTS (SELECT 1 FROM USERS B WHERE B.ID=#{userId} AND INSTR(decode('', 'true', ','||B.IDEPTSEE||',', '', ','||B.DEP_SCOPE_ID||','), ','||V.IUSEDEPT||',') > 0)");
+                sql.WHERE(DEPT_SCOPE_FILTER);
             }
 
             return "SELECT A.* FROM (" + sql.toString() + ") A ORDER BY A.IUSEDEPT";
         }
 
+        /**
+         * [新增] 集合式统计SQL，周期划分与 getRawStatistics 相同
+         */
+        public String getRawStatisticsGrouped(PointCheckQuery query) {
+            String category = query.getCategory() != null ? query.getCategory().toUpperCase() : "A";
+            switch (category) {
+                case "B":
+                    return buildGroupedStatsSql(2, 4, 3, query.getYear(), query.getUserId());
+                case "C":
+                    return buildGroupedStatsSql(3, 2, 6, query.getYear(), query.getUserId());
+                case "A":
+                default:
+                    return buildGroupedStatsSql(1, 6, 2, query.getYear(), query.getUserId());
+            }
+        }
+
+        /**
+         * [新增] buildStatsSql 对 JL_EQUIP 的每个部门、每个周期各执行 4 个关联子查询 (A类 24 个)，
+         * 且 TO_CHAR(DINIT,'YYYYMM') 使日期列上的索引失效。这里改为:
+         * 1. JL_EQUIP_DXJ 和 JL_EQDXJLOG 各扫描一次当年数据 (日期列直接与 DATE 常量比较，可走索引/分区裁剪)，
+         *    GROUP BY 部门，用 SUM(CASE ...) 把每行计入所属周期。
+         * 2. 部门列表 (含权限过滤) 左连接两个分组结果，没有数据的部门计为 0。
+         * 各计数的口径与原SQL逐项一致: 应检只统计周期首月的计划 (不过滤 IDEL)，已检/正常/异常统计整个周期。
+         */
+        private String buildGroupedStatsSql(int sabc, int periods, int monthStep, String year, Long userId) {
+            LocalDate yearStart = parseYearStart(year);
+            LocalDate yearEnd = yearStart.plusMonths((long) periods * monthStep);
+
+            SQL plan = new SQL();
+            plan.SELECT("C.IUSEDEPT");
+            SQL logs = new SQL();
+            logs.SELECT("C.IDEPT");
+            StringBuilder selects = new StringBuilder("D.IUSEDEPT, D.SUSEDEPT");
+
+            for (int i = 0; i < periods; i++) {
+                LocalDate from = yearStart.plusMonths((long) i * monthStep);
+                LocalDate to = from.plusMonths(monthStep);
+                String periodAlias = "F" + (i + 1);
+
+                plan.SELECT(String.format("SUM(CASE WHEN %s THEN 1 ELSE 0 END) AS %s", dateRange("C.DINIT", from, from.plusMonths(1)), periodAlias));
+                plan.SELECT(String.format("SUM(CASE WHEN NVL(C.IDEL,0)=0 AND C.IDJSTATE=1 AND %s THEN 1 ELSE 0 END) AS %sA1", dateRange("C.DINIT", from, to), periodAlias));
+                logs.SELECT(String.format("SUM(CASE WHEN C.IRESULT=1 AND %s THEN 1 ELSE 0 END) AS %sA2", dateRange("C.DWUSER", from, to), periodAlias));
+                logs.SELECT(String.format("SUM(CASE WHEN C.IRESULT=2 AND %s THEN 1 ELSE 0 END) AS %sA3", dateRange("C.DWUSER", from, to), periodAlias));
+
+                selects.append(String.format(", NVL(P.%1$s,0) AS %1$s, NVL(P.%1$sA1,0) AS %1$sA1, NVL(L.%1$sA2,0) AS %1$sA2, NVL(L.%1$sA3,0) AS %1$sA3", periodAlias));
+            }
+
+            plan.FROM("JL_EQUIP_DXJ C");
+            plan.WHERE("C.SABC = " + sabc, "C.ISTATE = 1", dateRange("C.DINIT", yearStart, yearEnd));
+            plan.GROUP_BY("C.IUSEDEPT");
+
+            logs.FROM("JL_EQDXJLOG C");
+            logs.WHERE("NVL(C.IDEL,0) = 0", "C.SABC = " + sabc, "C.IRESULT IN (1, 2)", dateRange("C.DWUSER", yearStart, yearEnd));
+            logs.GROUP_BY("C.IDEPT");
+
+            SQL depts = new SQL();
+            depts.SELECT_DISTINCT("V.IUSEDEPT, V.SUSEDEPT");
+            depts.FROM("JL_EQUIP V");
+            depts.WHERE("V.istate = 1", "NVL(V.IDEL,0) = 0", "nvl(length(V.IUSEDEPT),0) > 0");
+            if (userId != null) {
+                depts.WHERE(DEPT_SCOPE_FILTER);
+            }
+
+            return "SELECT " + selects + " FROM (" + depts + ") D" +
+                    " LEFT JOIN (" + plan + ") P ON P.IUSEDEPT = D.IUSEDEPT" +
+                    " LEFT JOIN (" + logs + ") L ON L.IDEPT = D.IUSEDEPT" +
+                    " ORDER BY D.IUSEDEPT";
+        }
+
+        /**
+         * [新增] 汇总表统计SQL，周期划分与 getRawStatistics 相同
+         */
+        public String getRawStatisticsFromAggregate(PointCheckQuery query) {
+            String category = query.getCategory() != null ? query.getCategory().toUpperCase() : "A";
+            switch (category) {
+                case "B":
+                    return buildAggregateStatsSql(2, 4, 3, query.getYear(), query.getUserId());
+                case "C":
+                    return buildAggregateStatsSql(3, 2, 6, query.getYear(), query.getUserId());
+                case "A":
+                default:
+                    return buildAggregateStatsSql(1, 6, 2, query.getYear(), query.getUserId());
+            }
+        }
+
+        /**
+         * [新增] 汇总表每个 (部门, 分类, 年月) 一行，一个分类一年最多 12 x 部门数 行。
+         * 应检取周期首月的 PLANNED_CNT，已检/正常/异常取整个周期各月之和，与 buildStatsSql 的口径一致。
+         */
+        private String buildAggregateStatsSql(int sabc, int periods, int monthStep, String year, Long userId) {
+            LocalDate yearStart = parseYearStart(year);
+
+            SQL agg = new SQL();
+            agg.SELECT("A.IDEPT");
+            StringBuilder selects = new StringBuilder("D.IUSEDEPT, D.SUSEDEPT");
+
+            for (int i = 0; i < periods; i++) {
+                LocalDate from = yearStart.plusMonths((long) i * monthStep);
+                String first = yearMonth(from);
+                String last = yearMonth(from.plusMonths(monthStep - 1));
+                String periodAlias = "F" + (i + 1);
+
+                agg.SELECT(String.format("SUM(CASE WHEN A.YM = '%s' THEN A.PLANNED_CNT ELSE 0 END) AS %s", first, periodAlias));
+                agg.SELECT(String.format("SUM(CASE WHEN A.YM BETWEEN '%s' AND '%s' THEN A.DONE_CNT ELSE 0 END) AS %sA1", first, last, periodAlias));
+                agg.SELECT(String.format("SUM(CASE WHEN A.YM BETWEEN '%s' AND '%s' THEN A.NORMAL_CNT ELSE 0 END) AS %sA2", first, last, periodAlias));
+                agg.SELECT(String.format("SUM(CASE WHEN A.YM BETWEEN '%s' AND '%s' THEN A.ABNORMAL_CNT ELSE 0 END) AS %sA3", first, last, periodAlias));
+
+                selects.append(String.format(", NVL(S.%1$s,0) AS %1$s, NVL(S.%1$sA1,0) AS %1$sA1, NVL(S.%1$sA2,0) AS %1$sA2, NVL(S.%1$sA3,0) AS %1$sA3", periodAlias));
+            }
+
+            agg.FROM("JL_PC_STATS_MONTHLY A");
+            agg.WHERE("A.SABC = " + sabc, String.format("A.YM BETWEEN '%s' AND '%s'",
+                    yearMonth(yearStart), yearMonth(yearStart.plusMonths((long) periods * monthStep - 1))));
+            agg.GROUP_BY("A.IDEPT");
+
+            SQL depts = new SQL();
+            depts.SELECT_DISTINCT("V.IUSEDEPT, V.SUSEDEPT");
+            depts.FROM("JL_EQUIP V");
+            depts.WHERE("V.istate = 1", "NVL(V.IDEL,0) = 0", "nvl(length(V.IUSEDEPT),0) > 0");
+            if (userId != null) {
+                depts.WHERE(DEPT_SCOPE_FILTER);
+            }
+
+            return "SELECT " + selects + " FROM (" + depts + ") D" +
+                    " LEFT JOIN (" + agg + ") S ON S.IDEPT = D.IUSEDEPT" +
+                    " ORDER BY D.IUSEDEPT";
+        }
+
+        private static String yearMonth(LocalDate date) {
+            return String.format("%04d%02d", date.getYear(), date.getMonthValue());
+        }
+
+        /**
+         * 半开区间 [from, to) 的日期条件，列上不加函数
+         */
+        private static String dateRange(String column, LocalDate from, LocalDate to) {
+            return column + " >= DATE '" + from + "' AND " + column + " < DATE '" + to + "'";
+        }
+
+        /**
+         * 年份只接受 4 位数字 (会直接拼入SQL)
+         */
+        private static LocalDate parseYearStart(String year) {
+            if (year == null || !year.matches("\\d{4}")) {
+                throw new IllegalArgumentException("统计年份格式不正确: " + year);
+            }
+            return LocalDate.of(Integer.parseInt(year), 1, 1);
+        }
+
         /**
          * [修复 4]
          * 为 getRawStatistics_COUNT 接口提供一个快速的、替换的 COUNT SQL。
@@ -169,7 +356,7 @@ public interface PointCheckStatsMapper {
 
             // [修复 5] 确保 COUNT SQL 也包含用户ID过滤
             if (query.getUserId() != null) {
-                sql.WHERE("EXISTS (SELECT 1 FROM USERS B WHERE B.ID=#{userId} AND INSTR(decode('', 'true', ','||B.IDEPTSEE||',', '', ','||B.DEP_SCOPE_ID||','), ','||V.IUSEDEPT||',') > 0)");
+                sql.WHERE(DEPT_SCOPE_FILTER);
             }
 
             return sql.toString();
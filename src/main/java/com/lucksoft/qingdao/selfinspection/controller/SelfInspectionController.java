@@ -8,11 +8,13 @@ import com.lucksoft.qingdao.selfinspection.entity.ZjzkStandardFile;
 import com.lucksoft.qingdao.selfinspection.entity.ZjzkTask;
 import com.lucksoft.qingdao.selfinspection.entity.ZjzkTaskDetail;
 import com.lucksoft.qingdao.selfinspection.entity.ZjzkTool;
+import com.lucksoft.qingdao.selfinspection.service.LedgerBulkImporter;
 import com.lucksoft.qingdao.selfinspection.service.SelfInspectionService;
 import com.lucksoft.qingdao.system.dto.UserInfo;
 import com.lucksoft.qingdao.system.entity.User;
 import com.lucksoft.qingdao.system.util.AuthUtil;
 import com.lucksoft.qingdao.tmis.dto.PageResult;
+import com.lucksoft.qingdao.tmis.export.service.ExportJobService;
 import com.lucksoft.qingdao.tmis.metrology.ExportColumn;
 import com.lucksoft.qingdao.tmis.util.ExcelExportUtil;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -21,7 +23,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -45,6 +49,25 @@ public class SelfInspectionController {
 
     private static final Logger log = LoggerFactory.getLogger(SelfInspectionController.class);
 
+    // 台账导出列
+    private static final List<ExportColumn> LEDGER_EXPORT_COLUMNS = Arrays.asList(
+            new ExportColumn("sdept", "车间"),
+            new ExportColumn("sname", "名称"),
+            new ExportColumn("sjx", "所属机型"),
+            new ExportColumn("sfname", "所属设备"),
+            new ExportColumn("sbname", "主数据名称"),
+            new ExportColumn("spmcode", "PM编码"),
+            new ExportColumn("sazwz", "安装位置"),
+            new ExportColumn("scj", "厂家"),
+            new ExportColumn("sxh", "规格型号"),
+            new ExportColumn("syl", "测量原理"),
+            new ExportColumn("sddno", "订单号"),
+            new ExportColumn("szcno", "资产编码"),
+            new ExportColumn("dtime", "初次使用时间"),
+            new ExportColumn("ssm", "使用寿命"),
+            new ExportColumn("sstepstate", "状态")
+    );
+
     @Autowired
     private SelfInspectionService siService;
 
@@ -54,6 +77,9 @@ public class SelfInspectionController {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private ExportJobService exportJobService;
+
     // ==================================================================================
     // 1. 自检自控台账 (Ledger) 接口
     // ==================================================================================
@@ -217,24 +243,53 @@ public class SelfInspectionController {
         log.info("收到统计导出请求 /api/si/stats/export. Payload: {}", payload);
 
         // 1. 解析列配置
+        List<ExportColumn> columns = takeExportColumns(payload);
+
+        // 2. 查询并导出 Excel
+        // [已修改] 游标逐行读取并直接写入响应流，不再先取出全部数据
+        ExcelExportUtil.<Map<String, Object>>streamExport(response, "点检统计", columns,
+                sink -> siService.streamStatsForExport(payload, sink));
+    }
+
+    /**
+     * [新增] 异步导出点检统计报表: 立即返回任务信息，通过 /api/export/jobs/{jobId} 查询进度并下载
+     */
+    @PostMapping("/stats/export/async")
+    public ResponseEntity<?> exportStatsListAsync(@RequestBody Map<String, Object> payload) {
+        log.info("收到统计异步导出请求 /api/si/stats/export/async. Payload: {}", payload);
+        List<ExportColumn> columns = takeExportColumns(payload);
+        return this.<Map<String, Object>>submitExportJob("si-stats", payload, "点检统计", columns,
+                sink -> siService.streamStatsForExport(payload, sink));
+    }
+
+    /**
+     * 从请求体中取出列配置 (并移除，以防止干扰查询参数)
+     */
+    private List<ExportColumn> takeExportColumns(Map<String, Object> payload) {
         List<ExportColumn> columns = null;
         if (payload.containsKey("columns")) {
             columns = objectMapper.convertValue(payload.get("columns"), new TypeReference<List<ExportColumn>>() {});
-            payload.remove("columns"); // 移除以防止干扰查询参数
+            payload.remove("columns");
         }
 
         if (columns == null || columns.isEmpty()) {
             throw new IllegalArgumentException("导出列配置不能为空");
         }
+        return columns;
+    }
 
-        // 2. 查询数据 (不分页)
-        List<Map<String, Object>> dataList = siService.getStatsListForExport(payload);
-
-        // 3. 导出 Excel
-        // [修复] 这里将 List<Map<String, Object>> 强转为 List<Map>，或者直接传入 raw type
-        // Java 编译器无法自动将 List<Map<String, Object>> 视为 List<Map> (泛型不变性)
-        // 传入 (List) dataList 是最直接的兼容方式
-        ExcelExportUtil.export(response, "点检统计", columns, (List) dataList, Map.class);
+    /**
+     * [新增] 提交异步导出任务，导出线程池已满时返回 429
+     */
+    private <T> ResponseEntity<?> submitExportJob(String type, Object params, String fileName, List<ExportColumn> columns,
+                                                  ExcelExportUtil.RowProducer<T> producer) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(exportJobService.submit(type, params, fileName, columns, producer));
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Collections.singletonMap("message", "导出任务较多，请稍后再试。"));
+        }
     }
 
     /**
@@ -250,36 +305,44 @@ public class SelfInspectionController {
     // [新增] 导出台账
     @GetMapping("/ledger/export")
     public void exportLedger(@RequestParam Map<String, Object> params, HttpServletResponse response) throws IOException {
-        List<ZjzkTool> list = siService.getLedgerListForExport(params);
-
-        List<ExportColumn> columns = Arrays.asList(
-                new ExportColumn("sdept", "车间"),
-                new ExportColumn("sname", "名称"),
-                new ExportColumn("sjx", "所属机型"),
-                new ExportColumn("sfname", "所属设备"),
-                new ExportColumn("sbname", "主数据名称"),
-                new ExportColumn("spmcode", "PM编码"),
-                new ExportColumn("sazwz", "安装位置"),
-                new ExportColumn("scj", "厂家"),
-                new ExportColumn("sxh", "规格型号"),
-                new ExportColumn("syl", "测量原理"),
-                new ExportColumn("sddno", "订单号"),
-                new ExportColumn("szcno", "资产编码"),
-                new ExportColumn("dtime", "初次使用时间"),
-                new ExportColumn("ssm", "使用寿命"),
-                new ExportColumn("sstepstate", "状态")
-        );
-
-        ExcelExportUtil.export(response, "自检自控台账", columns, list, ZjzkTool.class);
+        // [已修改] 游标逐行读取并直接写入响应流
+        ExcelExportUtil.<ZjzkTool>streamExport(response, "自检自控台账", LEDGER_EXPORT_COLUMNS,
+                sink -> siService.streamLedgerForExport(params, sink));
+    }
+
+    /**
+     * [新增] 异步导出台账: 立即返回任务信息，通过 /api/export/jobs/{jobId} 查询进度并下载
+     */
+    @PostMapping("/ledger/export/async")
+    public ResponseEntity<?> exportLedgerAsync(@RequestParam Map<String, Object> params) {
+        return this.<ZjzkTool>submitExportJob("si-ledger", params, "自检自控台账", LEDGER_EXPORT_COLUMNS,
+                sink -> siService.streamLedgerForExport(params, sink));
     }
 
 // ==========================================
     // [新增] 导入相关接口
     // ==========================================
 
+    /**
+     * [已修改] mode=insert (默认) 全部新增；mode=merge 按联合键合并，已存在的台账更新
+     * [已修改] streaming=true 强制使用流式导入；不传时按文件大小自动选择
+     */
     @PostMapping("/ledger/import")
-    public ResponseEntity<Map<String, Object>> importLedger(@RequestParam("file") MultipartFile file) {
-        Map<String, Object> result = siService.importLedgerData(file);
+    public ResponseEntity<Map<String, Object>> importLedger(@RequestParam("file") MultipartFile file,
+                                                            @RequestParam(value = "mode", defaultValue = "insert") String mode,
+                                                            @RequestParam(value = "streaming", required = false) Boolean streaming) {
+        LedgerBulkImporter.Mode importMode;
+        try {
+            importMode = LedgerBulkImporter.Mode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "不支持的导入模式: " + mode);
+            return ResponseEntity.badRequest().body(error);
+        }
+        Map<String, Object> result = Boolean.TRUE.equals(streaming)
+                ? siService.importLedgerDataStreaming(file, importMode)
+                : siService.importLedgerData(file, importMode);
         return ResponseEntity.ok(result);
     }
 
@@ -304,9 +367,34 @@ public class SelfInspectionController {
      */
     @PostMapping("/speed/refresh-all")
     public ResponseEntity<?> refreshAllSpeeds() {
+        // [已修改] 先登记本次刷新，状态接口立即返回 QUEUED，而不是上一次刷新的结果
+        String batchNo = siService.prepareSpeedRefresh();
+        if (batchNo == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Collections.singletonMap("message", "已有全量车速刷新任务在执行，请稍后再试。"));
+        }
         // 异步执行，立即返回
-        siService.refreshAllDeviceSpeeds();
-        return ResponseEntity.ok(Collections.singletonMap("message", "全量车速刷新任务已在后台启动，请稍后刷新台账列表查看。"));
+        try {
+            siService.refreshAllDeviceSpeeds(batchNo);
+        } catch (TaskRejectedException e) {
+            // 设备轮询线程池已满 (上一轮全量刷新的线程尚未退出)
+            siService.abandonSpeedRefresh(batchNo, "已有全量车速刷新任务在执行");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Collections.singletonMap("message", "已有全量车速刷新任务在执行，请稍后再试。"));
+        }
+        return ResponseEntity.ok(Collections.singletonMap("message", "全量车速刷新任务已在后台启动，可通过 /api/si/speed/refresh-status 查看进度。"));
+    }
+
+    /**
+     * [新增] 查询最近一次全量车速刷新的进度 (status: QUEUED / RUNNING / COMPLETED / FAILED / INTERRUPTED)
+     */
+    @GetMapping("/speed/refresh-status")
+    public ResponseEntity<?> getSpeedRefreshStatus() {
+        Map<String, Object> progress = siService.getSpeedRefreshProgress();
+        if (progress == null) {
+            return ResponseEntity.ok(Collections.singletonMap("status", "NONE"));
+        }
+        return ResponseEntity.ok(progress);
     }
 
     @GetMapping("/speed/list")
@@ -3,6 +3,7 @@ package com.lucksoft.qingdao.selfinspection.mapper;
 import com.lucksoft.qingdao.selfinspection.entity.ZjzkTask;
 import com.lucksoft.qingdao.selfinspection.entity.ZjzkTaskDetail;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.StatementType;
 
 import java.util.List;
@@ -63,15 +64,8 @@ public interface ZjzkTaskDetailMapper {
     int update(ZjzkTaskDetail detail);
 
 
-    /**
-     * [新增] 统计查询专用接口 (适配 ZJZK 表结构)
-     * 1. 关联 ZJZK_TASK (t) 和 ZJZK_TASK_DETAIL (d)
-     * 2. 字段映射：
-     * - device -> t.SFNAME (所属设备)
-     * - remarks -> d.CHECK_REMARK
-     * - actualCheckTime -> d.OP_TIME
-     */
-    @Select("<script>" +
+    // [新增] 提取为常量，供游标查询复用
+    String FIND_STATS_LIST_SQL = "<script>" +
             "SELECT " +
             "   t.TASK_TIME as \"checkTime\", " +
             "   t.SFNAME as \"device\", " +
@@ -103,6 +97,23 @@ public interface ZjzkTaskDetailMapper {
             "   </if>" +
             "</where>" +
             "ORDER BY t.TASK_TIME DESC, t.INDOCNO DESC, d.INDOCNO ASC" +
-            "</script>")
+            "</script>";
+
+    /**
+     * [新增] 统计查询专用接口 (适配 ZJZK 表结构)
+     * 1. 关联 ZJZK_TASK (t) 和 ZJZK_TASK_DETAIL (d)
+     * 2. 字段映射：
+     * - device -> t.SFNAME (所属设备)
+     * - remarks -> d.CHECK_REMARK
+     * - actualCheckTime -> d.OP_TIME
+     */
+    @Select(FIND_STATS_LIST_SQL)
     List<Map<String, Object>> findStatsList(@Param("params") Map<String, Object> params);
+
+    /**
+     * [新增] 与 findStatsList 相同的查询，以游标逐行返回 (流式导出用，需在事务内遍历)
+     */
+    @Select(FIND_STATS_LIST_SQL)
+    @Options(fetchSize = 1000)
+    Cursor<Map<String, Object>> cursorStatsList(@Param("params") Map<String, Object> params);
 }
\ No newline at end of file
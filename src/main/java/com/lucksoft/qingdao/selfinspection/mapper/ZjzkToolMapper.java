@@ -2,6 +2,7 @@ package com.lucksoft.qingdao.selfinspection.mapper;
 
 import com.lucksoft.qingdao.selfinspection.entity.ZjzkTool;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
 
 import java.util.List;
 import java.util.Map;
@@ -13,6 +14,29 @@ import java.util.Map;
 @Mapper
 public interface ZjzkToolMapper {
 
+    // [新增] 提取为常量，供游标查询复用
+    String FIND_LIST_SQL = "<script>" +
+            "SELECT t.*, s.AVG_SPEED as LAST_AVG_SPEED, s.END_TIME as LAST_SPEED_TIME " +
+            "FROM ZJZK_TOOL t " +
+            // [新增] LEFT JOIN 子查询：获取每个 SPMCODE 最新的一条车速记录
+            "LEFT JOIN (" +
+            "    SELECT SPMCODE, AVG_SPEED, END_TIME FROM (" +
+            "        SELECT SPMCODE, AVG_SPEED, END_TIME, " +
+            "               ROW_NUMBER() OVER(PARTITION BY SPMCODE ORDER BY END_TIME DESC) as rn " +
+            "        FROM ZJZK_SPEED_CHECK" +
+            "    ) WHERE rn = 1" +
+            ") s ON t.SPMCODE = s.SPMCODE " +
+            "<where>" +
+            "   <if test='params.sdept != null and params.sdept != \"\"'>AND t.SDEPT LIKE '%' || #{params.sdept} || '%'</if>" +
+            "   <if test='params.sjx != null and params.sjx != \"\"'>AND t.SJX LIKE '%' || #{params.sjx} || '%'</if>" +
+            "   <if test='params.sbname != null and params.sbname != \"\"'>AND t.SBNAME LIKE '%' || #{params.sbname} || '%'</if>" +
+            "   <if test='params.sname != null and params.sname != \"\"'>AND t.SNAME LIKE '%' || #{params.sname} || '%'</if>" +
+            "   <if test='params.spmcode != null and params.spmcode != \"\"'>AND t.SPMCODE LIKE '%' || #{params.spmcode} || '%'</if>" +
+            "   <if test='params.szcno != null and params.szcno != \"\"'>AND t.SZCNO LIKE '%' || #{params.szcno} || '%'</if>" +
+            "</where>" +
+            "ORDER BY t.INDOCNO DESC" +
+            "</script>";
+
     // ... (保留原有的 findList, insert, update, deleteById, findDistinctValues 方法) ...
     @Results(id = "zjzkToolMap", value = {
             @Result(property = "indocno", column = "INDOCNO", id = true),
@@ -54,29 +78,17 @@ public interface ZjzkToolMapper {
 
             @Result(property = "snote", column = "SNOTE")
     })
-    @Select("<script>" +
-            "SELECT t.*, s.AVG_SPEED as LAST_AVG_SPEED, s.END_TIME as LAST_SPEED_TIME " +
-            "FROM ZJZK_TOOL t " +
-            // [新增] LEFT JOIN 子查询：获取每个 SPMCODE 最新的一条车速记录
-            "LEFT JOIN (" +
-            "    SELECT SPMCODE, AVG_SPEED, END_TIME FROM (" +
-            "        SELECT SPMCODE, AVG_SPEED, END_TIME, " +
-            "               ROW_NUMBER() OVER(PARTITION BY SPMCODE ORDER BY END_TIME DESC) as rn " +
-            "        FROM ZJZK_SPEED_CHECK" +
-            "    ) WHERE rn = 1" +
-            ") s ON t.SPMCODE = s.SPMCODE " +
-            "<where>" +
-            "   <if test='params.sdept != null and params.sdept != \"\"'>AND t.SDEPT LIKE '%' || #{params.sdept} || '%'</if>" +
-            "   <if test='params.sjx != null and params.sjx != \"\"'>AND t.SJX LIKE '%' || #{params.sjx} || '%'</if>" +
-            "   <if test='params.sbname != null and params.sbname != \"\"'>AND t.SBNAME LIKE '%' || #{params.sbname} || '%'</if>" +
-            "   <if test='params.sname != null and params.sname != \"\"'>AND t.SNAME LIKE '%' || #{params.sname} || '%'</if>" +
-            "   <if test='params.spmcode != null and params.spmcode != \"\"'>AND t.SPMCODE LIKE '%' || #{params.spmcode} || '%'</if>" +
-            "   <if test='params.szcno != null and params.szcno != \"\"'>AND t.SZCNO LIKE '%' || #{params.szcno} || '%'</if>" +
-            "</where>" +
-            "ORDER BY t.INDOCNO DESC" +
-            "</script>")
+    @Select(FIND_LIST_SQL)
     List<ZjzkTool> findList(@Param("params") Map<String, Object> params);
 
+    /**
+     * [新增] 与 findList 相同的查询，以游标逐行返回 (流式导出用，需在事务内遍历)
+     */
+    @Select(FIND_LIST_SQL)
+    @ResultMap("zjzkToolMap")
+    @Options(fetchSize = 1000)
+    Cursor<ZjzkTool> cursorList(@Param("params") Map<String, Object> params);
+
     @Insert("INSERT INTO ZJZK_TOOL (INDOCNO, SDEPT, SNAME, SJX, SFNAME, SBNAME, SCJ, SXH, SAZWZ, SYL, SPMCODE, SDDNO, SZCNO, DTIME, SSTEPSTATE, DREGT) " +
             "VALUES (SEQ_ZJZK_TOOL.NEXTVAL, #{sdept}, #{sname}, #{sjx}, #{sfname}, #{sbname}, #{scj}, #{sxh}, #{sazwz}, #{syl}, #{spmcode}, #{sddno}, #{szcno}, #{dtime}, #{sstepstate}, SYSDATE)")
     @Options(useGeneratedKeys = true, keyProperty = "indocno", keyColumn = "INDOCNO")
@@ -134,6 +146,37 @@ public interface ZjzkToolMapper {
             "SAZWZ = #{sazwz}")
     List<ZjzkTool> findByUniqueKey(ZjzkTool tool);
 
+    /**
+     * [新增] 按7个联合键批量查找已存在的记录 (用于批量导入去重，一次查询代替逐行 findByUniqueKey)
+     * 与 findByUniqueKey 一致，键字段为空的行不会匹配任何记录。list 长度不能超过 1000 (Oracle IN 列表上限)。
+     */
+    @Select("<script>" +
+            "SELECT * FROM ZJZK_TOOL WHERE (SDEPT, SNAME, SJX, SFNAME, SBNAME, SPMCODE, SAZWZ) IN (" +
+            "<foreach collection='list' item='item' separator=','>" +
+            "(#{item.sdept,jdbcType=VARCHAR}, #{item.sname,jdbcType=VARCHAR}, #{item.sjx,jdbcType=VARCHAR}, #{item.sfname,jdbcType=VARCHAR}, " +
+            "#{item.sbname,jdbcType=VARCHAR}, #{item.spmcode,jdbcType=VARCHAR}, #{item.sazwz,jdbcType=VARCHAR})" +
+            "</foreach>" +
+            ") ORDER BY INDOCNO" +
+            "</script>")
+    @ResultMap("zjzkToolMap")
+    List<ZjzkTool> findByUniqueKeys(@Param("list") List<ZjzkTool> list);
+
+    /**
+     * [新增] 多行插入 (一条 INSERT ... SELECT 写入一批台账，列与 insert 相同)
+     */
+    @Insert("<script>" +
+            "INSERT INTO ZJZK_TOOL (INDOCNO, SDEPT, SNAME, SJX, SFNAME, SBNAME, SCJ, SXH, SAZWZ, SYL, SPMCODE, SDDNO, SZCNO, DTIME, SSTEPSTATE, DREGT) " +
+            "SELECT SEQ_ZJZK_TOOL.NEXTVAL, A.*, SYSDATE FROM (" +
+            "<foreach collection='list' item='item' separator='UNION ALL'>" +
+            " SELECT #{item.sdept,jdbcType=VARCHAR}, #{item.sname,jdbcType=VARCHAR}, #{item.sjx,jdbcType=VARCHAR}, #{item.sfname,jdbcType=VARCHAR}, " +
+            "#{item.sbname,jdbcType=VARCHAR}, #{item.scj,jdbcType=VARCHAR}, #{item.sxh,jdbcType=VARCHAR}, #{item.sazwz,jdbcType=VARCHAR}, " +
+            "#{item.syl,jdbcType=VARCHAR}, #{item.spmcode,jdbcType=VARCHAR}, #{item.sddno,jdbcType=VARCHAR}, #{item.szcno,jdbcType=VARCHAR}, " +
+            "#{item.dtime,jdbcType=TIMESTAMP}, #{item.sstepstate,jdbcType=VARCHAR} FROM DUAL" +
+            "</foreach>" +
+            ") A" +
+            "</script>")
+    int batchInsert(@Param("list") List<ZjzkTool> list);
+
     /**
      * [新增] 获取所有不重复的 SPMCODE 列表，用于批量更新车速
      */
@@ -0,0 +1,347 @@
+package com.lucksoft.qingdao.selfinspection.service;
+
+import com.lucksoft.qingdao.config.AsyncExecutorConfig;
+import com.lucksoft.qingdao.selfinspection.mapper.ZjzkSpeedCheckMapper;
+import com.lucksoft.qingdao.tspm.service.DeviceSpeedCache;
+import com.lucksoft.qingdao.tspm.util.TokenBucketRateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * [新增] 全量设备车速轮询
+ * 原先逐个设备串行调用接口 7 并 sleep(50)，几千台设备需要十几分钟。这里改为:
+ * 1. 令牌桶限制对 TIMS 的请求速率 (si.speed-refresh.rate-per-second)。
+ * 2. 最多 si.speed-refresh.parallelism 个请求并发执行，单台设备超过 si.speed-refresh.device-timeout-seconds 未返回即放弃。
+ * 3. 获取到的车速每满 si.speed-refresh.insert-chunk-size 条就写入 ZJZK_SPEED_CHECK，不必等全部设备完成。
+ * 4. 记录最近一次刷新的进度，供 /api/si/speed/refresh-status 轮询。
+ *    [已修改] 提交后台刷新之前先调用 prepare 登记本次刷新 (QUEUED)，状态接口不会在后台线程启动前仍返回上一次的结果。
+ * [已修改] 车速经 DeviceSpeedCache 获取，与班次车速检查使用同一时间窗口，缓存有效期内的读数直接复用。
+ */
+@Service
+public class DeviceSpeedPoller {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceSpeedPoller.class);
+
+    @Autowired
+    private DeviceSpeedCache speedCache;
+
+    @Autowired
+    private ZjzkSpeedCheckMapper speedCheckMapper;
+
+    @Autowired
+    @Qualifier(AsyncExecutorConfig.DEVICE_SPEED_FETCH_EXECUTOR)
+    private ThreadPoolTaskExecutor fetchExecutor;
+
+    @Value("${si.speed-refresh.parallelism:4}")
+    private int parallelism;
+
+    @Value("${si.speed-refresh.rate-per-second:20}")
+    private double ratePerSecond;
+
+    @Value("${si.speed-refresh.device-timeout-seconds:15}")
+    private long deviceTimeoutSeconds;
+
+    @Value("${si.speed-refresh.insert-chunk-size:100}")
+    private int insertChunkSize;
+
+    // 查询车速的时间窗口 (分钟)，与班次车速检查共用，以便复用缓存中的读数
+    @Value("${si.speed-check.window-minutes:11}")
+    private int windowMinutes;
+
+    private TokenBucketRateLimiter rateLimiter;
+
+    // 最近一次 (或正在执行的) 刷新进度
+    private volatile Progress lastProgress;
+
+    @PostConstruct
+    public void init() {
+        rateLimiter = new TokenBucketRateLimiter(ratePerSecond, Math.max(1, parallelism));
+    }
+
+    /**
+     * [新增] 登记一次新的刷新 (状态 QUEUED)，在提交后台任务之前调用
+     *
+     * @return 批次号；上一次刷新尚未结束时返回 null
+     */
+    public synchronized String prepare() {
+        Progress current = lastProgress;
+        if (current != null && current.endMillis == 0) {
+            return null;
+        }
+        Progress progress = new Progress("MANUAL_REFRESH_" + System.currentTimeMillis());
+        lastProgress = progress;
+        return progress.batchNo;
+    }
+
+    /**
+     * [新增] 登记的刷新未能执行 (后台任务被拒绝、查询设备列表失败) 时结束它
+     */
+    public void abandon(String batchNo, String message) {
+        Progress progress = lastProgress;
+        if (progress != null && progress.batchNo.equals(batchNo)) {
+            progress.finish("FAILED", message);
+        }
+    }
+
+    /**
+     * 并发刷新所有设备车速 (阻塞直到完成，由调用方放到后台线程执行)
+     * [已修改] batchNo 为 prepare 登记的批次号
+     */
+    public void refreshAll(String batchNo, List<String> spmCodes) {
+        Progress progress = lastProgress;
+        if (progress == null || !progress.batchNo.equals(batchNo)) {
+            progress = new Progress(batchNo);
+            lastProgress = progress;
+        }
+        progress.start(spmCodes.size());
+
+        log.info(">>> 开始批量刷新所有设备车速 (Batch: {})，共 {} 个设备，并发 {}，限速 {}/s", batchNo, spmCodes.size(), parallelism, ratePerSecond);
+
+        Semaphore slots = new Semaphore(Math.max(1, parallelism));
+        CompletionService<SpeedResult> completion = new ExecutorCompletionService<>(fetchExecutor.getThreadPoolExecutor());
+        // 在途请求 (按提交顺序，截止时间也按此顺序递增)
+        Map<Future<SpeedResult>, InFlight> deadlines = new LinkedHashMap<>();
+        List<Map<String, Object>> chunk = new ArrayList<>(insertChunkSize);
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(deviceTimeoutSeconds);
+        String finalStatus = "COMPLETED";
+        String finalMessage = null;
+
+        try {
+            for (String code : spmCodes) {
+                rateLimiter.acquire();
+                // 等待并发名额期间继续收集结果、处理超时
+                while (!slots.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                    collect(completion, deadlines, slots, chunk, progress, 0);
+                }
+                InFlight inFlight = new InFlight(System.nanoTime() + timeoutNanos);
+                Future<SpeedResult> future;
+                try {
+                    future = completion.submit(() -> {
+                        // 超时处理先认领了该请求 (尚未开始执行)，则不再发起调用
+                        if (!inFlight.started.compareAndSet(false, true)) {
+                            return null;
+                        }
+                        try {
+                            return fetchSpeed(code);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    slots.release();
+                    throw e;
+                }
+                deadlines.put(future, inFlight);
+                collect(completion, deadlines, slots, chunk, progress, 0);
+            }
+            while (!deadlines.isEmpty()) {
+                collect(completion, deadlines, slots, chunk, progress, 100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deadlines.keySet().forEach(f -> f.cancel(true));
+            finalStatus = "INTERRUPTED";
+            finalMessage = "刷新被中断";
+        } catch (Exception e) {
+            log.error("批量刷新车速异常 (Batch: {})", batchNo, e);
+            deadlines.keySet().forEach(f -> f.cancel(true));
+            finalStatus = "FAILED";
+            finalMessage = e.getMessage();
+        } finally {
+            // 无论成功与否，已收集的结果都写入数据库
+            flush(chunk, progress);
+            progress.finish(finalStatus, finalMessage);
+        }
+
+        log.info("<<< 批量刷新车速结束 (Batch: {})。成功 {} / 无数据 {} / 失败 {} / 超时 {}，共 {} 个设备，耗时 {} ms。",
+                batchNo, progress.success.get(), progress.noData.get(), progress.failed.get(), progress.timedOut.get(),
+                progress.total, progress.elapsedMillis());
+    }
+
+    /**
+     * 最近一次刷新的进度快照，从未执行过时返回 null
+     */
+    public Map<String, Object> getProgress() {
+        Progress progress = lastProgress;
+        return progress == null ? null : progress.snapshot();
+    }
+
+    private SpeedResult fetchSpeed(String code) {
+        try {
+            return new SpeedResult(code, speedCache.getRecentSpeed(code, windowMinutes), null);
+        } catch (Exception e) {
+            return new SpeedResult(code, null, e.getMessage());
+        }
+    }
+
+    /**
+     * 收集已完成的请求并处理超时: waitMillis 为 0 时不阻塞
+     */
+    private void collect(CompletionService<SpeedResult> completion, Map<Future<SpeedResult>, InFlight> deadlines,
+                         Semaphore slots, List<Map<String, Object>> chunk, Progress progress,
+                         long waitMillis) throws InterruptedException {
+        Future<SpeedResult> done = waitMillis > 0 ? completion.poll(waitMillis, TimeUnit.MILLISECONDS) : completion.poll();
+        while (done != null) {
+            // 已按超时处理过的请求不再重复计数
+            if (deadlines.remove(done) != null) {
+                handle(done, chunk, progress);
+            }
+            done = completion.poll();
+        }
+
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Future<SpeedResult>, InFlight>> it = deadlines.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Future<SpeedResult>, InFlight> entry = it.next();
+            if (entry.getValue().deadlineNanos - now > 0) {
+                break;
+            }
+            // 还没开始执行的请求由这里释放并发名额；已在执行的由其自身结束时释放 (HTTP 读超时兜底)
+            if (entry.getValue().started.compareAndSet(false, true)) {
+                slots.release();
+            }
+            entry.getKey().cancel(true);
+            it.remove();
+            progress.timedOut.incrementAndGet();
+            progress.processed.incrementAndGet();
+        }
+
+        if (chunk.size() >= insertChunkSize) {
+            flush(chunk, progress);
+        }
+    }
+
+    private void handle(Future<SpeedResult> done, List<Map<String, Object>> chunk, Progress progress) {
+        progress.processed.incrementAndGet();
+        SpeedResult result;
+        try {
+            result = done.get();
+        } catch (CancellationException | InterruptedException | ExecutionException e) {
+            progress.failed.incrementAndGet();
+            return;
+        }
+        if (result == null) {
+            progress.failed.incrementAndGet();
+        } else if (result.error != null) {
+            log.warn("获取设备 {} 车速失败: {}", result.code, result.error);
+            progress.failed.incrementAndGet();
+        } else if (result.reading.getSpeed() == null) {
+            progress.noData.incrementAndGet();
+        } else {
+            // 只有获取到有效车速才记录
+            Map<String, Object> record = new HashMap<>();
+            record.put("batchNo", progress.batchNo);
+            record.put("spmcode", result.code);
+            record.put("avgSpeed", result.reading.getSpeed());
+            record.put("startTime", result.reading.getStartTime());
+            record.put("endTime", result.reading.getEndTime());
+            chunk.add(record);
+            progress.success.incrementAndGet();
+        }
+    }
+
+    private void flush(List<Map<String, Object>> chunk, Progress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            speedCheckMapper.batchInsert(new ArrayList<>(chunk));
+            progress.inserted.addAndGet(chunk.size());
+        } catch (Exception e) {
+            log.error("写入车速记录失败 ({} 条, Batch: {}): {}", chunk.size(), progress.batchNo, e.getMessage(), e);
+            progress.insertFailed.addAndGet(chunk.size());
+        } finally {
+            chunk.clear();
+        }
+    }
+
+    private static final class InFlight {
+        final long deadlineNanos;
+        final AtomicBoolean started = new AtomicBoolean();
+
+        InFlight(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private static final class SpeedResult {
+        final String code;
+        final DeviceSpeedCache.SpeedReading reading;
+        final String error;
+
+        SpeedResult(String code, DeviceSpeedCache.SpeedReading reading, String error) {
+            this.code = code;
+            this.reading = reading;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 一次刷新的进度 (计数器由轮询线程更新，状态接口随时读取)
+     */
+    private static final class Progress {
+        final String batchNo;
+        final long startMillis = System.currentTimeMillis();
+        volatile int total;
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger success = new AtomicInteger();
+        final AtomicInteger noData = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger timedOut = new AtomicInteger();
+        final AtomicInteger inserted = new AtomicInteger();
+        final AtomicInteger insertFailed = new AtomicInteger();
+        volatile String status = "QUEUED";
+        volatile String message;
+        volatile long endMillis;
+
+        Progress(String batchNo) {
+            this.batchNo = batchNo;
+        }
+
+        void start(int deviceCount) {
+            this.total = deviceCount;
+            this.status = "RUNNING";
+        }
+
+        void finish(String finalStatus, String finalMessage) {
+            this.message = finalMessage;
+            this.endMillis = System.currentTimeMillis();
+            this.status = finalStatus;
+        }
+
+        long elapsedMillis() {
+            return (endMillis > 0 ? endMillis : System.currentTimeMillis()) - startMillis;
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("batchNo", batchNo);
+            map.put("status", status);
+            map.put("message", message);
+            map.put("total", total);
+            map.put("processed", processed.get());
+            map.put("success", success.get());
+            map.put("noData", noData.get());
+            map.put("failed", failed.get());
+            map.put("timedOut", timedOut.get());
+            map.put("inserted", inserted.get());
+            map.put("insertFailed", insertFailed.get());
+            map.put("percent", total == 0 ? 100 : processed.get() * 100 / total);
+            map.put("startTime", new Date(startMillis));
+            map.put("endTime", endMillis > 0 ? new Date(endMillis) : null);
+            map.put("elapsedMs", elapsedMillis());
+            return map;
+        }
+    }
+}
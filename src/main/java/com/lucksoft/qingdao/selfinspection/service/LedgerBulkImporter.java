@@ -0,0 +1,253 @@
+package com.lucksoft.qingdao.selfinspection.service;
+
+import com.lucksoft.qingdao.selfinspection.entity.ZjzkTool;
+import com.lucksoft.qingdao.selfinspection.mapper.ZjzkToolMapper;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * [新增] 台账批量导入
+ * 原先导入时逐行 findByUniqueKey + insert/update，1 万行的台账需要 2 万次数据库往返。这里改为分块处理:
+ * 1. 每 si.ledger-import.chunk-size 行为一块，合并模式下每块只做一次按联合键的批量查询 (findByUniqueKeys)。
+ * 2. 新增行用一条多行 INSERT ... SELECT 写入，已存在行的 update 通过 BATCH 模式的 SqlSessionTemplate 合成一个 JDBC 批次。
+ * 3. 整个导入在一个事务内，任一块失败全部回滚。
+ * 4. [已修改] 支持流式数据来源 (importRows)，内存中只保留当前一块。
+ * 注意: 同一事务内不能混用 SIMPLE / BATCH 两种执行器，因此导入过程中的所有语句都走 batchSqlSessionTemplate。
+ */
+@Component
+public class LedgerBulkImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerBulkImporter.class);
+
+    // Oracle IN 列表最多 1000 项
+    private static final int MAX_CHUNK_SIZE = 1000;
+
+    public enum Mode {
+        /** 全部作为新记录插入 */
+        INSERT,
+        /** 按7个联合键合并: 已存在则更新，否则插入 */
+        MERGE
+    }
+
+    @Autowired
+    @Qualifier("primaryBatchSqlSessionTemplate")
+    private SqlSessionTemplate batchSqlSessionTemplate;
+
+    @Value("${si.ledger-import.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * 数据来源: 依次把每一行交给 sink (可以边读文件边写入，不必先把所有行放进内存)
+     */
+    @FunctionalInterface
+    public interface RowSource {
+        void forEach(Consumer<ZjzkTool> sink) throws IOException;
+    }
+
+    /**
+     * 批量写入台账
+     *
+     * @param tools         待导入的数据
+     * @param mode          写入模式
+     * @param newStepState  新增行的步骤状态，为 null 时保留行内原值
+     */
+    @Transactional
+    public Result importTools(List<ZjzkTool> tools, Mode mode, String newStepState) {
+        try {
+            return importRows(tools == null ? sink -> { } : tools::forEach, mode, newStepState);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * [新增] 流式写入台账: 行缓存满一块即写入，内存中最多保留一块数据
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Result importRows(RowSource source, Mode mode, String newStepState) throws IOException {
+        long start = System.currentTimeMillis();
+        Result result = new Result(mode);
+        ZjzkToolMapper mapper = batchSqlSessionTemplate.getMapper(ZjzkToolMapper.class);
+        int size = Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE));
+        List<ZjzkTool> buffer = new ArrayList<>(size);
+
+        source.forEach(tool -> {
+            buffer.add(tool);
+            result.rows++;
+            if (buffer.size() >= size) {
+                writeChunk(mapper, buffer, mode, newStepState, result);
+                buffer.clear();
+            }
+        });
+        if (!buffer.isEmpty()) {
+            writeChunk(mapper, buffer, mode, newStepState, result);
+        }
+
+        result.finish(start);
+        log.info("台账批量导入完成 ({})：共 {} 行，新增 {}，更新 {}，块内重复合并 {}，分 {} 块，耗时 {} ms，{} 行/秒",
+                mode, result.rows, result.inserted, result.updated, result.merged, result.chunks,
+                result.elapsedMs, result.getRowsPerSecond());
+        return result;
+    }
+
+    /**
+     * 写入一块: 合并模式下先一次查询本块已存在的记录，已存在的更新、其余插入
+     * 之前各块的数据已在同一事务中执行，因此跨块的重复键会在后一块中按更新处理
+     */
+    private void writeChunk(ZjzkToolMapper mapper, List<ZjzkTool> buffer, Mode mode, String newStepState, Result result) {
+        List<ZjzkTool> chunk = mode == Mode.MERGE ? collapseDuplicates(buffer, result) : buffer;
+        List<ZjzkTool> toInsert = chunk;
+        if (mode == Mode.MERGE) {
+            toInsert = new ArrayList<>(chunk.size());
+            Map<String, ZjzkTool> existing = findExisting(mapper, chunk);
+            for (ZjzkTool tool : chunk) {
+                ZjzkTool exist = existing.get(uniqueKey(tool));
+                if (exist != null) {
+                    tool.setIndocno(exist.getIndocno());
+                    tool.setSstepstate(exist.getSstepstate());
+                    // 初次使用时间沿用已有值，不被导入时间覆盖
+                    tool.setDtime(exist.getDtime());
+                    mapper.update(tool);
+                    result.updated++;
+                } else {
+                    toInsert.add(tool);
+                }
+            }
+        }
+        if (!toInsert.isEmpty()) {
+            if (newStepState != null) {
+                toInsert.forEach(t -> t.setSstepstate(newStepState));
+            }
+            mapper.batchInsert(toInsert);
+            result.inserted += toInsert.size();
+        }
+        batchSqlSessionTemplate.flushStatements();
+        result.chunks++;
+    }
+
+    /**
+     * 一次查询本块中已存在的记录 (查询前会先执行上一块积攒的批次)
+     */
+    private Map<String, ZjzkTool> findExisting(ZjzkToolMapper mapper, List<ZjzkTool> chunk) {
+        List<ZjzkTool> keyed = new ArrayList<>(chunk.size());
+        for (ZjzkTool tool : chunk) {
+            if (hasFullKey(tool)) {
+                keyed.add(tool);
+            }
+        }
+        Map<String, ZjzkTool> existing = new HashMap<>();
+        if (keyed.isEmpty()) {
+            return existing;
+        }
+        for (ZjzkTool exist : mapper.findByUniqueKeys(keyed)) {
+            // 与原逐行查询一致，同一个键有多条记录时取第一条
+            existing.putIfAbsent(uniqueKey(exist), exist);
+        }
+        return existing;
+    }
+
+    /**
+     * 合并同一块内联合键相同的行，后出现的行覆盖前面的行 (等同于原逐行处理时先插入再更新)
+     */
+    private List<ZjzkTool> collapseDuplicates(List<ZjzkTool> tools, Result result) {
+        Map<String, Integer> positions = new HashMap<>();
+        List<ZjzkTool> rows = new ArrayList<>(tools.size());
+        for (ZjzkTool tool : tools) {
+            if (!hasFullKey(tool)) {
+                // 键字段有空值时数据库中也无法匹配，原逻辑下每行都会新增
+                rows.add(tool);
+                continue;
+            }
+            Integer pos = positions.get(uniqueKey(tool));
+            if (pos == null) {
+                positions.put(uniqueKey(tool), rows.size());
+                rows.add(tool);
+            } else {
+                rows.set(pos, tool);
+                result.merged++;
+            }
+        }
+        return rows;
+    }
+
+    private static boolean hasFullKey(ZjzkTool t) {
+        return notEmpty(t.getSdept()) && notEmpty(t.getSname()) && notEmpty(t.getSjx()) && notEmpty(t.getSfname())
+                && notEmpty(t.getSbname()) && notEmpty(t.getSpmcode()) && notEmpty(t.getSazwz());
+    }
+
+    private static boolean notEmpty(String s) {
+        // Oracle 中空字符串即 NULL
+        return s != null && !s.isEmpty();
+    }
+
+    private static String uniqueKey(ZjzkTool t) {
+        return String.join("\u0001", t.getSdept(), t.getSname(), t.getSjx(), t.getSfname(),
+                t.getSbname(), t.getSpmcode(), t.getSazwz());
+    }
+
+    /**
+     * 一次批量导入的结果
+     */
+    public static final class Result {
+        private final Mode mode;
+        private int rows;
+        private int inserted;
+        private int updated;
+        private int merged;
+        private int chunks;
+        private long elapsedMs;
+
+        Result(Mode mode) {
+            this.mode = mode;
+        }
+
+        Result finish(long startMillis) {
+            this.elapsedMs = System.currentTimeMillis() - startMillis;
+            return this;
+        }
+
+        public int getInserted() {
+            return inserted;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getWritten() {
+            return inserted + updated;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public long getRowsPerSecond() {
+            return elapsedMs <= 0 ? getWritten() : getWritten() * 1000L / elapsedMs;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("mode", mode.name());
+            map.put("rows", rows);
+            map.put("inserted", inserted);
+            map.put("updated", updated);
+            map.put("mergedDuplicates", merged);
+            map.put("chunks", chunks);
+            map.put("elapsedMs", elapsedMs);
+            map.put("rowsPerSecond", getRowsPerSecond());
+            return map;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.lucksoft.qingdao.selfinspection.service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
+import com.lucksoft.qingdao.config.AsyncExecutorConfig;
 import com.lucksoft.qingdao.selfinspection.dto.ArchiveReportDTO;
 import com.lucksoft.qingdao.selfinspection.dto.DeviceKeyDto;
 import com.lucksoft.qingdao.selfinspection.dto.GenerateTaskReq;
@@ -10,11 +11,14 @@ import com.lucksoft.qingdao.selfinspection.entity.*;
 import com.lucksoft.qingdao.selfinspection.mapper.*;
 import com.lucksoft.qingdao.system.entity.User;
 import com.lucksoft.qingdao.tmis.dto.PageResult;
+import com.lucksoft.qingdao.tmis.util.ExcelStreamReader;
 import com.lucksoft.qingdao.tspm.dto.tims.CreateSelfCheckTaskReq;
-import com.lucksoft.qingdao.tspm.dto.tims.GetAvgSpeedReq;
+import com.lucksoft.qingdao.tspm.service.DeviceSpeedCache;
 import com.lucksoft.qingdao.tspm.service.TimsServiceClient;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFRichTextString;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
@@ -24,16 +28,19 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -75,41 +82,47 @@ public class SelfInspectionService {
     @Autowired
     private ZjzkSpeedCheckMapper speedCheckMapper; // [新增]
 
+    @Autowired
+    private DeviceSpeedPoller speedPoller; // [新增]
+
+    @Autowired
+    private LedgerBulkImporter ledgerImporter; // [新增]
+
+    // [新增] 超过该大小的台账文件使用 SAX 流式导入
+    @Value("${si.ledger-import.streaming-threshold-bytes:5242880}")
+    private long streamingThresholdBytes;
+
+    @Autowired
+    private DeviceSpeedCache speedCache; // [新增]
+
+    // 班次车速检查的时间窗口 (分钟)
+    @Value("${si.speed-check.window-minutes:11}")
+    private int speedCheckWindowMinutes;
+
     // 定义需要检查车速的设备列表
     private static final List<String> SPEED_CHECK_DEVICES = Arrays.asList("JB000483", "JB000484", "JB000488", "JB000487");
 
 
     /**
      * [新增] 获取车速并记录到 ZJZK_SPEED_CHECK 表
+     * [已修改] 经 DeviceSpeedCache 获取最近 si.speed-check.window-minutes 分钟的车速，几分钟内刷新过的设备直接复用读数
      */
     private void checkAndRecordSpeed(String batchNo) {
-        Date now = new Date();
-        // startTime = now - 11 minutes
-        Date startTime = new Date(now.getTime() - 11 * 60 * 1000);
-
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        String startStr = sdf.format(startTime);
-        String endStr = sdf.format(now);
-
         List<Map<String, Object>> records = new ArrayList<>();
 
         for (String spmcode : SPEED_CHECK_DEVICES) {
             try {
-                GetAvgSpeedReq req = new GetAvgSpeedReq();
-                req.setEquipmentCode(spmcode);
-                req.setStartTime(startStr);
-                req.setEndTime(endStr);
-
-                // 调用 TIMS 接口 (接口7)
-                Double avgSpeed = timsClient.getAverageSpeed(req);
+                // 调用 TIMS 接口 (接口7)，缓存有效期内不重复调用
+                DeviceSpeedCache.SpeedReading reading = speedCache.getRecentSpeed(spmcode, speedCheckWindowMinutes);
+                Double avgSpeed = reading.getSpeed();
 
                 if (avgSpeed != null) {
                     Map<String, Object> record = new HashMap<>();
                     record.put("batchNo", batchNo);
                     record.put("spmcode", spmcode);
                     record.put("avgSpeed", avgSpeed);
-                    record.put("startTime", startTime);
-                    record.put("endTime", now);
+                    record.put("startTime", reading.getStartTime());
+                    record.put("endTime", reading.getEndTime());
                     records.add(record);
 
                     log.info("设备[{}]车速检测: {} (Batch: {})", spmcode, avgSpeed, batchNo);
@@ -402,8 +415,16 @@ public class SelfInspectionService {
         return new PageResult<>(pageInfo.getList(), pageInfo.getPageNum(), pageInfo.getPageSize(), pageInfo.getTotal(), pageInfo.getPages());
     }
 
-    public List<Map<String, Object>> getStatsListForExport(Map<String, Object> params) {
-        return taskDetailMapper.findStatsList(params);
+    /**
+     * [新增] 以游标逐条读取统计明细 (用于流式导出，在只读事务内遍历)
+     */
+    @Transactional(readOnly = true)
+    public void streamStatsForExport(Map<String, Object> params, Consumer<Map<String, Object>> sink) {
+        try (Cursor<Map<String, Object>> cursor = taskDetailMapper.cursorStatsList(params)) {
+            cursor.forEach(sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     // ==========================================
@@ -421,8 +442,16 @@ public class SelfInspectionService {
         return new PageResult<>(pageInfo.getList(), pageInfo.getPageNum(), pageInfo.getPageSize(), pageInfo.getTotal(), pageInfo.getPages());
     }
 
-    public List<ZjzkTool> getLedgerListForExport(Map<String, Object> params) {
-        return toolMapper.findList(params);
+    /**
+     * [新增] 以游标逐条读取台账 (用于流式导出，在只读事务内遍历)
+     */
+    @Transactional(readOnly = true)
+    public void streamLedgerForExport(Map<String, Object> params, Consumer<ZjzkTool> sink) {
+        try (Cursor<ZjzkTool> cursor = toolMapper.cursorList(params)) {
+            cursor.forEach(sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Transactional
@@ -444,8 +473,11 @@ public class SelfInspectionService {
         return toolMapper.findDistinctValues(field);
     }
 
-    @Transactional
+    /**
+     * [已修改] 按联合键合并导入: 行读完后交给 LedgerBulkImporter 分块批量查询、批量写入，不再逐行查询和插入
+     */
     public void importLedger(MultipartFile file) {
+        List<ZjzkTool> tools = new ArrayList<>();
         try (Workbook workbook = WorkbookFactory.create(file.getInputStream())) {
             Sheet sheet = workbook.getSheetAt(0);
             if (sheet == null) throw new RuntimeException("Excel 文件为空");
@@ -474,27 +506,23 @@ public class SelfInspectionService {
                     continue;
                 }
 
-                List<ZjzkTool> existing = toolMapper.findByUniqueKey(tool);
-                if (existing != null && !existing.isEmpty()) {
-                    ZjzkTool exist = existing.get(0);
-                    tool.setIndocno(exist.getIndocno());
-                    tool.setSstepstate(exist.getSstepstate());
-                    toolMapper.update(tool);
-                } else {
-                    tool.setSstepstate("草稿");
-                    toolMapper.insert(tool);
-                }
+                tools.add(tool);
             }
         } catch (IOException e) {
             throw new RuntimeException("Excel 解析失败: " + e.getMessage());
         }
+        ledgerImporter.importTools(tools, LedgerBulkImporter.Mode.MERGE, "草稿");
     }
 
 
     private String getCellValue(Cell cell) {
         if (cell == null) return "";
         DataFormatter formatter = new DataFormatter();
-        String value = formatter.formatCellValue(cell);
+        return cleanCellText(formatter.formatCellValue(cell));
+    }
+
+    private String cleanCellText(String value) {
+        if (value == null) return "";
         // [优化] 同时去除普通空格和不间断空格(NBSP, ASCII 160)，防止肉眼看不见的空格导致校验失败
         return value.replace((char) 160, ' ').trim();
     }
@@ -575,8 +603,20 @@ public class SelfInspectionService {
      * 校验规则更新：
      * 1. 必填校验: PM编码(SPMCODE), 资产编码(SZCNO)
      * 2. 重复校验: 12个关键字段组合唯一
+     * [已修改] 校验通过的数据分块批量写入 (同一事务)，mode 为 MERGE 时按7个联合键更新已存在的台账。
+     * 返回结果中附带新增/更新行数与导入速度 (rowsPerSecond)。
+     * [已修改] 超过 si.ledger-import.streaming-threshold-bytes 的文件走流式导入 (importLedgerDataStreaming)。
      */
     public Map<String, Object> importLedgerData(MultipartFile file) {
+        return importLedgerData(file, LedgerBulkImporter.Mode.INSERT);
+    }
+
+    public Map<String, Object> importLedgerData(MultipartFile file, LedgerBulkImporter.Mode mode) {
+        // [新增] 大文件改用流式导入，避免整个工作簿载入内存
+        if (file.getSize() > streamingThresholdBytes) {
+            return importLedgerDataStreaming(file, mode);
+        }
+
         Map<String, Object> result = new HashMap<>();
         List<Map<String, Object>> errorDetails = new ArrayList<>();
 
@@ -589,12 +629,7 @@ public class SelfInspectionService {
             Sheet sheet = workbook.getSheetAt(0);
 
             // 样式准备：红色背景
-            CellStyle errorStyle = workbook.createCellStyle();
-            errorStyle.setFillForegroundColor(IndexedColors.RED.getIndex());
-            errorStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-            Font font = workbook.createFont();
-            font.setColor(IndexedColors.WHITE.getIndex());
-            errorStyle.setFont(font);
+            CellStyle errorStyle = createErrorStyle(workbook);
 
             List<ZjzkTool> validTools = new ArrayList<>();
             boolean hasError = false;
@@ -607,111 +642,28 @@ public class SelfInspectionService {
                 Row row = sheet.getRow(i);
                 if (row == null) continue;
 
-                boolean rowHasError = false;
-                StringBuilder rowErrorMsg = new StringBuilder();
-
-                // 读取单元格 (根据用户指定的顺序)
-                // 0:车间, 1:名称, 2:所属机型, 3:所属设备, 4:主数据名称, 5:PM编码
-                // 6:安装位置, 7:厂家, 8:规格型号, 9:测量原理, 10:资产编码, 11:订单编号
-
-                String dept = getCellValue(row.getCell(0));       // 车间 SDEPT
-                String name = getCellValue(row.getCell(1));       // 名称 SNAME
-                String model = getCellValue(row.getCell(2));      // 所属机型 SJX
-                String deviceName = getCellValue(row.getCell(3)); // 所属设备 SFNAME
-                String sbName = getCellValue(row.getCell(4));     // 主数据名称 SBNAME
-                String pmCode = getCellValue(row.getCell(5));     // PM编码 SPMCODE
-                String location = getCellValue(row.getCell(6));   // 安装位置 SAZWZ
-                String factory = getCellValue(row.getCell(7));    // 厂家 SCJ
-                String spec = getCellValue(row.getCell(8));       // 规格型号 SXH
-                String principle = getCellValue(row.getCell(9));  // 测量原理 SYL
-                String assetCode = getCellValue(row.getCell(10)); // 资产编码 SZCNO
-                String orderNo = getCellValue(row.getCell(11));   // 订单编号 SDDNO
-
-                // --- 校验逻辑 ---
-
-                // A. 必填校验 (PM编码, 资产编码)
-                if (isEmpty(pmCode)) {
-                    markCellError(row.getCell(5, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK), errorStyle, "PM编码不能为空");
-                    rowHasError = true;
-                    rowErrorMsg.append("PM编码缺失; ");
-                }
-
-                if (isEmpty(assetCode)) {
-                    markCellError(row.getCell(10, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK), errorStyle, "资产编码不能为空");
-                    rowHasError = true;
-                    rowErrorMsg.append("资产编码缺失; ");
+                String[] values = new String[LEDGER_IMPORT_COLUMNS];
+                for (int c = 0; c < LEDGER_IMPORT_COLUMNS; c++) {
+                    values[c] = getCellValue(row.getCell(c));
                 }
 
-                // B. 组合重复校验 (12个字段)
-                // 仅当基本数据不全为空时才校验重复，避免空行干扰
-                if (!rowHasError || (!isEmpty(pmCode) || !isEmpty(assetCode))) {
-                    String uniqueKey = String.format("%s_%s_%s_%s_%s_%s_%s_%s_%s_%s_%s_%s",
-                            dept, name, model, deviceName, sbName, pmCode, location, factory, spec, principle, assetCode, orderNo);
-
-                    if (fileUniqueKeys.contains(uniqueKey)) {
-                        // 标记整行或首个单元格为重复
-                        markCellError(row.getCell(0, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK), errorStyle, "重复数据: 该行内容与前面行完全一致");
-                        rowHasError = true;
-                        rowErrorMsg.append("数据重复; ");
-                    } else {
-                        fileUniqueKeys.add(uniqueKey);
-                    }
-                }
-
-                if (rowHasError) {
+                List<LedgerCellError> rowErrors = validateLedgerRow(values, fileUniqueKeys);
+                if (!rowErrors.isEmpty()) {
                     hasError = true;
-                    Map<String, Object> err = new HashMap<>();
-                    err.put("row", i + 1);
-                    err.put("msg", rowErrorMsg.toString());
-                    errorDetails.add(err);
+                    for (LedgerCellError error : rowErrors) {
+                        markCellError(row.getCell(error.column, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK), errorStyle, error.cellMessage);
+                    }
+                    errorDetails.add(ledgerErrorDetail(i, rowErrors));
                 } else {
-                    // 构建对象
-                    ZjzkTool tool = new ZjzkTool();
-                    tool.setSdept(dept);
-                    tool.setSname(name);
-                    tool.setSjx(model);
-                    tool.setSfname(deviceName);
-                    tool.setSbname(sbName);
-                    tool.setSpmcode(pmCode);
-                    tool.setSazwz(location);
-                    tool.setScj(factory);
-                    tool.setSxh(spec);
-                    tool.setSyl(principle);
-                    tool.setSzcno(assetCode);
-                    tool.setSddno(orderNo);
-
-                    tool.setDtime(new Date()); // 默认当前导入时间
-                    tool.setSstepstate("导入");
-                    validTools.add(tool);
+                    validTools.add(buildLedgerTool(values));
                 }
             }
 
             if (hasError) {
-                String errorFileId = UUID.randomUUID().toString();
-                String errorFileName = "error_report_" + errorFileId + ".xlsx";
-                String savePath = uploadDir + File.separator + "temp" + File.separator + errorFileName;
-
-                File tempDir = new File(uploadDir + File.separator + "temp");
-                if (!tempDir.exists()) tempDir.mkdirs();
-
-                try (FileOutputStream fos = new FileOutputStream(savePath)) {
-                    workbook.write(fos);
-                }
-                errorFileCache.put(errorFileId, savePath);
-
-                result.put("success", false);
-                result.put("message", "导入中断：发现 " + errorDetails.size() + " 行数据校验不通过。请下载报告修正后重新导入。");
-                result.put("errorDetails", errorDetails);
-                result.put("errorFileId", errorFileId);
+                putImportErrors(result, errorDetails, saveErrorReport(workbook));
             } else {
                 // 执行入库
-                int count = 0;
-                for (ZjzkTool tool : validTools) {
-                    toolMapper.insert(tool);
-                    count++;
-                }
-                result.put("success", true);
-                result.put("message", "成功导入 " + count + " 行数据！");
+                putImportSuccess(result, mode, ledgerImporter.importTools(validTools, mode, null));
             }
 
         } catch (Exception e) {
@@ -729,6 +681,230 @@ public class SelfInspectionService {
         return result;
     }
 
+    /**
+     * [新增] 流式导入台账 (大文件)
+     * 1. 第一遍用 SAX 逐行读取并校验，内存中只保留文件内唯一性 key 和出错行的信息。
+     * 2. 有错误时第二遍流式读取原文件，用 SXSSFWorkbook 写出标注了错误的报告 (只保留单元格文本，不保留原格式)。
+     * 3. 没有错误时第二遍流式读取并交给 LedgerBulkImporter 分块写入。
+     */
+    public Map<String, Object> importLedgerDataStreaming(MultipartFile file, LedgerBulkImporter.Mode mode) {
+        Map<String, Object> result = new HashMap<>();
+        File source = null;
+        try {
+            source = spoolUpload(file);
+            File upload = source;
+
+            Set<String> fileUniqueKeys = new HashSet<>();
+            Map<Integer, List<LedgerCellError>> errorRows = new LinkedHashMap<>();
+            ExcelStreamReader.readFirstSheet(upload, LEDGER_IMPORT_COLUMNS, (rowIndex, values) -> {
+                if (rowIndex == 0) return; // 表头
+                List<LedgerCellError> rowErrors = validateLedgerRow(cleanCellTexts(values), fileUniqueKeys);
+                if (!rowErrors.isEmpty()) {
+                    errorRows.put(rowIndex, rowErrors);
+                }
+            });
+            fileUniqueKeys.clear();
+
+            if (!errorRows.isEmpty()) {
+                List<Map<String, Object>> errorDetails = new ArrayList<>(errorRows.size());
+                errorRows.forEach((rowIndex, rowErrors) -> errorDetails.add(ledgerErrorDetail(rowIndex, rowErrors)));
+                putImportErrors(result, errorDetails, writeStreamingErrorReport(upload, errorRows));
+            } else {
+                LedgerBulkImporter.Result stats = ledgerImporter.importRows(sink ->
+                        ExcelStreamReader.readFirstSheet(upload, LEDGER_IMPORT_COLUMNS, (rowIndex, values) -> {
+                            if (rowIndex == 0) return;
+                            sink.accept(buildLedgerTool(cleanCellTexts(values)));
+                        }), mode, null);
+                putImportSuccess(result, mode, stats);
+            }
+        } catch (Exception e) {
+            log.error("Excel导入异常 (流式)", e);
+            result.put("success", false);
+            result.put("message", "文件解析异常: " + e.getMessage());
+        } finally {
+            if (source != null && !source.delete()) {
+                source.deleteOnExit();
+            }
+        }
+        result.put("streaming", true);
+        return result;
+    }
+
+    // 台账导入读取的列数
+    // 0:车间, 1:名称, 2:所属机型, 3:所属设备, 4:主数据名称, 5:PM编码
+    // 6:安装位置, 7:厂家, 8:规格型号, 9:测量原理, 10:资产编码, 11:订单编号
+    private static final int LEDGER_IMPORT_COLUMNS = 12;
+
+    /**
+     * 单个单元格的校验错误
+     */
+    private static final class LedgerCellError {
+        final int column;
+        final String cellMessage;
+        final String rowMessage;
+
+        LedgerCellError(int column, String cellMessage, String rowMessage) {
+            this.column = column;
+            this.cellMessage = cellMessage;
+            this.rowMessage = rowMessage;
+        }
+    }
+
+    /**
+     * 校验一行台账数据 (必填 + 文件内12个字段组合唯一)，校验通过的行会记入 fileUniqueKeys
+     */
+    private List<LedgerCellError> validateLedgerRow(String[] v, Set<String> fileUniqueKeys) {
+        List<LedgerCellError> errors = new ArrayList<>(2);
+        String pmCode = v[5];
+        String assetCode = v[10];
+
+        // A. 必填校验 (PM编码, 资产编码)
+        if (isEmpty(pmCode)) {
+            errors.add(new LedgerCellError(5, "PM编码不能为空", "PM编码缺失; "));
+        }
+        if (isEmpty(assetCode)) {
+            errors.add(new LedgerCellError(10, "资产编码不能为空", "资产编码缺失; "));
+        }
+
+        // B. 组合重复校验 (12个字段)
+        // 仅当基本数据不全为空时才校验重复，避免空行干扰
+        if (errors.isEmpty() || (!isEmpty(pmCode) || !isEmpty(assetCode))) {
+            String uniqueKey = String.format("%s_%s_%s_%s_%s_%s_%s_%s_%s_%s_%s_%s",
+                    v[0], v[1], v[2], v[3], v[4], pmCode, v[6], v[7], v[8], v[9], assetCode, v[11]);
+            if (!fileUniqueKeys.add(uniqueKey)) {
+                // 标记整行或首个单元格为重复
+                errors.add(new LedgerCellError(0, "重复数据: 该行内容与前面行完全一致", "数据重复; "));
+            }
+        }
+        return errors;
+    }
+
+    private ZjzkTool buildLedgerTool(String[] v) {
+        ZjzkTool tool = new ZjzkTool();
+        tool.setSdept(v[0]);
+        tool.setSname(v[1]);
+        tool.setSjx(v[2]);
+        tool.setSfname(v[3]);
+        tool.setSbname(v[4]);
+        tool.setSpmcode(v[5]);
+        tool.setSazwz(v[6]);
+        tool.setScj(v[7]);
+        tool.setSxh(v[8]);
+        tool.setSyl(v[9]);
+        tool.setSzcno(v[10]);
+        tool.setSddno(v[11]);
+
+        tool.setDtime(new Date()); // 默认当前导入时间 (合并模式下已存在的台账保留原值，见 LedgerBulkImporter)
+        tool.setSstepstate("导入");
+        return tool;
+    }
+
+    private String[] cleanCellTexts(String[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = cleanCellText(values[i]);
+        }
+        return values;
+    }
+
+    private Map<String, Object> ledgerErrorDetail(int rowIndex, List<LedgerCellError> rowErrors) {
+        StringBuilder rowErrorMsg = new StringBuilder();
+        rowErrors.forEach(e -> rowErrorMsg.append(e.rowMessage));
+        Map<String, Object> err = new HashMap<>();
+        err.put("row", rowIndex + 1);
+        err.put("msg", rowErrorMsg.toString());
+        return err;
+    }
+
+    private void putImportErrors(Map<String, Object> result, List<Map<String, Object>> errorDetails, String errorFileId) {
+        result.put("success", false);
+        result.put("message", "导入中断：发现 " + errorDetails.size() + " 行数据校验不通过。请下载报告修正后重新导入。");
+        result.put("errorDetails", errorDetails);
+        result.put("errorFileId", errorFileId);
+    }
+
+    private void putImportSuccess(Map<String, Object> result, LedgerBulkImporter.Mode mode, LedgerBulkImporter.Result stats) {
+        result.put("success", true);
+        if (mode == LedgerBulkImporter.Mode.MERGE) {
+            result.put("message", "成功导入 " + stats.getWritten() + " 行数据！(新增 " + stats.getInserted() + " 行，更新 " + stats.getUpdated() + " 行)");
+        } else {
+            result.put("message", "成功导入 " + stats.getWritten() + " 行数据！");
+        }
+        result.put("stats", stats.toMap());
+    }
+
+    private CellStyle createErrorStyle(Workbook workbook) {
+        CellStyle errorStyle = workbook.createCellStyle();
+        errorStyle.setFillForegroundColor(IndexedColors.RED.getIndex());
+        errorStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        Font font = workbook.createFont();
+        font.setColor(IndexedColors.WHITE.getIndex());
+        errorStyle.setFont(font);
+        return errorStyle;
+    }
+
+    /**
+     * 保存错误报告到临时目录，返回下载用的 fileId
+     */
+    private String saveErrorReport(Workbook workbook) throws IOException {
+        String errorFileId = UUID.randomUUID().toString();
+        String errorFileName = "error_report_" + errorFileId + ".xlsx";
+        String savePath = uploadDir + File.separator + "temp" + File.separator + errorFileName;
+
+        File tempDir = new File(uploadDir + File.separator + "temp");
+        if (!tempDir.exists()) tempDir.mkdirs();
+
+        try (FileOutputStream fos = new FileOutputStream(savePath)) {
+            workbook.write(fos);
+        }
+        errorFileCache.put(errorFileId, savePath);
+        return errorFileId;
+    }
+
+    /**
+     * [新增] 第二遍流式读取原文件，按行写入 SXSSFWorkbook 并标注出错的单元格
+     */
+    private String writeStreamingErrorReport(File source, Map<Integer, List<LedgerCellError>> errorRows) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        try {
+            Sheet sheet = workbook.createSheet();
+            CellStyle errorStyle = createErrorStyle(workbook);
+            ExcelStreamReader.readFirstSheet(source, LEDGER_IMPORT_COLUMNS, (rowIndex, values) -> {
+                Row row = sheet.createRow(rowIndex);
+                for (int c = 0; c < values.length; c++) {
+                    if (!values[c].isEmpty()) {
+                        row.createCell(c).setCellValue(values[c]);
+                    }
+                }
+                List<LedgerCellError> rowErrors = errorRows.get(rowIndex);
+                if (rowErrors != null) {
+                    for (LedgerCellError error : rowErrors) {
+                        markCellError(row.getCell(error.column, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK), errorStyle, error.cellMessage);
+                    }
+                }
+            });
+            return saveErrorReport(workbook);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * 上传内容先落到临时文件，供 SAX 读取两遍 (以文件方式打开 xlsx 不会把整个压缩包载入内存)
+     */
+    private File spoolUpload(MultipartFile file) throws IOException {
+        File tempDir = new File(uploadDir + File.separator + "temp");
+        if (!tempDir.exists()) tempDir.mkdirs();
+        File temp = File.createTempFile("ledger_import_", ".xlsx", tempDir);
+        try (InputStream in = file.getInputStream(); FileOutputStream out = new FileOutputStream(temp)) {
+            StreamUtils.copy(in, out);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        return temp;
+    }
+
 
     // 缓存生成的错误报告文件路径，key为UUID
     private final Map<String, String> errorFileCache = new ConcurrentHashMap<>();
@@ -761,62 +937,41 @@ public class SelfInspectionService {
     /**
      * [新增] 批量刷新所有设备车速
      * 这是一个耗时操作，将在后台线程运行
+     * [已修改] 由 DeviceSpeedPoller 限速并发调用 TIMS，结果分块入库，进度见 getSpeedRefreshProgress
+     * [已修改] batchNo 由 prepareSpeedRefresh 在提交前登记
      */
-    @Async // 确保开启了 @EnableAsync
-    public void refreshAllDeviceSpeeds() {
-        log.info(">>> 开始批量刷新所有设备车速...");
-
+    @Async(AsyncExecutorConfig.DEVICE_POLL_EXECUTOR) // 独立的设备轮询线程池
+    public void refreshAllDeviceSpeeds(String batchNo) {
         // 1. 获取所有有 PM编码 的设备
-        List<String> spmCodes = toolMapper.findAllSpmCodes();
-        log.info("共找到 {} 个设备需要更新车速。", spmCodes.size());
-
-        List<Map<String, Object>> records = new ArrayList<>();
-        String batchNo = "MANUAL_REFRESH_" + System.currentTimeMillis();
-        Date now = new Date();
-        Date startTime = new Date(now.getTime() - 15 * 60 * 1000); // 查询过去15分钟
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-
-        int successCount = 0;
-
-        for (String code : spmCodes) {
-            try {
-                GetAvgSpeedReq req = new GetAvgSpeedReq();
-                req.setEquipmentCode(code);
-                req.setStartTime(sdf.format(startTime));
-                req.setEndTime(sdf.format(now));
-
-                Double speed = timsClient.getAverageSpeed(req);
-
-                // 只有获取到有效车速才记录
-                if (speed != null) {
-                    Map<String, Object> record = new HashMap<>();
-                    record.put("batchNo", batchNo);
-                    record.put("spmcode", code);
-                    record.put("avgSpeed", speed);
-                    record.put("startTime", startTime);
-                    record.put("endTime", now);
-                    records.add(record);
-                    successCount++;
-                }
-
-                // 简单的限流，防止把对方接口打挂
-                Thread.sleep(50);
-
-            } catch (Exception e) {
-                log.warn("获取设备 {} 车速失败: {}", code, e.getMessage());
-            }
+        List<String> spmCodes;
+        try {
+            spmCodes = toolMapper.findAllSpmCodes();
+        } catch (RuntimeException e) {
+            speedPoller.abandon(batchNo, "查询设备列表失败: " + e.getMessage());
+            throw e;
         }
+        speedPoller.refreshAll(batchNo, spmCodes);
+    }
 
-        if (!records.isEmpty()) {
-            // 分批插入，防止 SQL 过长
-            int batchSize = 100;
-            for (int i = 0; i < records.size(); i += batchSize) {
-                int end = Math.min(i + batchSize, records.size());
-                speedCheckMapper.batchInsert(records.subList(i, end));
-            }
-        }
+    /**
+     * [新增] 登记一次全量车速刷新 (在提交 refreshAllDeviceSpeeds 之前调用)，上一次仍在执行时返回 null
+     */
+    public String prepareSpeedRefresh() {
+        return speedPoller.prepare();
+    }
 
-        log.info("<<< 批量刷新车速完成。成功更新 {}/{} 个设备。", successCount, spmCodes.size());
+    /**
+     * [新增] 全量车速刷新未能提交到后台线程池时结束登记的刷新
+     */
+    public void abandonSpeedRefresh(String batchNo, String message) {
+        speedPoller.abandon(batchNo, message);
+    }
+
+    /**
+     * [新增] 最近一次全量车速刷新的进度
+     */
+    public Map<String, Object> getSpeedRefreshProgress() {
+        return speedPoller.getProgress();
     }
 
     /**
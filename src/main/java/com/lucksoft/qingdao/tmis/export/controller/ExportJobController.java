@@ -0,0 +1,65 @@
+package com.lucksoft.qingdao.tmis.export.controller;
+
+import com.lucksoft.qingdao.tmis.export.service.ExportJobService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Map;
+
+/**
+ * [新增] 异步导出任务的进度查询与文件下载
+ * 任务由各模块的 /export/async 接口提交 (见 ExportJobService)。
+ */
+@RestController
+@RequestMapping("/api/export/jobs")
+public class ExportJobController {
+
+    private final ExportJobService exportJobService;
+
+    public ExportJobController(ExportJobService exportJobService) {
+        this.exportJobService = exportJobService;
+    }
+
+    /**
+     * 查询任务进度 (status: QUEUED / RUNNING / COMPLETED / FAILED)
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String jobId) {
+        Map<String, Object> job = exportJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    /**
+     * 下载已完成任务的文件；任务未完成时返回 409 和当前进度
+     */
+    @GetMapping("/{jobId}/download")
+    public ResponseEntity<?> download(@PathVariable String jobId) throws UnsupportedEncodingException {
+        Map<String, Object> job = exportJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        File file = exportJobService.getFile(jobId);
+        if (file == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(job);
+        }
+
+        Resource resource = new FileSystemResource(file);
+        String fileName = URLEncoder.encode((String) job.get("fileName"), "UTF-8").replaceAll("\\+", "%20");
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + fileName)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(resource);
+    }
+}
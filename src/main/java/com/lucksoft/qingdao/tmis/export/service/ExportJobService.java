@@ -0,0 +1,273 @@
+package com.lucksoft.qingdao.tmis.export.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.lucksoft.qingdao.config.AsyncExecutorConfig;
+import com.lucksoft.qingdao.tmis.metrology.ExportColumn;
+import com.lucksoft.qingdao.tmis.util.ExcelExportUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * [新增] 异步导出任务
+ * 大数据量导出在 Tomcat 请求线程中执行，经常超过代理的超时时间。这里改为:
+ * 1. 提交后立即返回 jobId，导出在 exportExecutor 线程池中执行 (并发和排队数有限，满载时拒绝)。
+ * 2. 文件先写到 {file.upload-dir}/temp/exports/{jobId}.xlsx.part，完成后改名为 .xlsx，供下载接口读取。
+ * 3. 执行过程中每 500 行更新一次已写入行数，可通过 /api/export/jobs/{jobId} 查询进度和耗时。
+ * 4. 同一类型、参数完全相同的导出仍在排队或执行时，再次提交直接返回已有任务，不重复查询。
+ * 5. 任务结束 export.job.ttl-minutes 分钟后，记录和文件由定时任务清理。
+ */
+@Service
+public class ExportJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportJobService.class);
+
+    private static final String FILE_SUFFIX = ".xlsx";
+    private static final String PART_SUFFIX = ".xlsx.part";
+
+    // 仅用于生成去重键: Map 按键排序，保证相同参数得到相同的字符串
+    private static final ObjectMapper KEY_MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    @Autowired
+    @Qualifier(AsyncExecutorConfig.EXPORT_EXECUTOR)
+    private ThreadPoolTaskExecutor exportExecutor;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Value("${export.job.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private File exportDir;
+
+    // jobId -> 任务
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    // 去重键 -> 排队或执行中的任务
+    private final Map<String, ExportJob> inFlight = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        exportDir = new File(uploadDir + File.separator + "temp" + File.separator + "exports");
+        if (!exportDir.exists() && !exportDir.mkdirs()) {
+            log.warn("创建导出目录失败: {}", exportDir.getAbsolutePath());
+        }
+        // 任务记录只保存在内存中，上次运行留下的文件已无法下载
+        File[] leftovers = exportDir.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX) || name.endsWith(PART_SUFFIX));
+        if (leftovers != null) {
+            for (File f : leftovers) {
+                if (!f.delete()) {
+                    log.warn("删除残留导出文件失败: {}", f.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    /**
+     * 提交导出任务
+     *
+     * @param type     导出类型，与 params 一起组成去重键
+     * @param params   决定导出内容的全部参数 (查询条件、列配置、数据权限)
+     * @param fileName 下载时的文件名 (不含扩展名)，同时作为工作表名称
+     * @param columns  导出列
+     * @param producer 数据来源，在导出线程中执行
+     * @return 任务快照；deduplicated 为 true 表示复用了已在执行的相同任务
+     * @throws TaskRejectedException 导出线程池已满
+     */
+    public <T> Map<String, Object> submit(String type, Object params, String fileName, List<ExportColumn> columns,
+                                          ExcelExportUtil.RowProducer<T> producer) {
+        if (columns == null || columns.isEmpty()) {
+            throw new IllegalArgumentException("导出列配置不能为空");
+        }
+        String dedupKey = dedupKey(type, params, columns);
+        ExportJob job;
+        synchronized (inFlight) {
+            ExportJob existing = inFlight.get(dedupKey);
+            if (existing != null) {
+                log.info("导出任务去重: {} 复用进行中的任务 {}", type, existing.jobId);
+                Map<String, Object> snapshot = existing.snapshot();
+                snapshot.put("deduplicated", true);
+                return snapshot;
+            }
+            job = new ExportJob(UUID.randomUUID().toString(), type, fileName, dedupKey);
+            jobs.put(job.jobId, job);
+            inFlight.put(dedupKey, job);
+            try {
+                final ExportJob submitted = job;
+                exportExecutor.execute(() -> run(submitted, columns, producer));
+            } catch (TaskRejectedException e) {
+                inFlight.remove(dedupKey);
+                jobs.remove(job.jobId);
+                throw e;
+            }
+        }
+        log.info("已提交导出任务 {} ({}: {})", job.jobId, type, fileName);
+        Map<String, Object> snapshot = job.snapshot();
+        snapshot.put("deduplicated", false);
+        return snapshot;
+    }
+
+    /**
+     * 任务进度快照，不存在 (或已过期清理) 时返回 null
+     */
+    public Map<String, Object> getJob(String jobId) {
+        ExportJob job = jobs.get(jobId);
+        return job == null ? null : job.snapshot();
+    }
+
+    /**
+     * 已完成任务的文件，任务不存在、未完成或文件已被清理时返回 null
+     */
+    public File getFile(String jobId) {
+        ExportJob job = jobs.get(jobId);
+        if (job == null || !"COMPLETED".equals(job.status)) {
+            return null;
+        }
+        File file = fileOf(job.jobId, FILE_SUFFIX);
+        return file.exists() ? file : null;
+    }
+
+    /**
+     * 定时清理过期任务 (每分钟): 结束超过 TTL 的任务删除记录和文件
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void purgeExpired() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(ttlMinutes);
+        int purged = 0;
+        Iterator<ExportJob> it = jobs.values().iterator();
+        while (it.hasNext()) {
+            ExportJob job = it.next();
+            if (job.endMillis > 0 && job.endMillis < expireBefore) {
+                it.remove();
+                deleteQuietly(fileOf(job.jobId, FILE_SUFFIX));
+                purged++;
+            }
+        }
+        if (purged > 0) {
+            log.info("清理过期导出任务 {} 个", purged);
+        }
+    }
+
+    private <T> void run(ExportJob job, List<ExportColumn> columns, ExcelExportUtil.RowProducer<T> producer) {
+        job.startMillis = System.currentTimeMillis();
+        job.status = "RUNNING";
+        File part = fileOf(job.jobId, PART_SUFFIX);
+        try {
+            int rows;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(part), 64 * 1024)) {
+                rows = ExcelExportUtil.streamWrite(out, job.fileName, columns, producer, written -> job.rowsWritten = written);
+            }
+            File target = fileOf(job.jobId, FILE_SUFFIX);
+            if (!part.renameTo(target)) {
+                throw new IOException("导出文件重命名失败: " + part.getAbsolutePath());
+            }
+            job.fileSize = target.length();
+            job.finish("COMPLETED", null);
+            log.info("导出任务 {} ({}) 完成，共 {} 行，{} 字节，耗时 {} ms",
+                    job.jobId, job.fileName, rows, job.fileSize, job.elapsedMillis());
+        } catch (Throwable e) {
+            log.error("导出任务 {} ({}) 失败", job.jobId, job.fileName, e);
+            deleteQuietly(part);
+            job.finish("FAILED", e.getMessage());
+        } finally {
+            synchronized (inFlight) {
+                inFlight.remove(job.dedupKey, job);
+            }
+        }
+    }
+
+    private String dedupKey(String type, Object params, List<ExportColumn> columns) {
+        Map<String, Object> key = new LinkedHashMap<>();
+        key.put("params", params);
+        key.put("columns", columns);
+        try {
+            return type + ":" + KEY_MAPPER.writeValueAsString(key);
+        } catch (JsonProcessingException e) {
+            // 参数无法序列化时不去重
+            return type + ":" + UUID.randomUUID();
+        }
+    }
+
+    private File fileOf(String jobId, String suffix) {
+        return new File(exportDir, jobId + suffix);
+    }
+
+    private static void deleteQuietly(File file) {
+        if (file.exists() && !file.delete()) {
+            log.warn("删除导出文件失败: {}", file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 一个导出任务 (由导出线程更新，状态接口随时读取)
+     */
+    private static final class ExportJob {
+        final String jobId;
+        final String type;
+        final String fileName;
+        final String dedupKey;
+        final long createMillis = System.currentTimeMillis();
+        volatile String status = "QUEUED";
+        volatile String message;
+        volatile int rowsWritten;
+        volatile long fileSize;
+        volatile long startMillis;
+        volatile long endMillis;
+
+        ExportJob(String jobId, String type, String fileName, String dedupKey) {
+            this.jobId = jobId;
+            this.type = type;
+            this.fileName = fileName;
+            this.dedupKey = dedupKey;
+        }
+
+        void finish(String finalStatus, String finalMessage) {
+            this.message = finalMessage;
+            this.endMillis = System.currentTimeMillis();
+            this.status = finalStatus;
+        }
+
+        long elapsedMillis() {
+            if (startMillis == 0) {
+                return 0;
+            }
+            return (endMillis > 0 ? endMillis : System.currentTimeMillis()) - startMillis;
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("jobId", jobId);
+            map.put("type", type);
+            map.put("fileName", fileName + FILE_SUFFIX);
+            map.put("status", status);
+            map.put("message", message);
+            map.put("rowsWritten", rowsWritten);
+            map.put("fileSize", fileSize);
+            map.put("createTime", new Date(createMillis));
+            map.put("startTime", startMillis > 0 ? new Date(startMillis) : null);
+            map.put("endTime", endMillis > 0 ? new Date(endMillis) : null);
+            map.put("elapsedMs", elapsedMillis());
+            map.put("downloadUrl", "COMPLETED".equals(status) ? "/api/export/jobs/" + jobId + "/download" : null);
+            return map;
+        }
+    }
+}
@@ -2,12 +2,15 @@ package com.lucksoft.qingdao.tmis.metrology.controller;
 
 import com.lucksoft.qingdao.qdjl.mapper.MetrologyLedgerMapper;
 import com.lucksoft.qingdao.tmis.dto.PageResult;
+import com.lucksoft.qingdao.tmis.export.service.ExportJobService;
 import com.lucksoft.qingdao.tmis.metrology.dto.LedgerQuery;
 import com.lucksoft.qingdao.tmis.metrology.dto.MetrologyLedgerDTO;
 import com.lucksoft.qingdao.tmis.metrology.service.MetrologyLedgerService;
 import com.lucksoft.qingdao.tmis.util.ExcelExportUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -24,10 +27,13 @@ public class MetrologyLedgerController {
 
     private final MetrologyLedgerService metrologyLedgerService;
     private final MetrologyLedgerMapper metrologyLedgerMapper; // 直接注入Mapper用于简单查询
+    private final ExportJobService exportJobService;
 
-    public MetrologyLedgerController(MetrologyLedgerService metrologyLedgerService, MetrologyLedgerMapper metrologyLedgerMapper) {
+    public MetrologyLedgerController(MetrologyLedgerService metrologyLedgerService, MetrologyLedgerMapper metrologyLedgerMapper,
+                                     ExportJobService exportJobService) {
         this.metrologyLedgerService = metrologyLedgerService;
         this.metrologyLedgerMapper = metrologyLedgerMapper;
+        this.exportJobService = exportJobService;
     }
     /**
      * 根据查询条件分页获取计量台账列表
@@ -50,11 +56,27 @@ public class MetrologyLedgerController {
     @PostMapping("/export")
     public void exportLedger(@RequestBody LedgerQuery query, HttpServletResponse response) throws IOException {
         log.info("接收到台账导出请求: {}", query);
-        // 调用 Service 获取所有符合条件的数据（不分页）
-        List<MetrologyLedgerDTO> dataToExport = metrologyLedgerService.getLedgerListForExport(query);
+        // [已修改] 游标逐行读取并直接写入响应流，不再先取出全部数据
+        ExcelExportUtil.<MetrologyLedgerDTO>streamExport(response, "计量台账", query.getColumns(),
+                sink -> metrologyLedgerService.streamLedgerForExport(query, sink));
+    }
 
-        // 使用通用工具类导出 Excel
-        ExcelExportUtil.export(response, "计量台账", query.getColumns(), dataToExport, MetrologyLedgerDTO.class);
+    /**
+     * [新增] 异步导出计量台账: 立即返回任务信息，通过 /api/export/jobs/{jobId} 查询进度并下载
+     * @param query 查询参数，包含要导出的列信息
+     * @return 任务信息；导出任务较多时返回 429
+     */
+    @PostMapping("/export/async")
+    public ResponseEntity<?> exportLedgerAsync(@RequestBody LedgerQuery query) {
+        log.info("接收到台账异步导出请求: {}", query);
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(exportJobService.<MetrologyLedgerDTO>submit("metrology-ledger", query, "计量台账", query.getColumns(),
+                            sink -> metrologyLedgerService.streamLedgerForExport(query, sink)));
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Collections.singletonMap("message", "导出任务较多，请稍后再试。"));
+        }
     }
 
     /**
@@ -4,6 +4,7 @@ import com.lucksoft.qingdao.qdjl.mapper.MetrologyTaskMapper;
 import com.lucksoft.qingdao.system.dto.UserInfo;
 import com.lucksoft.qingdao.system.util.AuthUtil;
 import com.lucksoft.qingdao.tmis.dto.PageResult;
+import com.lucksoft.qingdao.tmis.export.service.ExportJobService;
 import com.lucksoft.qingdao.tmis.metrology.dto.MetrologyTaskDTO;
 import com.lucksoft.qingdao.tmis.metrology.dto.TaskQuery;
 import com.lucksoft.qingdao.tmis.metrology.dto.UpdateTaskRequestDTO;
@@ -12,6 +13,8 @@ import com.lucksoft.qingdao.tmis.util.ExcelExportUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -31,13 +34,16 @@ public class MetrologyTaskController {
 
     private final MetrologyTaskService metrologyTaskService;
     private final MetrologyTaskMapper metrologyTaskMapper; // 直接注入Mapper
+    private final ExportJobService exportJobService;
 
     @Autowired // 注入 AuthUtil
     private AuthUtil authUtil;
 
-    public MetrologyTaskController(MetrologyTaskService metrologyTaskService, MetrologyTaskMapper metrologyTaskMapper) {
+    public MetrologyTaskController(MetrologyTaskService metrologyTaskService, MetrologyTaskMapper metrologyTaskMapper,
+                                   ExportJobService exportJobService) {
         this.metrologyTaskService = metrologyTaskService;
         this.metrologyTaskMapper = metrologyTaskMapper;
+        this.exportJobService = exportJobService;
     }
 
     @GetMapping("/list")
@@ -69,8 +75,33 @@ public class MetrologyTaskController {
             log.warn("导出时无法获取当前登录用户信息，将导出所有任务。");
         }
 
-        List<MetrologyTaskDTO> dataToExport = metrologyTaskService.getTasksForExport(query);
-        ExcelExportUtil.export(response, "计量点检任务", query.getColumns(), dataToExport, MetrologyTaskDTO.class);
+        // [已修改] 游标逐行读取并直接写入响应流
+        ExcelExportUtil.<MetrologyTaskDTO>streamExport(response, "计量点检任务", query.getColumns(),
+                sink -> metrologyTaskService.streamTasksForExport(query, sink));
+    }
+
+    /**
+     * [新增] 异步导出计量任务: 立即返回任务信息，通过 /api/export/jobs/{jobId} 查询进度并下载
+     * 登录用户的 LoginId 计入查询条件，不同用户的相同导出不会被合并
+     */
+    @PostMapping("/export/async")
+    public ResponseEntity<?> exportTasksAsync(@RequestBody TaskQuery query, HttpServletRequest request) {
+        log.info("接收到计量任务异步导出请求: {}", query);
+        String loginId = authUtil.getCurrentUserLoginId(request);
+        if (loginId != null) {
+            query.setLoginId(loginId);
+        } else {
+            log.warn("导出时无法获取当前登录用户信息，将导出所有任务。");
+        }
+
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(exportJobService.<MetrologyTaskDTO>submit("metrology-task", query, "计量点检任务", query.getColumns(),
+                            sink -> metrologyTaskService.streamTasksForExport(query, sink)));
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Collections.singletonMap("message", "导出任务较多，请稍后再试。"));
+        }
     }
 
     /**
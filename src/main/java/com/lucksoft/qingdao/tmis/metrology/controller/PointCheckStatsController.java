@@ -4,17 +4,24 @@ import com.github.pagehelper.PageHelper;
 import com.lucksoft.qingdao.system.util.AuthUtil;
 import com.lucksoft.qingdao.tmis.metrology.dto.PointCheckQuery;
 import com.lucksoft.qingdao.tmis.metrology.dto.PointCheckStatsDTO;
+import com.lucksoft.qingdao.tmis.metrology.service.PointCheckAggregateService;
 import com.lucksoft.qingdao.tmis.metrology.service.PointCheckStatsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 点检统计真实数据接口控制器
@@ -30,9 +37,15 @@ public class PointCheckStatsController {
     private static final Logger log = LoggerFactory.getLogger(PointCheckStatsController.class);
 
     private final PointCheckStatsService pointCheckStatsService;
+    private final PointCheckAggregateService pointCheckAggregateService;
 
-    public PointCheckStatsController(PointCheckStatsService pointCheckStatsService) {
+    // [新增] 运维接口 (SQL基准对比、汇总表全量重算会直接压数据库) 开关，默认关闭
+    @Value("${metrology.point-check-stats.admin-endpoints-enabled:false}")
+    private boolean adminEndpointsEnabled;
+
+    public PointCheckStatsController(PointCheckStatsService pointCheckStatsService, PointCheckAggregateService pointCheckAggregateService) {
         this.pointCheckStatsService = pointCheckStatsService;
+        this.pointCheckAggregateService = pointCheckAggregateService;
     }
 
     /**
@@ -53,7 +66,58 @@ public class PointCheckStatsController {
 //        }
 
         PageHelper.clearPage();
-        List<PointCheckStatsDTO> stats = pointCheckStatsService.getStatistics(query);
-        return ResponseEntity.ok(stats);
+        try {
+            List<PointCheckStatsDTO> stats = pointCheckStatsService.getStatistics(query);
+            return ResponseEntity.ok(stats);
+        } catch (IllegalArgumentException e) {
+            // [新增] dateRange 中的年份格式不正确
+            log.warn("点检统计查询参数不正确: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * [新增] 统计SQL基准对比: 原关联子查询与集合式SQL的耗时、执行计划及结果是否一致 (不走缓存)
+     * @param query 查询参数 (dateRange 决定年份，category 决定 ABC 类别)
+     * @param runs  每种SQL执行次数，最多 10 次
+     * [已修改] 改为 POST，且需配置 metrology.point-check-stats.admin-endpoints-enabled=true 才可调用
+     */
+    @PostMapping("/statistics/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmark(PointCheckQuery query, @RequestParam(defaultValue = "3") int runs) {
+        if (!adminEndpointsEnabled) {
+            return adminEndpointsDisabled();
+        }
+        log.info("接收到点检统计SQL基准对比请求: {}, runs={}", query, runs);
+        try {
+            return ResponseEntity.ok(pointCheckStatsService.benchmark(query, runs));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * [新增] 月度汇总表状态 (覆盖年份、刷新水位、最近一次刷新结果)
+     */
+    @GetMapping("/aggregate/status")
+    public ResponseEntity<Map<String, Object>> getAggregateStatus() {
+        return ResponseEntity.ok(pointCheckAggregateService.getStatus());
+    }
+
+    /**
+     * [新增] 请求全量重算月度汇总表 (由后台轮询执行，可通过 /aggregate/status 查看结果)
+     * [已修改] 与 SQL 基准对比相同，需开启 metrology.point-check-stats.admin-endpoints-enabled
+     */
+    @PostMapping("/aggregate/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildAggregate() {
+        if (!adminEndpointsEnabled) {
+            return adminEndpointsDisabled();
+        }
+        pointCheckAggregateService.requestRebuild();
+        return ResponseEntity.ok(Collections.singletonMap("message", "已请求重算点检统计汇总表，将在下一次轮询时执行。"));
+    }
+
+    private ResponseEntity<Map<String, Object>> adminEndpointsDisabled() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Collections.singletonMap("message", "运维接口未开启 (metrology.point-check-stats.admin-endpoints-enabled=false)。"));
     }
 }
@@ -0,0 +1,40 @@
+package com.lucksoft.qingdao.tmis.metrology.dto;
+
+import java.util.Date;
+
+/**
+ * 点检统计汇总表控制行 (JL_PC_STATS_CONTROL, ID = 1)，多个实例共享的刷新状态。
+ */
+public class PointCheckAggControlDTO {
+    // 增量刷新水位 (上次刷新开始时的数据库时间)
+    private Date watermark;
+    // 上次刷新时计划表的最大 INDOCNO
+    private Long lastIndocno;
+    // 汇总表覆盖的年份范围 (最近一次全量重算)
+    private Integer fromYear;
+    private Integer toYear;
+    // 最近一次全量重算完成时间
+    private Date rebuildTime;
+    // 查询时的数据库时间
+    private Date dbTime;
+
+    /**
+     * 是否已完成过全量重算 (控制行刚初始化时为 false)
+     */
+    public boolean isInitialized() {
+        return watermark != null && fromYear != null && toYear != null;
+    }
+
+    public Date getWatermark() { return watermark; }
+    public void setWatermark(Date watermark) { this.watermark = watermark; }
+    public Long getLastIndocno() { return lastIndocno; }
+    public void setLastIndocno(Long lastIndocno) { this.lastIndocno = lastIndocno; }
+    public Integer getFromYear() { return fromYear; }
+    public void setFromYear(Integer fromYear) { this.fromYear = fromYear; }
+    public Integer getToYear() { return toYear; }
+    public void setToYear(Integer toYear) { this.toYear = toYear; }
+    public Date getRebuildTime() { return rebuildTime; }
+    public void setRebuildTime(Date rebuildTime) { this.rebuildTime = rebuildTime; }
+    public Date getDbTime() { return dbTime; }
+    public void setDbTime(Date dbTime) { this.dbTime = dbTime; }
+}
@@ -6,11 +6,16 @@ import com.lucksoft.qingdao.qdjl.mapper.MetrologyLedgerMapper;
 import com.lucksoft.qingdao.tmis.dto.PageResult;
 import com.lucksoft.qingdao.tmis.metrology.dto.LedgerQuery;
 import com.lucksoft.qingdao.tmis.metrology.dto.MetrologyLedgerDTO;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 public class MetrologyLedgerService {
@@ -51,13 +56,19 @@ public class MetrologyLedgerService {
     }
 
     /**
-     * 获取所有符合条件的台账数据（用于导出）
+     * [新增] 以游标逐条读取符合条件的台账 (用于流式导出)
+     * 在 qdjl 数据源的只读事务内遍历游标，读一行交给 sink 一行，不把结果集放进内存。
      * @param query 查询条件
-     * @return 数据列表
+     * @param sink  每行数据的处理方法
      */
-    public List<MetrologyLedgerDTO> getLedgerListForExport(LedgerQuery query) {
+    @Transactional(transactionManager = "qdjlTransactionManager", readOnly = true)
+    public void streamLedgerForExport(LedgerQuery query, Consumer<MetrologyLedgerDTO> sink) {
         convertFilterParams(query);
-        return metrologyLedgerMapper.findLedgerByCriteria(query);
+        try (Cursor<MetrologyLedgerDTO> cursor = metrologyLedgerMapper.cursorLedgerByCriteria(query)) {
+            cursor.forEach(sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
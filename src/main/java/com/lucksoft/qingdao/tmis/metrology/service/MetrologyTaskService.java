@@ -7,14 +7,18 @@ import com.lucksoft.qingdao.tmis.dto.PageResult;
 import com.lucksoft.qingdao.tmis.metrology.dto.MetrologyTaskDTO;
 import com.lucksoft.qingdao.tmis.metrology.dto.TaskQuery;
 import com.lucksoft.qingdao.tmis.metrology.dto.UpdateTaskRequestDTO;
+import org.apache.ibatis.cursor.Cursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 public class MetrologyTaskService {
@@ -22,9 +26,11 @@ public class MetrologyTaskService {
     private static final Logger log = LoggerFactory.getLogger(MetrologyTaskService.class);
 
     private final MetrologyTaskMapper metrologyTaskMapper;
+    private final PointCheckAggregateService pointCheckAggregateService;
 
-    public MetrologyTaskService(MetrologyTaskMapper metrologyTaskMapper) {
+    public MetrologyTaskService(MetrologyTaskMapper metrologyTaskMapper, PointCheckAggregateService pointCheckAggregateService) {
         this.metrologyTaskMapper = metrologyTaskMapper;
+        this.pointCheckAggregateService = pointCheckAggregateService;
     }
 
     public PageResult<MetrologyTaskDTO> getTasksPage(TaskQuery query) {
@@ -41,9 +47,17 @@ public class MetrologyTaskService {
         );
     }
 
-    public List<MetrologyTaskDTO> getTasksForExport(TaskQuery query) {
+    /**
+     * [新增] 以游标逐条读取任务 (用于流式导出，在 qdjl 数据源的只读事务内遍历)
+     */
+    @Transactional(transactionManager = "qdjlTransactionManager", readOnly = true)
+    public void streamTasksForExport(TaskQuery query, Consumer<MetrologyTaskDTO> sink) {
         convertFilterParams(query);
-        return metrologyTaskMapper.findTasksByCriteria(query);
+        try (Cursor<MetrologyTaskDTO> cursor = metrologyTaskMapper.cursorTasksByCriteria(query)) {
+            cursor.forEach(sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -79,6 +93,8 @@ public class MetrologyTaskService {
                 throw new RuntimeException("操作失败: " + msg);
             }
 
+            // [新增] 提交后刷新点检统计汇总表中这些任务所在的月份
+            pointCheckAggregateService.markTasksChanged(requestDTO.getIds());
             return (Integer) params.get("outCount");
 
         } else {
@@ -94,6 +110,8 @@ public class MetrologyTaskService {
                         requestDTO.getUserName()
                 );
                 log.info("存储过程调用成功。");
+                // [新增] 提交后刷新点检统计汇总表中这些任务所在的月份
+                pointCheckAggregateService.markTasksChanged(requestDTO.getIds());
                 return requestDTO.getIds().size();
 
             } catch (Exception e) {
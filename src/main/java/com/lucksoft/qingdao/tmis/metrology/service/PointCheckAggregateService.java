@@ -0,0 +1,453 @@
+package com.lucksoft.qingdao.tmis.metrology.service;
+
+import com.lucksoft.qingdao.config.AsyncExecutorConfig;
+import com.lucksoft.qingdao.qdjl.mapper.PointCheckMonthlyStatsMapper;
+import com.lucksoft.qingdao.tmis.metrology.dto.PointCheckAggControlDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * [新增] 点检统计月度汇总表 (JL_PC_STATS_MONTHLY) 的增量维护
+ * 原先每次缓存未命中都要扫描 JL_EQUIP_DXJ / JL_EQDXJLOG 全年数据。这里把明细按 (部门, ABC分类, 年月) 预聚合，
+ * 统计接口只读取几百行汇总数据:
+ * 1. 启动后首次轮询及每天 rebuild-cron 时，重算最近 rebuild-years 年的全部月份。
+ * 2. 每 incremental-interval-ms (或 MetrologyTaskService.updateTasks 提交后的下一次轮询) 增量刷新，
+ *    只重算发生变化的月份: DCHECK 或 DWUSER 不早于上次刷新时间、新增的计划 (INDOCNO 增大)、刚更新的任务。
+ *    [已修改] 没有变化的月份时只推进水位，不重算也不清缓存。
+ * 3. 每次刷新在一个事务中先锁定控制行 JL_PC_STATS_CONTROL (SELECT ... FOR UPDATE)，再对各月份先删后插并推进水位:
+ *    多个实例依次执行，读取方不会看到半个月的数据。
+ *    [已修改] 刷新后只清除重算月份所在年份的 pointCheckStats 缓存 (缓存键以统计年份开头)。
+ * 4. 水位保存在控制行中由各实例共享。全量重算请求之后已有其他实例完成重算时直接沿用 (每日重算只执行一次)；
+ *    启动时 24 小时内已重算过同样沿用。
+ * 5. markTasksChanged 只通知本实例尽快刷新; updateTasks 会把 DCHECK 置为 SYSDATE，
+ *    其他实例的变化由共享水位在下一次增量刷新中覆盖。
+ * 6. 重算和刷新在 pointCheckAggExecutor 线程中执行，@Scheduled 轮询只负责提交，不占用共用的调度线程。
+ * 7. 汇总表尚未建好、首次重算未完成或所查年份不在覆盖范围内时，isAvailable 返回 false，统计退回明细表查询。
+ */
+@Service
+public class PointCheckAggregateService {
+
+    private static final Logger log = LoggerFactory.getLogger(PointCheckAggregateService.class);
+
+    private static final String STATS_CACHE = "pointCheckStats";
+    private static final int ID_CHUNK_SIZE = 1000;
+    private static final DateTimeFormatter YM_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // 水位回退量: 覆盖刷新开始时尚未提交的事务
+    private static final long WATERMARK_OVERLAP_MS = TimeUnit.MINUTES.toMillis(5);
+
+    @Autowired
+    private PointCheckMonthlyStatsMapper monthlyStatsMapper;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    @Qualifier("qdjlTransactionManager")
+    private DataSourceTransactionManager qdjlTransactionManager;
+
+    @Autowired
+    @Qualifier(AsyncExecutorConfig.POINT_CHECK_AGG_EXECUTOR)
+    private ThreadPoolTaskExecutor aggExecutor;
+
+    @Value("${metrology.point-check-agg.enabled:true}")
+    private boolean enabled;
+
+    @Value("${metrology.point-check-agg.rebuild-years:2}")
+    private int rebuildYears;
+
+    @Value("${metrology.point-check-agg.incremental-interval-ms:300000}")
+    private long incrementalIntervalMs;
+
+    private TransactionTemplate transactionTemplate;
+
+    // 更新过的任务ID，下一次轮询时重算其所在月份
+    private final Queue<Long> changedTaskIds = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean refreshRequested = new AtomicBoolean();
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean(true);
+    // 全量重算请求时间: 此后已有实例完成重算则沿用 (启动时 24 小时内重算过即可)
+    private volatile long rebuildRequestedMillis = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+
+    // 是否有刷新正在 aggExecutor 中执行
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    // 汇总表覆盖的年份范围 (全量重算成功后设置)
+    private volatile int coveredFromYear;
+    private volatile int coveredToYear;
+    private volatile boolean ready;
+
+    // 最近一次刷新后的共享水位 (数据库时间 / 计划表最大 INDOCNO)，仅用于状态展示
+    private volatile Date watermark;
+    private volatile long lastPlanIndocno;
+
+    private volatile long lastIncrementalMillis;
+    private volatile long nextRebuildAttemptMillis;
+    private volatile Map<String, Object> lastRefresh;
+
+    // 汇总表或控制表不可用的警告只记录一次
+    private volatile boolean setupWarned;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(qdjlTransactionManager);
+    }
+
+    /**
+     * 汇总表是否可以用于查询该年份的统计
+     */
+    public boolean isAvailable(String year) {
+        if (!enabled || !ready || year == null || !year.matches("\\d{4}")) {
+            return false;
+        }
+        int y = Integer.parseInt(year);
+        return y >= coveredFromYear && y <= coveredToYear;
+    }
+
+    /**
+     * 任务更新后调用: 事务提交后登记任务ID，由本实例下一次轮询重算其所在月份
+     */
+    public void markTasksChanged(Collection<String> ids) {
+        if (!enabled || ids == null || ids.isEmpty()) {
+            return;
+        }
+        List<Long> taskIds = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            try {
+                taskIds.add(Long.valueOf(id.trim()));
+            } catch (NumberFormatException | NullPointerException e) {
+                // 非法ID由存储过程处理，这里忽略
+            }
+        }
+        Runnable mark = () -> {
+            changedTaskIds.addAll(taskIds);
+            refreshRequested.set(true);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    mark.run();
+                }
+            });
+        } else {
+            mark.run();
+        }
+    }
+
+    /**
+     * 请求在下一次轮询时全量重算
+     */
+    public void requestRebuild() {
+        rebuildRequestedMillis = System.currentTimeMillis();
+        rebuildRequested.set(true);
+        nextRebuildAttemptMillis = 0;
+    }
+
+    @Scheduled(cron = "${metrology.point-check-agg.rebuild-cron:0 30 1 * * ?}")
+    public void scheduledRebuild() {
+        requestRebuild();
+    }
+
+    /**
+     * 轮询: 把重算/刷新提交到 aggExecutor (上一次仍在执行时跳过)
+     */
+    @Scheduled(fixedDelayString = "${metrology.point-check-agg.poll-ms:10000}")
+    public void poll() {
+        if (!enabled || !polling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            aggExecutor.execute(() -> {
+                try {
+                    runPoll();
+                } finally {
+                    polling.set(false);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            polling.set(false);
+        }
+    }
+
+    /**
+     * 最近一次刷新的情况
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("enabled", enabled);
+        map.put("ready", ready);
+        map.put("coveredFromYear", ready ? coveredFromYear : null);
+        map.put("coveredToYear", ready ? coveredToYear : null);
+        map.put("watermark", watermark);
+        map.put("lastPlanIndocno", lastPlanIndocno);
+        map.put("pendingTaskIds", changedTaskIds.size());
+        map.put("lastRefresh", lastRefresh);
+        return map;
+    }
+
+    /**
+     * 按需全量重算或增量刷新 (在 aggExecutor 中执行，同一时间只有一个)
+     */
+    private void runPoll() {
+        long now = System.currentTimeMillis();
+        if (rebuildRequested.get()) {
+            if (now >= nextRebuildAttemptMillis) {
+                rebuild();
+            }
+            return;
+        }
+        if (ready && (refreshRequested.get() || now - lastIncrementalMillis >= incrementalIntervalMs)) {
+            refreshChanged();
+        }
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        long requestedMillis = rebuildRequestedMillis;
+        int thisYear = LocalDate.now().getYear();
+        int fromYear = thisYear - Math.max(1, rebuildYears) + 1;
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth m = YearMonth.of(fromYear, 1); !m.isAfter(YearMonth.of(thisYear, 12)); m = m.plusMonths(1)) {
+            months.add(m);
+        }
+        rebuildRequested.set(false);
+        changedTaskIds.clear();
+        refreshRequested.set(false);
+        try {
+            RefreshOutcome outcome = transactionTemplate.execute(status -> {
+                PointCheckAggControlDTO control = lockControl();
+                // 等锁期间其他实例已完成覆盖同样年份的重算 (如多个实例同时触发的每日重算)，直接沿用
+                long clockSkew = control.getDbTime().getTime() - System.currentTimeMillis();
+                if (control.isInitialized() && control.getRebuildTime() != null
+                        && control.getRebuildTime().getTime() >= requestedMillis + clockSkew
+                        && control.getFromYear() <= fromYear && control.getToYear() >= thisYear) {
+                    return new RefreshOutcome(control, control.getFromYear(), control.getToYear(), 0, true);
+                }
+                long maxIndocno = monthlyStatsMapper.findMaxPlanIndocno();
+                monthlyStatsMapper.deleteMonths(months);
+                int rows = monthlyStatsMapper.insertMonths(months);
+                monthlyStatsMapper.markRebuilt(control.getDbTime(), maxIndocno, fromYear, thisYear);
+                control.setWatermark(control.getDbTime());
+                control.setLastIndocno(maxIndocno);
+                return new RefreshOutcome(control, fromYear, thisYear, rows, false);
+            });
+            apply(outcome);
+            if (!outcome.adopted) {
+                evictStatsCache(months);
+            }
+            recordRefresh(outcome.adopted ? "REBUILD_ADOPTED" : "REBUILD", months, outcome.rows, start, null);
+        } catch (Exception e) {
+            // 汇总表未建或数据库异常: 统计继续走明细表，稍后重试
+            rebuildRequested.set(true);
+            nextRebuildAttemptMillis = System.currentTimeMillis() + incrementalIntervalMs;
+            logFailure("全量重算", e);
+            recordRefresh("REBUILD", months, 0, start, e.getMessage());
+        }
+    }
+
+    private void refreshChanged() {
+        long start = System.currentTimeMillis();
+        refreshRequested.set(false);
+        List<Long> taskIds = new ArrayList<>();
+        for (Long id = changedTaskIds.poll(); id != null; id = changedTaskIds.poll()) {
+            taskIds.add(id);
+        }
+        Set<YearMonth> months = new TreeSet<>();
+        try {
+            RefreshOutcome outcome = transactionTemplate.execute(status -> {
+                PointCheckAggControlDTO control = lockControl();
+                if (!control.isInitialized()) {
+                    // 控制行被重置: 需要重新全量重算
+                    return null;
+                }
+                long maxIndocno = monthlyStatsMapper.findMaxPlanIndocno();
+                long afterIndocno = control.getLastIndocno() == null ? 0 : control.getLastIndocno();
+                Date since = new Date(control.getWatermark().getTime() - WATERMARK_OVERLAP_MS);
+
+                addMonths(months, monthlyStatsMapper.findChangedPlanMonths(since, afterIndocno));
+                addMonths(months, monthlyStatsMapper.findChangedLogMonths(since));
+                for (int i = 0; i < taskIds.size(); i += ID_CHUNK_SIZE) {
+                    addMonths(months, monthlyStatsMapper.findPlanMonthsByIds(taskIds.subList(i, Math.min(taskIds.size(), i + ID_CHUNK_SIZE))));
+                }
+                // 覆盖范围以外的月份不维护 (查询这些年份时走明细表)
+                months.removeIf(m -> m.getYear() < control.getFromYear() || m.getYear() > control.getToYear());
+
+                int rows = 0;
+                if (!months.isEmpty()) {
+                    List<YearMonth> monthList = new ArrayList<>(months);
+                    monthlyStatsMapper.deleteMonths(monthList);
+                    rows = monthlyStatsMapper.insertMonths(monthList);
+                }
+                monthlyStatsMapper.updateWatermark(control.getDbTime(), maxIndocno);
+                control.setWatermark(control.getDbTime());
+                control.setLastIndocno(maxIndocno);
+                return new RefreshOutcome(control, control.getFromYear(), control.getToYear(), rows, false);
+            });
+            lastIncrementalMillis = System.currentTimeMillis();
+            if (outcome == null) {
+                requestRebuild();
+                return;
+            }
+            apply(outcome);
+            if (!months.isEmpty()) {
+                evictStatsCache(months);
+            }
+            recordRefresh("INCREMENTAL", months, outcome.rows, start, null);
+        } catch (Exception e) {
+            // 保留待处理的任务ID，下次轮询重试 (水位未推进，变化不会丢失)
+            changedTaskIds.addAll(taskIds);
+            refreshRequested.set(true);
+            lastIncrementalMillis = System.currentTimeMillis();
+            logFailure("增量刷新", e);
+            recordRefresh("INCREMENTAL", months, 0, start, e.getMessage());
+        }
+    }
+
+    /**
+     * 锁定控制行 (在事务中调用)，控制行不存在时按建表未完成处理
+     */
+    private PointCheckAggControlDTO lockControl() {
+        PointCheckAggControlDTO control = monthlyStatsMapper.lockControl();
+        if (control == null) {
+            throw new InvalidDataAccessResourceUsageException("JL_PC_STATS_CONTROL 缺少 ID = 1 的控制行");
+        }
+        return control;
+    }
+
+    /**
+     * 刷新提交后更新本实例的覆盖范围和状态
+     */
+    private void apply(RefreshOutcome outcome) {
+        watermark = outcome.control.getWatermark();
+        lastPlanIndocno = outcome.control.getLastIndocno() == null ? 0 : outcome.control.getLastIndocno();
+        coveredFromYear = outcome.fromYear;
+        coveredToYear = outcome.toYear;
+        ready = true;
+        lastIncrementalMillis = System.currentTimeMillis();
+        setupWarned = false;
+    }
+
+    /**
+     * 清除这些月份所在年份的统计缓存 (缓存键为 "年份-分类-用户")。
+     * Redis 缓存按键前缀删除，本地 Map 缓存按前缀过滤，其他缓存实现无法按前缀删除时整体清空。
+     */
+    private void evictStatsCache(Collection<YearMonth> months) {
+        Cache cache = cacheManager.getCache(STATS_CACHE);
+        if (cache == null || months.isEmpty()) {
+            return;
+        }
+        Set<String> keyPrefixes = new TreeSet<>();
+        for (YearMonth month : months) {
+            keyPrefixes.add(month.getYear() + "-");
+        }
+        Object nativeCache = cache.getNativeCache();
+        if (cache instanceof RedisCache) {
+            RedisCache redisCache = (RedisCache) cache;
+            String keyPrefix = redisCache.getCacheConfiguration().getKeyPrefixFor(cache.getName());
+            for (String prefix : keyPrefixes) {
+                redisCache.getNativeCache().clean(cache.getName(), (keyPrefix + prefix + "*").getBytes(StandardCharsets.UTF_8));
+            }
+        } else if (nativeCache instanceof ConcurrentMap) {
+            ((ConcurrentMap<?, ?>) nativeCache).keySet().removeIf(key -> {
+                String k = String.valueOf(key);
+                return k.length() > 5 && keyPrefixes.contains(k.substring(0, 5));
+            });
+        } else {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 汇总表或控制表不存在 (尚未执行建表脚本) 时只警告一次，其余异常按错误记录
+     */
+    private void logFailure(String action, Exception e) {
+        if (e instanceof InvalidDataAccessResourceUsageException) {
+            if (!setupWarned) {
+                setupWarned = true;
+                log.warn("点检统计汇总表不可用 (请执行 sql/点检统计月度汇总表.sql)，统计继续查询明细表，每 {} ms 重试: {}",
+                        incrementalIntervalMs, e.getMessage());
+            } else {
+                log.debug("点检统计汇总表仍不可用: {}", e.getMessage());
+            }
+            return;
+        }
+        log.error("点检统计汇总表{}失败，{} ms 后重试: {}", action, incrementalIntervalMs, e.getMessage(), e);
+    }
+
+    private static void addMonths(Set<YearMonth> months, List<String> yms) {
+        for (String ym : yms) {
+            if (ym != null) {
+                months.add(YearMonth.parse(ym, YM_FORMAT));
+            }
+        }
+    }
+
+    private void recordRefresh(String type, Collection<YearMonth> months, int rows, long startMillis, String error) {
+        long elapsed = System.currentTimeMillis() - startMillis;
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("type", type);
+        map.put("status", error == null ? "COMPLETED" : "FAILED");
+        map.put("message", error);
+        map.put("months", months.size());
+        map.put("rows", rows);
+        map.put("time", new Date(startMillis));
+        map.put("elapsedMs", elapsed);
+        lastRefresh = map;
+        if (error != null) {
+            return;
+        }
+        if ("REBUILD".equals(type)) {
+            log.info("点检统计汇总表全量重算完成: {} 个月份，写入 {} 行，耗时 {} ms", months.size(), rows, elapsed);
+        } else if ("REBUILD_ADOPTED".equals(type)) {
+            log.info("点检统计汇总表已由其他实例完成全量重算，直接沿用 ({}-{} 年)", coveredFromYear, coveredToYear);
+        } else {
+            // 增量刷新频率较高
+            log.debug("点检统计汇总表增量刷新完成: {}，写入 {} 行，耗时 {} ms", months, rows, elapsed);
+        }
+    }
+
+    /**
+     * 一次刷新 (事务内) 的结果，提交后再应用到本实例
+     */
+    private static final class RefreshOutcome {
+        final PointCheckAggControlDTO control;
+        final int fromYear;
+        final int toYear;
+        final int rows;
+        final boolean adopted;
+
+        RefreshOutcome(PointCheckAggControlDTO control, int fromYear, int toYear, int rows, boolean adopted) {
+            this.control = control;
+            this.fromYear = fromYear;
+            this.toYear = toYear;
+            this.rows = rows;
+            this.adopted = adopted;
+        }
+    }
+}
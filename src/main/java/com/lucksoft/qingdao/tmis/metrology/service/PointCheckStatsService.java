@@ -1,27 +1,46 @@
 package com.lucksoft.qingdao.tmis.metrology.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lucksoft.qingdao.qdjl.mapper.PointCheckStatsMapper;
 import com.lucksoft.qingdao.tmis.metrology.dto.PointCheckQuery;
 import com.lucksoft.qingdao.tmis.metrology.dto.PointCheckRawStatsDTO;
 import com.lucksoft.qingdao.tmis.metrology.dto.PointCheckStatsDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import com.github.pagehelper.PageHelper;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
 
 /**
  * 点检统计服务类
  * 负责处理从数据库获取真实统计数据的业务逻辑
+ * [已修改] 原始统计默认使用集合式SQL (getRawStatisticsGrouped)，
+ * metrology.point-check-stats.engine=legacy 时退回逐部门关联子查询 (getRawStatistics)；benchmark 用于对比两者。
+ * [已修改] 月度汇总表覆盖所查年份时，直接读取汇总表 (getRawStatisticsFromAggregate)，见 PointCheckAggregateService。
  */
 @Service
 public class PointCheckStatsService {
 
+    private static final Logger log = LoggerFactory.getLogger(PointCheckStatsService.class);
+
+    // 仅用于基准对比时逐字段比较两种SQL的结果
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final int MAX_BENCHMARK_RUNS = 10;
+
     private final PointCheckStatsMapper pointCheckStatsMapper;
+    private final PointCheckAggregateService pointCheckAggregateService;
 
-    public PointCheckStatsService(PointCheckStatsMapper pointCheckStatsMapper) {
+    @Value("${metrology.point-check-stats.engine:grouped}")
+    private String statsEngine;
+
+    public PointCheckStatsService(PointCheckStatsMapper pointCheckStatsMapper, PointCheckAggregateService pointCheckAggregateService) {
         this.pointCheckStatsMapper = pointCheckStatsMapper;
+        this.pointCheckAggregateService = pointCheckAggregateService;
     }
 
     /**
@@ -30,23 +49,28 @@ public class PointCheckStatsService {
      * - cacheNames: 指定缓存存储的命名空间。
      * - key: 定义缓存的键。这里使用年份、ABC分类和用户ID动态生成唯一的键，
      * 确保不同用户的不同查询条件都有独立的缓存。
+     * [已修改] 年份取 statsYear (由 dateRange 解析，与实际统计的年份一致)，键以年份开头，
+     * 汇总表刷新后 PointCheckAggregateService 只清除变化年份的缓存。
      * @param query 查询参数
      * @return 统计数据列表
      */
-    @Cacheable(cacheNames = "pointCheckStats", key = "#query.year + '-' + #query.category + '-' + #query.userId")
+    @Cacheable(cacheNames = "pointCheckStats",
+            key = "T(com.lucksoft.qingdao.tmis.metrology.service.PointCheckStatsService).statsYear(#query) + '-' + #query.category + '-' + #query.userId")
     public List<PointCheckStatsDTO> getStatistics(PointCheckQuery query) {
-        // 从 dateRange 提取年份，默认为当前年份
-        String year = String.valueOf(LocalDate.now().getYear());
-        if (query.getDateRange() != null && !query.getDateRange().isEmpty() && query.getDateRange().length() >= 4) {
-            year = query.getDateRange().substring(0, 4);
-        }
-        query.setYear(year);
+        resolveYear(query);
         // todo: 在真实的权限集成中，应从SecurityContext获取当前登录用户的ID
         // query.setUserId(getCurrentUserId());
 
         // 从数据库获取按周期（双月/季度/半年）聚合的原始数据
         PageHelper.clearPage();
-        List<PointCheckRawStatsDTO> rawStatsList = pointCheckStatsMapper.getRawStatistics(query);
+        List<PointCheckRawStatsDTO> rawStatsList;
+        if (pointCheckAggregateService.isAvailable(query.getYear())) {
+            rawStatsList = pointCheckStatsMapper.getRawStatisticsFromAggregate(query);
+        } else if ("legacy".equalsIgnoreCase(statsEngine)) {
+            rawStatsList = pointCheckStatsMapper.getRawStatistics(query);
+        } else {
+            rawStatsList = pointCheckStatsMapper.getRawStatisticsGrouped(query);
+        }
         List<PointCheckStatsDTO> finalStatsList = new ArrayList<>();
 
         for (PointCheckRawStatsDTO rawStats : rawStatsList) {
@@ -121,4 +145,125 @@ public class PointCheckStatsService {
 
         return finalStatsList;
     }
-}
\ No newline at end of file
+
+    /**
+     * [新增] 对比原逐部门子查询SQL (legacy) 与集合式SQL (grouped):
+     * 各执行 runs 次记录耗时，逐部门比较两者结果是否一致，并附上 EXPLAIN PLAN 的执行计划 (需要 PLAN_TABLE 可用)。
+     * [已修改] 汇总表覆盖该年份时，同时对比读取汇总表 (aggregate) 的耗时和结果。
+     * 不经过缓存，会直接查询数据库，仅供运维排查使用。
+     */
+    public Map<String, Object> benchmark(PointCheckQuery query, int runs) {
+        resolveYear(query);
+        int n = Math.max(1, Math.min(runs, MAX_BENCHMARK_RUNS));
+        PointCheckStatsMapper.PointCheckStatsSqlProvider provider = new PointCheckStatsMapper.PointCheckStatsSqlProvider();
+
+        Map<String, Object> legacy = new LinkedHashMap<>();
+        Map<String, Object> grouped = new LinkedHashMap<>();
+        List<PointCheckRawStatsDTO> legacyRows = timeRuns(n, legacy, pointCheckStatsMapper::getRawStatistics, query);
+        List<PointCheckRawStatsDTO> groupedRows = timeRuns(n, grouped, pointCheckStatsMapper::getRawStatisticsGrouped, query);
+        legacy.put("plan", explain(provider.getRawStatistics(query), query));
+        grouped.put("plan", explain(provider.getRawStatisticsGrouped(query), query));
+        List<Object> mismatches = diff(legacyRows, groupedRows, "grouped");
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("year", query.getYear());
+        result.put("category", query.getCategory());
+        result.put("runs", n);
+        result.put("legacy", legacy);
+        result.put("grouped", grouped);
+
+        if (pointCheckAggregateService.isAvailable(query.getYear())) {
+            Map<String, Object> aggregate = new LinkedHashMap<>();
+            List<PointCheckRawStatsDTO> aggregateRows = timeRuns(n, aggregate, pointCheckStatsMapper::getRawStatisticsFromAggregate, query);
+            aggregate.put("plan", explain(provider.getRawStatisticsFromAggregate(query), query));
+            result.put("aggregate", aggregate);
+            // 汇总表按计划刷新，与明细表之间可能有最多一个刷新周期的差异
+            mismatches.addAll(diff(legacyRows, aggregateRows, "aggregate"));
+        }
+
+        result.put("identical", mismatches.isEmpty());
+        result.put("mismatches", mismatches.size() > 20 ? mismatches.subList(0, 20) : mismatches);
+        log.info("点检统计SQL基准 (year={}, category={}, runs={}): legacy 平均 {} ms, grouped 平均 {} ms, 结果一致: {}",
+                query.getYear(), query.getCategory(), n, legacy.get("avgMs"), grouped.get("avgMs"), mismatches.isEmpty());
+        return result;
+    }
+
+    /**
+     * 逐部门比较 legacy 与另一种SQL的结果
+     */
+    private List<Object> diff(List<PointCheckRawStatsDTO> legacyRows, List<PointCheckRawStatsDTO> otherRows, String otherName) {
+        List<Object> mismatches = new ArrayList<>();
+        int size = Math.max(legacyRows.size(), otherRows.size());
+        for (int i = 0; i < size; i++) {
+            Map<?, ?> a = i < legacyRows.size() ? objectMapper.convertValue(legacyRows.get(i), Map.class) : null;
+            Map<?, ?> b = i < otherRows.size() ? objectMapper.convertValue(otherRows.get(i), Map.class) : null;
+            if (!Objects.equals(a, b)) {
+                Map<String, Object> diff = new LinkedHashMap<>();
+                diff.put("legacy", a);
+                diff.put(otherName, b);
+                mismatches.add(diff);
+            }
+        }
+        return mismatches;
+    }
+
+    private void resolveYear(PointCheckQuery query) {
+        query.setYear(statsYear(query));
+    }
+
+    /**
+     * 从 dateRange 提取年份，默认为当前年份 (也用于统计缓存键)
+     * [已修改] 年份必须是四位数字，否则抛出 IllegalArgumentException (年份会拼接进 SQL，所有统计路径都在这里统一校验)
+     */
+    public static String statsYear(PointCheckQuery query) {
+        String year = String.valueOf(LocalDate.now().getYear());
+        if (query.getDateRange() != null && !query.getDateRange().isEmpty() && query.getDateRange().length() >= 4) {
+            year = query.getDateRange().substring(0, 4);
+        }
+        if (!year.matches("\\d{4}")) {
+            throw new IllegalArgumentException("统计年份格式不正确: " + year);
+        }
+        return year;
+    }
+
+    private List<PointCheckRawStatsDTO> timeRuns(int runs, Map<String, Object> stats,
+                                                 Function<PointCheckQuery, List<PointCheckRawStatsDTO>> sql, PointCheckQuery query) {
+        List<PointCheckRawStatsDTO> rows = Collections.emptyList();
+        long min = Long.MAX_VALUE, total = 0;
+        for (int i = 0; i < runs; i++) {
+            PageHelper.clearPage();
+            long start = System.nanoTime();
+            rows = sql.apply(query);
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            min = Math.min(min, ms);
+            total += ms;
+        }
+        stats.put("rows", rows.size());
+        stats.put("minMs", min);
+        stats.put("avgMs", total / runs);
+        return rows;
+    }
+
+    /**
+     * 执行计划文本；PLAN_TABLE 不可用等情况下返回错误信息，不影响耗时对比
+     */
+    private List<String> explain(String sql, PointCheckQuery query) {
+        // EXPLAIN PLAN 不能带绑定变量，用户ID (Long) 直接代入
+        String explainSql = sql.replace("#{userId}", String.valueOf(query.getUserId()));
+        String statementId = "PCS_" + Long.toHexString(System.nanoTime());
+        try {
+            pointCheckStatsMapper.explainPlan(statementId, explainSql);
+            PageHelper.clearPage();
+            return pointCheckStatsMapper.displayPlan(statementId);
+        } catch (Exception e) {
+            log.warn("获取执行计划失败: {}", e.getMessage());
+            return Collections.singletonList("执行计划获取失败: " + e.getMessage());
+        } finally {
+            try {
+                pointCheckStatsMapper.deletePlan(statementId);
+            } catch (Exception ignore) {
+                // PLAN_TABLE 不可用时忽略
+            }
+        }
+    }
+}
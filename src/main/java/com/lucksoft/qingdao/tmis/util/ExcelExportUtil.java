@@ -1,35 +1,78 @@
 package com.lucksoft.qingdao.tmis.util;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.BeanDescription;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
 import com.lucksoft.qingdao.tmis.metrology.ExportColumn;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * 通用Excel导出工具类 (增强版)
  * 集成 Jackson ObjectMapper，支持 @JsonProperty 注解的 DTO 和 Map 导出。
+ * [已修改] 流式导出引擎:
+ * 1. 使用 SXSSFWorkbook，内存中只保留最近 ROW_WINDOW 行，其余行写入临时文件，最后直接写到响应流。
+ * 2. 不再逐行 objectMapper.convertValue(item, Map.class)。每个类只用 Jackson 解析一次属性 (名称与 @JsonProperty 一致)，
+ *    缓存属性访问器，按列直接取值。
+ * 3. 日期格式化器按格式缓存，不再每个单元格 new SimpleDateFormat。属性上有 @JsonFormat 时按其 pattern / timezone 输出。
+ * 4. 数据可以由 RowProducer 边查询边写入，调用方不必先把全部结果放进 List。
+ * 5. [新增] streamExport 不经过 SXSSF，由 XlsxStreamWriter 直接输出压缩包，行生成后即推送给客户端 (用于游标导出)。
+ * 6. [新增] streamWrite 可写入任意输出流并回报进度，供异步导出任务写临时文件。
+ * 7. [新增] streamExport 开始输出后发生异常时抛出 StreamAbortedException，由容器直接断开连接，
+ *    客户端得到的是下载失败，而不是一个结构完整但内容残缺的响应。
  */
 public class ExcelExportUtil {
 
     private static final Logger log = LoggerFactory.getLogger(ExcelExportUtil.class);
 
-    // 使用静态 ObjectMapper 实例，复用配置
+    // 使用静态 ObjectMapper 实例，复用配置 (仅用于解析 DTO 属性)
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
-    static {
-        // 可以在这里配置 objectMapper，例如日期格式等
-        // objectMapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
+    // SXSSF 内存中保留的行数
+    private static final int ROW_WINDOW = 200;
+
+    // 流式导出时每写入多少行推送一次
+    private static final int STREAM_FLUSH_ROWS = 500;
+
+    private static final String DEFAULT_DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    // 与 JacksonConfig 一致，@JsonFormat 未指定时区时按北京时间输出
+    private static final TimeZone DEFAULT_TIME_ZONE = TimeZone.getTimeZone("GMT+8");
+
+    // 类 -> (属性名 -> 访问器)，每个类只解析一次
+    private static final Map<Class<?>, Map<String, PropertyAccessor>> ACCESSORS = new ConcurrentHashMap<>();
+
+    /**
+     * [新增] 流式导出在响应已提交后失败，需要中止连接
+     */
+    public static final class StreamAbortedException extends RuntimeException {
+        StreamAbortedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * 逐条产生导出数据 (例如边查询边写入)
+     */
+    @FunctionalInterface
+    public interface RowProducer<T> {
+        void produce(Consumer<T> sink) throws Exception;
     }
 
     /**
@@ -45,9 +88,120 @@ public class ExcelExportUtil {
      */
     public static <T> void export(HttpServletResponse response, String fileName, List<ExportColumn> columns, List<T> data, Class<T> dtoClass) throws IOException {
         log.info("开始生成Excel文件: {}, 数据量: {}", fileName, data != null ? data.size() : 0);
+        export(response, fileName, columns, sink -> {
+            if (data != null) {
+                data.forEach(sink);
+            }
+        });
+    }
+
+    /**
+     * [新增] 流式导出: 数据由 producer 逐条产生，写完后直接输出到响应流
+     */
+    public static <T> void export(HttpServletResponse response, String fileName, List<ExportColumn> columns, RowProducer<T> producer) throws IOException {
+        try {
+            // 设置响应头，工作簿生成后直接写入输出流
+            String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8.toString()).replaceAll("\\+", "%20");
+            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+            response.setHeader("Content-Disposition", "attachment; filename*=UTF-8''" + encodedFileName + ".xlsx");
+
+            int rows = write(response.getOutputStream(), fileName, columns, producer);
+            log.info("Excel文件 '{}' 生成并发送成功，共 {} 行", fileName, rows);
+
+        } catch (Exception e) {
+            log.error("生成Excel时发生错误", e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setContentType("application/json");
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                response.getWriter().write("{\"error\": \"导出Excel失败: " + e.getMessage() + "\"}");
+            }
+        }
+    }
+
+    /**
+     * [新增] 边查询边输出: 数据由 producer 逐条产生 (例如遍历 MyBatis Cursor)，每 STREAM_FLUSH_ROWS 行推送一次到客户端。
+     * 与 export 不同，取到第一行数据后即发出表头和该行，首字节不必等待查询结束；内存占用与导出行数无关。
+     * 第一行数据之前 (查询本身失败) 的异常仍可返回 JSON 错误信息。
+     * [已修改] 开始输出后再发生异常时不结束压缩包，记录日志后抛出 StreamAbortedException 中止连接
+     * (GlobalExceptionHandler 不处理该异常，由 Servlet 容器在响应已提交时直接关闭连接)。
+     */
+    public static <T> void streamExport(HttpServletResponse response, String fileName, List<ExportColumn> columns, RowProducer<T> producer) throws IOException {
+        long start = System.currentTimeMillis();
+        try {
+            String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8.toString()).replaceAll("\\+", "%20");
+            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+            response.setHeader("Content-Disposition", "attachment; filename*=UTF-8''" + encodedFileName + ".xlsx");
+
+            int rows = streamWrite(response.getOutputStream(), fileName, columns, producer, null);
+            log.info("Excel文件 '{}' 流式导出完成，共 {} 行，耗时 {} ms", fileName, rows, System.currentTimeMillis() - start);
+
+        } catch (Exception e) {
+            if (!response.isCommitted()) {
+                log.error("生成Excel时发生错误", e);
+                response.reset();
+                response.setContentType("application/json");
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                response.getWriter().write("{\"error\": \"导出Excel失败: " + e.getMessage() + "\"}");
+            } else {
+                // 已经开始输出 (或客户端断开)，只能中止连接
+                log.error("Excel文件 '{}' 流式导出中断，中止连接", fileName, e);
+                throw new StreamAbortedException("Excel文件 '" + fileName + "' 流式导出中断", e);
+            }
+        }
+    }
+
+    /**
+     * [新增] 用 XlsxStreamWriter 把数据写入 out (不关闭 out)，写完第一行数据时 flush，之后每 STREAM_FLUSH_ROWS 行 flush 一次。
+     * 第一行数据之前不向 out 输出任何内容，查询失败时调用方仍可改为返回错误信息。
+     *
+     * @param progress 每次 flush 后回调已写入的数据行数 (不含表头)，可为 null
+     * @return 写入的数据行数 (不含表头)
+     */
+    public static <T> int streamWrite(OutputStream out, String sheetName, List<ExportColumn> columns, RowProducer<T> producer,
+                                      IntConsumer progress) throws Exception {
+        XlsxStreamWriter writer = new XlsxStreamWriter(out, sheetName, columns.size(), 20);
+        String[] keys = new String[columns.size()];
+        String[] titles = new String[columns.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = columns.get(i).getKey();
+            titles[i] = columns.get(i).getTitle();
+        }
+        writer.writeHeader(titles);
 
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet(fileName);
+        ValueFormatter formatter = new ValueFormatter();
+        producer.produce(item -> {
+            try {
+                writer.writeRow(cellValues(keys, item, formatter));
+                // 第二行即第一行数据
+                if (writer.getRowCount() == 2 || writer.getRowCount() % STREAM_FLUSH_ROWS == 0) {
+                    writer.flush();
+                    if (progress != null) {
+                        progress.accept(writer.getRowCount() - 1);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.finish();
+        int rows = writer.getRowCount() - 1;
+        if (progress != null) {
+            progress.accept(rows);
+        }
+        return rows;
+    }
+
+    /**
+     * [新增] 生成工作簿并写入 out (不关闭 out)
+     *
+     * @return 写入的数据行数 (不含表头)
+     */
+    public static <T> int write(OutputStream out, String sheetName, List<ExportColumn> columns, RowProducer<T> producer) throws Exception {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet(sheetName);
 
             // 1. 创建表头样式
             CellStyle headerStyle = workbook.createCellStyle();
@@ -73,81 +227,124 @@ public class ExcelExportUtil {
                 sheet.setColumnWidth(i, 256 * 20);
             }
 
-            // 3. 创建数据行
-            int rowNum = 1;
-            for (T item : data) {
-                Row row = sheet.createRow(rowNum++);
-
-                // [核心修改] 将 item 统一转换为 Map
-                // 如果 item 本身是 Map，直接强转；如果是 Bean，用 Jackson 转换
-                Map<?, ?> itemMap;
-                try {
-                    if (item instanceof Map) {
-                        itemMap = (Map<?, ?>) item;
-                    } else {
-                        // Jackson 会自动处理 @JsonProperty, @JsonFormat 等注解
-                        itemMap = objectMapper.convertValue(item, Map.class);
-                    }
-                } catch (Exception e) {
-                    log.error("数据转换失败", e);
-                    continue;
-                }
+            // 3. 逐条写入数据行
+            String[] keys = new String[columns.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = columns.get(i).getKey();
+            }
+            ValueFormatter formatter = new ValueFormatter();
+            int[] rowNum = {1};
+            producer.produce(item -> writeRow(sheet.createRow(rowNum[0]++), keys, item, formatter));
 
-                for (int i = 0; i < columns.size(); i++) {
-                    String key = columns.get(i).getKey();
+            // 4. 写入输出流
+            workbook.write(out);
+            return rowNum[0] - 1;
+        } finally {
+            // 删除 SXSSF 临时文件
+            workbook.dispose();
+            workbook.close();
+        }
+    }
 
-                    try {
-                        // 直接从 Map 中根据 key 获取值
-                        // 这里的 key 就是前端传来的列名，也就是 @JsonProperty 定义的名字
-                        Object value = itemMap.get(key);
+    private static void writeRow(Row row, String[] keys, Object item, ValueFormatter formatter) {
+        String[] values = cellValues(keys, item, formatter);
+        for (int i = 0; i < values.length; i++) {
+            row.createCell(i).setCellValue(values[i]);
+        }
+    }
 
-                        // 格式化输出
-                        String cellValue = formatValue(value);
-                        row.createCell(i).setCellValue(cellValue);
+    /**
+     * 按列取出一条数据的单元格文本
+     */
+    private static String[] cellValues(String[] keys, Object item, ValueFormatter formatter) {
+        String[] values = new String[keys.length];
+        if (item == null) {
+            Arrays.fill(values, "");
+            return values;
+        }
+        // Map 直接按 key 取值；Bean 按 @JsonProperty 定义的名字取属性
+        Map<String, PropertyAccessor> accessors = item instanceof Map ? null : accessorsOf(item.getClass());
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i];
+            try {
+                if (accessors == null) {
+                    values[i] = formatter.format(((Map<?, ?>) item).get(key), null);
+                } else {
+                    PropertyAccessor accessor = accessors.get(key);
+                    values[i] = accessor == null ? "" : formatter.format(accessor.get(item), accessor.format);
+                }
+            } catch (Exception e) {
+                log.error("获取属性值失败, key: {}", key, e);
+                values[i] = "ERROR";
+            }
+        }
+        return values;
+    }
 
-                    } catch (Exception e) {
-                        log.error("获取属性值失败, key: {}", key, e);
-                        row.createCell(i).setCellValue("ERROR");
-                    }
+    /**
+     * 用 Jackson 解析类的可序列化属性 (与 convertValue 得到的 key 一致)，结果按类缓存
+     */
+    private static Map<String, PropertyAccessor> accessorsOf(Class<?> type) {
+        return ACCESSORS.computeIfAbsent(type, t -> {
+            BeanDescription desc = objectMapper.getSerializationConfig().introspect(objectMapper.constructType(t));
+            Map<String, PropertyAccessor> map = new HashMap<>();
+            for (BeanPropertyDefinition prop : desc.findProperties()) {
+                AnnotatedMember member = prop.getAccessor();
+                if (member == null) {
+                    continue;
                 }
+                member.fixAccess(true);
+                map.put(prop.getName(), new PropertyAccessor(member, member.getAnnotation(JsonFormat.class)));
             }
+            return map;
+        });
+    }
 
-            // 4. 设置响应头并写入输出流
-            String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8.toString()).replaceAll("\\+", "%20");
-            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-            response.setHeader("Content-Disposition", "attachment; filename*=UTF-8''" + encodedFileName + ".xlsx");
+    private static final class PropertyAccessor {
+        final AnnotatedMember member;
+        final JsonFormat format;
 
-            workbook.write(response.getOutputStream());
-            log.info("Excel文件 '{}' 生成并发送成功", fileName);
+        PropertyAccessor(AnnotatedMember member, JsonFormat format) {
+            this.member = member;
+            this.format = format != null && !format.pattern().isEmpty() ? format : null;
+        }
 
-        } catch (Exception e) {
-            log.error("生成Excel时发生错误", e);
-            if (!response.isCommitted()) {
-                response.reset();
-                response.setContentType("application/json");
-                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                response.getWriter().write("{\"error\": \"导出Excel失败: " + e.getMessage() + "\"}");
-            }
+        Object get(Object bean) {
+            return member.getValue(bean);
         }
     }
 
     /**
-     * 格式化单元格的值
+     * 单元格格式化 (每次导出一个实例，日期格式化器按 pattern + 时区缓存)
      */
-    private static String formatValue(Object value) {
-        if (value == null) {
-            return "";
-        }
-        // Jackson 转换 Map 后，日期可能变成了 Long (时间戳) 或 String
-        // 如果是 Date 对象 (Map原始数据)
-        if (value instanceof Date) {
-            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format((Date) value);
+    private static final class ValueFormatter {
+        private final Map<String, SimpleDateFormat> dateFormats = new HashMap<>();
+
+        String format(Object value, JsonFormat jsonFormat) {
+            if (value == null) {
+                return "";
+            }
+            if (value instanceof Date) {
+                return dateFormat(jsonFormat).format((Date) value);
+            }
+            // 如果是 Boolean
+            if (value instanceof Boolean) {
+                return (Boolean) value ? "是" : "否";
+            }
+            // 其他情况直接 toString
+            return value.toString();
         }
-        // 如果是 Boolean
-        if (value instanceof Boolean) {
-            return (Boolean) value ? "是" : "否";
+
+        private SimpleDateFormat dateFormat(JsonFormat jsonFormat) {
+            String pattern = jsonFormat != null ? jsonFormat.pattern() : DEFAULT_DATE_PATTERN;
+            String timezone = jsonFormat != null && !JsonFormat.DEFAULT_TIMEZONE.equals(jsonFormat.timezone()) ? jsonFormat.timezone() : null;
+            return dateFormats.computeIfAbsent(pattern + "|" + timezone, k -> {
+                SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+                if (jsonFormat != null) {
+                    sdf.setTimeZone(timezone != null ? TimeZone.getTimeZone(timezone) : DEFAULT_TIME_ZONE);
+                }
+                return sdf;
+            });
         }
-        // 其他情况直接 toString
-        return value.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,118 @@
+package com.lucksoft.qingdao.tmis.util;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * [新增] 基于 SAX 的 xlsx 流式读取工具
+ * XSSFWorkbook 会把整个工作簿构建成对象树，内存占用通常是文件大小的 10~20 倍。
+ * 这里通过 XSSFReader 逐行解析第一个工作表，每行只以字符串数组的形式交给调用方，读完即丢弃。
+ * 单元格文本与 DataFormatter.formatCellValue 的结果一致 (公式单元格取缓存的计算结果)。
+ */
+public class ExcelStreamReader {
+
+    /**
+     * 逐行回调 (rowIndex 从 0 开始，与 Sheet.getRow 的下标一致)
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void handle(int rowIndex, String[] values);
+    }
+
+    /**
+     * 流式读取第一个工作表
+     *
+     * @param file       xlsx 文件 (以只读方式打开，不会整体载入内存)
+     * @param minColumns 每行数组的最小长度，缺失的单元格为空字符串
+     * @param handler    行回调
+     * @throws IOException 文件无法读取或不是有效的 xlsx
+     */
+    public static void readFirstSheet(File file, int minColumns, RowHandler handler) throws IOException {
+        OPCPackage pkg = null;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IOException("Excel 文件中没有工作表");
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings,
+                        new RowCollector(minColumns, handler), new DataFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Excel 解析失败: " + e.getMessage(), e);
+        } finally {
+            if (pkg != null) {
+                // 只读打开的包用 revert 关闭 (close 用于保存)
+                pkg.revert();
+            }
+        }
+    }
+
+    /**
+     * 把单元格事件拼成行数组
+     */
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final int minColumns;
+        private final RowHandler handler;
+        private final List<String> current = new ArrayList<>();
+        private int nextColumn;
+
+        RowCollector(int minColumns, RowHandler handler) {
+            this.minColumns = minColumns;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            current.clear();
+            nextColumn = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            String[] values = new String[Math.max(minColumns, current.size())];
+            for (int i = 0; i < values.length; i++) {
+                String v = i < current.size() ? current.get(i) : null;
+                values[i] = v != null ? v : "";
+            }
+            handler.handle(rowNum, values);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            // 空单元格不会产生事件，按单元格引用定位列 (缺少引用时按顺序递增)
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : nextColumn;
+            while (current.size() <= column) {
+                current.add(null);
+            }
+            current.set(column, formattedValue);
+            nextColumn = column + 1;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.lucksoft.qingdao.tmis.util;
+
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.WorkbookUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * [新增] 直接写出 xlsx 压缩包的流式写入器 (单工作表、纯文本单元格)
+ * SXSSFWorkbook 要等全部行写完后才开始输出压缩包，客户端在此之前收不到任何字节。
+ * 这里先写出固定的部件 (Content_Types / workbook / styles)，再把 sheet1.xml 作为最后一个条目边生成边压缩输出，
+ * 调用 flush() 即可把已生成的行推送给客户端。单元格均为 inlineStr，不使用共享字符串表，内存占用与行数无关。
+ * java.util.zip.ZipOutputStream 的 flush 不会冲刷压缩器内部缓冲的数据，因此压缩包结构由本类直接写出:
+ * 每个条目使用 SYNC_FLUSH 模式的 DeflaterOutputStream，CRC 和长度写在条目后的数据描述符中，最后写中央目录。
+ * 不支持 ZIP64，单个条目或整个文件超过 4GB 时抛出 IOException。
+ * [已修改] 只有一个工作表，行数 (含表头) 超过 Excel 上限 1,048,576 时抛出 IOException，不会生成 Excel 打不开的文件。
+ * 只支持表头样式 (加粗、灰底、细边框、居中) 和固定列宽，需要更多格式时请使用 ExcelExportUtil.write (SXSSF)。
+ */
+public class XlsxStreamWriter {
+
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String NS_PKG_REL = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+    // styles.xml 中 cellXfs 的下标
+    private static final int STYLE_DEFAULT = 0;
+    private static final int STYLE_HEADER = 1;
+
+    // Excel 2007+ 单个工作表的最大行数
+    public static final int MAX_ROWS = 1_048_576;
+
+    private static final long ZIP32_LIMIT = 0xFFFFFFFFL;
+    // 通用标志: bit 3 = 使用数据描述符，bit 11 = 文件名为 UTF-8
+    private static final int FLAGS = 0x0808;
+
+    private final CountingOutputStream out;
+    private final EntryOutputStream entryOut = new EntryOutputStream();
+    private final Writer writer;
+    private final List<EntryRecord> entries = new ArrayList<>();
+    private final int dosTime;
+    private final int dosDate;
+    private int rowCount;
+    private boolean finished;
+
+    /**
+     * @param out          输出流 (finish 时不会关闭)
+     * @param sheetName    工作表名称 (非法字符会被替换)
+     * @param columnCount  列数，用于设置列宽
+     * @param columnWidth  列宽 (字符数)
+     */
+    public XlsxStreamWriter(OutputStream out, String sheetName, int columnCount, int columnWidth) throws IOException {
+        // 首次 flush 之前的内容都留在缓冲区中，调用方仍可改为返回错误信息
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.writer = new BufferedWriter(new OutputStreamWriter(entryOut, StandardCharsets.UTF_8), 64 * 1024);
+        LocalDateTime now = LocalDateTime.now();
+        this.dosTime = (now.getHour() << 11) | (now.getMinute() << 5) | (now.getSecond() >> 1);
+        this.dosDate = ((Math.max(now.getYear(), 1980) - 1980) << 9) | (now.getMonthValue() << 5) | now.getDayOfMonth();
+
+        writePart("[Content_Types].xml", XML_HEADER +
+                "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">" +
+                "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>" +
+                "<Default Extension=\"xml\" ContentType=\"application/xml\"/>" +
+                "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>" +
+                "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>" +
+                "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>" +
+                "</Types>");
+        writePart("_rels/.rels", XML_HEADER +
+                "<Relationships xmlns=\"" + NS_PKG_REL + "\">" +
+                "<Relationship Id=\"rId1\" Type=\"" + NS_REL + "/officeDocument\" Target=\"xl/workbook.xml\"/>" +
+                "</Relationships>");
+        writePart("xl/workbook.xml", XML_HEADER +
+                "<workbook xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\">" +
+                "<sheets><sheet name=\"" + escape(WorkbookUtil.createSafeSheetName(sheetName)) + "\" sheetId=\"1\" r:id=\"rId1\"/></sheets>" +
+                "</workbook>");
+        writePart("xl/_rels/workbook.xml.rels", XML_HEADER +
+                "<Relationships xmlns=\"" + NS_PKG_REL + "\">" +
+                "<Relationship Id=\"rId1\" Type=\"" + NS_REL + "/worksheet\" Target=\"worksheets/sheet1.xml\"/>" +
+                "<Relationship Id=\"rId2\" Type=\"" + NS_REL + "/styles\" Target=\"styles.xml\"/>" +
+                "</Relationships>");
+        // 字体 1 / 填充 2 (GREY_25_PERCENT) / 边框 1 组成表头样式
+        writePart("xl/styles.xml", XML_HEADER +
+                "<styleSheet xmlns=\"" + NS_MAIN + "\">" +
+                "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>" +
+                "<font><b/><sz val=\"12\"/><name val=\"Calibri\"/></font></fonts>" +
+                "<fills count=\"3\"><fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill>" +
+                "<fill><patternFill patternType=\"solid\"><fgColor indexed=\"22\"/><bgColor indexed=\"64\"/></patternFill></fill></fills>" +
+                "<borders count=\"2\"><border><left/><right/><top/><bottom/><diagonal/></border>" +
+                "<border><left style=\"thin\"><color indexed=\"64\"/></left><right style=\"thin\"><color indexed=\"64\"/></right>" +
+                "<top style=\"thin\"><color indexed=\"64\"/></top><bottom style=\"thin\"><color indexed=\"64\"/></bottom><diagonal/></border></borders>" +
+                "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>" +
+                "<cellXfs count=\"2\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>" +
+                "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"2\" borderId=\"1\" xfId=\"0\" applyFont=\"1\" applyFill=\"1\" applyBorder=\"1\" applyAlignment=\"1\">" +
+                "<alignment horizontal=\"center\"/></xf></cellXfs>" +
+                "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>" +
+                "</styleSheet>");
+
+        // 工作表放在最后，边写边输出
+        putNextEntry("xl/worksheets/sheet1.xml");
+        writer.write(XML_HEADER);
+        writer.write("<worksheet xmlns=\"" + NS_MAIN + "\">");
+        if (columnCount > 0) {
+            writer.write("<cols><col min=\"1\" max=\"" + columnCount + "\" width=\"" + columnWidth + "\" customWidth=\"1\"/></cols>");
+        }
+        writer.write("<sheetData>");
+    }
+
+    public void writeHeader(String[] titles) throws IOException {
+        writeRow(titles, STYLE_HEADER);
+    }
+
+    public void writeRow(String[] values) throws IOException {
+        writeRow(values, STYLE_DEFAULT);
+    }
+
+    /**
+     * 已写入的行数 (含表头)
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 把已生成的全部内容压缩后推送到输出流 (SYNC_FLUSH，客户端收到的数据可以立即解压)
+     */
+    public void flush() throws IOException {
+        writer.flush();
+        out.flushThrough();
+    }
+
+    /**
+     * 写完工作表并结束压缩包 (不关闭底层输出流)
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        writer.write("</sheetData></worksheet>");
+        closeEntry();
+        writeCentralDirectory();
+        out.flushThrough();
+    }
+
+    private void writeRow(String[] values, int style) throws IOException {
+        if (rowCount >= MAX_ROWS) {
+            throw new IOException("导出行数超过 Excel 单个工作表上限 " + MAX_ROWS + " 行，请缩小查询范围");
+        }
+        int r = ++rowCount;
+        writer.write("<row r=\"");
+        writer.write(Integer.toString(r));
+        writer.write("\">");
+        for (int c = 0; c < values.length; c++) {
+            String v = values[c];
+            if ((v == null || v.isEmpty()) && style == STYLE_DEFAULT) {
+                continue;
+            }
+            writer.write("<c r=\"");
+            writer.write(CellReference.convertNumToColString(c));
+            writer.write(Integer.toString(r));
+            writer.write("\" t=\"inlineStr\"");
+            if (style != STYLE_DEFAULT) {
+                writer.write(" s=\"");
+                writer.write(Integer.toString(style));
+                writer.write("\"");
+            }
+            writer.write("><is><t xml:space=\"preserve\">");
+            writer.write(escape(v));
+            writer.write("</t></is></c>");
+        }
+        writer.write("</row>");
+    }
+
+    private void writePart(String name, String content) throws IOException {
+        putNextEntry(name);
+        writer.write(content);
+        closeEntry();
+    }
+
+    /**
+     * 写本地文件头 (CRC 和长度置 0，由数据描述符给出)，之后的内容经压缩写入该条目
+     */
+    private void putNextEntry(String name) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        EntryRecord entry = new EntryRecord(nameBytes, out.count);
+        writeInt(0x04034b50);
+        writeShort(20);            // 解压所需版本
+        writeShort(FLAGS);
+        writeShort(8);             // DEFLATED
+        writeShort(dosTime);
+        writeShort(dosDate);
+        writeInt(0);               // CRC-32
+        writeInt(0);               // 压缩后长度
+        writeInt(0);               // 原始长度
+        writeShort(nameBytes.length);
+        writeShort(0);             // 扩展字段长度
+        out.write(nameBytes);
+        entry.dataOffset = out.count;
+        entryOut.begin(entry);
+    }
+
+    /**
+     * 结束当前条目: 压缩器收尾，写数据描述符
+     */
+    private void closeEntry() throws IOException {
+        writer.flush();
+        EntryRecord entry = entryOut.end();
+        entry.compressedSize = out.count - entry.dataOffset;
+        if (entry.compressedSize > ZIP32_LIMIT || entry.size > ZIP32_LIMIT) {
+            throw new IOException("导出文件超过 4GB，不支持");
+        }
+        writeInt(0x08074b50);
+        writeInt(entry.crc);
+        writeInt(entry.compressedSize);
+        writeInt(entry.size);
+        entries.add(entry);
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long start = out.count;
+        for (EntryRecord entry : entries) {
+            writeInt(0x02014b50);
+            writeShort(20);        // 创建版本
+            writeShort(20);        // 解压所需版本
+            writeShort(FLAGS);
+            writeShort(8);
+            writeShort(dosTime);
+            writeShort(dosDate);
+            writeInt(entry.crc);
+            writeInt(entry.compressedSize);
+            writeInt(entry.size);
+            writeShort(entry.name.length);
+            writeShort(0);         // 扩展字段长度
+            writeShort(0);         // 注释长度
+            writeShort(0);         // 磁盘号
+            writeShort(0);         // 内部属性
+            writeInt(0);           // 外部属性
+            writeInt(entry.headerOffset);
+            out.write(entry.name);
+        }
+        long size = out.count - start;
+        if (out.count > ZIP32_LIMIT) {
+            throw new IOException("导出文件超过 4GB，不支持");
+        }
+        writeInt(0x06054b50);
+        writeShort(0);
+        writeShort(0);
+        writeShort(entries.size());
+        writeShort(entries.size());
+        writeInt(size);
+        writeInt(start);
+        writeShort(0);             // 注释长度
+    }
+
+    private void writeShort(int v) throws IOException {
+        out.write(v & 0xff);
+        out.write((v >>> 8) & 0xff);
+    }
+
+    private void writeInt(long v) throws IOException {
+        writeShort((int) (v & 0xffff));
+        writeShort((int) ((v >>> 16) & 0xffff));
+    }
+
+    /**
+     * 已写出的一个条目 (用于数据描述符和中央目录)
+     */
+    private static final class EntryRecord {
+        final byte[] name;
+        final long headerOffset;
+        long dataOffset;
+        long crc;
+        long size;
+        long compressedSize;
+
+        EntryRecord(byte[] name, long headerOffset) {
+            this.name = name;
+            this.headerOffset = headerOffset;
+        }
+    }
+
+    /**
+     * 当前条目的内容流: 计算 CRC 和原始长度，经 SYNC_FLUSH 压缩器写入底层输出
+     */
+    private final class EntryOutputStream extends OutputStream {
+        private final CRC32 crc = new CRC32();
+        private EntryRecord entry;
+        private Deflater deflater;
+        private DeflaterOutputStream deflaterOut;
+
+        void begin(EntryRecord entry) {
+            this.entry = entry;
+            crc.reset();
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflaterOut = new DeflaterOutputStream(out, deflater, 8192, true);
+        }
+
+        EntryRecord end() throws IOException {
+            try {
+                deflaterOut.finish();
+            } finally {
+                deflater.end();
+            }
+            EntryRecord ended = entry;
+            ended.crc = crc.getValue();
+            entry = null;
+            deflaterOut = null;
+            return ended;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (entry == null) {
+                throw new IOException("没有打开的条目");
+            }
+            crc.update(b, off, len);
+            entry.size += len;
+            deflaterOut.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (deflaterOut != null) {
+                deflaterOut.flush();
+            }
+        }
+    }
+
+    /**
+     * 记录已写出字节数 (条目偏移和压缩后长度)。
+     * 压缩器的 SYNC_FLUSH 会连带 flush 底层流，这里忽略普通 flush，只有 flushThrough 才真正推送给客户端。
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+            // 见类注释
+        }
+
+        void flushThrough() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * XML 转义，并去掉 XML 1.0 不允许的控制字符
+     */
+    private static String escape(String s) {
+        if (s == null || s.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            String replacement;
+            switch (ch) {
+                case '&': replacement = "&amp;"; break;
+                case '<': replacement = "&lt;"; break;
+                case '>': replacement = "&gt;"; break;
+                case '"': replacement = "&quot;"; break;
+                default:
+                    boolean valid = ch == '\t' || ch == '\n' || ch == '\r' || (ch >= 0x20 && ch != 0xFFFE && ch != 0xFFFF);
+                    replacement = valid ? null : "";
+            }
+            if (replacement != null && sb == null) {
+                sb = new StringBuilder(s.length() + 16);
+                sb.append(s, 0, i);
+            }
+            if (sb != null) {
+                if (replacement != null) {
+                    sb.append(replacement);
+                } else {
+                    sb.append(ch);
+                }
+            }
+        }
+        return sb != null ? sb.toString() : s;
+    }
+}
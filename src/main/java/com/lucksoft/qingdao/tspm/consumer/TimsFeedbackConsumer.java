@@ -1,24 +1,43 @@
 package com.lucksoft.qingdao.tspm.consumer;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.lucksoft.qingdao.config.KafkaConsumerConfig;
 import com.lucksoft.qingdao.controller.OracleApiController;
 import com.lucksoft.qingdao.oracle.service.AsyncTaskService;
 import com.lucksoft.qingdao.tspm.dto.*;
 import com.lucksoft.qingdao.tspm.service.ReceivedDataCacheService;
 import com.lucksoft.qingdao.tspm.service.TspmLogService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 /**
  * 监听并处理所有来自TIMS系统的消息
  * [已重构] 所有消费者现在都调用 AsyncTaskService 来异步处理数据
+ * [已修改] 改为批量监听 (List&lt;ConsumerRecord&gt;) + 手动提交 offset: 本批数据全部处理完毕后才提交，
+ *         进程崩溃时未处理完的记录会重新消费，不再丢失。
  */
 @Service
 public class TimsFeedbackConsumer {
@@ -48,221 +67,302 @@ public class TimsFeedbackConsumer {
     @Autowired
     private AsyncTaskService asyncTaskService;
 
+    // [新增] 等待本批数据处理完毕 (进入终态) 的最长时间，超时则从第一条未处理完毕的记录起重新投递
+    @Value("${tims.kafka.batch.ack-timeout-seconds:120}")
+    private long ackTimeoutSeconds;
+
+    // [新增] 同一条记录最多重新投递的次数
+    @Value("${tims.kafka.batch.max-redeliveries:3}")
+    private int maxRedeliveries;
+
+    private static final long NACK_SLEEP_MILLIS = 5000;
+    private static final int MAX_TRACKED_REDELIVERIES = 10000;
+
+    // [新增] 记录 (topic-partition@offset) -> 已重新投递次数
+    private final Map<String, Integer> redeliveries = new ConcurrentHashMap<>();
+
+    // [新增] 按 DTO 类型预先构建的单条数据 ObjectReader (线程安全，可复用)
+    private ObjectReader taskCompletionReader;
+    private ObjectReader taskScoreReader;
+    private ObjectReader faultReportReader;
+    private ObjectReader recommendTaskReader;
+    private ObjectReader rotationalCompletionReader;
+    private ObjectReader rotationalScoreReader;
+    private ObjectReader faultAnalysisReader;
+    private ObjectReader haltCompletionReader;
+
+    @PostConstruct
+    public void initReaders() {
+        taskCompletionReader = objectMapper.readerFor(TaskCompletionFeedbackDTO.class);
+        taskScoreReader = objectMapper.readerFor(TaskScoreFeedbackDTO.class);
+        faultReportReader = objectMapper.readerFor(FaultReportDTO.class);
+        recommendTaskReader = objectMapper.readerFor(RecommendedRotationalTaskDTO.class);
+        rotationalCompletionReader = objectMapper.readerFor(RotationalTaskCompletionFeedbackDTO.class);
+        rotationalScoreReader = objectMapper.readerFor(RotationalTaskScoreFeedbackDTO.class);
+        faultAnalysisReader = objectMapper.readerFor(FaultAnalysisReportDTO.class);
+        haltCompletionReader = objectMapper.readerFor(ProductionHaltCompletionFeedbackDTO.class);
+    }
+
     /**
      * 接口 2: 消费“反馈保养、点检、润滑任务完成情况”
      */
-    @KafkaListener(topics = "${kafka.topics.feedback-completed-maintenance-task}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeTaskCompletionFeedback(String message) {
-        String topic = "tims.feedback.completed.maintenance.task";
-        try {
-            List<TaskCompletionFeedbackDTO> feedbacks = objectMapper.readValue(message, new TypeReference<List<TaskCompletionFeedbackDTO>>(){});
-            for (TaskCompletionFeedbackDTO feedback : feedbacks) {
-                String logContent = objectMapper.writeValueAsString(feedback);
-                maintenanceCompletionLogger.info(logContent);
-                logService.logReceive(topic, logContent);
-
-                Map<String, Object> dataMap = objectMapper.convertValue(feedback, new TypeReference<Map<String, Object>>() {});
-                cacheService.addData(topic, dataMap);
-
-                // [新] 提交给异步服务处理
-                log.info("为接收到的任务完成 (ID: {}) 派发异步任务...", feedback.getTaskId());
-                asyncTaskService.submitTaskCompletion(feedback);
-            }
-        } catch (Exception e) {
-            String errorMessage = "消息处理失败: " + e.getMessage() + ", 原始消息: " + message;
-            maintenanceCompletionLogger.error(errorMessage);
-            logService.logReceiveError(topic, errorMessage);
-        }
+    @KafkaListener(topics = "${kafka.topics.feedback-completed-maintenance-task}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = KafkaConsumerConfig.TIMS_BATCH_LISTENER_FACTORY)
+    public void consumeTaskCompletionFeedback(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        this.<TaskCompletionFeedbackDTO>consumeBatch("tims.feedback.completed.maintenance.task", records, ack, taskCompletionReader, maintenanceCompletionLogger,
+                feedback -> {
+                    // [新] 提交给异步服务处理
+                    log.info("为接收到的任务完成 (ID: {}) 派发异步任务...", feedback.getTaskId());
+                    return asyncTaskService.submitTaskCompletion(feedback);
+                });
     }
 
     /**
      * 接口 3: 消费“反馈保养、点检、润滑任务完成得分”
      */
-    @KafkaListener(topics = "${kafka.topics.feedback-maintenance-task-score}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeTaskScoreFeedback(String message) {
-        String topic = "tims.feedback.maintenance.task.score";
-        try {
-            List<TaskScoreFeedbackDTO> feedbacks = objectMapper.readValue(message, new TypeReference<List<TaskScoreFeedbackDTO>>(){});
-            for (TaskScoreFeedbackDTO feedback : feedbacks) {
-                String logContent = objectMapper.writeValueAsString(feedback);
-                maintenanceScoreLogger.info(logContent);
-                logService.logReceive(topic, logContent);
-
-                Map<String, Object> dataMap = objectMapper.convertValue(feedback, new TypeReference<Map<String, Object>>() {});
-                cacheService.addData(topic, dataMap);
-
-                // [新] 提交给异步服务处理
-                log.info("为接收到的任务得分 (ID: {}) 派发异步任务...", feedback.getTaskId());
-                asyncTaskService.submitTaskScore(feedback);
-            }
-        } catch (Exception e) {
-            String errorMessage = "消息处理失败: " + e.getMessage() + ", 原始消息: " + message;
-            maintenanceScoreLogger.error(errorMessage);
-            logService.logReceiveError(topic, errorMessage);
-        }
+    @KafkaListener(topics = "${kafka.topics.feedback-maintenance-task-score}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = KafkaConsumerConfig.TIMS_BATCH_LISTENER_FACTORY)
+    public void consumeTaskScoreFeedback(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        this.<TaskScoreFeedbackDTO>consumeBatch("tims.feedback.maintenance.task.score", records, ack, taskScoreReader, maintenanceScoreLogger,
+                feedback -> {
+                    // [新] 提交给异步服务处理
+                    log.info("为接收到的任务得分 (ID: {}) 派发异步任务...", feedback.getTaskId());
+                    return asyncTaskService.submitTaskScore(feedback);
+                });
     }
 
     /**
      * 接口 4 & 10: 消费“点检异常填报”或“故障维修报告创建”
      */
-    @KafkaListener(topics = "${kafka.topics.create-fault-report}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeFaultReport(String message) {
-        String topic = "tims.create.fault.report";
-        try {
-            List<FaultReportDTO> reports = objectMapper.readValue(message, new TypeReference<List<FaultReportDTO>>(){});
-
-            for (FaultReportDTO report : reports) {
-                String logContent = objectMapper.writeValueAsString(report);
-                faultReportLogger.info(logContent);
-                logService.logReceive(topic, logContent);
-
-                Map<String, Object> dataMap = objectMapper.convertValue(report, new TypeReference<Map<String, Object>>() {});
-                cacheService.addData(topic, dataMap);
-
-                // [已修改] 调用 AsyncTaskService 来异步管理此任务
-                log.info("为接收到的故障报告 (ID: {}) 派发异步任务...", report.getId());
-                asyncTaskService.submitFaultReportTask(report);
-            }
-        } catch (Exception e) {
-            String errorMessage = "消息处理失败: " + e.getMessage() + ", 原始消息: " + message;
-            faultReportLogger.error(errorMessage);
-            logService.logReceiveError(topic, errorMessage);
-        }
+    @KafkaListener(topics = "${kafka.topics.create-fault-report}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = KafkaConsumerConfig.TIMS_BATCH_LISTENER_FACTORY)
+    public void consumeFaultReport(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        this.<FaultReportDTO>consumeBatch("tims.create.fault.report", records, ack, faultReportReader, faultReportLogger,
+                report -> {
+                    // [已修改] 调用 AsyncTaskService 来异步管理此任务
+                    log.info("为接收到的故障报告 (ID: {}) 派发异步任务...", report.getId());
+                    return asyncTaskService.submitFaultReportTask(report);
+                });
     }
 
     /**
      * 接口 6: 消费“TIMS智能推荐预测性维修任务”
      */
-    @KafkaListener(topics = "${kafka.topics.recommend-rotational-task}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeRecommendedTask(String message) {
-        String topic = "tims.recommend.rotational.task";
-        try {
-            List<RecommendedRotationalTaskDTO> tasks = objectMapper.readValue(message, new TypeReference<List<RecommendedRotationalTaskDTO>>(){});
-            for (RecommendedRotationalTaskDTO task : tasks) {
-                String logContent = objectMapper.writeValueAsString(task);
-                recommendTaskLogger.info(logContent);
-                logService.logReceive(topic, logContent);
-
-                Map<String, Object> dataMap = objectMapper.convertValue(task, new TypeReference<Map<String, Object>>() {});
-                cacheService.addData(topic, dataMap);
-
-                // [新] 提交给异步服务处理
-                log.info("为接收到的推荐任务 (PlanID: {}) 派发异步任务...", task.getPlanId());
-                asyncTaskService.submitRecommendTask(task);
-            }
-        } catch (Exception e) {
-            String errorMessage = "消息处理失败: " + e.getMessage() + ", 原始消息: " + message;
-            recommendTaskLogger.error(errorMessage);
-            logService.logReceiveError(topic, errorMessage);
-        }
+    @KafkaListener(topics = "${kafka.topics.recommend-rotational-task}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = KafkaConsumerConfig.TIMS_BATCH_LISTENER_FACTORY)
+    public void consumeRecommendedTask(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        this.<RecommendedRotationalTaskDTO>consumeBatch("tims.recommend.rotational.task", records, ack, recommendTaskReader, recommendTaskLogger,
+                task -> {
+                    // [新] 提交给异步服务处理
+                    log.info("为接收到的推荐任务 (PlanID: {}) 派发异步任务...", task.getPlanId());
+                    return asyncTaskService.submitRecommendTask(task);
+                });
     }
 
     /**
      * 接口 8: 消费“反馈轮保任务完成情况”
      */
-    @KafkaListener(topics = "${kafka.topics.feedback-completed-rotational-task}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeRotationalCompletion(String message) {
-        String topic = "tims.feedback.completed.rotational.task";
-        try {
-            List<RotationalTaskCompletionFeedbackDTO> feedbacks = objectMapper.readValue(message, new TypeReference<List<RotationalTaskCompletionFeedbackDTO>>(){});
-            for (RotationalTaskCompletionFeedbackDTO feedback : feedbacks) {
-                String logContent = objectMapper.writeValueAsString(feedback);
-                rotationalCompletionLogger.info(logContent);
-                logService.logReceive(topic, logContent);
-
-                Map<String, Object> dataMap = objectMapper.convertValue(feedback, new TypeReference<Map<String, Object>>() {});
-                cacheService.addData(topic, dataMap);
-
-                // [新] 提交给异步服务处理
-                log.info("为接收到的轮保完成 (ID: {}) 派发异步任务...", feedback.getTaskId());
-                asyncTaskService.submitRotationalCompletion(feedback);
-            }
-        } catch (Exception e) {
-            String errorMessage = "消息处理失败: " + e.getMessage() + ", 原始消息: " + message;
-            rotationalCompletionLogger.error(errorMessage);
-            logService.logReceiveError(topic, errorMessage);
-        }
+    @KafkaListener(topics = "${kafka.topics.feedback-completed-rotational-task}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = KafkaConsumerConfig.TIMS_BATCH_LISTENER_FACTORY)
+    public void consumeRotationalCompletion(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        this.<RotationalTaskCompletionFeedbackDTO>consumeBatch("tims.feedback.completed.rotational.task", records, ack, rotationalCompletionReader, rotationalCompletionLogger,
+                feedback -> {
+                    // [新] 提交给异步服务处理
+                    log.info("为接收到的轮保完成 (ID: {}) 派发异步任务...", feedback.getTaskId());
+                    return asyncTaskService.submitRotationalCompletion(feedback);
+                });
     }
 
     /**
      * 接口 9: 消费“反馈轮保任务完成得分”
      */
-    @KafkaListener(topics = "${kafka.topics.feedback-rotational-task-score}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeRotationalScore(String message) {
-        String topic = "tims.feedback.rotational.task.score";
-        try {
-            List<RotationalTaskScoreFeedbackDTO> feedbacks = objectMapper.readValue(message, new TypeReference<List<RotationalTaskScoreFeedbackDTO>>(){});
-            for (RotationalTaskScoreFeedbackDTO feedback : feedbacks) {
-                String logContent = objectMapper.writeValueAsString(feedback);
-                rotationalScoreLogger.info(logContent);
-                logService.logReceive(topic, logContent);
-
-                Map<String, Object> dataMap = objectMapper.convertValue(feedback, new TypeReference<Map<String, Object>>() {});
-                cacheService.addData(topic, dataMap);
-
-                // [新] 提交给异步服务处理
-                log.info("为接收到的轮保得分 (ID: {}) 派发异步任务...", feedback.getTaskId());
-                asyncTaskService.submitRotationalScore(feedback);
-            }
-        } catch (Exception e) {
-            String errorMessage = "消息处理失败: " + e.getMessage() + ", 原始消息: " + message;
-            rotationalScoreLogger.error(errorMessage);
-            logService.logReceiveError(topic, errorMessage);
-        }
+    @KafkaListener(topics = "${kafka.topics.feedback-rotational-task-score}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = KafkaConsumerConfig.TIMS_BATCH_LISTENER_FACTORY)
+    public void consumeRotationalScore(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        this.<RotationalTaskScoreFeedbackDTO>consumeBatch("tims.feedback.rotational.task.score", records, ack, rotationalScoreReader, rotationalScoreLogger,
+                feedback -> {
+                    // [新] 提交给异步服务处理
+                    log.info("为接收到的轮保得分 (ID: {}) 派发异步任务...", feedback.getTaskId());
+                    return asyncTaskService.submitRotationalScore(feedback);
+                });
     }
 
     /**
      * 接口 11: 消费“故障分析报告创建”
      * [注意] 此接口缺少 DTO 规范，暂不调用存储过程。
      */
-    @KafkaListener(topics = "${kafka.topics.create-fault-analysis-report}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeFaultAnalysisReport(String message) {
-        String topic = "tims.create.fault.analysis.report";
-        try {
-            List<FaultAnalysisReportDTO> reports = objectMapper.readValue(message, new TypeReference<List<FaultAnalysisReportDTO>>(){});
-            for (FaultAnalysisReportDTO report : reports) {
-                String logContent = objectMapper.writeValueAsString(report);
-                faultAnalysisLogger.info(logContent);
-                logService.logReceive(topic, logContent);
+    @KafkaListener(topics = "${kafka.topics.create-fault-analysis-report}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = KafkaConsumerConfig.TIMS_BATCH_LISTENER_FACTORY)
+    public void consumeFaultAnalysisReport(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        this.<FaultAnalysisReportDTO>consumeBatch("tims.create.fault.analysis.report", records, ack, faultAnalysisReader, faultAnalysisLogger,
+                report -> {
+                    log.warn("接收到故障分析报告 (ID: {})，但未实现存储过程调用。", report.getId());
+                    return asyncTaskService.submitFaultAnalysisReport(report);
+                });
+    }
 
-                Map<String, Object> dataMap = objectMapper.convertValue(report, new TypeReference<Map<String, Object>>() {});
-                cacheService.addData(topic, dataMap);
+    /**
+     * 接口 14: 消费“反馈停产检修计划任务完成情况”
+     */
+    @KafkaListener(topics = "${kafka.topics.feedback-completed-production-halt-maintenance-task}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = KafkaConsumerConfig.TIMS_BATCH_LISTENER_FACTORY)
+    public void consumeProductionHaltCompletion(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        this.<ProductionHaltCompletionFeedbackDTO>consumeBatch("tims.feedback.completed.production.halt.maintenance.task", records, ack, haltCompletionReader, haltCompletionLogger,
+                feedback -> {
+                    // [新] 提交给异步服务处理
+                    log.info("为接收到的停产检修完成 (ID: {}) 派发异步任务...", feedback.getTaskId());
+                    return asyncTaskService.submitHaltCompletion(feedback);
+                });
+    }
 
+    /**
+     * [新增] 批量消费的公共流程:
+     * 1. 逐条解析记录 (流式读取 JSON 数组，每个元素只解析一次)，写文件日志、UI 日志和接收缓存，并提交给 AsyncTaskService。
+     *    文件日志、UI 日志和接收缓存共用元素的原始 JSON 片段，不再对每条数据重新序列化或转换为 Map。
+     * 2. 等待本批所有任务进入终态；只有全部数据 SUCCESS 的记录才算处理完毕。单条记录解析失败只记录错误并跳过。
+     * 3. 本批全部处理完毕时 acknowledge；否则 nack(第一条未处理完毕的记录)，其之前的 offset 提交，
+     *    从该记录起稍后重新投递 (至少一次语义)。超时仍未完成的任务取消等待登记。
+     * 4. 同一条记录重新投递 max-redeliveries 次后仍失败则记录错误并放弃，避免一条坏数据阻塞整个分区。
+     */
+    private <T> void consumeBatch(String topic, List<ConsumerRecord<String, String>> records, Acknowledgment ack,
+                                  ObjectReader reader, Logger fileLogger, Function<T, String> submitter) {
+        List<PendingItem> pending = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            String message = records.get(i).value();
+            try {
+                List<RawItem<T>> items = readRawItems(message, reader);
+                for (RawItem<T> item : items) {
+                    fileLogger.info(item.rawJson);
+                    logService.logReceive(topic, item.rawJson);
+                    cacheService.addRawData(topic, item.rawJson);
+
+                    String taskId = submitter.apply(item.value);
+                    pending.add(new PendingItem(i, taskId, asyncTaskService.completionOf(taskId)));
+                }
+            } catch (Exception e) {
+                String errorMessage = "消息处理失败: " + e.getMessage() + ", 原始消息: " + message;
+                fileLogger.error(errorMessage);
+                logService.logReceiveError(topic, errorMessage);
+            }
+        }
+
+        boolean interrupted = false;
+        try {
+            CompletableFuture.allOf(pending.stream().map(p -> p.completion).toArray(CompletableFuture[]::new))
+                    .get(ackTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            interrupted = true;
+        } catch (TimeoutException | ExecutionException e) {
+            // 逐条检查结果，未完成的按未处理完毕处理
+        }
 
-                log.warn("接收到故障分析报告 (ID: {})，但未实现存储过程调用。", report.getId());
-                asyncTaskService.submitFaultAnalysisReport(report);
+        // 每条记录是否处理完毕 (记录内全部数据 SUCCESS)
+        boolean[] done = new boolean[records.size()];
+        Arrays.fill(done, true);
+        int unfinished = 0;
+        for (PendingItem item : pending) {
+            AsyncTaskService.TaskStatus status = item.completion.getNow(null);
+            if (status == null) {
+                asyncTaskService.abandonCompletion(item.taskId, item.completion);
+            }
+            if (status != AsyncTaskService.TaskStatus.SUCCESS) {
+                done[item.recordIndex] = false;
+                unfinished++;
             }
-        } catch (Exception e) {
-            String errorMessage = "消息处理失败: " + e.getMessage() + ", 原始消息: " + message;
-            faultAnalysisLogger.error(errorMessage);
-            logService.logReceiveError(topic, errorMessage);
         }
+
+        int nackIndex = -1;
+        for (int i = 0; i < records.size(); i++) {
+            String key = recordKey(records.get(i));
+            if (done[i]) {
+                redeliveries.remove(key);
+                continue;
+            }
+            if (!interrupted) {
+                int attempts = redeliveries.merge(key, 1, Integer::sum);
+                if (attempts > maxRedeliveries) {
+                    redeliveries.remove(key);
+                    String errorMessage = "记录 " + key + " 已重新投递 " + maxRedeliveries + " 次仍未处理成功，放弃该记录";
+                    fileLogger.error(errorMessage);
+                    logService.logReceiveError(topic, errorMessage);
+                    continue;
+                }
+            }
+            nackIndex = i;
+            break;
+        }
+        if (redeliveries.size() > MAX_TRACKED_REDELIVERIES) {
+            // 分区再均衡后残留的计数，清空即可 (最多多重试几次)
+            redeliveries.clear();
+        }
+
+        if (nackIndex < 0) {
+            ack.acknowledge();
+            return;
+        }
+        if (interrupted) {
+            log.warn("[{}] 等待处理结果时被中断，从第 {} 条记录起重新投递", topic, nackIndex);
+        } else {
+            log.warn("[{}] {} 条数据未在 {} 秒内处理成功，从第 {}/{} 条记录起重新投递",
+                    topic, unfinished, ackTimeoutSeconds, nackIndex, records.size());
+        }
+        ack.nack(nackIndex, NACK_SLEEP_MILLIS);
+    }
+
+    private static String recordKey(ConsumerRecord<String, String> record) {
+        return record.topic() + "-" + record.partition() + "@" + record.offset();
     }
 
     /**
-     * 接口 14: 消费“反馈停产检修计划任务完成情况”
+     * [新增] 流式解析 JSON 数组: 每个元素直接绑定为 DTO，同时截取其在原始消息中的 JSON 片段。
+     * 整条消息解析成功后才返回 (与原先 readValue 整体解析的行为一致，消息损坏时不提交其中任何数据)。
      */
-    @KafkaListener(topics = "${kafka.topics.feedback-completed-production-halt-maintenance-task}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeProductionHaltCompletion(String message) {
-        String topic = "tims.feedback.completed.production.halt.maintenance.task";
-        try {
-            List<ProductionHaltCompletionFeedbackDTO> feedbacks = objectMapper.readValue(message, new TypeReference<List<ProductionHaltCompletionFeedbackDTO>>(){});
-            for (ProductionHaltCompletionFeedbackDTO feedback : feedbacks) {
-                String logContent = objectMapper.writeValueAsString(feedback);
-                haltCompletionLogger.info(logContent);
-                logService.logReceive(topic, logContent);
-
-                Map<String, Object> dataMap = objectMapper.convertValue(feedback, new TypeReference<Map<String, Object>>() {});
-                cacheService.addData(topic, dataMap);
-
-                // [新] 提交给异步服务处理
-                log.info("为接收到的停产检修完成 (ID: {}) 派发异步任务...", feedback.getTaskId());
-                asyncTaskService.submitHaltCompletion(feedback);
+    private <T> List<RawItem<T>> readRawItems(String message, ObjectReader reader) throws IOException {
+        List<RawItem<T>> items = new ArrayList<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "消息不是 JSON 数组");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new JsonParseException(parser, "JSON 数组不完整");
+                }
+                int start = (int) parser.getTokenLocation().getCharOffset();
+                T value = reader.readValue(parser);
+                int end = (int) parser.getCurrentLocation().getCharOffset();
+                items.add(new RawItem<>(value, message.substring(start, end)));
             }
-        } catch (Exception e) {
-            String errorMessage = "消息处理失败: " + e.getMessage() + ", 原始消息: " + message;
-            haltCompletionLogger.error(errorMessage);
-            logService.logReceiveError(topic, errorMessage);
+        }
+        return items;
+    }
+
+    /**
+     * 已提交的单条数据: 所在记录下标、任务ID及其终态 Future
+     */
+    private static final class PendingItem {
+        private final int recordIndex;
+        private final String taskId;
+        private final CompletableFuture<AsyncTaskService.TaskStatus> completion;
+
+        PendingItem(int recordIndex, String taskId, CompletableFuture<AsyncTaskService.TaskStatus> completion) {
+            this.recordIndex = recordIndex;
+            this.taskId = taskId;
+            this.completion = completion;
+        }
+    }
+
+    /**
+     * 解析后的单条数据及其原始 JSON 片段
+     */
+    private static final class RawItem<T> {
+        private final T value;
+        private final String rawJson;
+
+        RawItem(T value, String rawJson) {
+            this.value = value;
+            this.rawJson = rawJson;
         }
     }
-}
\ No newline at end of file
+}
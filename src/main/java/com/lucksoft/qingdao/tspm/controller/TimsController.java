@@ -3,6 +3,7 @@ package com.lucksoft.qingdao.tspm.controller;
 import com.lucksoft.qingdao.tspm.dto.tims.CreateSelfCheckTaskReq;
 import com.lucksoft.qingdao.tspm.dto.tims.CreateSelfCheckTaskResp;
 import com.lucksoft.qingdao.tspm.dto.tims.GetAvgSpeedReq;
+import com.lucksoft.qingdao.tspm.service.DeviceSpeedCache;
 import com.lucksoft.qingdao.tspm.service.TimsServiceClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +28,9 @@ public class TimsController {
     @Autowired
     private TimsServiceClient timsServiceClient;
 
+    @Autowired
+    private DeviceSpeedCache speedCache;
+
     /**
      * 7. 获取设备指定时间段内平均车速
      * Path: /api/tims/speed/avg
@@ -47,7 +51,8 @@ public class TimsController {
         GetAvgSpeedReq req = new GetAvgSpeedReq(equipmentCode, startTime, endTime);
 
         try {
-            Double speed = timsServiceClient.getAverageSpeed(req);
+            // [已修改] 经车速缓存查询，短时间内的重复请求不再调用 TIMS
+            Double speed = speedCache.getAverageSpeed(req);
             // 直接返回 Double 值 (如 320.0)
             return ResponseEntity.ok(speed);
         } catch (Exception e) {
@@ -56,6 +61,14 @@ public class TimsController {
         }
     }
 
+    /**
+     * [新增] 车速缓存命中统计
+     */
+    @GetMapping("/speed/cache-stats")
+    public ResponseEntity<Map<String, Object>> getSpeedCacheStats() {
+        return ResponseEntity.ok(speedCache.getStats());
+    }
+
     /**
      * 8. 创建自检自控待办任务
      * Path: /api/tims/self-check/task
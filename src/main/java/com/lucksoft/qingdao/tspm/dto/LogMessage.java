@@ -1,8 +1,8 @@
 package com.lucksoft.qingdao.tspm.dto;
 
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 /**
  * 用于WebSocket实时推送的日志消息实体
@@ -14,11 +14,11 @@ public class LogMessage implements Serializable {
     private String topic;
     private String content;
 
-    // 使用
-    private static final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    // [已修改] DateTimeFormatter 线程安全 (SimpleDateFormat 在多线程同时写日志时会格式化出错)
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
 
     public LogMessage(String type, String topic, String content) {
-        this.timestamp = sdf.format(new Date());
+        this.timestamp = LocalDateTime.now().format(FORMATTER);
         this.type = type;
         this.topic = topic;
         this.content = content;
@@ -9,7 +9,11 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -17,6 +21,8 @@ import java.util.concurrent.TimeoutException;
  * [已重构] 统一的TsPM Kafka生产者服务
  * 1. 移除了异步回调逻辑 (addCallback)。
  * 2. 新增了 sendSync 方法，用于同步阻塞发送，确保在写入Redis前Kafka已确认。
+ * 3. [新增] sendAllAndAwait 方法，一次性发出所有批次 (限制在途数量)，再统一等待确认，
+ *    N 个批次只需约一次 Broker 往返，而不是 N 次串行往返。
  */
 @Service
 public class TspmProducerService {
@@ -30,6 +36,11 @@ public class TspmProducerService {
      */
     private static final long SYNC_SEND_TIMEOUT = 200; // 单位: 秒
 
+    /**
+     * [新] sendAllAndAwait 允许同时在途 (已发送未确认) 的最大批次数
+     */
+    private static final int MAX_IN_FLIGHT_BATCHES = 16;
+
     @Autowired
     private KafkaTemplate<String, String> kafkaTemplate;
 
@@ -108,4 +119,64 @@ public class TspmProducerService {
             throw e; // [关键] 必须向上抛出, 以便 OracleDataService 捕获并停止写入 Redis
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * [新] 流水线批量同步发送
+     * 所有批次连续发出 (最多 MAX_IN_FLIGHT_BATCHES 个在途)，然后等待全部确认。
+     * 只要有任意一个批次失败或超时，就抛出异常，调用方不得写入 Redis。
+     *
+     * @param topic   目标Topic
+     * @param batches 批次列表，每个元素会被序列化为一条 Kafka 消息
+     * @throws ExecutionException   如果任一批次发送失败
+     * @throws InterruptedException 如果当前线程被中断
+     * @throws TimeoutException     如果在 SYNC_SEND_TIMEOUT 内未全部确认
+     * @throws com.fasterxml.jackson.core.JsonProcessingException 如果JSON序列化失败
+     */
+    public void sendAllAndAwait(String topic, List<?> batches)
+            throws com.fasterxml.jackson.core.JsonProcessingException, ExecutionException, InterruptedException, TimeoutException {
+        if (batches == null || batches.isEmpty()) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SYNC_SEND_TIMEOUT);
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT_BATCHES);
+        List<CompletableFuture<SendResult<String, String>>> futures = new ArrayList<>(batches.size());
+
+        logger.info("准备流水线发送 {} 个批次到 Topic: {}", batches.size(), topic);
+        try {
+            for (int i = 0; i < batches.size(); i++) {
+                String jsonPayload = objectMapper.writeValueAsString(batches.get(i));
+                logService.addLog("PUSH_SYNC", topic, jsonPayload); // 记录同步推送日志
+
+                // 在途批次已满时等待，避免一次性占满 producer buffer
+                long remaining = deadline - System.nanoTime();
+                if (!inFlight.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+                    throw new TimeoutException("等待在途批次确认超时 (已发送 " + i + "/" + batches.size() + ")");
+                }
+
+                CompletableFuture<SendResult<String, String>> future;
+                try {
+                    future = kafkaTemplate.send(topic, jsonPayload).completable();
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw new ExecutionException(e);
+                }
+                future.whenComplete((result, ex) -> inFlight.release());
+                futures.add(future);
+            }
+
+            // 等待所有批次确认
+            long remaining = deadline - System.nanoTime();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+
+            logger.info("流水线发送成功. Topic: {}, 共 {} 个批次全部确认", topic, futures.size());
+
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            String errorLog = String.format("流水线发送到 Topic %s 失败 (超时或执行错误): %s", topic, e.getMessage());
+            logger.error(errorLog, e);
+            logService.addLog("PUSH_ERROR", topic, errorLog); // 记录失败日志
+            throw e; // [关键] 必须向上抛出, 以便 OracleDataService 停止写入 Redis
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.lucksoft.qingdao.tspm.service;
+
+import com.lucksoft.qingdao.tspm.dto.tims.GetAvgSpeedReq;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * [新增] 设备平均车速短期缓存 (接口 7)
+ * 班次任务生成、全量车速刷新和页面查询原先各自调用 TIMS。这里统一经过缓存:
+ * 1. 按 (设备编码, 时间窗口) 缓存: "最近 N 分钟" 的查询按窗口长度共用一条读数，指定起止时间的查询按起止时间缓存。
+ * 2. 读数在 tims.speed-cache.ttl-seconds 内有效，过期后下一次查询重新调用 TIMS。
+ * 3. 同一个 key 同时只有一个线程调用 TIMS，其余线程等待同一个结果 (single-flight)；调用失败不缓存。
+ * 读数中带有实际查询的起止时间，调用方记录车速时应使用读数的时间而不是当前时间。
+ */
+@Service
+public class DeviceSpeedCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceSpeedCache.class);
+
+    @Autowired
+    private TimsServiceClient timsClient;
+
+    @Value("${tims.speed-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    // 等待其它线程加载结果的最长时间
+    @Value("${tims.speed-cache.load-timeout-seconds:60}")
+    private long loadTimeoutSeconds;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+
+    /**
+     * 获取设备最近 windowMinutes 分钟的平均车速 (缓存有效期内复用之前的读数)
+     */
+    public SpeedReading getRecentSpeed(String equipmentCode, int windowMinutes) {
+        String code = normalize(equipmentCode);
+        return get(code + "|last" + windowMinutes + "m", () -> {
+            Date end = new Date();
+            Date start = new Date(end.getTime() - TimeUnit.MINUTES.toMillis(windowMinutes));
+            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            return load(new GetAvgSpeedReq(code, sdf.format(start), sdf.format(end)), start, end);
+        });
+    }
+
+    /**
+     * 按指定起止时间获取平均车速 (起止时间为空时使用 TIMS 默认窗口)
+     */
+    public Double getAverageSpeed(GetAvgSpeedReq req) {
+        String code = normalize(req.getEquipmentCode());
+        String key = code + "|" + req.getStartTime() + "|" + req.getEndTime();
+        return get(key, () -> load(new GetAvgSpeedReq(code, req.getStartTime(), req.getEndTime()), null, null)).getSpeed();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("hits", hits.sum());
+        stats.put("loads", loads.sum());
+        stats.put("collapsed", collapsed.sum());
+        stats.put("ttlSeconds", ttlSeconds);
+        return stats;
+    }
+
+    /**
+     * 定期清理过期的读数
+     */
+    @Scheduled(fixedDelayString = "${tims.speed-cache.cleanup-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> e.getValue().isExpired(now, ttlSeconds));
+    }
+
+    private SpeedReading get(String key, Loader loader) {
+        while (true) {
+            long now = System.currentTimeMillis();
+            Entry existing = entries.get(key);
+            if (existing != null && !existing.isExpired(now, ttlSeconds)) {
+                if (existing.future.isDone()) {
+                    hits.increment();
+                } else {
+                    collapsed.increment();
+                }
+                return await(existing);
+            }
+            Entry fresh = new Entry();
+            boolean owner = existing == null ? entries.putIfAbsent(key, fresh) == null : entries.replace(key, existing, fresh);
+            if (!owner) {
+                // 其它线程刚刚开始加载，重新读取
+                continue;
+            }
+            loads.increment();
+            try {
+                SpeedReading reading = loader.load();
+                fresh.loadedAt = System.currentTimeMillis();
+                fresh.future.complete(reading);
+                return reading;
+            } catch (Throwable e) {
+                // 失败 (包括 Error) 不缓存，等待中的线程立即收到同样的异常
+                entries.remove(key, fresh);
+                fresh.future.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    private SpeedReading await(Entry entry) {
+        try {
+            return entry.future.get(loadTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (TimeoutException e) {
+            log.warn("等待车速查询结果超时 ({} 秒)", loadTimeoutSeconds);
+            throw new RuntimeException("获取平均车速超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("获取平均车速被中断");
+        }
+    }
+
+    private SpeedReading load(GetAvgSpeedReq req, Date start, Date end) {
+        return new SpeedReading(timsClient.getAverageSpeed(req), start, end);
+    }
+
+    private static String normalize(String equipmentCode) {
+        return equipmentCode != null ? equipmentCode.trim() : "";
+    }
+
+    @FunctionalInterface
+    private interface Loader {
+        SpeedReading load();
+    }
+
+    private static final class Entry {
+        final CompletableFuture<SpeedReading> future = new CompletableFuture<>();
+        volatile long loadedAt;
+
+        boolean isExpired(long now, long ttlSeconds) {
+            return future.isDone() && (future.isCompletedExceptionally() || now - loadedAt > TimeUnit.SECONDS.toMillis(ttlSeconds));
+        }
+    }
+
+    /**
+     * 一次车速读数 (speed 为 null 表示 TIMS 无数据)
+     */
+    public static final class SpeedReading {
+        private final Double speed;
+        private final Date startTime;
+        private final Date endTime;
+
+        SpeedReading(Double speed, Date startTime, Date endTime) {
+            this.speed = speed;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        public Double getSpeed() {
+            return speed;
+        }
+
+        public Date getStartTime() {
+            return startTime;
+        }
+
+        public Date getEndTime() {
+            return endTime;
+        }
+    }
+}
@@ -1,5 +1,13 @@
 package com.lucksoft.qingdao.tspm.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucksoft.qingdao.tspm.util.ConcurrentRingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -7,12 +15,33 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 在内存中缓存从TIMS接收到的最新消息.
+ * [已修改] 消费者直接缓存每条数据的原始 JSON 片段，第一次被 /api/tspm/received-data 读取时才解析为 Map,
+ *         解析结果 (只读) 随该条数据一起缓存，之后的读取不再重复解析.
+ * [已修改] 每个 Topic 一个固定容量的无锁环形缓冲区: 追加 O(1)，读取时无锁快照，多个监听线程可并发写入.
+ *         可选的按 Topic 字节预算 (tspm.received-cache.max-bytes-per-topic): 单条数据超过 预算/容量 时只缓存摘要,
+ *         保证每个 Topic 占用的内存不超过预算.
+ *         [已修改] 默认 0 (不启用)，缓存完整数据；需要限制内存时在配置文件中设置，例如
+ *         tspm.received-cache.max-bytes-per-topic=4194304 (每个 Topic 4MB，缓存 50 条时单条超过约 80KB 只保留摘要).
  */
 @Service
 public class ReceivedDataCacheService {
 
-    private static final int MAX_CACHE_SIZE = 50;
-    private final Map<String, Deque<Map<String, Object>>> receivedDataCache = new ConcurrentHashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(ReceivedDataCacheService.class);
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+    // 超限数据摘要中保留的原文长度
+    private static final int PREVIEW_CHARS = 200;
+
+    @Value("${tspm.received-cache.size:50}")
+    private int maxCacheSize;
+
+    // 每个 Topic 的字节预算 (按原始 JSON 的 UTF-16 长度估算，不含已读取条目的解析结果)，<= 0 表示不限制
+    @Value("${tspm.received-cache.max-bytes-per-topic:0}")
+    private long maxBytesPerTopic;
+
+    private final Map<String, ConcurrentRingBuffer<CachedEntry>> receivedDataCache = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ObjectMapper objectMapper;
 
     /**
      * 向指定Topic的缓存中添加一条新数据.
@@ -20,25 +49,97 @@ public class ReceivedDataCacheService {
      * @param data  消息数据 (已转换为Map).
      */
     public void addData(String topic, Map<String, Object> data) {
-        receivedDataCache.computeIfAbsent(topic, k -> new LinkedList<>()).addFirst(data);
-        // 保持缓存大小
-        Deque<Map<String, Object>> queue = receivedDataCache.get(topic);
-        while (queue.size() > MAX_CACHE_SIZE) {
-            queue.removeLast();
+        try {
+            addRawData(topic, objectMapper.writeValueAsString(data));
+        } catch (JsonProcessingException e) {
+            log.warn("缓存数据序列化失败 (topic: {}): {}", topic, e.getMessage());
         }
     }
 
+    /**
+     * [新增] 向指定Topic的缓存中添加一条原始 JSON 数据 (读取时再解析).
+     * @param topic   Kafka Topic.
+     * @param rawJson 单条数据的原始 JSON 文本.
+     */
+    public void addRawData(String topic, String rawJson) {
+        if (rawJson == null) {
+            return;
+        }
+        receivedDataCache.computeIfAbsent(topic, k -> new ConcurrentRingBuffer<>(maxCacheSize)).add(new CachedEntry(fitBudget(topic, rawJson)));
+    }
+
     /**
      * 获取指定Topic的所有缓存数据.
      * @param topic Kafka Topic.
-     * @return 缓存的消息列表.
+     * @return 缓存的消息列表 (最新的在前).
      */
     public List<Map<String, Object>> getData(String topic) {
-        Deque<Map<String, Object>> queue = receivedDataCache.get(topic);
-        if (queue == null) {
+        ConcurrentRingBuffer<CachedEntry> ring = receivedDataCache.get(topic);
+        if (ring == null) {
             return Collections.emptyList();
         }
-        return new LinkedList<>(queue);
+        List<CachedEntry> snapshot = ring.snapshot();
+        List<Map<String, Object>> result = new ArrayList<>(snapshot.size());
+        for (CachedEntry entry : snapshot) {
+            Map<String, Object> parsed = entry.parsed(topic);
+            if (parsed != null) {
+                result.add(parsed);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 单条数据超过 (Topic 预算 / 缓存条数) 时，替换为只含原文长度和前缀的摘要
+     */
+    private String fitBudget(String topic, String rawJson) {
+        if (maxBytesPerTopic <= 0) {
+            return rawJson;
+        }
+        long perItemBytes = maxBytesPerTopic / Math.max(1, maxCacheSize);
+        long estimatedBytes = (long) rawJson.length() * 2;
+        if (estimatedBytes <= perItemBytes) {
+            return rawJson;
+        }
+        log.warn("Topic {} 的一条数据约 {} 字节，超过单条上限 {} 字节，仅缓存摘要", topic, estimatedBytes, perItemBytes);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("_truncated", true);
+        summary.put("_originalChars", rawJson.length());
+        summary.put("_preview", rawJson.substring(0, Math.min(rawJson.length(), PREVIEW_CHARS)));
+        try {
+            return objectMapper.writeValueAsString(summary);
+        } catch (JsonProcessingException e) {
+            return "{\"_truncated\":true}";
+        }
     }
-}
 
+    /**
+     * [新增] 缓存中的单条数据: 原始 JSON + 首次读取时解析出的只读 Map
+     * 并发首次读取时可能重复解析一次，结果相同，不需要加锁.
+     */
+    private final class CachedEntry {
+        private final String rawJson;
+        private volatile Map<String, Object> parsed;
+        // 解析失败的数据只记录一次日志，之后直接跳过
+        private volatile boolean unparsable;
+
+        CachedEntry(String rawJson) {
+            this.rawJson = rawJson;
+        }
+
+        Map<String, Object> parsed(String topic) {
+            Map<String, Object> view = parsed;
+            if (view != null || unparsable) {
+                return view;
+            }
+            try {
+                view = Collections.unmodifiableMap(objectMapper.readValue(rawJson, MAP_TYPE));
+                parsed = view;
+            } catch (Exception e) {
+                unparsable = true;
+                log.warn("缓存数据解析失败 (topic: {}): {}", topic, e.getMessage());
+            }
+            return view;
+        }
+    }
+}
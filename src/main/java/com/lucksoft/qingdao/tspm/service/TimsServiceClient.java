@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lucksoft.common.utils.GjjDebugLogger;
+import com.lucksoft.qingdao.config.TimsHttpClientConfig;
 import com.lucksoft.qingdao.tspm.dto.tims.CreateSelfCheckTaskReq;
 import com.lucksoft.qingdao.tspm.dto.tims.CreateSelfCheckTaskResp;
 import com.lucksoft.qingdao.tspm.dto.tims.GetAvgSpeedReq;
@@ -11,6 +12,7 @@ import com.lucksoft.qingdao.tspm.util.TimsApiAuthUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
@@ -42,7 +44,10 @@ public class TimsServiceClient {
     @Autowired
     private ObjectMapper objectMapper;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    // [已修改] 使用共用的 TIMS 连接池客户端 (超时、keep-alive、耗时统计)
+    @Autowired
+    @Qualifier(TimsHttpClientConfig.TIMS_REST_TEMPLATE)
+    private RestTemplate restTemplate;
 
     @Value("${tims.api.url.speed:http://tims.qd.com/ctmc-api/mro-edge-integration/speed/avg}")
     private String speedApiUrl;
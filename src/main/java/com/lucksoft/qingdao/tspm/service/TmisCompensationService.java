@@ -1,10 +1,14 @@
 package com.lucksoft.qingdao.tspm.service;
 
 import cn.hutool.core.date.DateUtil;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.lucksoft.common.utils.GjjDebugLogger;
+import com.lucksoft.qingdao.config.AsyncExecutorConfig;
+import com.lucksoft.qingdao.config.TimsHttpClientConfig;
 import com.lucksoft.qingdao.oracle.service.AsyncTaskService;
 import com.lucksoft.qingdao.system.entity.TmisData;
 import com.lucksoft.qingdao.system.mapper.TmisDataMapper;
@@ -13,20 +17,33 @@ import com.lucksoft.qingdao.tspm.util.TimsApiAuthUtils; // [新增] 引入工具
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 /**
  * TMIS 数据补漏服务 (升级版 V3 - 支持 API_AUTH)
+ * [已修改] 分页补漏:
+ * 1. POST 接口按 pageNum/pageSize 逐页拉取直到取完 (返回条数不足一页或达到 pages)；GET 接口在 FIXED_PARAMS 中配置 pageSize 时同样分页，
+ *    否则仍为单次请求。最多同时预取 tims.compensation.prefetch-pages 页，按页序依次入库。
+ * 2. 响应体不再整体读成 String/JsonNode，而是用 JsonParser 流式解析，每条数据直接绑定为 DTO。
+ * 3. 水位线推进到本次拉取开始的时间 (接口按同步/更新时间 lastSyncDateTime/updateTime 过滤，与数据的完成/创建时间无关，
+ *    不能用后者推进)；等待所有数据入库完成后才更新。任一页失败、入库超时、任一条数据未处理成功 (FAILED/SKIPPED)
+ *    或达到最大页数未取完时都不更新，下次从原水位线重新补漏。
  */
 @Service
 public class TmisCompensationService {
@@ -45,13 +62,35 @@ public class TmisCompensationService {
     @Autowired
     private TimsApiAuthUtils authUtils; // [新增] 注入认证工具
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    @Autowired
+    @Qualifier(AsyncExecutorConfig.COMPENSATION_PAGE_EXECUTOR)
+    private ThreadPoolTaskExecutor pageExecutor;
+
+    // 每页条数 (FIXED_PARAMS 中的 pageSize 优先)
+    @Value("${tims.compensation.page-size:1000}")
+    private int defaultPageSize;
+
+    // 同时在途的分页请求数
+    @Value("${tims.compensation.prefetch-pages:2}")
+    private int prefetchPages;
+
+    // 单次补漏最多拉取的页数，防止接口分页异常时无限循环
+    @Value("${tims.compensation.max-pages:500}")
+    private int maxPages;
+
+    // 等待本次数据全部入库的超时时间，超时则不推进水位线
+    @Value("${tims.compensation.process-timeout-seconds:600}")
+    private long processTimeoutSeconds;
+
+    // [已修改] 使用共用的 TIMS 连接池客户端 (超时、keep-alive、耗时统计)
+    @Autowired
+    @Qualifier(TimsHttpClientConfig.TIMS_REST_TEMPLATE)
+    private RestTemplate restTemplate;
 
     /**
      * 异步执行单个主题的补偿任务
      */
-    @Async
+    @Async(AsyncExecutorConfig.COMPENSATION_EXECUTOR)
     public void compensateTopic(TmisData config) {
         String topic = config.getTopic();
         String description = config.getDescription() != null ? config.getDescription() : "未知接口";
@@ -70,124 +109,240 @@ public class TmisCompensationService {
             return;
         }
 
+        FeedbackHandler<?> handler = handlerFor(topic);
+        if (handler == null) {
+            log.warn("[补漏任务] 未处理的 Topic: {}", topic);
+            GjjDebugLogger.log(topic, "警告", "未找到对应 Topic 的 DTO 映射逻辑，跳过处理。");
+            GjjDebugLogger.clearLogNameContext();
+            return;
+        }
+
         try {
             // 解析配置参数
             Map<String, Object> fixedParams = new HashMap<>();
-            if (config.getFixedParams() != null) {
+            if (config.getFixedParams() != null && !config.getFixedParams().isEmpty()) {
                 fixedParams = objectMapper.readValue(config.getFixedParams(), new TypeReference<Map<String, Object>>() {});
             }
 
-            boolean isGetRequest = "GET".equalsIgnoreCase((String) fixedParams.get("method"));
-
-            JsonNode responseData;
-            long startTime = System.currentTimeMillis();
+            FetchContext ctx = new FetchContext(topic, logFileName, baseUrl, lastTime, fixedParams);
+            CompensationResult result = fetchAllPages(ctx, handler);
 
-            // [新增] 准备公共 Header (apiAuth: API)
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.add(authUtils.getAuthHeaderKey(), authUtils.getAuthHeaderValue());
-
-            if (isGetRequest) {
-                // --- GET 请求逻辑 ---
+            if (result.count == 0) {
+                log.info("[补漏任务] 主题 {} 无新数据。", topic);
+                GjjDebugLogger.log(topic, "处理结果", "无新数据，水位线推进至本次拉取开始时间。");
+            } else {
+                log.info("[补漏任务] 主题 {} 共 {} 页 {} 条数据已入库", topic, result.pages, result.count);
+                GjjDebugLogger.log(topic, "数据处理", "共 " + result.pages + " 页 " + result.count + " 条数据已写入 Oracle。");
+            }
 
-                // 1. 准备参数 Map
-                Map<String, Object> queryParams = new HashMap<>();
-                queryParams.put("lastSyncDateTime", lastTime);
-                if (fixedParams.containsKey("type")) {
-                    queryParams.put("type", fixedParams.get("type"));
-                }
+            if (result.failed > 0) {
+                log.warn("[补漏任务] 主题 {} 有 {} 条数据未处理成功，水位线保持不变", topic, result.failed);
+                GjjDebugLogger.log(topic, "完成", result.failed + " 条数据未处理成功，水位线保持不变，下次重新补漏。");
+                return;
+            }
+            if (result.truncated) {
+                // 数据未取完: 推进水位线会跳过剩余数据
+                GjjDebugLogger.log(topic, "完成", "数据未取完，水位线保持不变 (可调大 tims.compensation.max-pages)。");
+                return;
+            }
+            Date watermark = result.fetchStartTime;
+            if (config.getLastUpdateTime() != null && watermark.before(config.getLastUpdateTime())) {
+                watermark = config.getLastUpdateTime();
+            }
+            updateWatermark(topic, watermark);
 
-                // 2. [关键修改] 使用工具类生成带签名的 URI
-                URI signedUri = authUtils.signAndBuildUrl(baseUrl, queryParams, topic);
+            GjjDebugLogger.log(topic, "完成", "任务执行成功，水位线已更新为 " + DateUtil.formatDateTime(watermark));
 
-                log.debug("[补漏任务] GET 请求(Signed): {}", signedUri);
-                GjjDebugLogger.log(topic, "发起 GET 请求", "URL: " + signedUri);
+        } catch (Exception e) {
+            log.error("[补漏任务] 主题 {} 处理异常 (水位线保持不变): {}", topic, e.getMessage(), e);
+            GjjDebugLogger.logError(topic, "发生异常", e);
+        } finally {
+            GjjDebugLogger.clearLogNameContext();
+        }
+    }
 
-                // 3. 发送请求 (带 Header)
-                HttpEntity<?> entity = new HttpEntity<>(headers);
-                ResponseEntity<String> response = restTemplate.exchange(signedUri, HttpMethod.GET, entity, String.class);
+    private void updateWatermark(String topic, Date time) {
+        tmisDataMapper.updateLastTime(topic, DateUtil.formatDateTime(time));
+    }
 
-                GjjDebugLogger.log(topic, "收到响应",
-                        String.format("Status: %s\nTime: %d ms\nBody: %s",
-                                response.getStatusCode(), (System.currentTimeMillis() - startTime), response.getBody()));
+    /**
+     * 按页序拉取并入库: 最多同时预取 prefetchPages 页，当前页取完后再提交下一页请求。
+     * 任一页请求/解析失败时抛出异常，已入库的数据保留，但不推进水位线。
+     */
+    private <T> CompensationResult fetchAllPages(FetchContext ctx, FeedbackHandler<T> handler) throws Exception {
+        CompensationResult result = new CompensationResult();
+        Map<String, CompletableFuture<AsyncTaskService.TaskStatus>> completions = new LinkedHashMap<>();
+        Deque<CompletableFuture<PageResult<T>>> inFlight = new ArrayDeque<>();
+        int nextPage = 1;
+        boolean exhausted = false;
 
-                if (!response.getStatusCode().is2xxSuccessful()) {
-                    log.error("[补漏任务] 接口调用失败: {}", response.getStatusCode());
-                    return;
+        try {
+            while (true) {
+                while (!exhausted && inFlight.size() < Math.max(1, ctx.paged ? prefetchPages : 1) && nextPage <= maxPages) {
+                    int pageNum = nextPage++;
+                    inFlight.add(CompletableFuture.supplyAsync(() -> fetchPage(ctx, handler, pageNum), pageExecutor));
                 }
-                responseData = objectMapper.readTree(response.getBody());
-
-            } else {
-                // --- POST 请求逻辑 ---
-
-                // 1. 准备 Body 参数 (业务参数)
-                Map<String, Object> payload = new HashMap<>();
-                payload.put("topic", topic);
-                payload.put("updateTime", lastTime);
-                payload.put("pageNum", 1);
-                payload.put("pageSize", 1000);
-
-                if (config.getFixedParams() != null && !config.getFixedParams().isEmpty()) {
-                    try {
-                        Map<String, Object> body = objectMapper.readValue(config.getFixedParams(), new TypeReference<Map<String, Object>>() {});
-                        payload.put("body", body);
-                    } catch (Exception e) {
-                        payload.put("body", new HashMap<>());
-                    }
+                CompletableFuture<PageResult<T>> head = inFlight.poll();
+                if (head == null) {
+                    break;
+                }
+                PageResult<T> page = getPage(head);
+                result.pages++;
+                result.count += page.items.size();
+                for (T item : page.items) {
+                    String taskId = handler.submitter.apply(item);
+                    completions.put(taskId, asyncTaskService.completionOf(taskId));
                 }
 
-                // 2. [关键修改] POST 请求的签名参数通常放在 URL 上
-                // 我们传入一个空的 extraParams map，因为参数都在 Body 里，
-                // 但根据文档 "url参数要包含如下公用参数"，我们需要把 _timestamp, _sign 等挂在 URL 上。
-                URI signedUri = authUtils.signAndBuildUrl(baseUrl, null, topic);
-
-                GjjDebugLogger.log(topic, "发起 POST 请求",
-                        String.format("URL: %s\nPayload: %s", signedUri, objectMapper.writeValueAsString(payload)));
-
-                // 3. 发送请求 (带 Header)
-                HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
-                ResponseEntity<String> response = restTemplate.exchange(signedUri, HttpMethod.POST, request, String.class);
-
-                GjjDebugLogger.log(topic, "收到响应",
-                        String.format("Status: %s\nTime: %d ms\nBody: %s",
-                                response.getStatusCode(), (System.currentTimeMillis() - startTime), response.getBody()));
-
-                if (!response.getStatusCode().is2xxSuccessful()) {
-                    log.error("[补漏任务] 接口调用失败: {}", response.getStatusCode());
-                    return;
+                if (!ctx.paged || page.items.size() < ctx.pageSize
+                        || (page.totalPages > 0 && page.pageNum >= page.totalPages)) {
+                    exhausted = true;
+                } else if (nextPage > maxPages && inFlight.isEmpty()) {
+                    result.truncated = true;
+                    log.warn("[补漏任务] 主题 {} 已达到最大页数 {}，剩余数据留待下次补漏", ctx.topic, maxPages);
+                    GjjDebugLogger.log(ctx.topic, "警告", "已达到最大页数 " + maxPages + "，剩余数据留待下次补漏。");
+                }
+                if (exhausted) {
+                    // 已取完，丢弃多预取的页 (它们只会是空页)
+                    inFlight.forEach(f -> f.cancel(true));
+                    inFlight.clear();
                 }
-                JsonNode root = objectMapper.readTree(response.getBody());
-                responseData = root.get("list");
             }
+        } catch (Exception e) {
+            inFlight.forEach(f -> f.cancel(true));
+            throw e;
+        }
 
-            // 统一数据处理
-            if (responseData == null || !responseData.isArray() || responseData.size() == 0) {
-                log.info("[补漏任务] 主题 {} 无新数据。", topic);
-                GjjDebugLogger.log(topic, "处理结果", "无新数据，更新水位线至当前时间。");
-                updateWatermark(topic);
-                return;
+        // 等待本次提交的数据全部进入终态，再检查是否都处理成功
+        try {
+            CompletableFuture.allOf(completions.values().toArray(new CompletableFuture[0])).get(processTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            completions.forEach(asyncTaskService::abandonCompletion);
+            throw e;
+        }
+        for (CompletableFuture<AsyncTaskService.TaskStatus> completion : completions.values()) {
+            if (completion.getNow(null) != AsyncTaskService.TaskStatus.SUCCESS) {
+                result.failed++;
             }
+        }
+        return result;
+    }
 
-            int count = responseData.size();
-            log.info("[补漏任务] 主题 {} 获取到 {} 条数据，开始回填...", topic, count);
-            GjjDebugLogger.log(topic, "数据处理", "获取到 " + count + " 条数据，准备写入 Oracle...");
+    private <T> PageResult<T> getPage(CompletableFuture<PageResult<T>> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
 
-            processData(topic, responseData);
-            updateWatermark(topic);
+    /**
+     * 请求一页数据，并把响应体流式解析为 DTO (在分页线程池中执行)
+     */
+    private <T> PageResult<T> fetchPage(FetchContext ctx, FeedbackHandler<T> handler, int pageNum) {
+        GjjDebugLogger.setLogNameContext(ctx.logFileName);
+        try {
+            // [新增] 准备公共 Header (apiAuth: API)
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.add(authUtils.getAuthHeaderKey(), authUtils.getAuthHeaderValue());
 
-            GjjDebugLogger.log(topic, "完成", "任务执行成功，水位线已更新。");
+            URI signedUri;
+            HttpMethod method;
+            HttpEntity<?> entity;
+            if (ctx.isGet) {
+                // --- GET 请求: 签名参数与业务参数都在 URL 上 ---
+                Map<String, Object> queryParams = new HashMap<>();
+                queryParams.put("lastSyncDateTime", ctx.lastTime);
+                if (ctx.fixedParams.containsKey("type")) {
+                    queryParams.put("type", ctx.fixedParams.get("type"));
+                }
+                if (ctx.paged) {
+                    queryParams.put("pageNum", pageNum);
+                    queryParams.put("pageSize", ctx.pageSize);
+                }
+                signedUri = authUtils.signAndBuildUrl(ctx.baseUrl, queryParams, ctx.topic);
+                method = HttpMethod.GET;
+                entity = new HttpEntity<>(headers);
+                GjjDebugLogger.log(ctx.topic, "发起 GET 请求", "URL: " + signedUri);
+            } else {
+                // --- POST 请求: 业务参数在 Body 中，签名参数 (_timestamp, _sign 等) 挂在 URL 上 ---
+                Map<String, Object> payload = new HashMap<>();
+                payload.put("topic", ctx.topic);
+                payload.put("updateTime", ctx.lastTime);
+                payload.put("pageNum", pageNum);
+                payload.put("pageSize", ctx.pageSize);
+                if (!ctx.fixedParams.isEmpty()) {
+                    payload.put("body", ctx.fixedParams);
+                }
+                signedUri = authUtils.signAndBuildUrl(ctx.baseUrl, null, ctx.topic);
+                method = HttpMethod.POST;
+                entity = new HttpEntity<>(payload, headers);
+                GjjDebugLogger.log(ctx.topic, "发起 POST 请求",
+                        String.format("URL: %s\nPayload: %s", signedUri, objectMapper.writeValueAsString(payload)));
+            }
 
-        } catch (Exception e) {
-            log.error("[补漏任务] 主题 {} 处理异常: {}", topic, e.getMessage(), e);
-            GjjDebugLogger.logError(topic, "发生异常", e);
+            long startTime = System.currentTimeMillis();
+            PageResult<T> page = restTemplate.execute(signedUri, method, restTemplate.httpEntityCallback(entity), response -> {
+                if (!response.getStatusCode().is2xxSuccessful()) {
+                    throw new IOException("接口调用失败: " + response.getStatusCode());
+                }
+                return readPage(response.getBody(), handler);
+            });
+            page.pageNum = pageNum;
+
+            GjjDebugLogger.log(ctx.topic, "收到响应",
+                    String.format("Page: %d\nTime: %d ms\nCount: %d", pageNum, (System.currentTimeMillis() - startTime), page.items.size()));
+            return page;
+        } catch (IOException e) {
+            throw new CompensationFetchException("第 " + pageNum + " 页拉取失败: " + e.getMessage(), e);
         } finally {
             GjjDebugLogger.clearLogNameContext();
         }
     }
 
-    private void updateWatermark(String topic) {
-        String now = sdf.format(new Date());
-        tmisDataMapper.updateLastTime(topic, now);
+    /**
+     * 流式解析一页响应: 根节点为数组 (GET)，或对象中的 list 数组 (POST，同时读取 pages 总页数)
+     */
+    private <T> PageResult<T> readPage(InputStream body, FeedbackHandler<T> handler) throws IOException {
+        PageResult<T> page = new PageResult<>();
+        if (body == null) {
+            return page;
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                readItems(parser, handler, page);
+            } else if (token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("list".equals(field) && value == JsonToken.START_ARRAY) {
+                        readItems(parser, handler, page);
+                    } else if ("pages".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                        page.totalPages = parser.getIntValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return page;
+    }
+
+    private <T> void readItems(JsonParser parser, FeedbackHandler<T> handler, PageResult<T> page) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            page.items.add(handler.reader.readValue(parser));
+        }
     }
 
     /*
@@ -209,84 +364,106 @@ public class TmisCompensationService {
 
      */
 
-    private void processData(String topic, JsonNode listNode) throws Exception {
-        // 逻辑保持不变，直接复用
+    /**
+     * 每个 Topic 对应的 DTO 类型和提交方法
+     */
+    private FeedbackHandler<?> handlerFor(String topic) {
         switch (topic) {
             case "tims.feedback.completed.maintenance.task":
-                List<TaskCompletionFeedbackDTO> list2 = objectMapper.convertValue(listNode, new TypeReference<List<TaskCompletionFeedbackDTO>>() {});
-                list2.forEach(asyncTaskService::submitTaskCompletion);
-                break;
-
             case "tims.feedback.completed.maintenance.task_0":
-                List<TaskCompletionFeedbackDTO> list2_0 = objectMapper.convertValue(listNode, new TypeReference<List<TaskCompletionFeedbackDTO>>() {});
-                list2_0.forEach(asyncTaskService::submitTaskCompletion);
-                break;
             case "tims.feedback.completed.maintenance.task_1":
-                List<TaskCompletionFeedbackDTO> list2_1 = objectMapper.convertValue(listNode, new TypeReference<List<TaskCompletionFeedbackDTO>>() {});
-                list2_1.forEach(asyncTaskService::submitTaskCompletion);
-                break;
             case "tims.feedback.completed.maintenance.task_2":
-                List<TaskCompletionFeedbackDTO> list2_2 = objectMapper.convertValue(listNode, new TypeReference<List<TaskCompletionFeedbackDTO>>() {});
-                list2_2.forEach(asyncTaskService::submitTaskCompletion);
-                break;
-
             case "tims.feedback.completed.maintenance.task_4":
-                List<TaskCompletionFeedbackDTO> list2_4 = objectMapper.convertValue(listNode, new TypeReference<List<TaskCompletionFeedbackDTO>>() {});
-                list2_4.forEach(asyncTaskService::submitTaskCompletion);
-                break;
-
             case "tims.feedback.completed.maintenance.task_5":
-                List<TaskCompletionFeedbackDTO> list2_5 = objectMapper.convertValue(listNode, new TypeReference<List<TaskCompletionFeedbackDTO>>() {});
-                list2_5.forEach(asyncTaskService::submitTaskCompletion);
-                break;
+                return new FeedbackHandler<>(TaskCompletionFeedbackDTO.class, asyncTaskService::submitTaskCompletion);
 
             case "tims.feedback.maintenance.task.score":
-                List<TaskScoreFeedbackDTO> list3 = objectMapper.convertValue(listNode, new TypeReference<List<TaskScoreFeedbackDTO>>() {});
-                list3.forEach(asyncTaskService::submitTaskScore);
-                break;
-
             case "tims.feedback.maintenance.task.score_0":
-                List<TaskScoreFeedbackDTO> list3_0 = objectMapper.convertValue(listNode, new TypeReference<List<TaskScoreFeedbackDTO>>() {});
-                list3_0.forEach(asyncTaskService::submitTaskScore);
-                break;
-
             case "tims.feedback.maintenance.task.score_1":
-                List<TaskScoreFeedbackDTO> list3_1 = objectMapper.convertValue(listNode, new TypeReference<List<TaskScoreFeedbackDTO>>() {});
-                list3_1.forEach(asyncTaskService::submitTaskScore);
-                break;
             case "tims.feedback.maintenance.task.score_2":
-                List<TaskScoreFeedbackDTO> list3_2 = objectMapper.convertValue(listNode, new TypeReference<List<TaskScoreFeedbackDTO>>() {});
-                list3_2.forEach(asyncTaskService::submitTaskScore);
-                break;
             case "tims.feedback.maintenance.task.score_4":
-                List<TaskScoreFeedbackDTO> list3_4 = objectMapper.convertValue(listNode, new TypeReference<List<TaskScoreFeedbackDTO>>() {});
-                list3_4.forEach(asyncTaskService::submitTaskScore);
-                break;
-
             case "tims.feedback.maintenance.task.score_5":
-                List<TaskScoreFeedbackDTO> list3_5 = objectMapper.convertValue(listNode, new TypeReference<List<TaskScoreFeedbackDTO>>() {});
-                list3_5.forEach(asyncTaskService::submitTaskScore);
-                break;
+                return new FeedbackHandler<>(TaskScoreFeedbackDTO.class, asyncTaskService::submitTaskScore);
 
             case "tims.recommend.rotational.task":
-                List<RecommendedRotationalTaskDTO> list6 = objectMapper.convertValue(listNode, new TypeReference<List<RecommendedRotationalTaskDTO>>() {});
-                list6.forEach(asyncTaskService::submitRecommendTask);
-                break;
+                return new FeedbackHandler<>(RecommendedRotationalTaskDTO.class, asyncTaskService::submitRecommendTask);
             case "tims.feedback.completed.rotational.task":
-                List<RotationalTaskCompletionFeedbackDTO> list8 = objectMapper.convertValue(listNode, new TypeReference<List<RotationalTaskCompletionFeedbackDTO>>() {});
-                list8.forEach(asyncTaskService::submitRotationalCompletion);
-                break;
+                return new FeedbackHandler<>(RotationalTaskCompletionFeedbackDTO.class, asyncTaskService::submitRotationalCompletion);
             case "tims.feedback.rotational.task.score":
-                List<RotationalTaskScoreFeedbackDTO> list9 = objectMapper.convertValue(listNode, new TypeReference<List<RotationalTaskScoreFeedbackDTO>>() {});
-                list9.forEach(asyncTaskService::submitRotationalScore);
-                break;
+                return new FeedbackHandler<>(RotationalTaskScoreFeedbackDTO.class, asyncTaskService::submitRotationalScore);
             case "tims.feedback.completed.production.halt.maintenance.task":
-                List<ProductionHaltCompletionFeedbackDTO> list14 = objectMapper.convertValue(listNode, new TypeReference<List<ProductionHaltCompletionFeedbackDTO>>() {});
-                list14.forEach(asyncTaskService::submitHaltCompletion);
-                break;
+                return new FeedbackHandler<>(ProductionHaltCompletionFeedbackDTO.class, asyncTaskService::submitHaltCompletion);
             default:
-                log.warn("[补漏任务] 未处理的 Topic: {}", topic);
-                GjjDebugLogger.log(topic, "警告", "未找到对应 Topic 的 DTO 映射逻辑，跳过处理。");
+                return null;
+        }
+    }
+
+    /**
+     * 一个 Topic 的处理方式
+     */
+    private final class FeedbackHandler<T> {
+        final ObjectReader reader;
+        final Function<T, String> submitter;
+
+        FeedbackHandler(Class<T> type, Function<T, String> submitter) {
+            this.reader = objectMapper.readerFor(type);
+            this.submitter = submitter;
+        }
+    }
+
+    /**
+     * 一次补漏的请求参数
+     */
+    private final class FetchContext {
+        final String topic;
+        final String logFileName;
+        final String baseUrl;
+        final String lastTime;
+        final Map<String, Object> fixedParams;
+        final boolean isGet;
+        final boolean paged;
+        final int pageSize;
+
+        FetchContext(String topic, String logFileName, String baseUrl, String lastTime, Map<String, Object> fixedParams) {
+            this.topic = topic;
+            this.logFileName = logFileName;
+            this.baseUrl = baseUrl;
+            this.lastTime = lastTime;
+            this.fixedParams = fixedParams;
+            this.isGet = "GET".equalsIgnoreCase((String) fixedParams.get("method"));
+            Object configuredPageSize = fixedParams.get("pageSize");
+            // POST 接口总是分页；GET 接口只有在 FIXED_PARAMS 中配置了 pageSize 时才分页
+            this.paged = !isGet || configuredPageSize != null;
+            int size = defaultPageSize;
+            if (configuredPageSize != null) {
+                try {
+                    size = Integer.parseInt(configuredPageSize.toString());
+                } catch (NumberFormatException e) {
+                    log.warn("[补漏任务] 主题 {} 的 pageSize 配置无效: {}", topic, configuredPageSize);
+                }
+            }
+            this.pageSize = Math.max(1, size);
+        }
+    }
+
+    private static final class PageResult<T> {
+        final List<T> items = new ArrayList<>();
+        int pageNum;
+        int totalPages;
+    }
+
+    private static final class CompensationResult {
+        // 在发出第一页请求之前记录，作为下次补漏的水位线
+        final Date fetchStartTime = new Date();
+        int pages;
+        int count;
+        int failed;
+        boolean truncated;
+    }
+
+    private static final class CompensationFetchException extends RuntimeException {
+        CompensationFetchException(String message, Throwable cause) {
+            super(message, cause);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,42 +1,58 @@
 package com.lucksoft.qingdao.tspm.service;
 
 import com.lucksoft.qingdao.tspm.dto.LogMessage;
+import com.lucksoft.qingdao.tspm.util.ConcurrentRingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * 负责记录和推送实时日志的服务
+ * [已修改] 1. 内存日志改为固定容量的无锁环形缓冲区，写入 O(1)，不再每条日志复制整个数组。
+ *         2. 日志内容超过 tspm.log.max-content-chars 时截断，避免整包推送数据 (上百条任务) 常驻内存。
+ *         3. WebSocket 推送合并: 每隔 tspm.log.ws-flush-ms 把新增日志打包成一个数组帧发送到 /topic/logs。
  */
 @Service
 public class TspmLogService {
 
-    // 线程安全的List，用于存储内存日志
-    private final List<LogMessage> logs = new CopyOnWriteArrayList<>();
+    private static final Logger log = LoggerFactory.getLogger(TspmLogService.class);
+
+    @Value("${tspm.log.capacity:200}")
+    private int capacity;
+
+    @Value("${tspm.log.max-content-chars:4000}")
+    private int maxContentChars;
+
+    // 无锁环形缓冲区，用于存储内存日志
+    private ConcurrentRingBuffer<LogMessage> logs;
+
+    // 已推送到 WebSocket 的下一条日志序号 (只由定时推送线程读写)
+    private volatile long nextBroadcastSeq = 0;
 
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @PostConstruct
+    public void init() {
+        logs = new ConcurrentRingBuffer<>(capacity);
+    }
+
     /**
-     * 基础方法：添加一条新日志，并将其通过WebSocket推送到前端
+     * 基础方法：添加一条新日志，由定时任务合并推送到前端
      * @param type    日志类型 (e.g., "PUSH", "RECEIVE")
      * @param topic   相关的Kafka Topic
      * @param content 日志内容 (通常是JSON字符串)
      */
     public void addLog(String type, String topic, String content) {
-        LogMessage logMessage = new LogMessage(type, topic, content);
-        logs.add(0, logMessage); // 添加到列表开头，实现倒序
-
-        // 限制内存中最多只保存200条日志，防止内存溢出
-        if (logs.size() > 200) {
-            logs.remove(logs.size() - 1);
-        }
-
-        // 通过WebSocket将新日志推送到所有订阅了/topic/logs的客户端
-        messagingTemplate.convertAndSend("/topic/logs", logMessage);
+        logs.add(new LogMessage(type, topic, truncate(content)));
     }
 
     /**
@@ -78,10 +94,33 @@ public class TspmLogService {
 
     /**
      * 获取当前所有内存中的日志记录
-     * @return 日志列表
+     * @return 日志列表快照 (最新的在前)
      */
     public List<LogMessage> getLogs() {
-        return logs;
+        return logs.snapshot();
     }
-}
 
+    /**
+     * [新增] 合并推送: 把上次推送之后新增的日志打包成一个数组帧，发送给所有订阅了/topic/logs的客户端
+     */
+    @Scheduled(fixedDelayString = "${tspm.log.ws-flush-ms:200}")
+    public void flushToWebSocket() {
+        List<LogMessage> pending = new ArrayList<>();
+        nextBroadcastSeq = logs.readFrom(nextBroadcastSeq, pending);
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            messagingTemplate.convertAndSend("/topic/logs", pending);
+        } catch (Exception e) {
+            log.warn("推送实时日志到 WebSocket 失败 ({} 条): {}", pending.size(), e.getMessage());
+        }
+    }
+
+    private String truncate(String content) {
+        if (content == null || maxContentChars <= 0 || content.length() <= maxContentChars) {
+            return content;
+        }
+        return content.substring(0, maxContentChars) + "...(已截断，共 " + content.length() + " 字符)";
+    }
+}
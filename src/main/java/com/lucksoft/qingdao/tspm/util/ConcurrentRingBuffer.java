@@ -0,0 +1,121 @@
+package com.lucksoft.qingdao.tspm.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 固定容量的无锁环形缓冲区
+ * 1. 写入: 通过原子序号领取槽位后 CAS 发布，O(1)，写满后自动覆盖最旧的元素。
+ * 2. 读取: 按序号校验槽位，不加锁、不阻塞写入方，返回读取时刻的快照。
+ * 3. 每个元素带有全局递增序号，readFrom 可以从上次读取的位置继续增量读取。
+ */
+public class ConcurrentRingBuffer<T> {
+
+    private final int capacity;
+    private final AtomicReferenceArray<Slot<T>> slots;
+    private final AtomicLong cursor = new AtomicLong();
+
+    public ConcurrentRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity 必须大于 0");
+        }
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * 追加一个元素
+     *
+     * @return 该元素的序号
+     */
+    public long add(T value) {
+        long seq = cursor.getAndIncrement();
+        int index = index(seq);
+        Slot<T> slot = new Slot<>(seq, value);
+        while (true) {
+            Slot<T> current = slots.get(index);
+            // 极端情况下较慢的写入方可能晚于覆盖它的新元素发布，此时放弃写入，避免用旧数据覆盖新数据
+            if (current != null && current.seq > seq) {
+                return seq;
+            }
+            if (slots.compareAndSet(index, current, slot)) {
+                return seq;
+            }
+        }
+    }
+
+    /**
+     * 当前所有元素的快照 (最新的在前)
+     */
+    public List<T> snapshot() {
+        return snapshot(capacity);
+    }
+
+    /**
+     * 最新的 limit 个元素的快照 (最新的在前)
+     */
+    public List<T> snapshot(int limit) {
+        long end = cursor.get();
+        long start = Math.max(0, end - Math.min(limit, capacity));
+        List<T> result = new ArrayList<>((int) (end - start));
+        for (long seq = end - 1; seq >= start; seq--) {
+            Slot<T> slot = slots.get(index(seq));
+            if (slot != null && slot.seq == seq) {
+                result.add(slot.value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从序号 from 开始，按写入顺序读取已发布的元素追加到 out
+     * (已被覆盖的元素跳过；遇到尚未发布完成的槽位即停止，留待下次读取)
+     *
+     * @return 下一次读取应使用的起始序号
+     */
+    public long readFrom(long from, List<T> out) {
+        long end = cursor.get();
+        long seq = Math.max(from, end - capacity);
+        for (; seq < end; seq++) {
+            Slot<T> slot = slots.get(index(seq));
+            if (slot == null || slot.seq < seq) {
+                break;
+            }
+            if (slot.seq == seq) {
+                out.add(slot.value);
+            }
+        }
+        return seq;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return (int) Math.min(cursor.get(), capacity);
+    }
+
+    /**
+     * 累计写入的元素个数 (即下一个元素的序号)
+     */
+    public long totalAdded() {
+        return cursor.get();
+    }
+
+    private int index(long seq) {
+        return (int) (seq % capacity);
+    }
+
+    private static final class Slot<T> {
+        final long seq;
+        final T value;
+
+        Slot(long seq, T value) {
+            this.seq = seq;
+            this.value = value;
+        }
+    }
+}
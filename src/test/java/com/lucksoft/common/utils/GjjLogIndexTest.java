@@ -0,0 +1,174 @@
+package com.lucksoft.common.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GjjLogIndexTest {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    // 索引按日期缓存在静态 Map 中，每个用例使用不同的日期
+    @TempDir
+    File baseDir;
+
+    @Test
+    void indexedEntriesAreSearchableByTopicAndKeys() throws IOException {
+        String date = "2000-01-01";
+        LogFile log = new LogFile(date, "push_1.log");
+        String e1 = log.append(1000, "TOPIC_A", "PUSH", "{\"taskId\":\"T1\",\"equipmentCode\":\"EQ1\"}");
+        log.append(2000, "TOPIC_A", "FEEDBACK", "taskId=T2&equipmentCode=EQ1");
+        String e3 = log.append(3000, "TOPIC_B", "PUSH", "{\"taskId\":\"T1\"}");
+        log.writeIndex();
+
+        Map<String, Object> byTask = search(date, null, "T1", null, null, 10);
+        assertEquals(2, byTask.get("total"));
+        assertEquals(e3, contentOf(byTask, 0));
+        assertEquals(e1, contentOf(byTask, 1));
+
+        // 条件之间为"且"，取值不区分大小写
+        assertEquals(2, search(date, "TOPIC_A", null, "eq1", null, 10).get("total"));
+        Map<String, Object> combined = search(date, "TOPIC_A", "t1", null, null, 10);
+        assertEquals(1, combined.get("total"));
+        assertEquals(e1, contentOf(combined, 0));
+        assertEquals(2, search(date, null, null, null, "PUSH", 10).get("total"));
+        assertEquals(0, search(date, "TOPIC_B", "T2", null, null, 10).get("total"));
+
+        Map<String, Object> limited = search(date, "TOPIC_A", null, null, null, 1);
+        assertEquals(2, limited.get("total"));
+        assertEquals(1, hits(limited).size());
+    }
+
+    @Test
+    void entriesAppendedAfterLoadAreVisible() throws IOException {
+        String date = "2000-01-02";
+        LogFile log = new LogFile(date, "push_1.log");
+        log.append(1000, "TOPIC_A", "PUSH", "{\"taskId\":\"T1\"}");
+        log.writeIndex();
+        assertEquals(1, search(date, "TOPIC_A", null, null, null, 10).get("total"));
+
+        String later = log.append(2000, "TOPIC_A", "PUSH", "{\"taskId\":\"T9\"}");
+        log.writeIndex();
+
+        Map<String, Object> result = search(date, null, "T9", null, null, 10);
+        assertEquals(1, result.get("total"));
+        assertEquals(later, contentOf(result, 0));
+        assertEquals(2, search(date, "TOPIC_A", null, null, null, 10).get("total"));
+    }
+
+    @Test
+    void legacyLogWithoutIndexIsScanned() throws IOException {
+        String date = "2000-01-03";
+        LogFile log = new LogFile(date, "legacy_1.log");
+        log.append(1000, null, "OLD", "{\"taskId\":\"L1\"}");
+        String second = log.append(2000, null, "OLD", "{\"taskId\":\"L2\",\"equipmentCode\":\"EQ7\"}");
+
+        Map<String, Object> result = search(date, null, "L2", null, null, 10);
+        assertEquals(1, result.get("total"));
+        Map<String, Object> hit = hits(result).get(0);
+        assertEquals(second, hit.get("content"));
+        assertEquals("OLD", hit.get("title"));
+        assertEquals(2000L, ((Date) hit.get("time")).getTime());
+        assertEquals(2, search(date, null, null, null, "OLD", 10).get("total"));
+    }
+
+    @Test
+    void unindexedRangesOfIndexedLogAreScannedOnLoad() throws IOException {
+        String date = "2000-01-04";
+        LogFile log = new LogFile(date, "push_1.log");
+        // 启用索引前已存在的内容
+        String before = log.append(1000, null, "OLD", "{\"taskId\":\"H1\"}");
+        log.skipIndex();
+        log.append(2000, "TOPIC_A", "PUSH", "{\"taskId\":\"M1\"}");
+        log.writeIndex();
+        // 写入了日志但 .idx 没有跟上
+        String after = log.append(3000, "TOPIC_A", "PUSH", "{\"taskId\":\"T1\"}");
+        log.skipIndex();
+
+        Map<String, Object> head = search(date, null, "H1", null, null, 10);
+        assertEquals(1, head.get("total"));
+        assertEquals(before, contentOf(head, 0));
+        Map<String, Object> tail = search(date, null, "T1", null, null, 10);
+        assertEquals(1, tail.get("total"));
+        assertEquals(after, contentOf(tail, 0));
+        assertEquals(3000L, ((Date) hits(tail).get(0).get("time")).getTime());
+        // 已索引的条目保留 topic，不会被重复扫描
+        assertEquals(1, search(date, "TOPIC_A", null, null, null, 10).get("total"));
+        assertEquals(1, search(date, null, "M1", null, null, 10).get("total"));
+    }
+
+    @Test
+    void missingDateReturnsNoHits() throws IOException {
+        Map<String, Object> result = search("1999-12-31", "TOPIC_A", null, null, null, 10);
+        assertEquals(0, result.get("total"));
+        assertTrue(hits(result).isEmpty());
+    }
+
+    private Map<String, Object> search(String date, String topic, String taskId, String equipmentCode,
+                                       String title, int limit) throws IOException {
+        return GjjLogIndex.search(baseDir.getAbsolutePath(), date, topic, taskId, equipmentCode, title, limit);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> hits(Map<String, Object> result) {
+        return (List<Map<String, Object>>) result.get("hits");
+    }
+
+    private static String contentOf(Map<String, Object> result, int index) {
+        return (String) hits(result).get(index).get("content");
+    }
+
+    /**
+     * 按 GjjDebugLogger 的格式追加日志，并记录待写入 .idx 的索引
+     */
+    private final class LogFile {
+        private final String date;
+        private final File file;
+        private final List<GjjLogIndex.IndexRecord> pending = new ArrayList<>();
+
+        LogFile(String date, String name) {
+            this.date = date;
+            File dir = new File(baseDir, date);
+            assertTrue(dir.isDirectory() || dir.mkdirs());
+            this.file = new File(dir, name);
+        }
+
+        String append(long timestamp, String topic, String title, String content) throws IOException {
+            String time = Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).format(TIME_FORMAT);
+            String text = GjjDebugLogger.ENTRY_SEPARATOR + "[" + time + "] [" + title + "] \n" + content + "\n\n";
+            byte[] bytes = text.getBytes(GjjDebugLogger.FILE_CHARSET);
+            long offset = file.length();
+            try (FileOutputStream out = new FileOutputStream(file, true)) {
+                out.write(bytes);
+            }
+            pending.add(GjjLogIndex.record(file.getName(), offset, bytes.length, timestamp, topic, title, content));
+            return text;
+        }
+
+        void skipIndex() {
+            pending.clear();
+        }
+
+        void writeIndex() throws IOException {
+            File indexFile = new File(file.getParentFile(), file.getName() + GjjLogIndex.INDEX_SUFFIX);
+            try (FileChannel channel = new FileOutputStream(indexFile, true).getChannel()) {
+                GjjLogIndex.append(channel, date, pending);
+            }
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.lucksoft.qingdao.oracle.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeedbackMicroBatcherTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void queuedItemsAreFlushedInOrderUpToMaxBatchSize() {
+        FeedbackMicroBatcher<String> batcher = new FeedbackMicroBatcher<>("test", 4, 50, 100, executor, this::record);
+        for (int i = 0; i < 10; i++) {
+            batcher.submit("t" + i, "item-" + i);
+        }
+        batcher.start();
+        batcher.stop(5000);
+
+        assertEquals(Arrays.asList(4, 4, 2), sizes());
+        assertEquals(Arrays.asList("item-0", "item-1", "item-2", "item-3"), batches.get(0));
+        assertEquals(Arrays.asList("item-8", "item-9"), batches.get(2));
+
+        Map<String, Object> stats = batcher.getStats();
+        assertEquals(10L, stats.get("submitted"));
+        assertEquals(3L, stats.get("flushes"));
+        assertEquals(4, stats.get("largestBatch"));
+    }
+
+    @Test
+    void partialBatchIsFlushedAfterWindow() throws Exception {
+        CountDownLatch flushed = new CountDownLatch(1);
+        FeedbackMicroBatcher<String> batcher = new FeedbackMicroBatcher<>("test", 100, 20, 100, executor, entries -> {
+            record(entries);
+            flushed.countDown();
+        });
+        batcher.start();
+
+        batcher.submit("t1", "only");
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1), sizes());
+        batcher.stop(1000);
+    }
+
+    @Test
+    void flusherExceptionDoesNotStopTheLoop() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch secondFlush = new CountDownLatch(1);
+        FeedbackMicroBatcher<String> batcher = new FeedbackMicroBatcher<>("test", 10, 20, 100, executor, entries -> {
+            record(entries);
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("boom");
+            }
+            secondFlush.countDown();
+        });
+        batcher.start();
+
+        batcher.submit("t1", "a");
+        // 等第一批处理完再提交，保证两条数据分属两批
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (calls.get() == 0) {
+            assertTrue(System.nanoTime() < deadline, "第一批未处理");
+            Thread.sleep(5);
+        }
+        batcher.submit("t2", "b");
+
+        assertTrue(secondFlush.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("b")), batches);
+        batcher.stop(1000);
+    }
+
+    @Test
+    void stopDrainsQueueAndRejectsNewItems() {
+        FeedbackMicroBatcher<String> batcher = new FeedbackMicroBatcher<>("test", 2, 1000, 100, executor, this::record);
+        for (int i = 0; i < 5; i++) {
+            batcher.submit("t" + i, "item-" + i);
+        }
+        batcher.start();
+        batcher.stop(5000);
+
+        assertEquals(5L, batcher.getStats().get("flushedItems"));
+        assertEquals(Arrays.asList(2, 2, 1), sizes());
+        assertThrows(IllegalStateException.class, () -> batcher.submit("t9", "late"));
+    }
+
+    private void record(List<FeedbackMicroBatcher.Entry<String>> entries) {
+        List<String> items = new ArrayList<>();
+        for (FeedbackMicroBatcher.Entry<String> entry : entries) {
+            items.add(entry.getItem());
+        }
+        batches.add(items);
+    }
+
+    private List<Integer> sizes() {
+        List<Integer> sizes = new ArrayList<>();
+        for (List<String> batch : batches) {
+            sizes.add(batch.size());
+        }
+        return sizes;
+    }
+}
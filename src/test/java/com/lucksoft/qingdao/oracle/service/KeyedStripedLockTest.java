@@ -0,0 +1,98 @@
+package com.lucksoft.qingdao.oracle.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyedStripedLockTest {
+
+    private final ExecutorService other = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        other.shutdownNow();
+    }
+
+    @Test
+    void sameKeyIsHeldExclusively() throws Exception {
+        KeyedStripedLock lock = new KeyedStripedLock("test", 16);
+        assertTrue(lock.acquire("task-1", 1, TimeUnit.SECONDS));
+        try {
+            assertFalse(other.submit(() -> tryAndRelease(lock, "task-1", 50)).get(5, TimeUnit.SECONDS));
+        } finally {
+            lock.release("task-1");
+        }
+        assertTrue(other.submit(() -> tryAndRelease(lock, "task-1", 50)).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void keysOnTheSameStripeContend() throws Exception {
+        // 只有一段时任意两个键都会冲突
+        KeyedStripedLock lock = new KeyedStripedLock("single", 1);
+        assertTrue(lock.acquire("a", 1, TimeUnit.SECONDS));
+        try {
+            assertFalse(other.submit(() -> tryAndRelease(lock, "b", 20)).get(5, TimeUnit.SECONDS));
+        } finally {
+            lock.release("a");
+        }
+
+        Map<String, Object> stats = lock.getStats();
+        assertEquals(1L, stats.get("acquisitions"));
+        assertEquals(1L, stats.get("contentions"));
+        assertEquals(1, stats.get("stripes"));
+    }
+
+    @Test
+    void uncontendedAcquisitionsAreCountedPerStripe() throws Exception {
+        KeyedStripedLock lock = new KeyedStripedLock("test", 8);
+        for (int i = 0; i < 10; i++) {
+            String key = "plan-" + i;
+            assertTrue(lock.acquire(key, 1, TimeUnit.SECONDS));
+            lock.release(key);
+        }
+        assertTrue(lock.acquire(null, 1, TimeUnit.SECONDS));
+        lock.release(null);
+
+        Map<String, Object> stats = lock.getStats();
+        assertEquals(11L, stats.get("acquisitions"));
+        assertEquals(0L, stats.get("contentions"));
+        assertEquals(0L, stats.get("maxWaitMs"));
+    }
+
+    @Test
+    void acquireAllSkipsKeysHeldElsewhereAndIsReentrant() throws Exception {
+        KeyedStripedLock lock = new KeyedStripedLock("batch", 64);
+        assertTrue(other.submit(() -> lock.acquire("busy", 1, TimeUnit.SECONDS)).get(5, TimeUnit.SECONDS));
+
+        List<String> held = lock.acquireAll(Arrays.asList("t1", "busy", "t2", "t1"), 50, TimeUnit.MILLISECONDS);
+        try {
+            assertEquals(3, held.size());
+            assertFalse(held.contains("busy"));
+            // 当前线程持有的段，其他线程无法获取
+            assertFalse(other.submit(() -> tryAndRelease(lock, "t1", 20)).get(5, TimeUnit.SECONDS));
+        } finally {
+            for (String key : held) {
+                lock.release(key);
+            }
+        }
+        assertTrue(other.submit(() -> tryAndRelease(lock, "t1", 20)).get(5, TimeUnit.SECONDS));
+    }
+
+    private static boolean tryAndRelease(KeyedStripedLock lock, String key, long timeoutMillis) throws InterruptedException {
+        if (!lock.acquire(key, timeoutMillis, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        lock.release(key);
+        return true;
+    }
+}
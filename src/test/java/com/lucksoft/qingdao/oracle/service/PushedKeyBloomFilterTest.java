@@ -0,0 +1,76 @@
+package com.lucksoft.qingdao.oracle.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PushedKeyBloomFilterTest {
+
+    @Test
+    void insertedKeysAreAlwaysReported() {
+        PushedKeyBloomFilter filter = new PushedKeyBloomFilter(5000, 0.01, Long.MAX_VALUE);
+        for (int i = 0; i < 5000; i++) {
+            filter.put("task:" + i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(filter.mightContain("task:" + i), "不应漏报 task:" + i);
+        }
+        assertEquals(5000, filter.getInsertions());
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTarget() {
+        PushedKeyBloomFilter filter = new PushedKeyBloomFilter(10000, 0.01, Long.MAX_VALUE);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("pushed:" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("other:" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "误判数过高: " + falsePositives);
+    }
+
+    @Test
+    void capacityEqualsExpectedInsertionsWhenBitsAreUnbounded() {
+        PushedKeyBloomFilter filter = new PushedKeyBloomFilter(1000, 0.01, Long.MAX_VALUE);
+        assertEquals(1000, filter.getCapacity());
+    }
+
+    @Test
+    void capacityShrinksWhenBitsAreCapped() {
+        long maxBits = 64 * 1024;
+        PushedKeyBloomFilter filter = new PushedKeyBloomFilter(1_000_000, 0.01, maxBits);
+
+        assertEquals(maxBits, filter.getBitSize());
+        // n = m * (ln2)^2 / -ln(p)
+        long expected = (long) (maxBits * Math.log(2) * Math.log(2) / -Math.log(0.01));
+        assertEquals(expected, filter.getCapacity());
+
+        for (long i = 0; i < filter.getCapacity(); i++) {
+            filter.put("k" + i);
+        }
+        assertFalse(filter.isSaturated());
+        filter.put("one-more");
+        assertTrue(filter.isSaturated());
+    }
+
+    @Test
+    void estimatedFppGrowsWithInsertions() {
+        PushedKeyBloomFilter filter = new PushedKeyBloomFilter(1000, 0.01, Long.MAX_VALUE);
+        assertEquals(0.0, filter.estimatedFpp());
+        for (int i = 0; i < 1000; i++) {
+            filter.put("k" + i);
+        }
+        double atCapacity = filter.estimatedFpp();
+        assertTrue(atCapacity > 0 && atCapacity < 0.02, "满容量时的估算误判率: " + atCapacity);
+        for (int i = 1000; i < 3000; i++) {
+            filter.put("k" + i);
+        }
+        assertTrue(filter.estimatedFpp() > atCapacity);
+    }
+}
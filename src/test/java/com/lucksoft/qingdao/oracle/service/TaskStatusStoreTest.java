@@ -0,0 +1,144 @@
+package com.lucksoft.qingdao.oracle.service;
+
+import com.lucksoft.qingdao.oracle.service.AsyncTaskService.TaskStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TaskStatusStoreTest {
+
+    private TaskStatusStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new TaskStatusStore();
+        // 16 段，每段 2 条
+        ReflectionTestUtils.setField(store, "maxSize", 32);
+        ReflectionTestUtils.setField(store, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(store, "redisSpillEnabled", false);
+        ReflectionTestUtils.setField(store, "redisTtlHours", 24L);
+        store.init();
+    }
+
+    @Test
+    void returnsLatestStatusWithSummarizedResult() {
+        store.put(new TaskStatusRecord("t1", TaskStatus.RUNNING, "running", null));
+        store.put(new TaskStatusRecord("t1", TaskStatus.SUCCESS, "done",
+                Collections.singletonMap("pushedData", Collections.nCopies(3, "x"))));
+
+        Map<String, Object> status = store.get("t1");
+        assertEquals("SUCCESS", status.get("status"));
+        assertEquals("done", status.get("message"));
+        assertEquals(Collections.singletonMap("pushedDataSize", 3), status.get("result"));
+        assertNull(store.get("missing"));
+    }
+
+    @Test
+    void sizeStaysWithinMaxSize() {
+        for (int i = 0; i < 200; i++) {
+            store.put(new TaskStatusRecord("task-" + i, TaskStatus.SUCCESS, null, null));
+        }
+        Map<String, Object> stats = store.getStats();
+        int size = (Integer) stats.get("size");
+        assertTrue(size <= 32, "size = " + size);
+        assertEquals((long) (200 - size), stats.get("evictions"));
+    }
+
+    @Test
+    void evictsLeastRecentlyAccessedInSegment() {
+        List<String> ids = sameSegmentIds(3);
+        store.put(new TaskStatusRecord(ids.get(0), TaskStatus.SUCCESS, null, null));
+        store.put(new TaskStatusRecord(ids.get(1), TaskStatus.SUCCESS, null, null));
+        assertNotNull(store.get(ids.get(0)));
+
+        store.put(new TaskStatusRecord(ids.get(2), TaskStatus.SUCCESS, null, null));
+
+        assertNotNull(store.get(ids.get(0)));
+        assertNull(store.get(ids.get(1)));
+        assertNotNull(store.get(ids.get(2)));
+    }
+
+    @Test
+    void expiredRecordsAreDropped() throws InterruptedException {
+        ReflectionTestUtils.setField(store, "ttlMinutes", 0L);
+        store.init();
+        store.put(new TaskStatusRecord("t1", TaskStatus.SUCCESS, null, null));
+        store.put(new TaskStatusRecord("t2", TaskStatus.SUCCESS, null, null));
+        Thread.sleep(5);
+
+        assertNull(store.get("t1"));
+        store.purgeExpired();
+
+        Map<String, Object> stats = store.getStats();
+        assertEquals(0, stats.get("size"));
+        assertEquals(2L, stats.get("expirations"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void evictedTerminalRecordsSpillToRedis() {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, Object> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        ReflectionTestUtils.setField(store, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(store, "redisSpillEnabled", true);
+
+        List<String> ids = sameSegmentIds(4);
+        store.put(new TaskStatusRecord(ids.get(0), TaskStatus.SUCCESS, "ok", null));
+        store.put(new TaskStatusRecord(ids.get(1), TaskStatus.RUNNING, null, null));
+        store.put(new TaskStatusRecord(ids.get(2), TaskStatus.SUCCESS, null, null));
+        store.put(new TaskStatusRecord(ids.get(3), TaskStatus.SUCCESS, null, null));
+
+        // 终态记录写入 Redis，非终态记录直接丢弃
+        verify(ops).set(eq("async:task_status:" + ids.get(0)), any(Map.class), eq(Duration.ofHours(24)));
+        verify(ops, never()).set(eq("async:task_status:" + ids.get(1)), any(), any(Duration.class));
+        assertEquals(1L, store.getStats().get("spilledToRedis"));
+
+        Map<String, Object> spilled = Collections.singletonMap("status", "SUCCESS");
+        when(ops.get("async:task_status:" + ids.get(0))).thenReturn(spilled);
+        assertSame(spilled, store.get(ids.get(0)));
+        assertNull(store.get(ids.get(1)));
+        assertEquals(1L, store.getStats().get("redisHits"));
+    }
+
+    /**
+     * 按 TaskStatusStore 的分段规则找出落在同一段的 taskId
+     */
+    private static List<String> sameSegmentIds(int count) {
+        List<String> ids = new ArrayList<>();
+        int target = -1;
+        for (int i = 0; ids.size() < count; i++) {
+            String id = "task-" + i;
+            int h = id.hashCode();
+            h ^= (h >>> 16);
+            int segment = (h & 0x7fffffff) % 16;
+            if (target < 0) {
+                target = segment;
+            }
+            if (segment == target) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,68 @@
+package com.lucksoft.qingdao.qdjl.mapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonthlyStatsSqlProviderTest {
+
+    private final PointCheckMonthlyStatsMapper.MonthlyStatsSqlProvider provider = new PointCheckMonthlyStatsMapper.MonthlyStatsSqlProvider();
+
+    @Test
+    void consecutiveMonthsAreMergedIntoHalfOpenRanges() {
+        String sql = provider.insertMonths(params(
+                YearMonth.of(2024, 3), YearMonth.of(2024, 1), YearMonth.of(2024, 2), YearMonth.of(2024, 5), YearMonth.of(2024, 2)));
+
+        assertTrue(sql.contains("((C.DINIT >= DATE '2024-01-01' AND C.DINIT < DATE '2024-04-01')"
+                + " OR (C.DINIT >= DATE '2024-05-01' AND C.DINIT < DATE '2024-06-01'))"), sql);
+        assertTrue(sql.contains("((C.DWUSER >= DATE '2024-01-01' AND C.DWUSER < DATE '2024-04-01')"
+                + " OR (C.DWUSER >= DATE '2024-05-01' AND C.DWUSER < DATE '2024-06-01'))"), sql);
+        // 日期列上不加函数
+        assertFalse(sql.contains("TO_CHAR(C.DINIT, 'YYYYMM') ="), sql);
+    }
+
+    @Test
+    void rangeSpansYearBoundary() {
+        String sql = provider.insertMonths(params(YearMonth.of(2024, 1), YearMonth.of(2023, 12)));
+
+        assertTrue(sql.contains("((C.DINIT >= DATE '2023-12-01' AND C.DINIT < DATE '2024-02-01'))"), sql);
+        assertFalse(sql.contains(" OR (C.DINIT"), sql);
+    }
+
+    @Test
+    void singleMonthBecomesOneRange() {
+        String sql = provider.insertMonths(params(YearMonth.of(2024, 12)));
+
+        assertTrue(sql.contains("((C.DWUSER >= DATE '2024-12-01' AND C.DWUSER < DATE '2025-01-01'))"), sql);
+    }
+
+    @Test
+    void deleteListsDistinctSortedMonths() {
+        String sql = provider.deleteMonths(params(YearMonth.of(2024, 1), YearMonth.of(2023, 12), YearMonth.of(2024, 1)));
+
+        assertEquals("DELETE FROM JL_PC_STATS_MONTHLY WHERE YM IN ('202312', '202401')", sql);
+    }
+
+    @Test
+    void emptyMonthsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> provider.insertMonths(params()));
+        assertThrows(IllegalArgumentException.class, () -> provider.deleteMonths(Collections.emptyMap()));
+    }
+
+    private static Map<String, Object> params(YearMonth... months) {
+        List<YearMonth> list = Arrays.asList(months);
+        Map<String, Object> params = new HashMap<>();
+        params.put("months", list);
+        return params;
+    }
+}
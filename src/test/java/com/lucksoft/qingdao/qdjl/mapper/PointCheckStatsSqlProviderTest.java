@@ -0,0 +1,104 @@
+package com.lucksoft.qingdao.qdjl.mapper;
+
+import com.lucksoft.qingdao.tmis.metrology.dto.PointCheckQuery;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PointCheckStatsSqlProviderTest {
+
+    private static final Pattern PERIOD_ALIAS = Pattern.compile("AS (F\\d+(?:A\\d)?)\\b");
+
+    private final PointCheckStatsMapper.PointCheckStatsSqlProvider provider = new PointCheckStatsMapper.PointCheckStatsSqlProvider();
+
+    @Test
+    void groupedSqlReturnsSameColumnsAsLegacy() {
+        // 两者共用 pointCheckRawStatsMap，列必须一致
+        String[][] cases = {{"A", "24"}, {"B", "16"}, {"C", "8"}};
+        for (String[] c : cases) {
+            PointCheckQuery query = query(c[0], "2024", null);
+            Set<String> legacy = aliases(provider.getRawStatistics(query));
+            Set<String> grouped = aliases(provider.getRawStatisticsGrouped(query));
+            assertEquals(Integer.parseInt(c[1]), legacy.size(), "类别 " + c[0]);
+            assertEquals(legacy, grouped, "类别 " + c[0]);
+            assertTrue(provider.getRawStatisticsGrouped(query).startsWith("SELECT D.IUSEDEPT, D.SUSEDEPT, "));
+        }
+    }
+
+    @Test
+    void groupedSqlScansEachDetailTableOnceWithDateRanges() {
+        String legacy = provider.getRawStatistics(query("A", "2024", null));
+        String grouped = provider.getRawStatisticsGrouped(query("A", "2024", null));
+
+        assertEquals(12, count(legacy, "FROM JL_EQUIP_DXJ C"));
+        assertEquals(12, count(legacy, "FROM JL_EQDXJLOG C"));
+        assertEquals(1, count(grouped, "FROM JL_EQUIP_DXJ C"));
+        assertEquals(1, count(grouped, "FROM JL_EQDXJLOG C"));
+        assertFalse(grouped.contains("TO_CHAR("), grouped);
+        assertTrue(grouped.contains("C.DINIT >= DATE '2024-01-01' AND C.DINIT < DATE '2025-01-01'"), grouped);
+        assertTrue(grouped.contains("C.DWUSER >= DATE '2024-01-01' AND C.DWUSER < DATE '2025-01-01'"), grouped);
+        assertTrue(grouped.contains("GROUP BY C.IUSEDEPT"), grouped);
+        assertTrue(grouped.contains("GROUP BY C.IDEPT"), grouped);
+        assertTrue(grouped.endsWith(" ORDER BY D.IUSEDEPT"), grouped);
+    }
+
+    @Test
+    void groupedPeriodsMatchLegacyPeriods() {
+        // B 类: 4 个周期，每个 3 个月；应检只统计周期首月，已检/正常/异常统计整个周期
+        String grouped = provider.getRawStatisticsGrouped(query("B", "2024", null));
+
+        assertTrue(grouped.contains("SUM(CASE WHEN C.DINIT >= DATE '2024-04-01' AND C.DINIT < DATE '2024-05-01' THEN 1 ELSE 0 END) AS F2"), grouped);
+        assertTrue(grouped.contains("SUM(CASE WHEN NVL(C.IDEL,0)=0 AND C.IDJSTATE=1 AND C.DINIT >= DATE '2024-04-01' AND C.DINIT < DATE '2024-07-01' THEN 1 ELSE 0 END) AS F2A1"), grouped);
+        assertTrue(grouped.contains("SUM(CASE WHEN C.IRESULT=2 AND C.DWUSER >= DATE '2024-10-01' AND C.DWUSER < DATE '2025-01-01' THEN 1 ELSE 0 END) AS F4A3"), grouped);
+        assertTrue(grouped.contains("C.SABC = 2"), grouped);
+    }
+
+    @Test
+    void departmentScopeFilterOnlyAppliesWithUser() {
+        assertFalse(provider.getRawStatisticsGrouped(query("A", "2024", null)).contains("FROM USERS B"));
+        String scoped = provider.getRawStatisticsGrouped(query("A", "2024", 7L));
+        assertTrue(scoped.contains(PointCheckStatsMapper.PointCheckStatsSqlProvider.DEPT_SCOPE_FILTER), scoped);
+    }
+
+    @Test
+    void defaultsToCategoryAAndRejectsMalformedYear() {
+        assertEquals(provider.getRawStatisticsGrouped(query("A", "2024", null)),
+                provider.getRawStatisticsGrouped(query(null, "2024", null)));
+        assertThrows(IllegalArgumentException.class, () -> provider.getRawStatisticsGrouped(query("A", "2024' OR '1'='1", null)));
+        assertThrows(IllegalArgumentException.class, () -> provider.getRawStatisticsGrouped(query("A", null, null)));
+        assertThrows(IllegalArgumentException.class, () -> provider.getRawStatistics(query("A", "2024' OR '1'='1", null)));
+    }
+
+    private static PointCheckQuery query(String category, String year, Long userId) {
+        PointCheckQuery query = new PointCheckQuery();
+        query.setCategory(category);
+        query.setYear(year);
+        query.setUserId(userId);
+        return query;
+    }
+
+    private static Set<String> aliases(String sql) {
+        Set<String> aliases = new TreeSet<>();
+        Matcher m = PERIOD_ALIAS.matcher(sql);
+        while (m.find()) {
+            aliases.add(m.group(1));
+        }
+        return aliases;
+    }
+
+    private static int count(String sql, String fragment) {
+        int count = 0;
+        for (int i = sql.indexOf(fragment); i >= 0; i = sql.indexOf(fragment, i + fragment.length())) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,183 @@
+package com.lucksoft.qingdao.tmis.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XlsxStreamWriterTest {
+
+    private static final String SHEET_ENTRY = "xl/worksheets/sheet1.xml";
+    private static final List<String> ENTRY_NAMES = Arrays.asList(
+            "[Content_Types].xml", "_rels/.rels", "xl/workbook.xml", "xl/_rels/workbook.xml.rels", "xl/styles.xml", SHEET_ENTRY);
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void nothingIsWrittenBeforeFirstFlush() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XlsxStreamWriter writer = new XlsxStreamWriter(out, "Sheet", 2, 20);
+        writer.writeHeader(new String[]{"编号", "名称"});
+        writer.writeRow(new String[]{"1", "first"});
+
+        assertEquals(0, out.size());
+        assertEquals(2, writer.getRowCount());
+    }
+
+    @Test
+    void flushedPrefixInflatesToRowsWrittenSoFar() throws IOException, DataFormatException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XlsxStreamWriter writer = new XlsxStreamWriter(out, "Sheet", 2, 20);
+        writer.writeHeader(new String[]{"编号", "名称"});
+        writer.writeRow(new String[]{"1", "first"});
+        writer.flush();
+
+        byte[] prefix = out.toByteArray();
+        assertTrue(prefix.length > 0);
+        String sheet = inflateEntry(prefix, SHEET_ENTRY);
+        assertTrue(sheet.contains("<sheetData><row r=\"1\">"), sheet);
+        assertTrue(sheet.contains(">编号</t>"), sheet);
+        assertTrue(sheet.endsWith("<t xml:space=\"preserve\">first</t></is></c></row>"), sheet);
+
+        writer.writeRow(new String[]{"2", "second"});
+        writer.flush();
+        assertTrue(out.size() > prefix.length);
+        assertTrue(inflateEntry(out.toByteArray(), SHEET_ENTRY).contains("second"));
+    }
+
+    @Test
+    void rowsBeyondSheetLimitFailFast() throws IOException {
+        OutputStream discard = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+        XlsxStreamWriter writer = new XlsxStreamWriter(discard, "Sheet", 1, 20);
+        writer.writeHeader(new String[]{"A"});
+        String[] empty = new String[0];
+        for (int i = 1; i < XlsxStreamWriter.MAX_ROWS; i++) {
+            writer.writeRow(empty);
+        }
+        assertEquals(XlsxStreamWriter.MAX_ROWS, writer.getRowCount());
+        assertThrows(IOException.class, () -> writer.writeRow(empty));
+    }
+
+    @Test
+    void finishedFileIsAValidZip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XlsxStreamWriter writer = new XlsxStreamWriter(out, "Sheet/1", 3, 20);
+        writer.writeHeader(new String[]{"A", "B", "C"});
+        for (int i = 0; i < 2000; i++) {
+            writer.writeRow(new String[]{String.valueOf(i), "a<b&c", null});
+            if (i % 500 == 0) {
+                writer.flush();
+            }
+        }
+        writer.finish();
+        writer.finish();
+        byte[] bytes = out.toByteArray();
+
+        // 顺序读取 (依赖本地文件头和数据描述符)
+        List<String> streamed = new ArrayList<>();
+        String sheet = null;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                streamed.add(entry.getName());
+                if (SHEET_ENTRY.equals(entry.getName())) {
+                    sheet = readAll(zip);
+                }
+            }
+        }
+        assertEquals(ENTRY_NAMES, streamed);
+        assertTrue(sheet.endsWith("</sheetData></worksheet>"));
+        assertTrue(sheet.contains("<row r=\"2001\">"));
+        assertTrue(sheet.contains("a&lt;b&amp;c"));
+        assertFalse(sheet.contains("<c r=\"C2\""), "空单元格不应输出");
+
+        // 按中央目录读取
+        File file = new File(tempDir, "export.xlsx");
+        Files.write(file.toPath(), bytes);
+        try (ZipFile zipFile = new ZipFile(file)) {
+            List<String> names = new ArrayList<>();
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                names.add(entry.getName());
+            }
+            assertEquals(ENTRY_NAMES, names);
+            try (InputStream in = zipFile.getInputStream(zipFile.getEntry(SHEET_ENTRY))) {
+                assertEquals(sheet, readAll(in));
+            }
+        }
+    }
+
+    /**
+     * 找到指定条目的本地文件头，把其后已输出的压缩数据解压 (SYNC_FLUSH 保证已输出部分可以完整解压)
+     */
+    private static String inflateEntry(byte[] zip, String name) throws DataFormatException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i + 30 <= zip.length; i++) {
+            if (readInt(zip, i) != 0x04034b50 || readShort(zip, i + 26) != nameBytes.length) {
+                continue;
+            }
+            if (!Arrays.equals(nameBytes, Arrays.copyOfRange(zip, i + 30, i + 30 + nameBytes.length))) {
+                continue;
+            }
+            int dataStart = i + 30 + nameBytes.length + readShort(zip, i + 28);
+            Inflater inflater = new Inflater(true);
+            inflater.setInput(zip, dataStart, zip.length - dataStart);
+            ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = inflater.inflate(buffer)) > 0) {
+                inflated.write(buffer, 0, n);
+            }
+            inflater.end();
+            return new String(inflated.toByteArray(), StandardCharsets.UTF_8);
+        }
+        throw new AssertionError("未找到条目 " + name);
+    }
+
+    private static int readShort(byte[] b, int off) {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8;
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return readShort(b, off) | readShort(b, off + 2) << 16;
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
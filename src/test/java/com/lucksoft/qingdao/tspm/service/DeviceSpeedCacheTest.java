@@ -0,0 +1,149 @@
+package com.lucksoft.qingdao.tspm.service;
+
+import com.lucksoft.qingdao.tspm.dto.tims.GetAvgSpeedReq;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeviceSpeedCacheTest {
+
+    private final TimsServiceClient timsClient = mock(TimsServiceClient.class);
+    private final ExecutorService callers = Executors.newFixedThreadPool(5);
+    private DeviceSpeedCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new DeviceSpeedCache();
+        ReflectionTestUtils.setField(cache, "timsClient", timsClient);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(cache, "loadTimeoutSeconds", 30L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void readingIsReusedWithinTtl() {
+        when(timsClient.getAverageSpeed(any())).thenReturn(12.5);
+
+        DeviceSpeedCache.SpeedReading first = cache.getRecentSpeed(" EQ1 ", 10);
+        DeviceSpeedCache.SpeedReading second = cache.getRecentSpeed("EQ1", 10);
+
+        assertSame(first, second);
+        assertEquals(12.5, first.getSpeed());
+        assertEquals(TimeUnit.MINUTES.toMillis(10), first.getEndTime().getTime() - first.getStartTime().getTime());
+        ArgumentCaptor<GetAvgSpeedReq> req = ArgumentCaptor.forClass(GetAvgSpeedReq.class);
+        verify(timsClient, times(1)).getAverageSpeed(req.capture());
+        assertEquals("EQ1", req.getValue().getEquipmentCode());
+        assertEquals(1L, cache.getStats().get("hits"));
+        assertEquals(1L, cache.getStats().get("loads"));
+    }
+
+    @Test
+    void differentWindowsAndRangesAreCachedSeparately() {
+        when(timsClient.getAverageSpeed(any())).thenReturn(10.0);
+
+        cache.getRecentSpeed("EQ1", 10);
+        cache.getRecentSpeed("EQ1", 30);
+        cache.getAverageSpeed(new GetAvgSpeedReq("EQ1", "2024-01-01 08:00:00", "2024-01-01 09:00:00"));
+        cache.getAverageSpeed(new GetAvgSpeedReq("EQ1", "2024-01-01 08:00:00", "2024-01-01 09:00:00"));
+
+        verify(timsClient, times(3)).getAverageSpeed(any());
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(timsClient.getAverageSpeed(any())).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return 20.0;
+        });
+
+        List<Future<DeviceSpeedCache.SpeedReading>> results = new ArrayList<>();
+        results.add(callers.submit(() -> cache.getRecentSpeed("EQ1", 10)));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            results.add(callers.submit(() -> cache.getRecentSpeed("EQ1", 10)));
+        }
+        awaitCollapsed(4);
+        release.countDown();
+
+        DeviceSpeedCache.SpeedReading reading = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<DeviceSpeedCache.SpeedReading> result : results) {
+            assertSame(reading, result.get(5, TimeUnit.SECONDS));
+        }
+        verify(timsClient, times(1)).getAverageSpeed(any());
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        when(timsClient.getAverageSpeed(any())).thenThrow(new IllegalStateException("TIMS 不可用")).thenReturn(8.0);
+
+        assertThrows(IllegalStateException.class, () -> cache.getRecentSpeed("EQ1", 10));
+        assertEquals(8.0, cache.getRecentSpeed("EQ1", 10).getSpeed());
+        verify(timsClient, times(2)).getAverageSpeed(any());
+    }
+
+    @Test
+    void errorInLoaderReleasesWaitersImmediately() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(timsClient.getAverageSpeed(any())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() > 1) {
+                return 5.0;
+            }
+            loading.countDown();
+            release.await();
+            throw new NoClassDefFoundError("broken");
+        });
+
+        Future<DeviceSpeedCache.SpeedReading> owner = callers.submit(() -> cache.getRecentSpeed("EQ1", 10));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        Future<DeviceSpeedCache.SpeedReading> waiter = callers.submit(() -> cache.getRecentSpeed("EQ1", 10));
+        awaitCollapsed(1);
+        release.countDown();
+
+        // 等待方不应等到 loadTimeoutSeconds (30 秒) 才返回
+        ExecutionException ownerFailure = assertThrows(ExecutionException.class, () -> owner.get(5, TimeUnit.SECONDS));
+        assertTrue(ownerFailure.getCause() instanceof NoClassDefFoundError);
+        ExecutionException waiterFailure = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertTrue(waiterFailure.getCause() instanceof NoClassDefFoundError);
+
+        assertEquals(5.0, cache.getRecentSpeed("EQ1", 10).getSpeed());
+    }
+
+    private void awaitCollapsed(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((Long) cache.getStats().get("collapsed") < expected) {
+            assertTrue(System.nanoTime() < deadline, "等待方未进入 single-flight");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.lucksoft.qingdao.tspm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReceivedDataCacheServiceTest {
+
+    private ReceivedDataCacheService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ReceivedDataCacheService();
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "maxCacheSize", 3);
+        // 单条上限 = 600 / 3 = 200 字节 (约 100 个字符)
+        ReflectionTestUtils.setField(service, "maxBytesPerTopic", 600L);
+    }
+
+    @Test
+    void keepsNewestEntriesFirstPerTopic() {
+        for (int i = 1; i <= 5; i++) {
+            service.addRawData("topic-a", "{\"seq\":" + i + "}");
+        }
+        service.addData("topic-b", Collections.singletonMap("seq", 99));
+
+        List<Map<String, Object>> a = service.getData("topic-a");
+        assertEquals(3, a.size());
+        assertEquals(5, a.get(0).get("seq"));
+        assertEquals(3, a.get(2).get("seq"));
+        assertEquals(99, service.getData("topic-b").get(0).get("seq"));
+        assertTrue(service.getData("unknown").isEmpty());
+    }
+
+    @Test
+    void parsedViewIsCachedPerEntry() {
+        service.addRawData("topic-a", "{\"seq\":1}");
+        Map<String, Object> first = service.getData("topic-a").get(0);
+        service.addRawData("topic-a", "{\"seq\":2}");
+
+        List<Map<String, Object>> again = service.getData("topic-a");
+        assertEquals(2, again.get(0).get("seq"));
+        assertSame(first, again.get(1));
+    }
+
+    @Test
+    void oversizedEntryIsReplacedBySummary() {
+        StringBuilder big = new StringBuilder("{\"payload\":\"");
+        for (int i = 0; i < 500; i++) {
+            big.append('x');
+        }
+        String rawJson = big.append("\"}").toString();
+        service.addRawData("topic-a", rawJson);
+
+        Map<String, Object> cached = service.getData("topic-a").get(0);
+        assertEquals(true, cached.get("_truncated"));
+        assertEquals(rawJson.length(), cached.get("_originalChars"));
+        assertEquals(rawJson.substring(0, 200), cached.get("_preview"));
+        assertFalse(cached.containsKey("payload"));
+    }
+
+    @Test
+    void budgetDisabledKeepsFullEntry() {
+        ReflectionTestUtils.setField(service, "maxBytesPerTopic", 0L);
+        StringBuilder big = new StringBuilder("{\"payload\":\"");
+        for (int i = 0; i < 500; i++) {
+            big.append('x');
+        }
+        service.addRawData("topic-a", big.append("\"}").toString());
+
+        Map<String, Object> cached = service.getData("topic-a").get(0);
+        assertEquals(500, ((String) cached.get("payload")).length());
+    }
+
+    @Test
+    void unparsableEntryIsSkippedOnRead() {
+        service.addRawData("topic-a", "{\"seq\":1}");
+        service.addRawData("topic-a", "not json");
+        service.addRawData("topic-a", null);
+
+        List<Map<String, Object>> data = service.getData("topic-a");
+        assertEquals(1, data.size());
+        assertEquals(1, data.get(0).get("seq"));
+    }
+}
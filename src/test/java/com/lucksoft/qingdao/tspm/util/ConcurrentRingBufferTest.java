@@ -0,0 +1,98 @@
+package com.lucksoft.qingdao.tspm.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentRingBufferTest {
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentRingBuffer<String>(0));
+    }
+
+    @Test
+    void snapshotIsNewestFirstAndOverwritesOldest() {
+        ConcurrentRingBuffer<Integer> ring = new ConcurrentRingBuffer<>(3);
+        assertTrue(ring.snapshot().isEmpty());
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(i - 1, ring.add(i));
+        }
+
+        assertEquals(Arrays.asList(5, 4, 3), ring.snapshot());
+        assertEquals(Arrays.asList(5, 4), ring.snapshot(2));
+        assertEquals(3, ring.size());
+        assertEquals(5, ring.totalAdded());
+    }
+
+    @Test
+    void readFromContinuesIncrementallyAndSkipsOverwritten() {
+        ConcurrentRingBuffer<Integer> ring = new ConcurrentRingBuffer<>(3);
+        ring.add(1);
+        ring.add(2);
+
+        List<Integer> out = new ArrayList<>();
+        long next = ring.readFrom(0, out);
+        assertEquals(Arrays.asList(1, 2), out);
+        assertEquals(2, next);
+
+        // 没有新元素时不返回任何数据
+        out.clear();
+        assertEquals(2, ring.readFrom(next, out));
+        assertTrue(out.isEmpty());
+
+        // 序号 2 (元素 3) 在读取前已被覆盖
+        for (int i = 3; i <= 6; i++) {
+            ring.add(i);
+        }
+        next = ring.readFrom(next, out);
+        assertEquals(Arrays.asList(4, 5, 6), out);
+        assertEquals(6, next);
+    }
+
+    @Test
+    void concurrentWritersKeepTheNewestElements() throws Exception {
+        int threads = 4;
+        int perThread = 10000;
+        ConcurrentRingBuffer<Long> ring = new ConcurrentRingBuffer<>(100);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread writer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    ring.add(Thread.currentThread().getId() * 1_000_000L + i);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals((long) threads * perThread, ring.totalAdded());
+        List<Long> snapshot = ring.snapshot();
+        assertEquals(100, snapshot.size());
+        Set<Long> distinct = new HashSet<>(snapshot);
+        assertEquals(100, distinct.size());
+
+        List<Long> read = new ArrayList<>();
+        assertEquals(ring.totalAdded(), ring.readFrom(0, read));
+        assertEquals(100, read.size());
+    }
+}
@@ -0,0 +1,65 @@
+package com.lucksoft.qingdao.tspm.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketRateLimiterTest {
+
+    @Test
+    void rejectsNonPositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimiter(0, 1));
+    }
+
+    @Test
+    void burstIsAvailableImmediately() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 5);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 按 1/s 限速，不是突发的话至少要 4 秒
+        assertTrue(elapsedMillis < 1000, "突发获取耗时 " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void acquisitionsBeyondBurstArePacedAtRate() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(50, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 11; i++) {
+            limiter.acquire();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 第一个令牌立即可用，其余 10 个每 20 ms 一个
+        assertTrue(elapsedMillis >= 180, "限速获取耗时 " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void concurrentCallersShareTheRate() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(100, 1);
+        Thread[] threads = new Thread[4];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 5; i++) {
+                        limiter.acquire();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 共 20 个令牌，除第一个外每 10 ms 一个
+        assertTrue(elapsedMillis >= 170, "并发获取耗时 " + elapsedMillis + " ms");
+    }
+}